@@ -0,0 +1,159 @@
+package com.crio.qcharm.ds;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Aho-Corasick automaton finding any number of patterns in a single pass over a line.
+//
+// The patterns are stored in a trie. Every node has a failure link to the node of the longest
+// proper suffix of its string that is also in the trie, and an output link to the nearest node
+// along the failure links where a pattern ends. Scanning a line follows one transition per
+// char (failure links are taken when there is none), and reports every pattern ending at that
+// char through the output links, so the cost is the length of the line plus the number of
+// occurrences, whatever the number of patterns.
+//
+// Transitions of a node are kept as a sorted char array searched by binary search, a line is
+// read once with any alphabet. The automaton is immutable once built and may be shared by
+// several threads.
+
+final class AhoCorasick {
+
+  private static final int ROOT = 0;
+  private static final int[] NO_OUTPUT = new int[0];
+  private static final Comparator<PatternCursor> BY_COLUMN =
+      Comparator.comparingInt(PatternCursor::getColumnNo)
+          .thenComparingInt(PatternCursor::getPatternIndex);
+
+  private final int[] patternLengths;
+  private final char[][] keys;
+  private final int[][] targets;
+  private final int[] fail;
+  // Indexes of the patterns ending at each node.
+  private final int[][] outputs;
+  // Nearest node on the failure links with outputs, ROOT if there is none.
+  private final int[] outputLink;
+
+  // Input:
+  //      patterns - searched for, empty patterns are never found
+  // Description:
+  //      Builds the automaton, in time linear in the total length of the patterns.
+
+  AhoCorasick(List<String> patterns) {
+    patternLengths = new int[patterns.size()];
+    List<TreeMap<Character, Integer>> children = new ArrayList<>();
+    List<List<Integer>> ends = new ArrayList<>();
+    children.add(new TreeMap<>());
+    ends.add(new ArrayList<>());
+    for (int index = 0; index < patterns.size(); index++) {
+      String pattern = patterns.get(index);
+      patternLengths[index] = pattern.length();
+      if (pattern.isEmpty()) {
+        continue;
+      }
+      int node = ROOT;
+      for (int i = 0; i < pattern.length(); i++) {
+        Integer child = children.get(node).get(pattern.charAt(i));
+        if (child == null) {
+          child = children.size();
+          children.get(node).put(pattern.charAt(i), child);
+          children.add(new TreeMap<>());
+          ends.add(new ArrayList<>());
+        }
+        node = child;
+      }
+      ends.get(node).add(index);
+    }
+
+    int numberOfNodes = children.size();
+    keys = new char[numberOfNodes][];
+    targets = new int[numberOfNodes][];
+    outputs = new int[numberOfNodes][];
+    for (int node = 0; node < numberOfNodes; node++) {
+      TreeMap<Character, Integer> transitions = children.get(node);
+      keys[node] = new char[transitions.size()];
+      targets[node] = new int[transitions.size()];
+      int i = 0;
+      for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+        keys[node][i] = transition.getKey();
+        targets[node][i] = transition.getValue();
+        i++;
+      }
+      List<Integer> nodeEnds = ends.get(node);
+      outputs[node] = nodeEnds.isEmpty() ? NO_OUTPUT : new int[nodeEnds.size()];
+      for (int j = 0; j < nodeEnds.size(); j++) {
+        outputs[node][j] = nodeEnds.get(j);
+      }
+    }
+
+    // Nodes in breadth first order, so the links of shorter strings are known first.
+    fail = new int[numberOfNodes];
+    outputLink = new int[numberOfNodes];
+    Deque<Integer> queue = new ArrayDeque<>();
+    for (int child : targets[ROOT]) {
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      int node = queue.poll();
+      for (int i = 0; i < keys[node].length; i++) {
+        int child = targets[node][i];
+        int state = fail[node];
+        int next = step(state, keys[node][i]);
+        while (next < 0 && state != ROOT) {
+          state = fail[state];
+          next = step(state, keys[node][i]);
+        }
+        fail[child] = next < 0 ? ROOT : next;
+        outputLink[child] =
+            outputs[fail[child]].length > 0 ? fail[child] : outputLink[fail[child]];
+        queue.add(child);
+      }
+    }
+  }
+
+  // Input:
+  //      line, lineNo
+  //      res - where the occurrences are added
+  // Description:
+  //      Adds every occurrence of every pattern in the line, overlapping ones included,
+  //      sorted by column then pattern index.
+
+  void search(String line, int lineNo, List<PatternCursor> res) {
+    int found = res.size();
+    int state = ROOT;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      int next = step(state, c);
+      while (next < 0 && state != ROOT) {
+        state = fail[state];
+        next = step(state, c);
+      }
+      state = next < 0 ? ROOT : next;
+      int node = outputs[state].length > 0 ? state : outputLink[state];
+      while (node != ROOT) {
+        for (int index : outputs[node]) {
+          res.add(new PatternCursor(index, lineNo, i + 1 - patternLengths[index]));
+        }
+        node = outputLink[node];
+      }
+    }
+    // Occurrences come out by their last char.
+    if (res.size() - found > 1) {
+      res.subList(found, res.size()).sort(BY_COLUMN);
+    }
+  }
+
+  int getNumberOfNodes() {
+    return this.keys.length;
+  }
+
+  private int step(int node, char c) {
+    int i = Arrays.binarySearch(keys[node], c);
+    return i < 0 ? -1 : targets[node][i];
+  }
+}
@@ -0,0 +1,598 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.MultiSearchRequest;
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchReplaceRequest;
+import com.crio.qcharm.request.SearchRequest;
+import com.crio.qcharm.request.UndoRequest;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+// What every SourceFileHandler does whatever the storage of its file: paging, searches, edits
+// through the EditHistory, the trigram index, the journal and spilling. Subclasses choose the
+// SourceFileVersion the file is held in, with createSourceFileVersion() and cloneObj().
+//
+// Whatever changes the file or its history holds writeLock, so that one change never runs
+// while another is half done and never gets lost when searchReplace() swaps the version.
+//
+// Edits, undo and redo change the latest version in place, which pages and searches are
+// reading from other threads. They take the write lock of versionLock for the time of the
+// change, and every read of the file holds its read lock from the first line read to the last
+// one, so a reader sees the lines and the LineChanges of one version, never a list half
+// changed. searchReplace() doesn't hold it while the replacement is computed: it works on a
+// copy, then swaps the volatile sourceFile, and readers keep reading the version before the
+// replacement meanwhile. A version returned by getLatestSourceFileVersion() is read without
+// the lock, at the risk of seeing it change.
+
+public abstract class BaseSourceFileHandler implements SourceFileHandler {
+
+  private String fileName;
+  // Replaced at once by searchReplace(), read by other threads.
+  private volatile SourceFileVersion sourceFile;
+  private CopyBuffer copyBuffer;
+  private final EditHistory history;
+  private boolean trigramIndex;
+  private final SearchCache searchCache = new SearchCache();
+  private final SearchSession searchSession = new SearchSession();
+  private final Object writeLock = new Object();
+  private final ReadWriteLock versionLock = new ReentrantReadWriteLock();
+
+  protected BaseSourceFileHandler(String fileName) {
+    this.fileName = fileName;
+    this.history = new EditHistory();
+  }
+
+
+  // Input:
+  //      FileName
+  //  Steps:
+  //    1. Given SourceFile name get the latest version of the it.
+  //  Description:
+  //    After loading the file the SourceFile would have gone through multiple
+  //    changes. When we say "Latest version of the SourceFile" it means the SourceFile's present
+  //    view after applying all the changes.
+  //    Returns null if fileName isn't the file loaded in this handler.
+  @Override
+  public SourceFileVersion getLatestSourceFileVersion(String fileName) {
+    if (this.sourceFile == null || !Objects.equals(fileName, this.sourceFile.getFileName())) {
+      return null;
+    }
+    return this.sourceFile;
+  }
+
+  // Input:
+  //      FileInfo
+  //  Steps:
+  //    1. Create the SourceFileVersion of the given fileInfo with createSourceFileVersion().
+  //    2. Using that object get the first 50 lines of this file.
+  //    3. Create Page object using the lines received and return the same.
+  //  How to construct Page object ?
+  //    1. lines should be the first 50 lines of the SourceFile
+  //    2. cursorAt should be new Cursor(0,0)
+  //    3. StartingLineNo is set to 0
+  //    4. fileName should be same as the fileInfo.fileName
+  //
+  //  What is Cursor?
+  //     It represents position of the cursor in the editor.
+  //     Cursor is represented using (lineNumber, columnNumber).
+
+  @Override
+  public Page loadFile(FileInfo fileInfo) {
+    return loadSourceFileVersion(createSourceFileVersion(fileInfo));
+  }
+
+  // Makes the given version the latest one and returns its first 50 lines.
+
+  protected Page loadSourceFileVersion(SourceFileVersion sourceFileVersion) {
+    SourceFileVersion loaded;
+    synchronized (writeLock) {
+      loaded = SourceFileVersionIndexedImpl.withIndex(sourceFileVersion, trigramIndex);
+      this.sourceFile = loaded;
+      this.history.load(loaded);
+    }
+    String fileName = sourceFileVersion.getFileName();
+    PageRequest pageRequest = new PageRequest(0, fileName, 50, new Cursor(0, 0));
+    Page page = new Page();
+    page.setLines(read(sourceFile -> sourceFile.getLinesFrom(pageRequest)).getLines());
+    page.setCursorAt(new Cursor(0, 0));
+    page.setStartingLineNo(0);
+    page.setFileName(fileName);
+    return page;
+  }
+
+  // Storage used for a freshly loaded file, and for the file read back by reloadFrom().
+  // cloneObj() copies versions of this class.
+
+  protected abstract SourceFileVersion createSourceFileVersion(FileInfo fileInfo);
+
+  // Input:
+  //     PageRequest - contains following information
+  //         1. Starting line number
+  //         2. File name;
+  //         3. requested number of Lines
+  //         4. Cursor position
+  //  Steps:
+  //    1. After loadFile the SourceFileVersion has all the file information
+  //    2. Using that get "requested number of lines" above "the given line number".
+  //    3. Construct Page object and return
+  //  How to construct Page object ?
+  //    1. lines - lines you got in step 2
+  //    2. cursorAt should be same as pageRequest.cursorAt
+  //    3. StartingLineNo should be same as first line number of lines
+  //    4. fileName should be same as the pageRequest.fileName
+
+  @Override
+  public Page getPrevLines(PageRequest pageRequest) {
+    return read(sourceFile -> sourceFile.getLinesBefore(pageRequest));
+  }
+
+  // Input:
+  //     PageRequest - contains following information
+  //         1. Starting line number
+  //         2. File name;
+  //         3. requested number of Lines
+  //         4. Cursor position
+  //  Steps:
+  //    1. After loadFile the SourceFileVersion has all the file information
+  //    2. Using that get "requested number of lines" below "the given line number".
+  //    3. Construct Page object and return
+  //  How to construct Page object ?
+  //    1. lines - lines you got in step 2
+  //    2. cursorAt should be same as pageRequest.cursorAt
+  //    3. StartingLineNo should be same as first line number of lines
+  //    4. fileName should be same as the pageRequest.fileName
+
+  @Override
+  public Page getNextLines(PageRequest pageRequest) {
+    Page page = read(sourceFile -> sourceFile.getLinesAfter(pageRequest));
+    if (page.getLines().size() == 0) {
+      return page;
+    }
+    page.setStartingLineNo(page.getStartingLineNo() + 1);
+    return page;
+  }
+
+  // Input:
+  //     PageRequest - contains following information
+  //         1. Starting line number
+  //         2. File name;
+  //         3. requested number of Lines
+  //         4. Cursor position
+  //  Steps:
+  //    1. After loadFile the SourceFileVersion has all the file information
+  //    2. Using the object get "requested number of lines" starting from "the given line number".
+  //    3. Construct Page object and return
+  //  How to construct Page object ?
+  //    1. lines - lines you got in step 2
+  //    2. cursorAt should be same be set to (startingLineNo, 0);
+  //    3. StartingLineNo should be same as first line number of lines
+  //    4. fileName should be same as the pageRequest.fileName
+
+  @Override
+  public Page getLinesFrom(PageRequest pageRequest) {
+    return read(sourceFile -> sourceFile.getLinesFrom(pageRequest));
+  }
+
+  // Input:
+  //     SearchRequest - contains following information
+  //         1. pattern - pattern you want to search
+  //         2. File name - file where you want to search for the pattern
+  // Description:
+  //    1. For the given SourceFile use the SourceFileVersion
+  //    .getCursors() to find all occurrences of the pattern in the SourceFile.
+  //    2. return the all occurrences starting position in a list.
+  //    Searching again for a pattern only searches the lines edited since, see SearchCache.
+
+  @Override
+  public List<Cursor> search(SearchRequest searchRequest) {
+    return read(sourceFile -> this.searchCache.search(sourceFile, searchRequest));
+  }
+
+  // Input:
+  //     SearchRequest - the pattern, maxResults and the continuationToken of the
+  //         previous page if any
+  // Description:
+  //    Returns the next maxResults occurrences in the SourceFile, scanning it only until
+  //    they are found, with the token of the following page.
+
+  @Override
+  public SearchPage searchPage(SearchRequest searchRequest) {
+    return read(sourceFile -> SearchScan.page(sourceFile, searchRequest));
+  }
+
+  // Input:
+  //     SearchRequest - the pattern to search for and the file
+  // Description:
+  //    Same occurrences as search(), packed in a CursorArray rather than one Cursor object
+  //    each. The whole SourceFile is scanned, without the search cache and the index.
+
+  @Override
+  public CursorArray searchPacked(SearchRequest searchRequest) {
+    return read(sourceFile ->
+        ParallelSearch.searchPacked(sourceFile.getSegments(), searchRequest));
+  }
+
+  // Input:
+  //     SearchRequest - the query typed so far in the search box
+  // Description:
+  //    Same as search(). When the query extends or shortens the previous one and the
+  //    SourceFile wasn't edited since, the occurrences are found from the previous ones.
+
+  @Override
+  public List<Cursor> searchAsYouType(SearchRequest searchRequest) {
+    return read(sourceFile -> this.searchSession.search(sourceFile, searchRequest,
+        request -> this.searchCache.search(sourceFile, request)));
+  }
+
+  // Input:
+  //     SearchRequest - the pattern to search for, the file and wrapAround
+  //     from - the cursor
+  // Description:
+  //    Returns the first occurrence starting at or after the cursor, or null if there is
+  //    none. Only the lines up to it are read. With wrapAround, the search goes on from the
+  //    first line when the last one is reached.
+
+  @Override
+  public Cursor findNext(SearchRequest searchRequest, Cursor from) {
+    return read(sourceFile -> SearchScan.findNext(sourceFile, searchRequest, from));
+  }
+
+  // Input:
+  //     SearchRequest - the pattern to search for, the file and wrapAround
+  //     from - the cursor
+  // Description:
+  //    Returns the last occurrence starting before the cursor, or null if there is none.
+  //    Only the lines back to it are read. With wrapAround, the search goes on from the last
+  //    line when the first one is reached.
+
+  @Override
+  public Cursor findPrevious(SearchRequest searchRequest, Cursor from) {
+    return read(sourceFile -> SearchScan.findPrevious(sourceFile, searchRequest, from));
+  }
+
+  // Input:
+  //     SearchRequest - the pattern to search for and the file
+  //     PageRequest - the lines on screen, numberOfLines from startingLineNo
+  // Description:
+  //    Finds the occurrences in the lines on screen right away. The search of the whole
+  //    SourceFile is left to ViewportSearch.searchAll(), which can run on another thread
+  //    while the file is edited: it searches a copy of the SourceFile made with cloneObj(),
+  //    which only copies the structure holding the lines.
+
+  @Override
+  public ViewportSearch searchViewport(SearchRequest searchRequest, PageRequest pageRequest) {
+    SourceFileVersion snapshot;
+    synchronized (writeLock) {
+      snapshot = cloneObj(SourceFileVersionIndexedImpl.withIndex(this.sourceFile, false));
+    }
+    return new ViewportSearch(snapshot, searchRequest, pageRequest.getStartingLineNo(),
+        pageRequest.getNumberOfLines());
+  }
+
+  // Input:
+  //     SearchRequest - the pattern to search for, maxEdits and the file
+  // Description:
+  //    Finds the substrings at most maxEdits edits away from the pattern, ranked by edit
+  //    distance then position. The pattern is literal and has up to 64 chars.
+
+  @Override
+  public List<FuzzyMatch> searchFuzzy(SearchRequest searchRequest) {
+    return read(sourceFile -> ParallelSearch.searchFuzzy(sourceFile.getSegments(),
+        searchRequest.getPattern(), searchRequest.getMaxEdits()));
+  }
+
+  // Input:
+  //     SearchRequest - the pattern to search for, which may hold line breaks, and the file
+  // Description:
+  //    Finds the occurrences of the pattern, literal or regex, across line boundaries, each
+  //    as the range from its first char to the position after its last one.
+
+  @Override
+  public List<CursorRange> searchMultiline(SearchRequest searchRequest) {
+    return read(sourceFile -> new MultilineSearch(sourceFile).search(searchRequest));
+  }
+
+  // Input:
+  //     MultiSearchRequest - the patterns to search for and the file
+  // Description:
+  //    Finds the occurrences of all the patterns in one pass over the SourceFile, each
+  //    tagged with the index of its pattern.
+
+  @Override
+  public List<PatternCursor> searchAll(MultiSearchRequest multiSearchRequest) {
+    AhoCorasick automaton = new AhoCorasick(multiSearchRequest.getPatterns());
+    return read(sourceFile -> ParallelSearch.search(sourceFile.getSegments(), automaton::search));
+  }
+
+
+  // Input:
+  //     CopyBuffer - contains following information
+  //         1. List of lines
+  // Description:
+  //      Store the incoming copy buffer
+
+  @Override
+  public void setCopyBuffer(CopyBuffer copyBuffer) {
+    this.copyBuffer = copyBuffer;
+  }
+
+
+  // Input:
+  //      None
+  // Description:
+  //      return the previously stored copy buffer
+  //      if nothing is stored return copy buffer containing empty lines.
+
+  @Override
+  public CopyBuffer getCopyBuffer() {
+    return this.copyBuffer;
+  }
+
+  // Input:
+  //     EditRequest
+  //        1. starting line no - starting line number of last time it received page from backend
+  //        2. ending line no - ending line no of the last time it received page from backend;
+  //        3. new content - list of lines present view of lines(starting line no, ending line no)
+  //        4. file name
+  //        5. cursor
+  // Description:
+  //        1. Remove the line numbers in the range(starting line no, ending line no)
+  //        2. Inserting the lines in new content starting position starting line no
+  // Example:
+  //        EditRequest looks like this
+  //            1. start line no - 50
+  //            2. ending line no - 60
+  //            3. new content - ["Hello world"]
+  //
+  //       Assume the file has 100 lines in it
+  //
+  //       File contents before edit:
+  //       ==========================
+  //       line no 1
+  //       line no 2
+  //          .....
+  //       line no 100
+  //
+  //        File contents After Edit:
+  //        =========================
+  //        line no 1
+  //        line no 2
+  //        line no 3
+  //         .....
+  //        line no 49
+  //        Hello World
+  //        line no 61
+  //        line no 62
+  //          ....
+  //        line no 100
+  //
+
+  @Override
+  public void editLines(EditRequest editRequest) {
+    List<String> newContent = editRequest.getNewContent();
+    int startingLine = editRequest.getStartingLineNo();
+    int endingLine = editRequest.getEndingLineNo();
+    Cursor cursor = editRequest.getCursorAt();
+    UpdateLines updateLines = new UpdateLines(startingLine, 
+                              endingLine - startingLine, 
+                              newContent, cursor);
+    synchronized (writeLock) {
+      write(() -> this.history.apply(this.sourceFile, updateLines));
+    }
+  }
+
+  
+  // Input:
+  //      SearchReplaceRequest
+  //        1. pattern  - pattern to be found
+  //        2. newPattern - pattern to be replaced with
+  //        3. fileName
+  // Description:
+  //      using the SourceFileVersion find every occurrence of pattern
+  //      and replace it with the given newPattern. Returns the number of occurrences replaced
+  //      and the lines holding them.
+  //      The replacement is applied to a copy of the latest version sharing its lines, which
+  //      then takes its place with one undo entry: readers keep getting the lines before the
+  //      replacement until it is complete. A trigram index is copied along, only the replaced
+  //      lines are indexed again.
+
+  @Override
+  public ReplaceResult searchReplace(SearchReplaceRequest searchReplaceRequest) {
+    int startingLineNo = searchReplaceRequest.getStartingLineNo();
+    String pattern = searchReplaceRequest.getPattern();
+    String newPattern = searchReplaceRequest.getNewPattern();
+    SearchReplace sReplace = new SearchReplace(startingLineNo, 
+                                                    pattern.length(), 
+                                                    null, 
+                                                    pattern, 
+                                                    newPattern);
+    synchronized (writeLock) {
+      SourceFileVersion next = copyOf(this.sourceFile);
+      ReplaceResult result = this.history.apply(next, sReplace);
+      this.sourceFile = next;
+      return result;
+    }
+  }
+
+  // A copy of the given version, with a copy of its trigram index if it has one.
+
+  private SourceFileVersion copyOf(SourceFileVersion version) {
+    if (version instanceof SourceFileVersionIndexedImpl) {
+      SourceFileVersionIndexedImpl indexed = (SourceFileVersionIndexedImpl) version;
+      return indexed.copyWith(cloneObj(indexed.getSourceFile()));
+    }
+    return cloneObj(version);
+  }
+
+  
+  // Input:
+  //      UndoRequest
+  //        1. fileName
+  // Description:
+  //      1. For the given file go back by one edit.
+  //      2. If the file is already at its oldest change do nothing
+
+  @Override
+  public void undo(UndoRequest undoRequest) {
+    synchronized (writeLock) {
+      write(() -> this.history.undo(this.sourceFile));
+    }
+  }
+
+  
+  // Input:
+  //      UndoRequest
+  //        1. fileName
+  // Description:
+  //      1. Re apply the last undone change. Basically reverse the last last undo.
+  //      2. If there was no undo done earlier do nothing.
+
+  @Override
+  public void redo(UndoRequest undoRequest) {
+    synchronized (writeLock) {
+      write(() -> this.history.redo(this.sourceFile));
+    }
+  }
+
+  // Input:
+  //      maxEntries - most undo steps to keep
+  //      maxBytes - estimated memory the undo and redo steps may take
+  //      coalesceMillis - edits to the same lines closer than this are one undo step,
+  //                       a negative value turns this off
+  // Description:
+  //      Bounds the undo history of the file. The oldest steps are dropped first.
+  //      By default the history is unbounded and every edit is its own step.
+
+  @Override
+  public void setHistoryLimits(int maxEntries, long maxBytes, long coalesceMillis) {
+    synchronized (writeLock) {
+      this.history.setLimits(maxEntries, maxBytes, coalesceMillis);
+    }
+  }
+
+  // Input:
+  //      None
+  // Description:
+  //      Number of undo/redo steps currently kept for the file and the memory they take.
+
+  @Override
+  public HistorySize getHistorySize() {
+    synchronized (writeLock) {
+      return this.history.getHistorySize();
+    }
+  }
+
+  // Input:
+  //      enabled - whether searches use a trigram index of the file
+  // Description:
+  //      Builds the index of the loaded file, or drops it. The setting is kept for the files
+  //      loaded afterwards.
+
+  @Override
+  public void setTrigramIndex(boolean enabled) {
+    synchronized (writeLock) {
+      this.trigramIndex = enabled;
+      this.sourceFile = SourceFileVersionIndexedImpl.withIndex(this.sourceFile, enabled);
+    }
+  }
+
+  // Input:
+  //      None
+  // Description:
+  //      Memory taken by the trigram index of the file, 0 if it has none.
+
+  @Override
+  public long getSearchIndexBytes() {
+    SourceFileVersion sourceFile = this.sourceFile;
+    if (sourceFile instanceof SourceFileVersionIndexedImpl) {
+      return ((SourceFileVersionIndexedImpl) sourceFile).getIndexMemoryUsage();
+    }
+    return 0;
+  }
+
+  // Input:
+  //      EditJournal
+  // Description:
+  //      Appends every following edit of the file to the journal. The next loadFile() writes
+  //      the loaded file as the journal's snapshot.
+
+  @Override
+  public void setJournal(EditJournal journal) {
+    synchronized (writeLock) {
+      this.history.setJournal(journal);
+    }
+  }
+
+  // Input:
+  //      path - file to write to
+  // Description:
+  //      Writes the file and its undo/redo steps to path and drops them from memory. Until
+  //      reloadFrom() is called with the same path the handler has no file loaded.
+
+  @Override
+  public void spillTo(Path path) throws IOException {
+    synchronized (writeLock) {
+      this.history.spill(path, this.sourceFile);
+      this.sourceFile = null;
+    }
+  }
+
+  // Input:
+  //      path - file written by spillTo()
+  // Description:
+  //      Loads the file and its undo/redo steps back, as they were when they were spilled.
+
+  @Override
+  public void reloadFrom(Path path) throws IOException {
+    synchronized (writeLock) {
+      this.sourceFile = SourceFileVersionIndexedImpl.withIndex(
+          this.history.reload(path, this::createSourceFileVersion), trigramIndex);
+    }
+  }
+
+  // Runs reader on the latest version, which isn't changed in place until it returns.
+
+  private <T> T read(Function<SourceFileVersion, T> reader) {
+    Lock lock = versionLock.readLock();
+    lock.lock();
+    try {
+      return reader.apply(this.sourceFile);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // Runs a change of the latest version in place once no reader is reading it. Called with
+  // writeLock held.
+
+  private void write(Runnable change) {
+    Lock lock = versionLock.writeLock();
+    lock.lock();
+    try {
+      change.run();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // TODO: CRIO_TASK_MODULE_UNDO_REDO
+  // Input:
+  //      None
+  // Description:
+  //      Return the page that was in view as of this edit.
+  //      1. starting line number  -should be same as it was in the last change
+  //      2. Cursor - should return to the same position as it was in the last change
+  //      3. Number of lines - should be same as it was in the last change.
+
+  public Page getCursorPage() {
+    return null;
+  }
+
+}
@@ -1,26 +1,204 @@
 package com.crio.qcharm.ds;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.ArrayList;
+import java.util.List;
+
+// Ordered list of Pages with a prefix-count index over them.
+//
+// pageStarts[i] holds the line number of the first line of pages.get(i), so the page holding
+// any line is found with a binary search. An edit rebuilds the pages it overlaps, then updates
+// pageStarts and the starting line number of the pages after them, one int each, and stops
+// after the rebuilt pages when it didn't change the number of lines.
+//
+// That update is O(pages) per edit, a Fenwick tree or a balanced tree of page sizes would make
+// it O(log pages). It is kept linear on purpose: pages is an ArrayList, so adding or removing
+// pages in the middle moves the pages after them anyway, and Page holds its own starting line
+// number, which every later page needs updated whatever the index. With PAGE_SIZE lines a
+// page, a million lines is 20000 pages, an update of tens of microseconds.
+//
+// The lines list of a Page is never modified once the page is in a bucket. Edits replace the
+// affected pages with new ones, which lets copies of a bucket share the line lists. A copy
+// also shares the list of pages, the index and the Page objects until one of the two buckets
+// is edited: the edited one copies the list and the index, and only the pages whose starting
+// line number it changes. pages.get(i) is this bucket's own for every i >= ownedFrom.
 
 public class Bucket {
 
-    private List<Page> pages;
+  static final int PAGE_SIZE = 50;
+
+  private List<Page> pages;
+  private int[] pageStarts;
+  private int numberOfLines;
+  // Set while pages and pageStarts are shared with a copy.
+  private boolean shared;
+  private int ownedFrom;
+
+  Bucket() {
+    this.pages = new ArrayList<>();
+    this.pageStarts = new int[0];
+  }
+
+  Bucket(List<Page> pages) {
+    this.pages = pages;
+    this.pageStarts = new int[0];
+    reindex(0);
+  }
 
-    Bucket() {
-        this.pages = new ArrayList<>();
+  // Shares everything with the bucket, see own().
+  Bucket(Bucket bucket) {
+    this.pages = bucket.pages;
+    this.pageStarts = bucket.pageStarts;
+    this.numberOfLines = bucket.numberOfLines;
+    this.shared = true;
+    this.ownedFrom = pages.size();
+    bucket.shared = true;
+    bucket.ownedFrom = pages.size();
+  }
+
+  static Bucket fromLines(List<String> lines, String fileName) {
+    return new Bucket(makePages(lines, fileName));
+  }
+
+  public List<Page> getPages() {
+    return this.pages;
+  }
+
+  public void setPages(List<Page> pages) {
+    this.pages = pages;
+    this.pageStarts = new int[0];
+    this.shared = false;
+    this.ownedFrom = 0;
+    reindex(0);
+  }
+
+  public int getNumberOfLines() {
+    return this.numberOfLines;
+  }
+
+  // Index of the page holding the given line number.
+  int findPage(int lineNo) {
+    int lo = 0;
+    int hi = pages.size() - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (pageStarts[mid] <= lineNo) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
     }
+    return lo;
+  }
 
-    Bucket(List<Page> pages) {
-        this.pages = pages;
+  // Copies the lines in range [startingLine, endingLine), visiting only the pages they live in.
+  List<String> getLines(int startingLine, int endingLine) {
+    endingLine = Math.min(endingLine, getNumberOfLines());
+    List<String> res = new ArrayList<>(Math.max(0, endingLine - startingLine));
+    if (startingLine >= endingLine) {
+      return res;
+    }
+    int idx = findPage(startingLine);
+    int offset = startingLine - pageStarts[idx];
+    while (res.size() < endingLine - startingLine) {
+      List<String> lines = pages.get(idx).getLines();
+      int count = Math.min(lines.size() - offset, endingLine - startingLine - res.size());
+      res.addAll(lines.subList(offset, offset + count));
+      idx++;
+      offset = 0;
     }
+    return res;
+  }
 
-    public List<Page> getPages() {
-        return this.pages;
+  // Replaces numLines lines starting at startingLine with newContent. Only the pages
+  // overlapping the range are rebuilt.
+  void replaceLines(int startingLine, int numLines, List<String> newContent) {
+    int total = getNumberOfLines();
+    if (pages.isEmpty()) {
+      own(0);
+      pages.addAll(makePages(newContent, null));
+      reindex(0);
+      return;
+    }
+    int endingLine = Math.max(startingLine, Math.min(startingLine + numLines, total));
+    int firstPage = findPage(Math.min(startingLine, total - 1));
+    int lastPage = endingLine > startingLine ? findPage(endingLine - 1) : firstPage;
+    List<String> first = pages.get(firstPage).getLines();
+    List<String> last = pages.get(lastPage).getLines();
+    int prefix = Math.min(startingLine - pageStarts[firstPage], first.size());
+    int suffix = Math.min(endingLine - pageStarts[lastPage], last.size());
+
+    List<String> lines = new ArrayList<>(prefix + newContent.size() + last.size() - suffix);
+    lines.addAll(first.subList(0, prefix));
+    lines.addAll(newContent);
+    lines.addAll(last.subList(suffix, last.size()));
+
+    String fileName = pages.get(firstPage).getFileName();
+    List<Page> rebuilt = makePages(lines, fileName);
+    boolean sameLines = newContent.size() == endingLine - startingLine
+        && rebuilt.size() == lastPage - firstPage + 1;
+    own(sameLines ? pages.size() : firstPage);
+    List<Page> affected = pages.subList(firstPage, lastPage + 1);
+    affected.clear();
+    affected.addAll(rebuilt);
+    reindex(firstPage, sameLines ? firstPage + rebuilt.size() : pages.size());
+  }
+
+  // Swaps the lines of one page. The number of lines must not change.
+  void setPageLines(int pageIdx, List<String> lines) {
+    Page page = pages.get(pageIdx);
+    assert (page.getLines().size() == lines.size());
+    own(pages.size());
+    pages.set(pageIdx, new Page(lines, page.getStartingLineNo(), page.getFileName(),
+        page.getCursorAt()));
+  }
+
+  // Copies what is still shared with a copy of the bucket before it's changed: the list of
+  // pages and the index, then the pages from index from on, whose starting line numbers are
+  // about to be updated.
+  private void own(int from) {
+    if (shared) {
+      pages = new ArrayList<>(pages);
+      pageStarts = pageStarts.clone();
+      shared = false;
+    }
+    for (int i = from; i < Math.min(ownedFrom, pages.size()); i++) {
+      Page page = pages.get(i);
+      pages.set(i, new Page(page.getLines(), page.getStartingLineNo(), page.getFileName(),
+          page.getCursorAt()));
+    }
+    ownedFrom = Math.min(ownedFrom, from);
+  }
+
+  private void reindex(int from) {
+    reindex(from, pages.size());
+  }
+
+  // Updates the starting line numbers of the pages in range [from, to), the pages after them
+  // must already be right.
+  private void reindex(int from, int to) {
+    if (pageStarts.length != pages.size()) {
+      int[] starts = new int[pages.size()];
+      System.arraycopy(pageStarts, 0, starts, 0, Math.min(from, pageStarts.length));
+      pageStarts = starts;
+    }
+    int start = from == 0 ? 0 : pageStarts[from - 1] + pages.get(from - 1).getLines().size();
+    for (int i = from; i < to; i++) {
+      Page page = pages.get(i);
+      pageStarts[i] = start;
+      page.setStartingLineNo(start);
+      start += page.getLines().size();
+    }
+    if (to == pages.size()) {
+      numberOfLines = start;
     }
+  }
 
-    public void setPages(List<Page> pages) {
-        this.pages = pages;
+  private static List<Page> makePages(List<String> lines, String fileName) {
+    List<Page> pages = new ArrayList<>();
+    for (int i = 0; i < lines.size(); i += PAGE_SIZE) {
+      int endingIdx = Math.min(i + PAGE_SIZE, lines.size());
+      pages.add(new Page(new ArrayList<>(lines.subList(i, endingIdx)), i, fileName, null));
     }
-}
\ No newline at end of file
+    return pages;
+  }
+}
@@ -0,0 +1,93 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.SearchRequest;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+// Where a paged search goes on: the version the previous page was found in and the position
+// its scan stopped at, plus a hash of the search so a token isn't used for another one. Sent
+// to the client as an opaque URL-safe string.
+//
+// The file may be edited between two pages. The position is then moved through the
+// LineChanges since the token's version: lines inserted or removed before it shift it, and
+// if its own line was replaced the next page starts at the beginning of the replacement.
+
+final class ContinuationToken {
+
+  private static final String FORMAT = "1";
+
+  private final long version;
+  private final Cursor position;
+  private final int search;
+
+  ContinuationToken(long version, Cursor position, SearchRequest searchRequest) {
+    this(version, position, hash(searchRequest));
+  }
+
+  private ContinuationToken(long version, Cursor position, int search) {
+    this.version = version;
+    this.position = position;
+    this.search = search;
+  }
+
+  String encode() {
+    String token = FORMAT + "." + version + "." + position.getLineNo() + "."
+        + position.getColumnNo() + "." + Integer.toHexString(search);
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(token.getBytes(StandardCharsets.US_ASCII));
+  }
+
+  // Input:
+  //      token - returned by encode()
+  //      searchRequest - the search it must belong to
+  // Description:
+  //      Throws an IllegalArgumentException if token isn't a token of this search.
+
+  static ContinuationToken decode(String token, SearchRequest searchRequest) {
+    try {
+      String[] fields = new String(Base64.getUrlDecoder().decode(token),
+          StandardCharsets.US_ASCII).split("\\.");
+      if (fields.length == 5 && fields[0].equals(FORMAT)
+          && Integer.parseUnsignedInt(fields[4], 16) == hash(searchRequest)) {
+        return new ContinuationToken(Long.parseLong(fields[1]),
+            new Cursor(Integer.parseInt(fields[2]), Integer.parseInt(fields[3])),
+            hash(searchRequest));
+      }
+    } catch (IllegalArgumentException e) {
+      // Not base64 or not a number, invalid like any other malformed token.
+    }
+    throw new IllegalArgumentException("Invalid continuation token " + token);
+  }
+
+  // Input:
+  //      lineChanges - of the version to search now
+  // Description:
+  //      Returns the position in that version, or throws a StaleContinuationTokenException if
+  //      the edits since the token's version aren't known anymore.
+
+  Cursor positionIn(LineChanges lineChanges) {
+    List<LineChanges.Change> changes = lineChanges.since(version);
+    if (changes == null) {
+      throw new StaleContinuationTokenException(
+          "The file changed too much since the previous page, search again");
+    }
+    int lineNo = position.getLineNo();
+    int columnNo = position.getColumnNo();
+    for (LineChanges.Change change : changes) {
+      if (lineNo >= change.startingLineNo + change.removed) {
+        lineNo += change.added - change.removed;
+      } else if (lineNo >= change.startingLineNo) {
+        lineNo = change.startingLineNo;
+        columnNo = 0;
+      }
+    }
+    return new Cursor(lineNo, columnNo);
+  }
+
+  private static int hash(SearchRequest searchRequest) {
+    int hash = searchRequest.getPattern().hashCode();
+    hash = hash * 31 + (searchRequest.isRegex() ? searchRequest.getFlags() + 1 : 0);
+    return hash;
+  }
+}
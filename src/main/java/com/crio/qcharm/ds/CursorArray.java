@@ -0,0 +1,118 @@
+package com.crio.qcharm.ds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Positions of occurrences held in a growable long[], the line number in the high 32 bits of
+// every element and the column in the low ones, instead of a List of Cursor objects: a match
+// takes 8 bytes and no allocation of its own.
+//
+// toJson() writes the positions as two parallel arrays, {"lineNos":[...],"columnNos":[...]},
+// without creating an object per match either.
+
+public final class CursorArray {
+
+  private static final long[] EMPTY = new long[0];
+
+  private long[] cursors = EMPTY;
+  private int size;
+
+  public CursorArray() {
+  }
+
+  CursorArray(int capacity) {
+    this.cursors = capacity > 0 ? new long[capacity] : EMPTY;
+  }
+
+  static long pack(int lineNo, int columnNo) {
+    return (long) lineNo << 32 | (columnNo & 0xffffffffL);
+  }
+
+  void add(int lineNo, int columnNo) {
+    if (size == cursors.length) {
+      cursors = Arrays.copyOf(cursors, Math.max(16, 2 * size));
+    }
+    cursors[size++] = pack(lineNo, columnNo);
+  }
+
+  void addAll(CursorArray other) {
+    if (size + other.size > cursors.length) {
+      cursors = Arrays.copyOf(cursors, Math.max(size + other.size, 2 * size));
+    }
+    System.arraycopy(other.cursors, 0, cursors, size, other.size);
+    size += other.size;
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  public int getLineNo(int i) {
+    return (int) (cursors[i] >>> 32);
+  }
+
+  public int getColumnNo(int i) {
+    return (int) cursors[i];
+  }
+
+  public List<Cursor> toCursors() {
+    List<Cursor> res = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      res.add(new Cursor(getLineNo(i), getColumnNo(i)));
+    }
+    return res;
+  }
+
+  public String toJson() {
+    // Up to 7 digits per number plus the comma, for both arrays.
+    StringBuilder json = new StringBuilder(32 + 16 * size);
+    json.append("{\"lineNos\":[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append(getLineNo(i));
+    }
+    json.append("],\"columnNos\":[");
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        json.append(',');
+      }
+      json.append(getColumnNo(i));
+    }
+    return json.append("]}").toString();
+  }
+
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof CursorArray)) {
+      return false;
+    }
+    final CursorArray other = (CursorArray) o;
+    if (this.size != other.size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (this.cursors[i] != other.cursors[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    for (int i = 0; i < size; i++) {
+      result = result * PRIME + (int) (cursors[i] >>> 32 ^ cursors[i]);
+    }
+    return result;
+  }
+
+  public String toString() {
+    return "CursorArray(" + toCursors() + ")";
+  }
+}
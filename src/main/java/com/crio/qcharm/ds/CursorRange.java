@@ -0,0 +1,74 @@
+package com.crio.qcharm.ds;
+
+// The chars of a file from start up to end, end excluded, which may be on a later line.
+
+public class CursorRange {
+  private Cursor start;
+  private Cursor end;
+
+  public CursorRange(Cursor start, Cursor end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  public CursorRange() {
+  }
+
+  public Cursor getStart() {
+    return this.start;
+  }
+
+  public Cursor getEnd() {
+    return this.end;
+  }
+
+  public void setStart(Cursor start) {
+    this.start = start;
+  }
+
+  public void setEnd(Cursor end) {
+    this.end = end;
+  }
+
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof CursorRange)) {
+      return false;
+    }
+    final CursorRange other = (CursorRange) o;
+    if (!other.canEqual((Object) this)) {
+      return false;
+    }
+    final Object this$start = this.getStart();
+    final Object other$start = other.getStart();
+    if (this$start == null ? other$start != null : !this$start.equals(other$start)) {
+      return false;
+    }
+    final Object this$end = this.getEnd();
+    final Object other$end = other.getEnd();
+    if (this$end == null ? other$end != null : !this$end.equals(other$end)) {
+      return false;
+    }
+    return true;
+  }
+
+  protected boolean canEqual(final Object other) {
+    return other instanceof CursorRange;
+  }
+
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    final Object $start = this.getStart();
+    result = result * PRIME + ($start == null ? 43 : $start.hashCode());
+    final Object $end = this.getEnd();
+    result = result * PRIME + ($end == null ? 43 : $end.hashCode());
+    return result;
+  }
+
+  public String toString() {
+    return "CursorRange(start=" + this.getStart() + ", end=" + this.getEnd() + ")";
+  }
+}
@@ -0,0 +1,110 @@
+package com.crio.qcharm.ds;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Binary encoding of lines and edits shared by the files written to the disk: EditJournal
+// snapshots and records, and the spill files of SourceFileHandlerRegistry.
+//
+// Strings are a length prefix followed by their UTF-8 bytes, -1 standing for null. An edit is
+// a type byte, its starting line, its number of lines and its cursor, followed by the new
+// lines of an UpdateLines or the two patterns of a SearchReplace.
+
+final class EditCodec {
+
+  private static final byte UPDATE_LINES = 1;
+  private static final byte SEARCH_REPLACE = 2;
+
+  private EditCodec() {
+  }
+
+  static void writeEdit(DataOutputStream data, Edits edit) throws IOException {
+    if (edit instanceof UpdateLines) {
+      UpdateLines updateLines = (UpdateLines) edit;
+      data.writeByte(UPDATE_LINES);
+      data.writeInt(updateLines.getStartingLineNo());
+      data.writeInt(updateLines.getNumberOfLines());
+      writeCursor(data, updateLines.getCursor());
+      writeLines(data, updateLines.getLines());
+      return;
+    }
+    SearchReplace searchReplace = (SearchReplace) edit;
+    data.writeByte(SEARCH_REPLACE);
+    data.writeInt(searchReplace.getStartingLineNo());
+    data.writeInt(searchReplace.getNumberOfLines());
+    writeCursor(data, searchReplace.getCursor());
+    writeString(data, searchReplace.getPattern());
+    writeString(data, searchReplace.getNewPattern());
+  }
+
+  static Edits readEdit(DataInputStream data) throws IOException {
+    byte type = data.readByte();
+    int startingLineNo = data.readInt();
+    int numberOfLines = data.readInt();
+    Cursor cursor = readCursor(data);
+    if (type == UPDATE_LINES) {
+      return new UpdateLines(startingLineNo, numberOfLines, readLines(data), cursor);
+    }
+    if (type != SEARCH_REPLACE) {
+      throw new IOException("Unknown edit type " + type);
+    }
+    String pattern = readString(data);
+    String newPattern = readString(data);
+    return new SearchReplace(startingLineNo, numberOfLines, cursor, pattern, newPattern);
+  }
+
+  static void writeLines(DataOutputStream data, List<String> lines) throws IOException {
+    data.writeInt(lines.size());
+    for (String line : lines) {
+      writeString(data, line);
+    }
+  }
+
+  static List<String> readLines(DataInputStream data) throws IOException {
+    int count = data.readInt();
+    List<String> lines = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      lines.add(readString(data));
+    }
+    return lines;
+  }
+
+  static void writeString(DataOutputStream data, String value) throws IOException {
+    if (value == null) {
+      data.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    data.writeInt(bytes.length);
+    data.write(bytes);
+  }
+
+  static String readString(DataInputStream data) throws IOException {
+    int length = data.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    data.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static void writeCursor(DataOutputStream data, Cursor cursor) throws IOException {
+    data.writeBoolean(cursor != null);
+    if (cursor != null) {
+      data.writeInt(cursor.getLineNo());
+      data.writeInt(cursor.getColumnNo());
+    }
+  }
+
+  static Cursor readCursor(DataInputStream data) throws IOException {
+    if (!data.readBoolean()) {
+      return null;
+    }
+    return new Cursor(data.readInt(), data.readInt());
+  }
+}
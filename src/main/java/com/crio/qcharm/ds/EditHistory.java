@@ -0,0 +1,366 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.PageRequest;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+// Undo/redo log of a SourceFileHandler.
+//
+// Instead of a copy of the whole file per edit, every entry holds the edit itself (to redo it)
+// and the UpdateLines that revert it (to undo it). The inverse of an UpdateLines is an
+// UpdateLines putting the replaced lines back, the inverse of a SearchReplace puts back the lines
+// that contained the pattern. An entry therefore only holds the lines the edit touched, and undo
+// and redo apply those deltas to the current version in place.
+//
+// The log can be bounded with setLimits(): once it holds more than maxEntries entries, or its
+// entries are estimated to take more than maxBytes, the oldest undo steps are dropped. An
+// UpdateLines that only rewrites lines produced by the previous UpdateLines, less than
+// coalesceMillis after it, is then merged into the previous entry, so a burst of keystrokes on
+// the same lines is undone at once. By default the log is unbounded and every edit is a step
+// of its own.
+//
+// With an EditJournal attached, every edit applied to the version, including the ones applied
+// by undo and redo, is also appended to the journal.
+//
+// spill() moves the version and the whole log to a file and reload() reads them back, so an
+// idle file can be dropped from the heap without losing its undo and redo steps.
+
+class EditHistory {
+
+  private static class Entry {
+    private final Edits edit;
+    private final List<UpdateLines> inverse;
+    private final long bytes;
+    private final long recordedAt;
+
+    Entry(Edits edit, List<UpdateLines> inverse, long recordedAt) {
+      this.edit = edit;
+      this.inverse = inverse;
+      this.recordedAt = recordedAt;
+      long bytes = estimate(edit);
+      for (UpdateLines updateLines : inverse) {
+        bytes += estimate(updateLines);
+      }
+      this.bytes = bytes;
+    }
+  }
+
+  private int maxEntries;
+  private long maxBytes;
+  private long coalesceMillis;
+  private final LongSupplier clock;
+
+  private final Deque<Entry> undoStack = new ArrayDeque<>();
+  private final Deque<Entry> redoStack = new ArrayDeque<>();
+  private long bytes;
+  // False once the last entry has been undone or redone, it must not be extended any more.
+  private boolean lastEntryOpen;
+  private EditJournal journal;
+
+  EditHistory() {
+    this(Integer.MAX_VALUE, Long.MAX_VALUE, -1, System::currentTimeMillis);
+  }
+
+  EditHistory(int maxEntries, long maxBytes, long coalesceMillis, LongSupplier clock) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.coalesceMillis = coalesceMillis;
+    this.clock = clock;
+  }
+
+  // Changes the limits, dropping the oldest entries right away if they are now exceeded.
+  // A negative coalesceMillis turns coalescing off.
+
+  void setLimits(int maxEntries, long maxBytes, long coalesceMillis) {
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.coalesceMillis = coalesceMillis;
+    evict();
+  }
+
+  void setJournal(EditJournal journal) {
+    this.journal = journal;
+  }
+
+  // Starts over for a freshly loaded version: forgets all undo and redo steps, the limits are
+  // kept, and writes the version as the new snapshot of the journal.
+
+  void load(SourceFileVersion sourceFile) {
+    undoStack.clear();
+    redoStack.clear();
+    bytes = 0;
+    lastEntryOpen = false;
+    if (journal != null) {
+      try {
+        journal.snapshot(sourceFile);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // Input:
+  //      SourceFileVersion, UpdateLines
+  // Description:
+  //      Records the lines about to be replaced, then applies the edit to the given version.
+  //      A new edit makes the undone edits unreachable, so the redo log is cleared.
+
+  void apply(SourceFileVersion sourceFile, UpdateLines updateLines) {
+    long now = clock.getAsLong();
+    Entry merged = coalesce(updateLines, now);
+    if (merged != null) {
+      sourceFile.apply(updateLines);
+      journal(sourceFile, updateLines);
+      bytes -= undoStack.pollLast().bytes;
+      record(merged);
+      return;
+    }
+    int startingLine = updateLines.getStartingLineNo();
+    PageRequest pageRequest = new PageRequest(startingLine, sourceFile.getFileName(),
+        updateLines.getNumberOfLines(), updateLines.getCursor());
+    List<String> oldLines = new ArrayList<>(sourceFile.getLinesFrom(pageRequest).getLines());
+    UpdateLines inverse = new UpdateLines(startingLine, updateLines.getLines().size(),
+        oldLines, updateLines.getCursor());
+    sourceFile.apply(updateLines);
+    journal(sourceFile, updateLines);
+    record(new Entry(updateLines, Collections.singletonList(inverse), now));
+  }
+
+  // Input:
+  //      SourceFileVersion, SearchReplace
+  // Description:
+  //      Applies the replacement to the given version, then records the lines it changed as
+  //      they were before, one UpdateLines per run of consecutive lines. The file is only read
+  //      by the replacement itself. Returns what the replacement changed.
+
+  ReplaceResult apply(SourceFileVersion sourceFile, SearchReplace searchReplace) {
+    ReplaceResult result = sourceFile.apply(searchReplace);
+    List<UpdateLines> inverse = new ArrayList<>(result.getRanges().size());
+    int line = 0;
+    for (CursorRange range : result.getRanges()) {
+      int startingLine = range.getStart().getLineNo();
+      int numberOfLines = range.getEnd().getLineNo() - startingLine + 1;
+      inverse.add(restore(startingLine, new ArrayList<>(
+          result.originalLines().subList(line, line + numberOfLines))));
+      line += numberOfLines;
+    }
+    journal(sourceFile, searchReplace);
+    record(new Entry(searchReplace, inverse, clock.getAsLong()));
+    return result;
+  }
+
+  // Reverts the last edit on the given version. Returns false if there is nothing to undo.
+
+  boolean undo(SourceFileVersion sourceFile) {
+    Entry entry = undoStack.pollLast();
+    if (entry == null) {
+      return false;
+    }
+    for (int i = entry.inverse.size() - 1; i >= 0; i--) {
+      sourceFile.apply(entry.inverse.get(i));
+      journal(sourceFile, entry.inverse.get(i));
+    }
+    redoStack.addLast(entry);
+    lastEntryOpen = false;
+    return true;
+  }
+
+  // Re-applies the last undone edit on the given version. Returns false if there is nothing
+  // to redo.
+
+  boolean redo(SourceFileVersion sourceFile) {
+    Entry entry = redoStack.pollLast();
+    if (entry == null) {
+      return false;
+    }
+    sourceFile.apply(Collections.singletonList(entry.edit));
+    journal(sourceFile, entry.edit);
+    undoStack.addLast(entry);
+    lastEntryOpen = false;
+    return true;
+  }
+
+  // Input:
+  //      path, SourceFileVersion
+  // Description:
+  //      Writes the lines of the version and every undo and redo step to path, then forgets the
+  //      steps. The limits and the journal are kept, nothing is journaled. The journal is
+  //      closed until the next edit.
+
+  void spill(Path path, SourceFileVersion sourceFile) throws IOException {
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+      EditCodec.writeString(out, sourceFile.getFileName());
+      EditCodec.writeLines(out, sourceFile.getAllLines());
+      writeEntries(out, undoStack);
+      writeEntries(out, redoStack);
+      out.writeBoolean(lastEntryOpen);
+    }
+    undoStack.clear();
+    redoStack.clear();
+    bytes = 0;
+    lastEntryOpen = false;
+    if (journal != null) {
+      // Its file is reopened by the next edit, once the version is reloaded.
+      journal.close();
+    }
+  }
+
+  // Input:
+  //      path - file written by spill()
+  //      versionFactory - creates the version holding the spilled lines
+  // Description:
+  //      Reads back the version and the undo and redo steps written by spill() and returns the
+  //      version. The steps read replace the ones in the log.
+
+  SourceFileVersion reload(Path path, Function<FileInfo, SourceFileVersion> versionFactory)
+      throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+      String fileName = EditCodec.readString(in);
+      SourceFileVersion sourceFile =
+          versionFactory.apply(new FileInfo(fileName, EditCodec.readLines(in)));
+      undoStack.clear();
+      redoStack.clear();
+      bytes = 0;
+      for (Entry entry : readEntries(in)) {
+        undoStack.addLast(entry);
+        bytes += entry.bytes;
+      }
+      for (Entry entry : readEntries(in)) {
+        redoStack.addLast(entry);
+        bytes += entry.bytes;
+      }
+      lastEntryOpen = in.readBoolean();
+      return sourceFile;
+    }
+  }
+
+  HistorySize getHistorySize() {
+    return new HistorySize(undoStack.size(), redoStack.size(), bytes);
+  }
+
+  // The last entry extended with updateLines, or null if updateLines has to be an entry of
+  // its own. updateLines may only touch lines written by the last entry's UpdateLines.
+  private Entry coalesce(UpdateLines updateLines, long now) {
+    Entry last = undoStack.peekLast();
+    if (!lastEntryOpen || last == null || now - last.recordedAt > coalesceMillis
+        || !(last.edit instanceof UpdateLines)) {
+      return null;
+    }
+    UpdateLines previous = (UpdateLines) last.edit;
+    List<String> written = previous.getLines();
+    int offset = updateLines.getStartingLineNo() - previous.getStartingLineNo();
+    if (offset < 0 || offset + updateLines.getNumberOfLines() > written.size()) {
+      return null;
+    }
+    List<String> lines = new ArrayList<>(written.size() + updateLines.getLines().size());
+    lines.addAll(written.subList(0, offset));
+    lines.addAll(updateLines.getLines());
+    lines.addAll(written.subList(offset + updateLines.getNumberOfLines(), written.size()));
+    UpdateLines edit = new UpdateLines(previous.getStartingLineNo(),
+        previous.getNumberOfLines(), lines, updateLines.getCursor());
+    UpdateLines inverse = last.inverse.get(0);
+    inverse = new UpdateLines(inverse.getStartingLineNo(), lines.size(), inverse.getLines(),
+        inverse.getCursor());
+    return new Entry(edit, Collections.singletonList(inverse), now);
+  }
+
+  // Appends an edit just applied to sourceFile to the journal, if there is one, and writes a
+  // new snapshot when the journal asks for it or the edit is too large for a record.
+  private void journal(SourceFileVersion sourceFile, Edits edit) {
+    if (journal == null) {
+      return;
+    }
+    try {
+      boolean appended = edit instanceof UpdateLines ? journal.append((UpdateLines) edit)
+          : journal.append((SearchReplace) edit);
+      if (!appended || journal.isSnapshotDue()) {
+        journal.snapshot(sourceFile);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void writeEntries(DataOutputStream out, Deque<Entry> entries)
+      throws IOException {
+    out.writeInt(entries.size());
+    for (Entry entry : entries) {
+      EditCodec.writeEdit(out, entry.edit);
+      out.writeInt(entry.inverse.size());
+      for (UpdateLines updateLines : entry.inverse) {
+        EditCodec.writeEdit(out, updateLines);
+      }
+      out.writeLong(entry.recordedAt);
+    }
+  }
+
+  private static List<Entry> readEntries(DataInputStream in) throws IOException {
+    int count = in.readInt();
+    List<Entry> entries = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Edits edit = EditCodec.readEdit(in);
+      int inverseCount = in.readInt();
+      List<UpdateLines> inverse = new ArrayList<>(inverseCount);
+      for (int j = 0; j < inverseCount; j++) {
+        inverse.add((UpdateLines) EditCodec.readEdit(in));
+      }
+      entries.add(new Entry(edit, inverse, in.readLong()));
+    }
+    return entries;
+  }
+
+  // UpdateLines putting back the given lines, that are the same number of lines as before.
+  private static UpdateLines restore(int startingLine, List<String> lines) {
+    return new UpdateLines(startingLine, lines.size(), lines, new Cursor(startingLine, 0));
+  }
+
+  private void record(Entry entry) {
+    undoStack.addLast(entry);
+    bytes += entry.bytes;
+    for (Entry undone : redoStack) {
+      bytes -= undone.bytes;
+    }
+    redoStack.clear();
+    lastEntryOpen = true;
+    evict();
+  }
+
+  private void evict() {
+    while (undoStack.size() > maxEntries || (bytes > maxBytes && undoStack.size() > 1)) {
+      bytes -= undoStack.pollFirst().bytes;
+    }
+  }
+
+  // Rough heap footprint of an edit: the object itself plus its strings (header and 2 bytes
+  // per char, which is the worst case with compact strings).
+  private static long estimate(Edits edit) {
+    long bytes = 48;
+    if (edit instanceof UpdateLines) {
+      List<String> lines = ((UpdateLines) edit).getLines();
+      bytes += 16 + 8L * lines.size();
+      for (String line : lines) {
+        bytes += 40 + 2L * line.length();
+      }
+    } else if (edit instanceof SearchReplace) {
+      SearchReplace searchReplace = (SearchReplace) edit;
+      bytes += 80 + 2L * searchReplace.getPattern().length()
+          + 2L * searchReplace.getNewPattern().length();
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,314 @@
+package com.crio.qcharm.ds;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Append-only on-disk journal of the edits applied to one file, used to restore the file after
+// a restart of the server.
+//
+// The directory holds a snapshot-<generation> file with the full text of the file and a
+// journal-<generation> file with every UpdateLines and SearchReplace applied on top of that
+// snapshot, including the ones applied by undo and redo. Every snapshotEveryRecords records a
+// new snapshot is written and the journal starts over with the next generation, so recovery
+// never replays more than that many records.
+//
+// Each record is written to the file as soon as it is appended, so it survives a crash of the
+// process. It is only forced to the disk once syncEveryRecords records are pending or
+// syncIntervalMillis have passed since the last force (group commit), so a crash of the machine
+// can lose the last unforced batch. append() only checks the interval when it is called: the
+// owner of the journal calls syncIfDue() every syncIntervalMillis, so that the last records of
+// a journal nobody appends to anymore are forced too. Records carry a CRC and are at most
+// MAX_RECORD_BYTES long; a torn record at the end of the journal, or one whose length can't
+// be right, is dropped on recovery. An edit too large for a record is saved by a snapshot.
+//
+// close() forces the records and closes the file. A handler still holding the journal, one
+// that was spilled for instance, reopens it with its next append.
+//
+// A journal can be reached by the writers of several handlers (the one replaced by a new
+// load of the same file and the new one), the thread calling syncIfDue() and the shutdown of
+// the server: every method touching the file is synchronized on the journal.
+//
+// The undo history is not part of the journal: a recovered file starts with an empty history.
+
+public class EditJournal implements Closeable {
+
+  private static final String SNAPSHOT = "snapshot-";
+  private static final String JOURNAL = "journal-";
+  private static final int SNAPSHOT_MAGIC = 0x51434A53;
+  // Longest record payload, in bytes.
+  static final int MAX_RECORD_BYTES = 64 << 20;
+
+  private final Path directory;
+  private final int syncEveryRecords;
+  private final long syncIntervalMillis;
+  private final int snapshotEveryRecords;
+
+  private long generation = -1;
+  private FileChannel channel;
+  private int unsyncedRecords;
+  private long lastSync;
+  private int recordsSinceSnapshot;
+
+  public EditJournal(Path directory, int syncEveryRecords, long syncIntervalMillis,
+      int snapshotEveryRecords) throws IOException {
+    this.directory = Files.createDirectories(directory);
+    this.syncEveryRecords = syncEveryRecords;
+    this.syncIntervalMillis = syncIntervalMillis;
+    this.snapshotEveryRecords = snapshotEveryRecords;
+  }
+
+  // Input:
+  //      handlerFactory - creates the handler for the file found in the snapshot, the handler
+  //                       must not have a journal yet
+  // Description:
+  //      Loads the latest snapshot into a new handler, applies the journal on top of it and
+  //      attaches this journal to the handler, so the following edits are appended to it.
+  //      Returns null if the directory holds no snapshot.
+
+  public synchronized SourceFileHandler recover(
+      Function<FileInfo, SourceFileHandler> handlerFactory) throws IOException {
+    long latest = latestGeneration();
+    if (latest < 0) {
+      return null;
+    }
+    FileInfo fileInfo = readSnapshot(snapshotPath(latest));
+    Path journalPath = journalPath(latest);
+    List<Edits> edits = new ArrayList<>();
+    long validLength = 0;
+    if (Files.exists(journalPath)) {
+      try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(Files.newInputStream(journalPath), 1 << 16))) {
+        byte[] payload;
+        while ((payload = readRecord(in)) != null) {
+          edits.add(decode(payload));
+          validLength += 8 + payload.length;
+        }
+      }
+    }
+
+    SourceFileHandler handler = handlerFactory.apply(fileInfo);
+    handler.loadFile(fileInfo);
+    handler.getLatestSourceFileVersion(fileInfo.getFileName()).apply(edits);
+
+    closeChannel();
+    generation = latest;
+    channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    // Drops a torn record left by the crash.
+    channel.truncate(validLength);
+    channel.position(validLength);
+    recordsSinceSnapshot = edits.size();
+    lastSync = System.currentTimeMillis();
+    handler.setJournal(this);
+    return handler;
+  }
+
+  // Writes the whole file as a new snapshot and starts an empty journal on top of it. Older
+  // generations are deleted once the new snapshot is on disk.
+
+  public synchronized void snapshot(SourceFileVersion sourceFile) throws IOException {
+    long next = Math.max(generation, latestGeneration()) + 1;
+    Path tmp = directory.resolve(SNAPSHOT + next + ".tmp");
+    try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      CRC32 crc = new CRC32();
+      DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+          new CheckedOutputStream(Channels.newOutputStream(out), crc), 1 << 16));
+      data.writeInt(SNAPSHOT_MAGIC);
+      EditCodec.writeString(data, sourceFile.getFileName());
+      EditCodec.writeLines(data, sourceFile.getAllLines());
+      data.flush();
+      data.writeLong(crc.getValue());
+      data.flush();
+      out.force(true);
+    }
+    Files.move(tmp, snapshotPath(next), StandardCopyOption.ATOMIC_MOVE);
+
+    closeChannel();
+    generation = next;
+    channel = FileChannel.open(journalPath(next), StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    recordsSinceSnapshot = 0;
+    lastSync = System.currentTimeMillis();
+    deleteGenerationsBefore(next);
+  }
+
+  // Appends the edit, returns false without writing anything if it is too large for a record:
+  // the caller then writes a snapshot of the file with the edit applied.
+
+  public synchronized boolean append(UpdateLines updateLines) throws IOException {
+    return writeRecord(encode(updateLines));
+  }
+
+  public synchronized boolean append(SearchReplace searchReplace) throws IOException {
+    return writeRecord(encode(searchReplace));
+  }
+
+  // True once enough records have been appended since the last snapshot to write a new one.
+
+  public synchronized boolean isSnapshotDue() {
+    return recordsSinceSnapshot >= snapshotEveryRecords;
+  }
+
+  // Forces the appended records to the disk.
+
+  public synchronized void sync() throws IOException {
+    if (channel != null && unsyncedRecords > 0) {
+      channel.force(false);
+    }
+    unsyncedRecords = 0;
+    lastSync = System.currentTimeMillis();
+  }
+
+  // Forces the appended records to the disk if some have been waiting for syncIntervalMillis.
+
+  public synchronized void syncIfDue() throws IOException {
+    if (unsyncedRecords > 0 && System.currentTimeMillis() - lastSync >= syncIntervalMillis) {
+      sync();
+    }
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    sync();
+    closeChannel();
+  }
+
+  // Record layout: int payload length, int CRC32 of the payload, payload.
+  private boolean writeRecord(byte[] payload) throws IOException {
+    if (payload.length > MAX_RECORD_BYTES) {
+      return false;
+    }
+    if (channel == null && generation >= 0) {
+      // Closed, see close().
+      channel = FileChannel.open(journalPath(generation), StandardOpenOption.WRITE,
+          StandardOpenOption.APPEND);
+    }
+    if (channel == null) {
+      throw new IllegalStateException("No snapshot to append to in " + directory);
+    }
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+    buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    recordsSinceSnapshot++;
+    unsyncedRecords++;
+    if (unsyncedRecords >= syncEveryRecords
+        || System.currentTimeMillis() - lastSync >= syncIntervalMillis) {
+      sync();
+    }
+    return true;
+  }
+
+  // Payload of the next record, or null at the end of the journal or at a torn or corrupt
+  // record. A length over MAX_RECORD_BYTES is garbage, nothing is allocated for it.
+  private static byte[] readRecord(DataInputStream in) throws IOException {
+    try {
+      int length = in.readInt();
+      int checksum = in.readInt();
+      if (length < 0 || length > MAX_RECORD_BYTES) {
+        return null;
+      }
+      byte[] payload = new byte[length];
+      in.readFully(payload);
+      CRC32 crc = new CRC32();
+      crc.update(payload, 0, length);
+      return (int) crc.getValue() == checksum ? payload : null;
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  private static byte[] encode(Edits edit) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    EditCodec.writeEdit(new DataOutputStream(bytes), edit);
+    return bytes.toByteArray();
+  }
+
+  private static Edits decode(byte[] payload) throws IOException {
+    return EditCodec.readEdit(new DataInputStream(new ByteArrayInputStream(payload)));
+  }
+
+  private static FileInfo readSnapshot(Path path) throws IOException {
+    CRC32 crc = new CRC32();
+    try (InputStream file = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+      // Only the bytes read through data are checksummed, not the checksum itself.
+      DataInputStream data = new DataInputStream(new CheckedInputStream(file, crc));
+      if (data.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Not a snapshot: " + path);
+      }
+      String fileName = EditCodec.readString(data);
+      List<String> lines = EditCodec.readLines(data);
+      if (new DataInputStream(file).readLong() != crc.getValue()) {
+        throw new IOException("Corrupt snapshot: " + path);
+      }
+      return new FileInfo(fileName, lines);
+    }
+  }
+
+  private Path snapshotPath(long generation) {
+    return directory.resolve(SNAPSHOT + generation);
+  }
+
+  private Path journalPath(long generation) {
+    return directory.resolve(JOURNAL + generation);
+  }
+
+  // Highest generation with a complete snapshot, -1 if there is none.
+  private long latestGeneration() throws IOException {
+    long latest = -1;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SNAPSHOT + "*")) {
+      for (Path file : files) {
+        String suffix = file.getFileName().toString().substring(SNAPSHOT.length());
+        if (suffix.matches("\\d+")) {
+          latest = Math.max(latest, Long.parseLong(suffix));
+        }
+      }
+    }
+    return latest;
+  }
+
+  private void deleteGenerationsBefore(long generation) throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        String name = file.getFileName().toString();
+        String suffix = name.startsWith(SNAPSHOT) ? name.substring(SNAPSHOT.length())
+            : name.startsWith(JOURNAL) ? name.substring(JOURNAL.length()) : "";
+        if (suffix.matches("\\d+") && Long.parseLong(suffix) < generation) {
+          Files.deleteIfExists(file);
+        }
+      }
+    }
+  }
+
+  private void closeChannel() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+  }
+}
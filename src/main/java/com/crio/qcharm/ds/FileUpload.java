@@ -0,0 +1,127 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.PageRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+// Lines of a file that is still being uploaded.
+//
+// The text is fed in chunks of any size through append(). Complete lines go straight into a
+// LineArena, only the text after the last '\n' of the chunk is held back until the next one.
+// Lines are split on '\n' exactly like MasterRequest splits dataNow. finish() turns the arena
+// into the original buffer of a SourceFileVersionArenaImpl, so the lines are never copied.
+//
+// Other threads may read the lines received so far while the upload is going on, awaitLines()
+// blocks until enough of them have arrived.
+
+public class FileUpload {
+
+  private final String fileName;
+  private final LineArena lines = new LineArena();
+  private final StringBuilder partialLine = new StringBuilder();
+  private boolean finished;
+
+  public FileUpload(String fileName) {
+    this.fileName = fileName;
+  }
+
+  public synchronized void append(char[] chunk, int offset, int length) {
+    if (finished) {
+      throw new IllegalStateException("Upload of " + fileName + " is over");
+    }
+    int numberOfLines = lines.size();
+    int lineStart = offset;
+    int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      if (chunk[i] != '\n') {
+        continue;
+      }
+      if (partialLine.length() == 0) {
+        lines.add(new String(chunk, lineStart, i - lineStart));
+      } else {
+        partialLine.append(chunk, lineStart, i - lineStart);
+        lines.add(partialLine.toString());
+        partialLine.setLength(0);
+      }
+      lineStart = i + 1;
+    }
+    partialLine.append(chunk, lineStart, end - lineStart);
+    if (lines.size() > numberOfLines) {
+      notifyAll();
+    }
+  }
+
+  public void append(String chunk) {
+    append(chunk.toCharArray(), 0, chunk.length());
+  }
+
+  // Input:
+  //      None
+  // Description:
+  //      Ends the upload, the text after the last '\n' being the last line, and returns the
+  //      version holding the uploaded lines.
+
+  public synchronized SourceFileVersionArenaImpl finish() {
+    if (finished) {
+      throw new IllegalStateException("Upload of " + fileName + " is over");
+    }
+    lines.add(partialLine.toString());
+    partialLine.setLength(0);
+    finished = true;
+    notifyAll();
+    return new SourceFileVersionArenaImpl(fileName, lines);
+  }
+
+  // Ends an upload that failed, waking up the readers waiting for lines that won't come.
+
+  public synchronized void abort() {
+    finished = true;
+    notifyAll();
+  }
+
+  // Input:
+  //      numberOfLines, timeoutMillis
+  // Description:
+  //      Waits until numberOfLines lines have been received, the upload is over or
+  //      timeoutMillis have passed, and returns the number of lines received.
+
+  public synchronized int awaitLines(int numberOfLines, long timeoutMillis)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    long remaining = timeoutMillis;
+    while (!finished && lines.size() < numberOfLines && remaining > 0) {
+      wait(remaining);
+      remaining = deadline - System.currentTimeMillis();
+    }
+    return lines.size();
+  }
+
+  // Same page as SourceFileVersion.getLinesFrom(), limited to the lines received so far.
+
+  public synchronized Page getLinesFrom(PageRequest pageRequest) {
+    int lineNumber = pageRequest.getStartingLineNo();
+    int endingLine = Math.min(lineNumber + pageRequest.getNumberOfLines(), lines.size());
+    List<String> res = new ArrayList<>(Math.max(0, endingLine - lineNumber));
+    for (int i = lineNumber; i < endingLine; i++) {
+      res.add(lines.get(i));
+    }
+    Page page = new Page();
+    page.setFileName(pageRequest.getFileName());
+    page.setLines(res);
+    page.setCursorAt(new Cursor(lineNumber, 0));
+    page.setStartingLineNo(lineNumber);
+    return page;
+  }
+
+  public synchronized int getNumberOfLines() {
+    return lines.size();
+  }
+
+  public synchronized boolean isFinished() {
+    return finished;
+  }
+
+  public String getFileName() {
+    return this.fileName;
+  }
+}
@@ -0,0 +1,103 @@
+package com.crio.qcharm.ds;
+
+// An approximate occurrence found by a fuzzy search: the length chars of line lineNo from
+// columnNo, which are distance edits (inserted, deleted or replaced chars) away from the
+// pattern.
+
+public class FuzzyMatch {
+  private int lineNo;
+  private int columnNo;
+  private int length;
+  private int distance;
+
+  public FuzzyMatch(int lineNo, int columnNo, int length, int distance) {
+    this.lineNo = lineNo;
+    this.columnNo = columnNo;
+    this.length = length;
+    this.distance = distance;
+  }
+
+  public FuzzyMatch() {
+  }
+
+  public Cursor getCursor() {
+    return new Cursor(lineNo, columnNo);
+  }
+
+  public int getLineNo() {
+    return this.lineNo;
+  }
+
+  public int getColumnNo() {
+    return this.columnNo;
+  }
+
+  public int getLength() {
+    return this.length;
+  }
+
+  public int getDistance() {
+    return this.distance;
+  }
+
+  public void setLineNo(int lineNo) {
+    this.lineNo = lineNo;
+  }
+
+  public void setColumnNo(int columnNo) {
+    this.columnNo = columnNo;
+  }
+
+  public void setLength(int length) {
+    this.length = length;
+  }
+
+  public void setDistance(int distance) {
+    this.distance = distance;
+  }
+
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof FuzzyMatch)) {
+      return false;
+    }
+    final FuzzyMatch other = (FuzzyMatch) o;
+    if (!other.canEqual((Object) this)) {
+      return false;
+    }
+    if (this.getLineNo() != other.getLineNo()) {
+      return false;
+    }
+    if (this.getColumnNo() != other.getColumnNo()) {
+      return false;
+    }
+    if (this.getLength() != other.getLength()) {
+      return false;
+    }
+    if (this.getDistance() != other.getDistance()) {
+      return false;
+    }
+    return true;
+  }
+
+  protected boolean canEqual(final Object other) {
+    return other instanceof FuzzyMatch;
+  }
+
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    result = result * PRIME + this.getLineNo();
+    result = result * PRIME + this.getColumnNo();
+    result = result * PRIME + this.getLength();
+    result = result * PRIME + this.getDistance();
+    return result;
+  }
+
+  public String toString() {
+    return "FuzzyMatch(lineNo=" + this.getLineNo() + ", columnNo=" + this.getColumnNo()
+        + ", length=" + this.getLength() + ", distance=" + this.getDistance() + ")";
+  }
+}
@@ -0,0 +1,150 @@
+package com.crio.qcharm.ds;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Approximate search of a pattern of up to MAX_PATTERN chars with Myers' bit-vector algorithm.
+//
+// The edit distance between the pattern and the best substring of the line ending at each
+// char is one column of the dynamic programming matrix. Myers encodes a column as the signs
+// of its vertical differences, one bit per char of the pattern in a long, and computes the
+// next column from the previous one with a dozen bitwise operations, so a line is read in
+// O(n) whatever the pattern and the number of edits allowed.
+//
+// Consecutive chars ending a substring close enough to the pattern make up one occurrence,
+// reported where the distance is the smallest. Its start is found by running the algorithm
+// backwards from there, on the reversed pattern anchored at that char, over at most m + k
+// chars. The matcher is immutable and may be shared by several threads.
+
+final class FuzzyMatcher {
+
+  // Longest pattern, the number of bits of a long.
+  static final int MAX_PATTERN = 64;
+
+  private final int m;
+  private final int maxEdits;
+  // Bit i is set in the mask of a char if the char is pattern[i], reversed[i] for the
+  // reversed masks. ASCII chars are looked up in the arrays, others in the maps.
+  private final long[] asciiMasks = new long[128];
+  private final long[] reversedAsciiMasks = new long[128];
+  private final Map<Character, Long> masks = new HashMap<>();
+  private final Map<Character, Long> reversedMasks = new HashMap<>();
+
+  // Input:
+  //      pattern - 1 to MAX_PATTERN chars
+  //      maxEdits - edits allowed, less than the length of the pattern
+  // Description:
+  //      Throws an IllegalArgumentException if the pattern is empty or too long, or if
+  //      maxEdits is out of range, since any position would match then.
+
+  FuzzyMatcher(String pattern, int maxEdits) {
+    if (pattern.isEmpty() || pattern.length() > MAX_PATTERN) {
+      throw new IllegalArgumentException(
+          "Fuzzy search patterns have 1 to " + MAX_PATTERN + " chars");
+    }
+    if (maxEdits < 0 || maxEdits >= pattern.length()) {
+      throw new IllegalArgumentException(
+          "Fuzzy search allows 0 to " + (pattern.length() - 1) + " edits for " + pattern);
+    }
+    this.m = pattern.length();
+    this.maxEdits = maxEdits;
+    for (int i = 0; i < m; i++) {
+      addBit(asciiMasks, masks, pattern.charAt(i), i);
+      addBit(reversedAsciiMasks, reversedMasks, pattern.charAt(m - 1 - i), i);
+    }
+  }
+
+  private static void addBit(long[] asciiMasks, Map<Character, Long> masks, char c, int bit) {
+    if (c < 128) {
+      asciiMasks[c] |= 1L << bit;
+    } else {
+      masks.merge(c, 1L << bit, (a, b) -> a | b);
+    }
+  }
+
+  private static long maskOf(long[] asciiMasks, Map<Character, Long> masks, char c) {
+    if (c < 128) {
+      return asciiMasks[c];
+    }
+    Long mask = masks.get(c);
+    return mask == null ? 0 : mask;
+  }
+
+  // Input:
+  //      line, lineNo
+  //      res - where the occurrences are added
+  // Description:
+  //      Adds the occurrences in the line at most maxEdits away from the pattern, sorted by
+  //      column.
+
+  void search(String line, int lineNo, List<FuzzyMatch> res) {
+    long last = 1L << (m - 1);
+    long pv = -1L;
+    long mv = 0;
+    int score = m;
+    int bestEnd = -1;
+    int bestScore = 0;
+    for (int j = 0; j < line.length(); j++) {
+      long eq = maskOf(asciiMasks, masks, line.charAt(j));
+      long xv = eq | mv;
+      long xh = (((eq & pv) + pv) ^ pv) | eq;
+      long ph = mv | ~(xh | pv);
+      long mh = pv & xh;
+      if ((ph & last) != 0) {
+        score++;
+      } else if ((mh & last) != 0) {
+        score--;
+      }
+      // The first row is all 0s, a substring may start anywhere.
+      ph <<= 1;
+      mh <<= 1;
+      pv = mh | ~(xv | ph);
+      mv = ph & xv;
+
+      if (score <= maxEdits) {
+        if (bestEnd < 0 || score < bestScore) {
+          bestEnd = j;
+          bestScore = score;
+        }
+      } else if (bestEnd >= 0) {
+        res.add(matchEndingAt(line, lineNo, bestEnd, bestScore));
+        bestEnd = -1;
+      }
+    }
+    if (bestEnd >= 0) {
+      res.add(matchEndingAt(line, lineNo, bestEnd, bestScore));
+    }
+  }
+
+  // The longest substring ending at end that is distance edits away from the pattern.
+  private FuzzyMatch matchEndingAt(String line, int lineNo, int end, int distance) {
+    long last = 1L << (m - 1);
+    long pv = -1L;
+    long mv = 0;
+    int score = m;
+    int bestLength = 0;
+    int maxLength = Math.min(end + 1, m + maxEdits);
+    for (int length = 1; length <= maxLength; length++) {
+      long eq = maskOf(reversedAsciiMasks, reversedMasks, line.charAt(end + 1 - length));
+      long xv = eq | mv;
+      long xh = (((eq & pv) + pv) ^ pv) | eq;
+      long ph = mv | ~(xh | pv);
+      long mh = pv & xh;
+      if ((ph & last) != 0) {
+        score++;
+      } else if ((mh & last) != 0) {
+        score--;
+      }
+      // The first row counts the chars read, the substring has to start at end.
+      ph = ph << 1 | 1;
+      mh <<= 1;
+      pv = mh | ~(xv | ph);
+      mv = ph & xv;
+      if (score <= distance) {
+        bestLength = length;
+      }
+    }
+    return new FuzzyMatch(lineNo, end + 1 - bestLength, bestLength, distance);
+  }
+}
@@ -0,0 +1,84 @@
+package com.crio.qcharm.ds;
+
+// Number of undo and redo steps kept for a file and an estimate of the memory they use.
+
+public class HistorySize {
+  private int undoEntries;
+  private int redoEntries;
+  private long bytes;
+
+  public HistorySize(int undoEntries, int redoEntries, long bytes) {
+    this.undoEntries = undoEntries;
+    this.redoEntries = redoEntries;
+    this.bytes = bytes;
+  }
+
+  public HistorySize() {
+  }
+
+  public int getUndoEntries() {
+    return this.undoEntries;
+  }
+
+  public int getRedoEntries() {
+    return this.redoEntries;
+  }
+
+  public long getBytes() {
+    return this.bytes;
+  }
+
+  public void setUndoEntries(int undoEntries) {
+    this.undoEntries = undoEntries;
+  }
+
+  public void setRedoEntries(int redoEntries) {
+    this.redoEntries = redoEntries;
+  }
+
+  public void setBytes(long bytes) {
+    this.bytes = bytes;
+  }
+
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof HistorySize)) {
+      return false;
+    }
+    final HistorySize other = (HistorySize) o;
+    if (!other.canEqual((Object) this)) {
+      return false;
+    }
+    if (this.getUndoEntries() != other.getUndoEntries()) {
+      return false;
+    }
+    if (this.getRedoEntries() != other.getRedoEntries()) {
+      return false;
+    }
+    if (this.getBytes() != other.getBytes()) {
+      return false;
+    }
+    return true;
+  }
+
+  protected boolean canEqual(final Object other) {
+    return other instanceof HistorySize;
+  }
+
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    result = result * PRIME + this.getUndoEntries();
+    result = result * PRIME + this.getRedoEntries();
+    final long $bytes = this.getBytes();
+    result = result * PRIME + (int) ($bytes >>> 32 ^ $bytes);
+    return result;
+  }
+
+  public String toString() {
+    return "HistorySize(undoEntries=" + this.getUndoEntries() + ", redoEntries="
+        + this.getRedoEntries() + ", bytes=" + this.getBytes() + ")";
+  }
+}
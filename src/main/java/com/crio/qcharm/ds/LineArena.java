@@ -0,0 +1,103 @@
+package com.crio.qcharm.ds;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Append-only list of lines stored as bytes.
+//
+// Instead of one String (object header + byte array) per line, the text of all lines is packed
+// into large byte[] chunks and every line is described by three ints: the chunk it lives in,
+// its offset in that chunk and its length. A line whose characters all fit in Latin-1 is
+// stored with one byte per character, any other line is stored as UTF-8 and marked by a
+// negative length. Strings are only created again by get().
+
+class LineArena extends AbstractList<String> implements RandomAccess {
+
+  static final int CHUNK_SIZE = 1 << 20;
+
+  private final List<byte[]> chunks = new ArrayList<>();
+  private byte[] current;
+  private int used;
+
+  private int[] chunkIds = new int[16];
+  private int[] offsets = new int[16];
+  // ~length for lines stored as UTF-8.
+  private int[] lengths = new int[16];
+  private int size;
+
+  LineArena() {
+  }
+
+  LineArena(List<String> lines) {
+    for (String line : lines) {
+      add(line);
+    }
+  }
+
+  @Override
+  public int size() {
+    return this.size;
+  }
+
+  @Override
+  public String get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Line " + index);
+    }
+    byte[] chunk = chunks.get(chunkIds[index]);
+    int length = lengths[index];
+    if (length >= 0) {
+      return new String(chunk, offsets[index], length, StandardCharsets.ISO_8859_1);
+    }
+    return new String(chunk, offsets[index], ~length, StandardCharsets.UTF_8);
+  }
+
+  // Lines can only be appended.
+  @Override
+  public void add(int index, String line) {
+    if (index != size) {
+      throw new UnsupportedOperationException("LineArena is append-only");
+    }
+    boolean latin1 = isLatin1(line);
+    byte[] bytes = line.getBytes(latin1 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    if (current == null || bytes.length > current.length - used) {
+      current = new byte[Math.max(CHUNK_SIZE, bytes.length)];
+      chunks.add(current);
+      used = 0;
+    }
+    System.arraycopy(bytes, 0, current, used, bytes.length);
+    if (size == offsets.length) {
+      chunkIds = Arrays.copyOf(chunkIds, size * 2);
+      offsets = Arrays.copyOf(offsets, size * 2);
+      lengths = Arrays.copyOf(lengths, size * 2);
+    }
+    chunkIds[size] = chunks.size() - 1;
+    offsets[size] = used;
+    lengths[size] = latin1 ? bytes.length : ~bytes.length;
+    used += bytes.length;
+    size++;
+    modCount++;
+  }
+
+  // Bytes held by the chunks and the offset table.
+  long getMemoryUsage() {
+    long bytes = 0;
+    for (byte[] chunk : chunks) {
+      bytes += chunk.length;
+    }
+    return bytes + 3L * Integer.BYTES * offsets.length;
+  }
+
+  private static boolean isLatin1(String line) {
+    for (int i = 0; i < line.length(); i++) {
+      if (line.charAt(i) > 0xFF) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,85 @@
+package com.crio.qcharm.ds;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Version id of a SourceFileVersion and the line ranges changed by its last edits.
+//
+// Every edit gives the version a new id. Ids come from one counter shared by all versions, so
+// they only ever increase and a version never reuses the id of another one (a copy, or the
+// same file reloaded after a spill). Edits that replace a range of lines are recorded as a
+// Change; the last MAX_CHANGES of them are kept. Edits that may change any line (a
+// SearchReplace) drop the record, as do edits that are too old.
+
+public class LineChanges {
+
+  // Changes kept.
+  static final int MAX_CHANGES = 256;
+
+  private static final AtomicLong versions = new AtomicLong();
+
+  private long version = versions.incrementAndGet();
+  private final List<Change> changes = new ArrayList<>();
+
+  // Input:
+  //      startingLineNo, removed - the lines removed
+  //      added - number of lines inserted in their place
+  // Description:
+  //      Records an UpdateLines.
+
+  void replaced(int startingLineNo, int removed, int added) {
+    long next = versions.incrementAndGet();
+    if (changes.size() == MAX_CHANGES) {
+      changes.remove(0);
+    }
+    changes.add(new Change(version, next, startingLineNo, removed, added));
+    version = next;
+  }
+
+  // Records an edit that may have changed every line.
+  void replacedAll() {
+    changes.clear();
+    version = versions.incrementAndGet();
+  }
+
+  public long getVersion() {
+    return this.version;
+  }
+
+  // Input:
+  //      version - an earlier id of this version
+  // Description:
+  //      Returns the changes that turned that version into this one, oldest first, or null if
+  //      they aren't known.
+
+  List<Change> since(long version) {
+    if (version == this.version) {
+      return new ArrayList<>();
+    }
+    for (int i = 0; i < changes.size(); i++) {
+      if (changes.get(i).from == version) {
+        return new ArrayList<>(changes.subList(i, changes.size()));
+      }
+    }
+    return null;
+  }
+
+  // The lines [startingLineNo, startingLineNo + removed) of version from were replaced by
+  // added lines, giving version to.
+  static final class Change {
+    final long from;
+    final long to;
+    final int startingLineNo;
+    final int removed;
+    final int added;
+
+    Change(long from, long to, int startingLineNo, int removed, int added) {
+      this.from = from;
+      this.to = to;
+      this.startingLineNo = startingLineNo;
+      this.removed = removed;
+      this.added = added;
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package com.crio.qcharm.ds;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Read-only view of the lines of a file on local disk.
+//
+// The file is memory mapped and never read into the heap as a whole. The offsets of the
+// line starts are discovered lazily: asking for line n only scans the file up to the end of
+// line n, and indexInBackground() finishes the scan on a daemon thread. A line is decoded
+// (as UTF-8) only when get() is called for it.
+//
+// Lines are split on '\n' exactly like MasterRequest splits dataNow, so a file ending with a
+// newline has an empty last line.
+
+class MappedFileLines extends AbstractList<String> implements RandomAccess {
+
+  // Size of one mapped region. A file larger than this is mapped as several regions.
+  static final int REGION_SIZE = 1 << 30;
+  // Number of bytes scanned by the background indexer each time it takes the lock.
+  static final int SCAN_CHUNK = 1 << 20;
+
+  private static final ExecutorService indexer = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "mapped-file-indexer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final MappedByteBuffer[] regions;
+  private final long fileSize;
+
+  // Fair, so that a page request never waits behind more than one chunk of background scanning.
+  private final ReentrantLock lock = new ReentrantLock(true);
+
+  // lineStarts[0 .. indexedLines) are the byte offsets of the lines found so far.
+  private long[] lineStarts;
+  private int indexedLines;
+  private long scannedUpTo;
+  // Written last by scan(), so a reader seeing it true also sees the final lineStarts.
+  private volatile boolean complete;
+
+  private MappedFileLines(MappedByteBuffer[] regions, long fileSize) {
+    this.regions = regions;
+    this.fileSize = fileSize;
+    this.lineStarts = new long[1024];
+    this.lineStarts[0] = 0;
+    this.indexedLines = 1;
+  }
+
+  static MappedFileLines open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long fileSize = channel.size();
+      int numberOfRegions = (int) ((fileSize + REGION_SIZE - 1) / REGION_SIZE);
+      MappedByteBuffer[] regions = new MappedByteBuffer[numberOfRegions];
+      for (int i = 0; i < numberOfRegions; i++) {
+        long position = (long) i * REGION_SIZE;
+        regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+            Math.min(REGION_SIZE, fileSize - position));
+      }
+      return new MappedFileLines(regions, fileSize);
+    }
+  }
+
+  void indexInBackground() {
+    indexer.submit(() -> {
+      boolean done = false;
+      while (!done) {
+        lock.lock();
+        try {
+          scan(scannedUpTo + SCAN_CHUNK);
+          done = complete;
+        } finally {
+          lock.unlock();
+        }
+      }
+    });
+  }
+
+  // Indexes the file far enough to know whether lines [0, count) exist and returns how many of
+  // them do.
+  int linesAvailable(int count) {
+    lock.lock();
+    try {
+      while (indexedLines < count && !complete) {
+        scan(scannedUpTo + SCAN_CHUNK);
+      }
+      return Math.min(count, indexedLines);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  boolean isFullyIndexed() {
+    lock.lock();
+    try {
+      return complete;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    return linesAvailable(Integer.MAX_VALUE);
+  }
+
+  @Override
+  public String get(int index) {
+    long start;
+    long end;
+    if (complete) {
+      // The index doesn't change any more, so parallel readers don't have to take the lock.
+      if (index < 0 || index >= indexedLines) {
+        throw new IndexOutOfBoundsException("Line " + index);
+      }
+      start = lineStarts[index];
+      end = index + 1 < indexedLines ? lineStarts[index + 1] - 1 : fileSize;
+      return decode(start, end);
+    }
+    lock.lock();
+    try {
+      // The end of a line is only known once the start of the next one has been found.
+      if (index < 0 || linesAvailable(index + 2) <= index) {
+        throw new IndexOutOfBoundsException("Line " + index);
+      }
+      start = lineStarts[index];
+      end = index + 1 < indexedLines ? lineStarts[index + 1] - 1 : fileSize;
+    } finally {
+      lock.unlock();
+    }
+    return decode(start, end);
+  }
+
+  private String decode(long start, long end) {
+    byte[] bytes = new byte[(int) (end - start)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = byteAt(start + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private byte byteAt(long position) {
+    return regions[(int) (position / REGION_SIZE)].get((int) (position % REGION_SIZE));
+  }
+
+  // Records the start of every line beginning before the given byte offset.
+  private void scan(long upTo) {
+    long limit = Math.min(upTo, fileSize);
+    while (scannedUpTo < limit) {
+      MappedByteBuffer region = regions[(int) (scannedUpTo / REGION_SIZE)];
+      long regionStart = scannedUpTo - scannedUpTo % REGION_SIZE;
+      int end = (int) Math.min(limit - regionStart, region.limit());
+      for (int i = (int) (scannedUpTo - regionStart); i < end; i++) {
+        if (region.get(i) == '\n') {
+          if (indexedLines == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+          }
+          lineStarts[indexedLines++] = regionStart + i + 1;
+        }
+      }
+      scannedUpTo = regionStart + end;
+    }
+    complete = scannedUpTo >= fileSize;
+  }
+}
@@ -0,0 +1,230 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+// Search for patterns that may span line breaks, like "}\n  else", over the segments of a
+// SourceFileVersion. The lines are read where they are stored, the file is never joined
+// into a single String: the memory used doesn't depend on the size of the file.
+//
+// A literal pattern is split at its line breaks. An occurrence starts where a line ends with
+// the first part, the following lines are the middle parts and the last line starts with the
+// last part, so every line is compared at most once for every part.
+//
+// A regex reads the file through a Window: WINDOW_LINES lines and their line breaks, seen as
+// one CharSequence. Matches starting in the first half of the window are kept, then the window
+// moves by half its size, so a match spanning up to WINDOW_LINES / 2 lines is always found
+// whole. Longer ones may be cut short or missed. Matches don't overlap and empty matches are
+// left out, like for a single line search.
+
+final class MultilineSearch {
+
+  // Lines in a regex window.
+  static final int WINDOW_LINES = 128;
+
+  private final List<List<String>> segments;
+  private final int numberOfLines;
+  // The segment read last by line().
+  private int segment;
+  private int segmentStart;
+
+  MultilineSearch(SourceFileVersion sourceFile) {
+    this.segments = sourceFile.getSegments();
+    int count = 0;
+    for (List<String> lines : segments) {
+      count += lines.size();
+    }
+    this.numberOfLines = count;
+  }
+
+  // Input:
+  //      searchRequest - the pattern, literal or regex, with the line breaks as '\n'
+  // Description:
+  //      Returns the occurrences of the pattern sorted by start, each going from its first
+  //      char up to the position after its last one. Throws a PatternSyntaxException if the
+  //      regex is invalid and a SearchTimeoutException if the search takes longer than the
+  //      budget of the request.
+
+  List<CursorRange> search(SearchRequest searchRequest) {
+    String pattern = searchRequest.getPattern();
+    if (pattern.isEmpty()) {
+      return new ArrayList<>();
+    }
+    if (searchRequest.isRegex()) {
+      return searchRegex(pattern, searchRequest.getFlags(), searchRequest.getTimeoutMillis());
+    }
+    return searchLiteral(pattern);
+  }
+
+  private List<CursorRange> searchLiteral(String pattern) {
+    List<CursorRange> res = new ArrayList<>();
+    String[] parts = pattern.split("\n", -1);
+    if (parts.length == 1) {
+      PatternMatcher matcher = SearchStrategy.forPattern(pattern).compile(pattern);
+      for (int lineNo = 0; lineNo < numberOfLines; lineNo++) {
+        String line = line(lineNo);
+        for (int col = matcher.indexOf(line, 0); col >= 0;
+            col = matcher.indexOf(line, col + 1)) {
+          res.add(new CursorRange(new Cursor(lineNo, col),
+              new Cursor(lineNo, col + pattern.length())));
+        }
+      }
+      return res;
+    }
+    int last = parts.length - 1;
+    for (int lineNo = 0; lineNo + last < numberOfLines; lineNo++) {
+      String line = line(lineNo);
+      if (!line.endsWith(parts[0])) {
+        continue;
+      }
+      int part = 1;
+      while (part < last && line(lineNo + part).equals(parts[part])) {
+        part++;
+      }
+      if (part == last && line(lineNo + last).startsWith(parts[last])) {
+        res.add(new CursorRange(new Cursor(lineNo, line.length() - parts[0].length()),
+            new Cursor(lineNo + last, parts[last].length())));
+      }
+    }
+    return res;
+  }
+
+  private List<CursorRange> searchRegex(String regex, int flags, long timeoutMillis) {
+    List<CursorRange> res = new ArrayList<>();
+    long budget = timeoutMillis > 0 ? timeoutMillis : RegexSearch.DEFAULT_TIMEOUT_MILLIS;
+    RegexSearch.DeadlineText text =
+        new RegexSearch.DeadlineText(regex, budget, System.nanoTime() + budget * 1000000L);
+    Matcher matcher = RegexSearch.compile(regex, flags).matcher("");
+    Window window = new Window();
+    int step = WINDOW_LINES / 2;
+    // Where the last match ended, the next one can't start before.
+    Cursor from = new Cursor(0, 0);
+    for (int firstLine = 0; firstLine < numberOfLines; firstLine += step) {
+      window.of(firstLine, Math.min(firstLine + WINDOW_LINES, numberOfLines));
+      int startLimit = window.offsetOf(Math.min(firstLine + step, numberOfLines));
+      matcher.reset(text.of(window));
+      matcher.useTransparentBounds(true);
+      matcher.useAnchoringBounds(false);
+      int regionStart = from.getLineNo() < firstLine ? window.offsetOf(firstLine)
+          : window.offsetOf(from.getLineNo()) + from.getColumnNo();
+      if (regionStart >= startLimit) {
+        continue;
+      }
+      matcher.region(regionStart, window.getEnd());
+      while (matcher.find() && matcher.start() < startLimit) {
+        if (matcher.end() > matcher.start()) {
+          from = window.cursorAt(matcher.end());
+          res.add(new CursorRange(window.cursorAt(matcher.start()), from));
+        }
+      }
+    }
+    return res;
+  }
+
+  private String line(int lineNo) {
+    while (lineNo < segmentStart) {
+      segment--;
+      segmentStart -= segments.get(segment).size();
+    }
+    while (lineNo >= segmentStart + segments.get(segment).size()) {
+      segmentStart += segments.get(segment).size();
+      segment++;
+    }
+    return segments.get(segment).get(lineNo - segmentStart);
+  }
+
+  // Consecutive lines of the file, each followed by '\n' but the last line of the file. The
+  // line after them is there too for lookaheads, outside of getEnd(), and so is the line
+  // break before them, so that ^ and \A don't match at the top of the window.
+  private final class Window implements CharSequence {
+    private final String[] lines = new String[WINDOW_LINES + 1];
+    // offsets[i] is the index of the first char of lines[i], offsets[size] the length.
+    private final int[] offsets = new int[WINDOW_LINES + 2];
+    private int firstLine;
+    private int size;
+    private int end;
+    // The line of the last char read.
+    private int current;
+
+    // Lines [firstLine, endLine), endLine being at most WINDOW_LINES lines further.
+    void of(int firstLine, int endLine) {
+      this.firstLine = firstLine;
+      this.size = 0;
+      offsets[0] = firstLine > 0 ? 1 : 0;
+      int lastLine = Math.min(endLine + 1, numberOfLines);
+      for (int lineNo = firstLine; lineNo < lastLine; lineNo++) {
+        lines[size] = line(lineNo);
+        offsets[size + 1] = offsets[size] + lines[size].length() + 1;
+        size++;
+      }
+      if (lastLine == numberOfLines) {
+        offsets[size]--;
+      }
+      this.end = offsets[endLine - firstLine];
+      this.current = 0;
+    }
+
+    // End of the region the matches have to be in, after the line break of line endLine - 1.
+    int getEnd() {
+      return this.end;
+    }
+
+    int offsetOf(int lineNo) {
+      return lineNo - firstLine < size ? offsets[lineNo - firstLine] : offsets[size];
+    }
+
+    Cursor cursorAt(int index) {
+      int line = lineOf(index);
+      return new Cursor(firstLine + line, index - offsets[line]);
+    }
+
+    private int lineOf(int index) {
+      if (index >= offsets[current] && index < offsets[current + 1]) {
+        return current;
+      }
+      int lo = 0;
+      int hi = size - 1;
+      while (lo < hi) {
+        int mid = (lo + hi + 1) >>> 1;
+        if (offsets[mid] <= index) {
+          lo = mid;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      current = lo;
+      return lo;
+    }
+
+    @Override
+    public int length() {
+      return offsets[size];
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (index < offsets[0]) {
+        return '\n';
+      }
+      int line = lineOf(index);
+      int col = index - offsets[line];
+      return col < lines[line].length() ? lines[line].charAt(col) : '\n';
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      StringBuilder chars = new StringBuilder(end - start);
+      for (int i = start; i < end; i++) {
+        chars.append(charAt(i));
+      }
+      return chars.toString();
+    }
+
+    @Override
+    public String toString() {
+      return subSequence(0, length()).toString();
+    }
+  }
+}
@@ -0,0 +1,351 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+// Whole-file search spread over the common ForkJoinPool.
+//
+// A SourceFileVersion hands its storage over as segments: consecutive runs of lines in
+// document order, each a random access list that is read in place (the line list of a
+// page, a piece of a piece table, a leaf of a tree...). The line space is cut into chunks of
+// CHUNK_LINES lines which are searched in parallel, every chunk collecting its own cursors, and
+// the chunk results are concatenated in order at the end, so the cursors come out sorted
+// exactly like a sequential search would return them. What is searched for in a line is a
+// LineSearch; for a single pattern it is compiled once, with the SearchStrategy chosen for it,
+// and shared by all the tasks. A LineSearch with state of its own (a regex Matcher) is created
+// for every chunk instead, see searchEachChunk(). searchPacked() collects the cursors of every
+// chunk in a CursorArray rather than a List. replace() computes a SearchReplace the same way,
+// every chunk replacing the pattern in its own lines, for the version to write back after.
+//
+// Segments are only read, the version must not be edited while a search is running.
+
+final class ParallelSearch {
+
+  // Lines searched by one task.
+  static final int CHUNK_LINES = 4096;
+
+  private ParallelSearch() {
+  }
+
+  // Adds to res what is found in one line. Called concurrently for different lines.
+  interface LineSearch<T> {
+    void search(String line, int lineNo, List<T> res);
+  }
+
+  // Same as LineSearch, for searches collecting packed cursors.
+  interface PackedLineSearch {
+    void search(String line, int lineNo, CursorArray res);
+  }
+
+  // What one chunk has found so far, and how it searches its lines.
+  private interface ChunkSearch<R> {
+    void search(String line, int lineNo);
+
+    R getResult();
+  }
+
+  // Input:
+  //      segments - the lines of the file in order, each segment a RandomAccess list
+  //      searchRequest
+  // Description:
+  //      Returns the position of every occurrence of the pattern of the request, literal or
+  //      regex, sorted by line then column.
+
+  static List<Cursor> search(List<? extends List<String>> segments,
+      SearchRequest searchRequest) {
+    if (searchRequest.isRegex()) {
+      if (searchRequest.getPattern().isEmpty()) {
+        return new ArrayList<>();
+      }
+      return RegexSearch.search(segments, searchRequest.getPattern(), searchRequest.getFlags(),
+          searchRequest.getTimeoutMillis());
+    }
+    return search(segments, searchRequest.getPattern());
+  }
+
+  // Input:
+  //      segments - the lines of the file in order, each segment a RandomAccess list
+  //      pattern
+  // Description:
+  //      Returns the position of every occurrence of pattern, sorted by line then column.
+
+  static List<Cursor> search(List<? extends List<String>> segments, String pattern) {
+    if (pattern.isEmpty()) {
+      return new ArrayList<>();
+    }
+    PatternMatcher matcher = SearchStrategy.forPattern(pattern).compile(pattern);
+    return search(segments, (line, lineNo, res) -> {
+      for (int col = matcher.indexOf(line, 0); col >= 0; col = matcher.indexOf(line, col + 1)) {
+        res.add(new Cursor(lineNo, col));
+      }
+    });
+  }
+
+  // Input:
+  //      segments - the lines of the file in order, each segment a RandomAccess list
+  //      pattern - 1 to FuzzyMatcher.MAX_PATTERN chars
+  //      maxEdits - edits allowed, less than the length of the pattern
+  // Description:
+  //      Returns the approximate occurrences of pattern, ranked by edit distance then
+  //      position. Throws an IllegalArgumentException if the pattern or maxEdits is out of
+  //      range.
+
+  static List<FuzzyMatch> searchFuzzy(List<? extends List<String>> segments, String pattern,
+      int maxEdits) {
+    FuzzyMatcher matcher = new FuzzyMatcher(pattern, maxEdits);
+    List<FuzzyMatch> res = search(segments, matcher::search);
+    res.sort(PatternSearchAlgorithm.BY_DISTANCE);
+    return res;
+  }
+
+  // Input:
+  //      segments - the lines of the file in order, each segment a RandomAccess list
+  //      lineSearch
+  // Description:
+  //      Returns what lineSearch finds in every line, in line order.
+
+  static <T> List<T> search(List<? extends List<String>> segments, LineSearch<T> lineSearch) {
+    return searchEachChunk(segments, () -> lineSearch);
+  }
+
+  // Same as search(), with a LineSearch from newLineSearch for every chunk, which is only used
+  // by one thread.
+
+  static <T> List<T> searchEachChunk(List<? extends List<String>> segments,
+      Supplier<LineSearch<T>> newLineSearch) {
+    List<List<T>> chunkResults = searchChunks(segments, () -> {
+      LineSearch<T> lineSearch = newLineSearch.get();
+      List<T> res = new ArrayList<>();
+      return new ChunkSearch<List<T>>() {
+        @Override
+        public void search(String line, int lineNo) {
+          lineSearch.search(line, lineNo, res);
+        }
+
+        @Override
+        public List<T> getResult() {
+          return res;
+        }
+      };
+    });
+    int total = 0;
+    for (List<T> found : chunkResults) {
+      total += found.size();
+    }
+    List<T> res = new ArrayList<>(total);
+    for (List<T> found : chunkResults) {
+      res.addAll(found);
+    }
+    return res;
+  }
+
+  // Input:
+  //      segments - the lines of the file in order, each segment a RandomAccess list
+  //      searchRequest
+  // Description:
+  //      Same as search(segments, searchRequest), with the cursors packed in a CursorArray.
+
+  static CursorArray searchPacked(List<? extends List<String>> segments,
+      SearchRequest searchRequest) {
+    String pattern = searchRequest.getPattern();
+    if (pattern.isEmpty()) {
+      return new CursorArray();
+    }
+    if (searchRequest.isRegex()) {
+      return RegexSearch.searchPacked(segments, pattern, searchRequest.getFlags(),
+          searchRequest.getTimeoutMillis());
+    }
+    PatternMatcher matcher = SearchStrategy.forPattern(pattern).compile(pattern);
+    return searchPackedEachChunk(segments,
+        () -> (line, lineNo, res) -> PatternSearchAlgorithm.stringSearch(line, lineNo, matcher,
+            res));
+  }
+
+  // Same as searchEachChunk(), for packed cursors.
+
+  static CursorArray searchPackedEachChunk(List<? extends List<String>> segments,
+      Supplier<PackedLineSearch> newLineSearch) {
+    List<CursorArray> chunkResults = searchChunks(segments, () -> {
+      PackedLineSearch lineSearch = newLineSearch.get();
+      CursorArray res = new CursorArray();
+      return new ChunkSearch<CursorArray>() {
+        @Override
+        public void search(String line, int lineNo) {
+          lineSearch.search(line, lineNo, res);
+        }
+
+        @Override
+        public CursorArray getResult() {
+          return res;
+        }
+      };
+    });
+    if (chunkResults.size() == 1) {
+      return chunkResults.get(0);
+    }
+    int total = 0;
+    for (CursorArray found : chunkResults) {
+      total += found.size();
+    }
+    CursorArray res = new CursorArray(total);
+    for (CursorArray found : chunkResults) {
+      res.addAll(found);
+    }
+    return res;
+  }
+
+  // Input:
+  //      segments - the lines of the file in order, each segment a RandomAccess list
+  //      pattern - not empty
+  //      newPattern
+  // Description:
+  //      Returns the occurrences of the pattern every line would have replaced, the changed
+  //      lines and their new content, without changing the segments.
+
+  static ReplaceResult replace(List<? extends List<String>> segments, String pattern,
+      String newPattern) {
+    List<ReplaceResult> chunkResults = searchChunks(segments, () -> {
+      ReplaceResult res = new ReplaceResult();
+      return new ChunkSearch<ReplaceResult>() {
+        @Override
+        public void search(String line, int lineNo) {
+          res.replace(lineNo, line, pattern, newPattern);
+        }
+
+        @Override
+        public ReplaceResult getResult() {
+          return res;
+        }
+      };
+    });
+    if (chunkResults.size() == 1) {
+      return chunkResults.get(0);
+    }
+    ReplaceResult res = new ReplaceResult();
+    for (ReplaceResult found : chunkResults) {
+      res.addAll(found);
+    }
+    return res;
+  }
+
+  // The results of every chunk, in order.
+  private static <R> List<R> searchChunks(List<? extends List<String>> segments,
+      Supplier<ChunkSearch<R>> newChunkSearch) {
+    int[] segmentStarts = new int[segments.size() + 1];
+    for (int i = 0; i < segments.size(); i++) {
+      segmentStarts[i + 1] = segmentStarts[i] + segments.get(i).size();
+    }
+    int numberOfLines = segmentStarts[segments.size()];
+    int numberOfChunks = (numberOfLines + CHUNK_LINES - 1) / CHUNK_LINES;
+    List<R> chunkResults = new ArrayList<>(numberOfChunks);
+    for (int i = 0; i < numberOfChunks; i++) {
+      chunkResults.add(null);
+    }
+    SearchTask<R> task = new SearchTask<>(segments, segmentStarts, newChunkSearch, chunkResults,
+        0, numberOfChunks);
+    if (numberOfChunks <= 1) {
+      task.compute();
+    } else {
+      ForkJoinPool.commonPool().invoke(task);
+    }
+    return chunkResults;
+  }
+
+  // The lines as segments: the list itself if it has random access, otherwise (a LinkedList)
+  // segments of CHUNK_LINES lines, for which only the references to the lines are copied, in a
+  // single pass.
+  static List<List<String>> segmentsOf(List<String> lines) {
+    if (lines instanceof RandomAccess) {
+      return Collections.singletonList(lines);
+    }
+    List<List<String>> segments = new ArrayList<>();
+    Iterator<String> iterator = lines.iterator();
+    while (iterator.hasNext()) {
+      String[] segment = new String[CHUNK_LINES];
+      int size = 0;
+      while (size < CHUNK_LINES && iterator.hasNext()) {
+        segment[size++] = iterator.next();
+      }
+      segments.add(Arrays.asList(segment).subList(0, size));
+    }
+    return segments;
+  }
+
+  // Searches the chunks [fromChunk, toChunk), splitting the range in halves until a single
+  // chunk is left.
+  private static class SearchTask<R> extends RecursiveAction {
+    private final List<? extends List<String>> segments;
+    private final int[] segmentStarts;
+    private final Supplier<ChunkSearch<R>> newChunkSearch;
+    private final List<R> chunkResults;
+    private final int fromChunk;
+    private final int toChunk;
+
+    SearchTask(List<? extends List<String>> segments, int[] segmentStarts,
+        Supplier<ChunkSearch<R>> newChunkSearch, List<R> chunkResults, int fromChunk,
+        int toChunk) {
+      this.segments = segments;
+      this.segmentStarts = segmentStarts;
+      this.newChunkSearch = newChunkSearch;
+      this.chunkResults = chunkResults;
+      this.fromChunk = fromChunk;
+      this.toChunk = toChunk;
+    }
+
+    @Override
+    protected void compute() {
+      if (toChunk - fromChunk > 1) {
+        int mid = (fromChunk + toChunk) >>> 1;
+        invokeAll(
+            new SearchTask<>(segments, segmentStarts, newChunkSearch, chunkResults, fromChunk,
+                mid),
+            new SearchTask<>(segments, segmentStarts, newChunkSearch, chunkResults, mid,
+                toChunk));
+        return;
+      }
+      for (int chunk = fromChunk; chunk < toChunk; chunk++) {
+        chunkResults.set(chunk, searchChunk(chunk));
+      }
+    }
+
+    private R searchChunk(int chunk) {
+      ChunkSearch<R> chunkSearch = newChunkSearch.get();
+      int lineNo = chunk * CHUNK_LINES;
+      int endingLine = Math.min(lineNo + CHUNK_LINES, segmentStarts[segments.size()]);
+      int segment = segmentOf(lineNo);
+      while (lineNo < endingLine) {
+        List<String> lines = segments.get(segment);
+        int offset = lineNo - segmentStarts[segment];
+        int count = Math.min(lines.size() - offset, endingLine - lineNo);
+        for (int i = 0; i < count; i++, lineNo++) {
+          chunkSearch.search(lines.get(offset + i), lineNo);
+        }
+        segment++;
+      }
+      return chunkSearch.getResult();
+    }
+
+    // Index of the non empty segment holding the given line.
+    private int segmentOf(int lineNo) {
+      int lo = 0;
+      int hi = segments.size() - 1;
+      while (lo < hi) {
+        int mid = (lo + hi + 1) >>> 1;
+        if (segmentStarts[mid] <= lineNo) {
+          lo = mid;
+        } else {
+          hi = mid - 1;
+        }
+      }
+      return lo;
+    }
+  }
+}
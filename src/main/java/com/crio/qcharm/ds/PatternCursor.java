@@ -0,0 +1,88 @@
+package com.crio.qcharm.ds;
+
+// Position of an occurrence found by a multi-pattern search, with the index of the pattern
+// found there in the list of patterns searched for.
+
+public class PatternCursor {
+  private int patternIndex;
+  private int lineNo;
+  private int columnNo;
+
+  public PatternCursor(int patternIndex, int lineNo, int columnNo) {
+    this.patternIndex = patternIndex;
+    this.lineNo = lineNo;
+    this.columnNo = columnNo;
+  }
+
+  public PatternCursor() {
+  }
+
+  public Cursor getCursor() {
+    return new Cursor(lineNo, columnNo);
+  }
+
+  public int getPatternIndex() {
+    return this.patternIndex;
+  }
+
+  public int getLineNo() {
+    return this.lineNo;
+  }
+
+  public int getColumnNo() {
+    return this.columnNo;
+  }
+
+  public void setPatternIndex(int patternIndex) {
+    this.patternIndex = patternIndex;
+  }
+
+  public void setLineNo(int lineNo) {
+    this.lineNo = lineNo;
+  }
+
+  public void setColumnNo(int columnNo) {
+    this.columnNo = columnNo;
+  }
+
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof PatternCursor)) {
+      return false;
+    }
+    final PatternCursor other = (PatternCursor) o;
+    if (!other.canEqual((Object) this)) {
+      return false;
+    }
+    if (this.getPatternIndex() != other.getPatternIndex()) {
+      return false;
+    }
+    if (this.getLineNo() != other.getLineNo()) {
+      return false;
+    }
+    if (this.getColumnNo() != other.getColumnNo()) {
+      return false;
+    }
+    return true;
+  }
+
+  protected boolean canEqual(final Object other) {
+    return other instanceof PatternCursor;
+  }
+
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    result = result * PRIME + this.getPatternIndex();
+    result = result * PRIME + this.getLineNo();
+    result = result * PRIME + this.getColumnNo();
+    return result;
+  }
+
+  public String toString() {
+    return "PatternCursor(patternIndex=" + this.getPatternIndex() + ", lineNo="
+        + this.getLineNo() + ", columnNo=" + this.getColumnNo() + ")";
+  }
+}
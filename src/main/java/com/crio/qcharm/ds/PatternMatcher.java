@@ -0,0 +1,11 @@
+package com.crio.qcharm.ds;
+
+// A pattern compiled by a SearchStrategy. Matchers are immutable, one matcher may be used by
+// several threads at once.
+
+interface PatternMatcher {
+
+  // Position of the first occurrence of the pattern in text at or after fromIndex, -1 if
+  // there is none.
+  int indexOf(String text, int fromIndex);
+}
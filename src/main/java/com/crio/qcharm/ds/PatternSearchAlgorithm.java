@@ -1,98 +1,61 @@
 package com.crio.qcharm.ds;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedList;
 import java.util.List;
 
 class PatternSearchAlgorithm {
 
-  public static List<Integer> stringSearch(String text, String pattern, boolean efficient, boolean isLinkedList) {
-    if (efficient) {
-      return kmpStringSearch(text, pattern, isLinkedList);
-    }
-    return naiveStringSearch(text, pattern, isLinkedList);
-  }
+  // Ranks fuzzy matches, the sort being stable keeps them in file order at equal distance.
+  static final Comparator<FuzzyMatch> BY_DISTANCE =
+      Comparator.comparingInt(FuzzyMatch::getDistance);
 
-  private static int[] computeLPSArray(String pattern) {
-    int m = pattern.length();
-    int[] lps = new int[m];
-    lps[0] = 0;
-    int i = 1;
-    int j = 0;
-    while (i < m) {
-      if (pattern.charAt(i) == pattern.charAt(j)) {
-        j++;
-        lps[i] = j;
-        i++;
-      } else {
-        if (j != 0) {
-          j = lps[j-1];
-        }
-        else {
-          i++;
-        }
-      }
+  // efficient picks the best SearchStrategy for the pattern, otherwise the naive search is
+  // used.
+  public static List<Integer> stringSearch(String text, String pattern, boolean efficient, boolean isLinkedList) {
+    if (pattern.length() == 0) {
+      return isLinkedList ? new LinkedList<>() : new ArrayList<>();
     }
-    return lps;
+    SearchStrategy strategy = efficient ? SearchStrategy.forPattern(pattern) : SearchStrategy.NAIVE;
+    return stringSearch(text, strategy.compile(pattern), isLinkedList);
   }
 
-  private static List<Integer> kmpStringSearch(String text, String pattern, boolean isLinkedList) {
+  // Every occurrence of the compiled pattern in text, overlapping ones included.
+  static List<Integer> stringSearch(String text, PatternMatcher matcher, boolean isLinkedList) {
     List<Integer> res;
     if (isLinkedList) {
       res = new LinkedList<>();
     } else {
       res = new ArrayList<>();
     }
-    int m = pattern.length();
-    int n = text.length();
-    if (m == 0) {
-      return res;
-    }
-    int[] lps = computeLPSArray(pattern);
-    int i = 0;
-    int j = 0;
-    while (i < n) {
-      if (text.charAt(i) == pattern.charAt(j)) {
-        i++;
-        j++;
-      }
-      if (j == m) {
-        res.add(i - j);
-        j = lps[j - 1];
-      } else if (i < n && pattern.charAt(j) != text.charAt(i)) {
-        if (j != 0) {
-          j = lps[j - 1];
-        } else {
-          i++;
-        }
-      }
+    for (int i = matcher.indexOf(text, 0); i >= 0; i = matcher.indexOf(text, i + 1)) {
+      res.add(i);
     }
     return res;
   }
 
-  private static List<Integer> naiveStringSearch(String text, String pattern, boolean isLinkedList) {
-    int m = pattern.length();
-    int n = text.length();
-    List<Integer> res;
-    if (isLinkedList) {
-      res = new LinkedList<>();
-    } else {
-      res = new ArrayList<>();
-    }
-    if (m == 0) {
-      return res;
-    }
-    for (int i = 0; i<=n-m; i++) {
-      int j;
-      for(j = 0; j<m; j++) {
-        if(text.charAt(i+j) != pattern.charAt(j)) {
-          break;
-        }
-      }
-      if(j == m) {
-        res.add(i);
-      }
+  // Same as stringSearch(text, matcher, false), adding the occurrences to res as cursors of
+  // line lineNo instead of boxing them.
+  static void stringSearch(String text, int lineNo, PatternMatcher matcher, CursorArray res) {
+    for (int i = matcher.indexOf(text, 0); i >= 0; i = matcher.indexOf(text, i + 1)) {
+      res.add(lineNo, i);
     }
+  }
+
+  // Input:
+  //      text
+  //      pattern - 1 to FuzzyMatcher.MAX_PATTERN chars
+  //      maxEdits - edits allowed, less than the length of the pattern
+  // Description:
+  //      Returns the approximate occurrences of pattern in text, ranked by edit distance
+  //      then column, see FuzzyMatcher. Throws an IllegalArgumentException if the pattern
+  //      or maxEdits is out of range.
+
+  static List<FuzzyMatch> fuzzySearch(String text, String pattern, int maxEdits) {
+    List<FuzzyMatch> res = new ArrayList<>();
+    new FuzzyMatcher(pattern, maxEdits).search(text, 0, res);
+    res.sort(BY_DISTANCE);
     return res;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,201 @@
+package com.crio.qcharm.ds;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Regular expression search over the segments of a SourceFileVersion.
+//
+// Compiled patterns are kept in a small LRU cache shared by all files, keyed by the regex and
+// its flags, since the same regex tends to be searched for again and again while its
+// occurrences are visited. Every ParallelSearch chunk gets its own Matcher, which is reset()
+// on each line instead of being allocated per line.
+//
+// A regex with catastrophic backtracking can spend minutes on a single line, so the line is
+// handed to the Matcher through a CharSequence that checks the deadline of the search every
+// few thousand chars read, and throws a SearchTimeoutException once it is past. All the
+// chunks share the deadline, so they all stop shortly after.
+
+final class RegexSearch {
+
+  // Compiled patterns kept.
+  static final int CACHE_SIZE = 64;
+  // Time budget of a search whose request doesn't set one.
+  static final long DEFAULT_TIMEOUT_MILLIS = 2000;
+  // Chars read between two looks at the clock.
+  private static final int CHECK_EVERY_CHARS = 4096;
+
+  private static final Map<String, Pattern> cache =
+      new LinkedHashMap<String, Pattern>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest) {
+          return size() > CACHE_SIZE;
+        }
+      };
+
+  private RegexSearch() {
+  }
+
+  // Input:
+  //      regex, flags - flags of java.util.regex.Pattern
+  // Description:
+  //      Returns the compiled pattern, from the cache if it was compiled recently. Throws a
+  //      PatternSyntaxException if the regex is invalid.
+
+  static Pattern compile(String regex, int flags) {
+    String key = flags + "/" + regex;
+    synchronized (cache) {
+      Pattern pattern = cache.get(key);
+      if (pattern == null) {
+        pattern = Pattern.compile(regex, flags);
+        cache.put(key, pattern);
+      }
+      return pattern;
+    }
+  }
+
+  // Input:
+  //      segments - the lines of the file in order
+  //      regex, flags
+  //      timeoutMillis - time budget of the search, DEFAULT_TIMEOUT_MILLIS if not positive
+  // Description:
+  //      Returns the start of every match of the regex, sorted by line then column. Matches
+  //      don't span lines, don't overlap, and empty matches are left out.
+
+  static List<Cursor> search(List<? extends List<String>> segments, String regex, int flags,
+      long timeoutMillis) {
+    Pattern pattern = compile(regex, flags);
+    long budget = timeoutMillis > 0 ? timeoutMillis : DEFAULT_TIMEOUT_MILLIS;
+    long deadline = System.nanoTime() + budget * 1000000L;
+    return ParallelSearch.searchEachChunk(segments, () -> {
+      DeadlineText text = new DeadlineText(regex, budget, deadline);
+      Matcher matcher = pattern.matcher("");
+      return (line, lineNo, res) -> {
+        matcher.reset(text.of(line));
+        while (matcher.find()) {
+          if (matcher.end() > matcher.start()) {
+            res.add(new Cursor(lineNo, matcher.start()));
+          }
+        }
+      };
+    });
+  }
+
+  // Same as search(), with the cursors packed in a CursorArray.
+
+  static CursorArray searchPacked(List<? extends List<String>> segments, String regex,
+      int flags, long timeoutMillis) {
+    Pattern pattern = compile(regex, flags);
+    long budget = timeoutMillis > 0 ? timeoutMillis : DEFAULT_TIMEOUT_MILLIS;
+    long deadline = System.nanoTime() + budget * 1000000L;
+    return ParallelSearch.searchPackedEachChunk(segments, () -> {
+      DeadlineText text = new DeadlineText(regex, budget, deadline);
+      Matcher matcher = pattern.matcher("");
+      return (line, lineNo, res) -> {
+        matcher.reset(text.of(line));
+        while (matcher.find()) {
+          if (matcher.end() > matcher.start()) {
+            res.add(lineNo, matcher.start());
+          }
+        }
+      };
+    });
+  }
+
+  // Finds the matches of a regex one at a time, in any line, within the time budget given
+  // when it was created. Used by a single thread.
+  static final class LineMatcher {
+    private final Matcher matcher;
+    private final DeadlineText text;
+
+    LineMatcher(String regex, int flags, long timeoutMillis) {
+      long budget = timeoutMillis > 0 ? timeoutMillis : DEFAULT_TIMEOUT_MILLIS;
+      this.text = new DeadlineText(regex, budget, System.nanoTime() + budget * 1000000L);
+      this.matcher = compile(regex, flags).matcher("");
+    }
+
+    // Input:
+    //      line
+    //      fromIndex - where the previous match of the line ended, 0 for a new line
+    // Description:
+    //      Looks for the first non-empty match in line starting at or after fromIndex. Returns
+    //      false if there is none, start() and end() give the match otherwise.
+
+    boolean find(String line, int fromIndex) {
+      matcher.reset(text.of(line));
+      for (int from = fromIndex; from <= line.length() && matcher.find(from); ) {
+        if (matcher.end() > matcher.start()) {
+          return true;
+        }
+        from = matcher.end() + 1;
+      }
+      return false;
+    }
+
+    int start() {
+      return matcher.start();
+    }
+
+    int end() {
+      return matcher.end();
+    }
+  }
+
+  // A line, or any other text, as seen by one Matcher, checking the deadline while it is read.
+  static final class DeadlineText implements CharSequence {
+    private final String regex;
+    private final long budget;
+    private final long deadline;
+    private CharSequence line = "";
+    private int reads;
+
+    DeadlineText(String regex, long budget, long deadline) {
+      this.regex = regex;
+      this.budget = budget;
+      this.deadline = deadline;
+    }
+
+    DeadlineText of(CharSequence line) {
+      this.line = line;
+      reads++;
+      checkDeadline();
+      return this;
+    }
+
+    @Override
+    public int length() {
+      return line.length();
+    }
+
+    @Override
+    public char charAt(int index) {
+      if (++reads >= CHECK_EVERY_CHARS) {
+        checkDeadline();
+      }
+      return line.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return line.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+      return line.toString();
+    }
+
+    private void checkDeadline() {
+      if (reads < CHECK_EVERY_CHARS) {
+        return;
+      }
+      reads = 0;
+      if (System.nanoTime() - deadline > 0) {
+        throw new SearchTimeoutException(
+            "Search for /" + regex + "/ took longer than " + budget + " ms");
+      }
+    }
+  }
+}
@@ -0,0 +1,158 @@
+package com.crio.qcharm.ds;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// What a SearchReplace changed: the number of occurrences replaced and the runs of
+// consecutive lines holding them, each from the start of its first line up to the end of its
+// last line after the replacement, sorted by line. While the replacement is computed, the
+// content of these lines before and after it is kept too, for the version to write them back
+// and for the EditHistory to put them back on undo.
+
+public class ReplaceResult {
+  private int replacements;
+  private List<CursorRange> ranges = new ArrayList<>();
+  // The lines of the ranges after the replacement, in order.
+  private final List<String> replacedLines = new ArrayList<>();
+  // The same lines before the replacement.
+  private final List<String> originalLines = new ArrayList<>();
+
+  public ReplaceResult(int replacements, List<CursorRange> ranges) {
+    this.replacements = replacements;
+    this.ranges = ranges;
+  }
+
+  public ReplaceResult() {
+  }
+
+  // Input:
+  //      lineNo - line of the file, after the lines given before
+  //      line, pattern, newPattern - pattern isn't empty
+  // Description:
+  //      Returns the line with every occurrence of the pattern replaced, like String.replace,
+  //      and records the line, or returns null if the line doesn't hold the pattern.
+
+  String replace(int lineNo, String line, String pattern, String newPattern) {
+    int index = line.indexOf(pattern);
+    if (index < 0) {
+      return null;
+    }
+    StringBuilder res = new StringBuilder(line.length() + newPattern.length());
+    int from = 0;
+    for (; index >= 0; index = line.indexOf(pattern, from)) {
+      res.append(line, from, index).append(newPattern);
+      from = index + pattern.length();
+      replacements++;
+    }
+    res.append(line, from, line.length());
+
+    String replaced = res.toString();
+    addRange(new CursorRange(new Cursor(lineNo, 0), new Cursor(lineNo, replaced.length())));
+    replacedLines.add(replaced);
+    originalLines.add(line);
+    return replaced;
+  }
+
+  // Input:
+  //      next - what was replaced in the lines after those of this result
+  // Description:
+  //      Adds next to this result, a range of next starting on the line after the last range
+  //      being merged with it.
+
+  void addAll(ReplaceResult next) {
+    replacements += next.replacements;
+    for (CursorRange range : next.ranges) {
+      addRange(range);
+    }
+    replacedLines.addAll(next.replacedLines);
+    originalLines.addAll(next.originalLines);
+  }
+
+  private void addRange(CursorRange range) {
+    CursorRange last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+    if (last != null && last.getEnd().getLineNo() == range.getStart().getLineNo() - 1) {
+      last.setEnd(range.getEnd());
+    } else {
+      ranges.add(new CursorRange(range.getStart(), range.getEnd()));
+    }
+  }
+
+  // The line numbers of the lines in the ranges, in order.
+  int[] lineNos() {
+    int[] res = new int[replacedLines.size()];
+    int i = 0;
+    for (CursorRange range : ranges) {
+      for (int lineNo = range.getStart().getLineNo(); lineNo <= range.getEnd().getLineNo();
+          lineNo++) {
+        res[i++] = lineNo;
+      }
+    }
+    return res;
+  }
+
+  // The content of the lines of lineNos() after the replacement.
+  List<String> replacedLines() {
+    return this.replacedLines;
+  }
+
+  // The content of the lines of lineNos() before the replacement.
+  List<String> originalLines() {
+    return this.originalLines;
+  }
+
+  public int getReplacements() {
+    return this.replacements;
+  }
+
+  public List<CursorRange> getRanges() {
+    return this.ranges;
+  }
+
+  public void setReplacements(int replacements) {
+    this.replacements = replacements;
+  }
+
+  public void setRanges(List<CursorRange> ranges) {
+    this.ranges = ranges;
+  }
+
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof ReplaceResult)) {
+      return false;
+    }
+    final ReplaceResult other = (ReplaceResult) o;
+    if (!other.canEqual((Object) this)) {
+      return false;
+    }
+    if (this.getReplacements() != other.getReplacements()) {
+      return false;
+    }
+    final Object this$ranges = this.getRanges();
+    final Object other$ranges = other.getRanges();
+    if (this$ranges == null ? other$ranges != null : !this$ranges.equals(other$ranges)) {
+      return false;
+    }
+    return true;
+  }
+
+  protected boolean canEqual(final Object other) {
+    return other instanceof ReplaceResult;
+  }
+
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    result = result * PRIME + this.getReplacements();
+    final Object $ranges = this.getRanges();
+    result = result * PRIME + ($ranges == null ? 43 : $ranges.hashCode());
+    return result;
+  }
+
+  public String toString() {
+    return "ReplaceResult(replacements=" + this.getReplacements() + ", ranges="
+        + this.getRanges() + ")";
+  }
+}
@@ -0,0 +1,184 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Results of the last searches of a file, keyed by pattern, kept with the version id they
+// were found in.
+//
+// Searching again after some edits doesn't scan the whole file: the LineChanges since the
+// cached version are replayed on the cached Cursors, dropping those on replaced lines and
+// moving those after them by the number of lines added or removed, and only the lines the
+// edits inserted are searched. Patterns never span lines, so the other lines hold the same
+// occurrences as before. When the changes aren't known anymore (too many edits, a
+// SearchReplace, another version object after a reload) the file is searched again.
+//
+// Searches of several threads share the cache. entries is access ordered, so that even a
+// get() changes it, and is only touched with its lock held, like the cache of RegexSearch; the
+// file is searched without it. The version must not be edited while search() reads it, see
+// BaseSourceFileHandler, so the LineChanges and the lines it reads are those of one version.
+
+final class SearchCache {
+
+  // Patterns kept.
+  static final int CACHE_SIZE = 8;
+
+  private final Map<String, Entry> entries =
+      new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+          return size() > CACHE_SIZE;
+        }
+      };
+
+  // Input:
+  //      sourceFile - the version to search
+  //      searchRequest
+  // Description:
+  //      Returns what sourceFile.getCursors(searchRequest) returns, reusing the results of
+  //      the last search for the same pattern.
+
+  List<Cursor> search(SourceFileVersion sourceFile, SearchRequest searchRequest) {
+    LineChanges lineChanges = sourceFile.getLineChanges();
+    long version = lineChanges.getVersion();
+    String key = keyOf(searchRequest);
+    Entry entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+    }
+    List<Cursor> cursors = null;
+    if (entry != null) {
+      List<LineChanges.Change> changes = lineChanges.since(entry.version);
+      if (changes != null) {
+        cursors = update(sourceFile, searchRequest, entry.cursors, changes);
+      }
+    }
+    if (cursors == null) {
+      cursors = sourceFile.getCursors(searchRequest);
+    }
+    synchronized (entries) {
+      entries.put(key, new Entry(version, cursors));
+    }
+    return new ArrayList<>(cursors);
+  }
+
+  // Input:
+  //      cursors - occurrences of the pattern in the version before the changes
+  //      changes - the edits since then, oldest first
+  // Description:
+  //      Returns the occurrences of the pattern in sourceFile.
+
+  static List<Cursor> update(SourceFileVersion sourceFile, SearchRequest searchRequest,
+      List<Cursor> cursors, List<LineChanges.Change> changes) {
+    if (changes.isEmpty()) {
+      return cursors;
+    }
+    // Ranges [from, to) of lines inserted by the changes, sorted and disjoint.
+    List<int[]> inserted = new ArrayList<>();
+    for (LineChanges.Change change : changes) {
+      cursors = move(cursors, change);
+      inserted = moveRanges(inserted, change);
+    }
+
+    List<Cursor> found = new ArrayList<>();
+    for (int[] range : inserted) {
+      Page page = sourceFile.getLinesFrom(new PageRequest(range[0], sourceFile.getFileName(),
+          range[1] - range[0], new Cursor(range[0], 0)));
+      for (Cursor cursor : ParallelSearch.search(
+          Collections.singletonList(page.getLines()), searchRequest)) {
+        found.add(new Cursor(cursor.getLineNo() + range[0], cursor.getColumnNo()));
+      }
+    }
+    return merge(cursors, found);
+  }
+
+  // Drops the cursors on the lines the change removed and moves those after them.
+  private static List<Cursor> move(List<Cursor> cursors, LineChanges.Change change) {
+    int end = change.startingLineNo + change.removed;
+    int delta = change.added - change.removed;
+    List<Cursor> res = new ArrayList<>(cursors.size());
+    for (Cursor cursor : cursors) {
+      int lineNo = cursor.getLineNo();
+      if (lineNo < change.startingLineNo) {
+        res.add(cursor);
+      } else if (lineNo >= end) {
+        res.add(delta == 0 ? cursor : new Cursor(lineNo + delta, cursor.getColumnNo()));
+      }
+    }
+    return res;
+  }
+
+  // Moves the inserted ranges through the change, and adds the lines it inserted.
+  private static List<int[]> moveRanges(List<int[]> ranges, LineChanges.Change change) {
+    int start = change.startingLineNo;
+    int end = start + change.removed;
+    int delta = change.added - change.removed;
+    List<int[]> res = new ArrayList<>(ranges.size() + 1);
+    boolean added = change.added == 0;
+    for (int[] range : ranges) {
+      int from = range[0] < start ? range[0] : range[0] >= end ? range[0] + delta : start;
+      int to = range[1] <= start ? range[1] : range[1] >= end ? range[1] + delta : start;
+      if (!added && from >= start) {
+        add(res, start, start + change.added);
+        added = true;
+      }
+      add(res, from, to);
+    }
+    if (!added) {
+      add(res, start, start + change.added);
+    }
+    return res;
+  }
+
+  // Appends [from, to) to sorted disjoint ranges ending no later than from, merging it with
+  // the last one when they touch.
+  private static void add(List<int[]> ranges, int from, int to) {
+    if (from >= to) {
+      return;
+    }
+    if (!ranges.isEmpty() && ranges.get(ranges.size() - 1)[1] >= from) {
+      int[] last = ranges.get(ranges.size() - 1);
+      last[1] = Math.max(last[1], to);
+    } else {
+      ranges.add(new int[] {from, to});
+    }
+  }
+
+  // Merges two lists of cursors on different lines, both sorted by line then column.
+  private static List<Cursor> merge(List<Cursor> a, List<Cursor> b) {
+    if (b.isEmpty()) {
+      return a;
+    }
+    List<Cursor> res = new ArrayList<>(a.size() + b.size());
+    int j = 0;
+    for (Cursor cursor : a) {
+      while (j < b.size() && b.get(j).getLineNo() < cursor.getLineNo()) {
+        res.add(b.get(j++));
+      }
+      res.add(cursor);
+    }
+    res.addAll(b.subList(j, b.size()));
+    return res;
+  }
+
+  private static String keyOf(SearchRequest searchRequest) {
+    return searchRequest.isRegex()
+        ? "regex/" + searchRequest.getFlags() + "/" + searchRequest.getPattern()
+        : "literal/" + searchRequest.getPattern();
+  }
+
+  private static final class Entry {
+    final long version;
+    final List<Cursor> cursors;
+
+    Entry(long version, List<Cursor> cursors) {
+      this.version = version;
+      this.cursors = cursors;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.crio.qcharm.ds;
+
+import java.util.List;
+
+// A page of the occurrences found by a paged search, in file order. continuationToken is
+// passed back to get the next page, it is null on the last one.
+
+public class SearchPage {
+  private List<Cursor> cursors;
+  private String continuationToken;
+
+  public SearchPage(List<Cursor> cursors, String continuationToken) {
+    this.cursors = cursors;
+    this.continuationToken = continuationToken;
+  }
+
+  public SearchPage() {
+  }
+
+  public List<Cursor> getCursors() {
+    return this.cursors;
+  }
+
+  public String getContinuationToken() {
+    return this.continuationToken;
+  }
+
+  public void setCursors(List<Cursor> cursors) {
+    this.cursors = cursors;
+  }
+
+  public void setContinuationToken(String continuationToken) {
+    this.continuationToken = continuationToken;
+  }
+
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof SearchPage)) {
+      return false;
+    }
+    final SearchPage other = (SearchPage) o;
+    if (!other.canEqual((Object) this)) {
+      return false;
+    }
+    final Object this$cursors = this.getCursors();
+    final Object other$cursors = other.getCursors();
+    if (this$cursors == null ? other$cursors != null : !this$cursors.equals(other$cursors)) {
+      return false;
+    }
+    final Object this$continuationToken = this.getContinuationToken();
+    final Object other$continuationToken = other.getContinuationToken();
+    if (this$continuationToken == null ? other$continuationToken != null
+        : !this$continuationToken.equals(other$continuationToken)) {
+      return false;
+    }
+    return true;
+  }
+
+  protected boolean canEqual(final Object other) {
+    return other instanceof SearchPage;
+  }
+
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    final Object $cursors = this.getCursors();
+    result = result * PRIME + ($cursors == null ? 43 : $cursors.hashCode());
+    final Object $continuationToken = this.getContinuationToken();
+    result = result * PRIME + ($continuationToken == null ? 43 : $continuationToken.hashCode());
+    return result;
+  }
+
+  public String toString() {
+    return "SearchPage(cursors=" + this.getCursors() + ", continuationToken="
+        + this.getContinuationToken() + ")";
+  }
+}
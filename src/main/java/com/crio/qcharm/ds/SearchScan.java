@@ -0,0 +1,213 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+// Search of a SourceFileVersion going through the file in order from a position, one
+// occurrence at a time, so that the first occurrences are found without searching the rest of
+// the file. It finds the same occurrences as getCursors(): overlapping ones for a literal
+// pattern, non-overlapping non-empty ones for a regex.
+//
+// page() returns the next occurrences of a paged search and a continuation token saying where
+// the following page starts, see ContinuationToken. findNext() and findPrevious() stop at the
+// first occurrence after or before a cursor, so they read only the lines up to it.
+
+final class SearchScan {
+
+  // Occurrences in a page whose request doesn't set maxResults.
+  static final int DEFAULT_PAGE_SIZE = 1000;
+
+  private final List<List<String>> segments;
+  // One of them is set, neither for an empty pattern.
+  private final PatternMatcher literal;
+  private final RegexSearch.LineMatcher regex;
+  private int segment;
+  private int segmentStart;
+  private int lineNo;
+  private int columnNo;
+  // The scan stops before this line.
+  private int endLineNo = Integer.MAX_VALUE;
+
+  // Input:
+  //      sourceFile - the version to search, which mustn't be edited during the scan
+  //      searchRequest - the pattern, literal or regex
+  //      from - position of the first occurrence that may be found
+  // Description:
+  //      Throws a PatternSyntaxException if the regex is invalid.
+
+  SearchScan(SourceFileVersion sourceFile, SearchRequest searchRequest, Cursor from) {
+    this.segments = sourceFile.getSegments();
+    String pattern = searchRequest.getPattern();
+    if (pattern.isEmpty()) {
+      this.literal = null;
+      this.regex = null;
+      this.segment = segments.size();
+    } else if (searchRequest.isRegex()) {
+      this.literal = null;
+      this.regex = new RegexSearch.LineMatcher(pattern, searchRequest.getFlags(),
+          searchRequest.getTimeoutMillis());
+    } else {
+      this.literal = SearchStrategy.forPattern(pattern).compile(pattern);
+      this.regex = null;
+    }
+    this.lineNo = Math.max(from.getLineNo(), 0);
+    this.columnNo = Math.max(from.getColumnNo(), 0);
+    while (segment < segments.size() && lineNo >= segmentStart + segments.get(segment).size()) {
+      segmentStart += segments.get(segment).size();
+      segment++;
+    }
+  }
+
+  // The next occurrence, null once the end of the file is reached.
+  Cursor next() {
+    for (; segment < segments.size(); segment++) {
+      List<String> lines = segments.get(segment);
+      for (; lineNo - segmentStart < lines.size(); lineNo++, columnNo = 0) {
+        if (lineNo >= endLineNo) {
+          return null;
+        }
+        String line = lines.get(lineNo - segmentStart);
+        if (literal != null) {
+          int col = literal.indexOf(line, columnNo);
+          if (col >= 0) {
+            columnNo = col + 1;
+            return new Cursor(lineNo, col);
+          }
+        } else if (regex.find(line, columnNo)) {
+          columnNo = regex.end();
+          return new Cursor(lineNo, regex.start());
+        }
+      }
+      segmentStart += lines.size();
+    }
+    return null;
+  }
+
+  // Stops the scan before line endLineNo.
+  void setEndLineNo(int endLineNo) {
+    this.endLineNo = endLineNo;
+  }
+
+  // Where the scan goes on from.
+  Cursor getPosition() {
+    return new Cursor(lineNo, columnNo);
+  }
+
+  // Input:
+  //      sourceFile
+  //      searchRequest - pattern, maxResults and the continuationToken of the previous page,
+  //          if any
+  // Description:
+  //      Returns the next maxResults occurrences of the pattern, and the token of the next
+  //      page unless the end of the file was reached. Throws an IllegalArgumentException for
+  //      a token that isn't one of this search and a StaleContinuationTokenException for one
+  //      older than the edits the version remembers.
+
+  static SearchPage page(SourceFileVersion sourceFile, SearchRequest searchRequest) {
+    LineChanges lineChanges = sourceFile.getLineChanges();
+    String continuationToken = searchRequest.getContinuationToken();
+    Cursor from = continuationToken == null || continuationToken.isEmpty() ? new Cursor(0, 0)
+        : ContinuationToken.decode(continuationToken, searchRequest).positionIn(lineChanges);
+    int maxResults = searchRequest.getMaxResults() > 0 ? searchRequest.getMaxResults()
+        : DEFAULT_PAGE_SIZE;
+
+    SearchScan scan = new SearchScan(sourceFile, searchRequest, from);
+    List<Cursor> cursors = new ArrayList<>();
+    Cursor cursor = null;
+    while (cursors.size() < maxResults && (cursor = scan.next()) != null) {
+      cursors.add(cursor);
+    }
+    String next = cursor == null ? null : new ContinuationToken(lineChanges.getVersion(),
+        scan.getPosition(), searchRequest).encode();
+    return new SearchPage(cursors, next);
+  }
+
+  // Input:
+  //      sourceFile
+  //      searchRequest - the pattern, and whether to wrap around
+  //      from - position of the cursor
+  // Description:
+  //      Returns the first occurrence starting at or after from. With wrapAround, if there is
+  //      none up to the end of the file the search goes on from its start up to from. Returns
+  //      null if nothing is found.
+
+  static Cursor findNext(SourceFileVersion sourceFile, SearchRequest searchRequest,
+      Cursor from) {
+    Cursor cursor = new SearchScan(sourceFile, searchRequest, from).next();
+    if (cursor == null && searchRequest.isWrapAround()) {
+      SearchScan scan = new SearchScan(sourceFile, searchRequest, new Cursor(0, 0));
+      scan.setEndLineNo(from.getLineNo() + 1);
+      cursor = scan.next();
+      if (cursor != null && cursor.getLineNo() == from.getLineNo()
+          && cursor.getColumnNo() >= from.getColumnNo()) {
+        cursor = null;
+      }
+    }
+    return cursor;
+  }
+
+  // Input:
+  //      sourceFile
+  //      searchRequest - the pattern, and whether to wrap around
+  //      from - position of the cursor
+  // Description:
+  //      Returns the last occurrence starting before from. With wrapAround, if there is none
+  //      back to the start of the file the search goes on from its end back to from. Returns
+  //      null if nothing is found.
+
+  static Cursor findPrevious(SourceFileVersion sourceFile, SearchRequest searchRequest,
+      Cursor from) {
+    Cursor cursor = findLast(sourceFile, searchRequest, new Cursor(0, 0), from);
+    if (cursor == null && searchRequest.isWrapAround()) {
+      cursor = findLast(sourceFile, searchRequest, from,
+          new Cursor(Integer.MAX_VALUE, Integer.MAX_VALUE));
+    }
+    return cursor;
+  }
+
+  // The last occurrence starting at or after notBefore and before before, reading the lines
+  // from before back to notBefore.
+  private static Cursor findLast(SourceFileVersion sourceFile, SearchRequest searchRequest,
+      Cursor notBefore, Cursor before) {
+    String pattern = searchRequest.getPattern();
+    if (pattern.isEmpty() || before.getLineNo() < 0) {
+      return null;
+    }
+    RegexSearch.LineMatcher regex = !searchRequest.isRegex() ? null
+        : new RegexSearch.LineMatcher(pattern, searchRequest.getFlags(),
+            searchRequest.getTimeoutMillis());
+    List<List<String>> segments = sourceFile.getSegments();
+    int segment = 0;
+    int segmentStart = 0;
+    while (segment < segments.size() - 1
+        && before.getLineNo() >= segmentStart + segments.get(segment).size()) {
+      segmentStart += segments.get(segment).size();
+      segment++;
+    }
+    int lineNo = segments.isEmpty() ? -1
+        : Math.min(before.getLineNo(), segmentStart + segments.get(segment).size() - 1);
+
+    for (; lineNo >= Math.max(notBefore.getLineNo(), 0); lineNo--) {
+      while (lineNo < segmentStart) {
+        segment--;
+        segmentStart -= segments.get(segment).size();
+      }
+      String line = segments.get(segment).get(lineNo - segmentStart);
+      int limit = lineNo == before.getLineNo() ? before.getColumnNo() : line.length() + 1;
+      int col = -1;
+      if (regex == null) {
+        col = limit > 0 ? line.lastIndexOf(pattern, limit - 1) : -1;
+      } else {
+        for (int from = 0; regex.find(line, from) && regex.start() < limit;
+            from = regex.end()) {
+          col = regex.start();
+        }
+      }
+      if (col >= 0 && (lineNo > notBefore.getLineNo() || col >= notBefore.getColumnNo())) {
+        return new Cursor(lineNo, col);
+      }
+    }
+    return null;
+  }
+}
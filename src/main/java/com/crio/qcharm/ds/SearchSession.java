@@ -0,0 +1,103 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+// Search-as-you-type: the literal patterns of the queries of one search box, as they are
+// typed, with the occurrences found for each of them in one version of the file.
+//
+// An occurrence of a pattern is an occurrence of any of its prefixes, so when a query extends
+// the previous one its occurrences are among the previous ones, and only the lines holding
+// those are read to check which still match. The results for every shorter query are kept
+// too, so deleting the last chars of the query goes back to results already known. Edits
+// of the file in between are replayed on all of them like SearchCache does. Anything else (an
+// unrelated query, a regex, edits the LineChanges don't remember) searches the whole file
+// again.
+//
+// The session of a handler is shared by all its requests, and the queries typed in a search
+// box come in requests that overlap. search() is synchronized: each query is answered from
+// the results of the previous one once it is complete, never from a half updated list.
+
+final class SearchSession {
+
+  private final List<String> patterns = new ArrayList<>();
+  // cursors.get(i) are the occurrences of patterns.get(i), and patterns.get(i) is a prefix
+  // of patterns.get(i + 1).
+  private final List<List<Cursor>> cursors = new ArrayList<>();
+  private long version;
+
+  // Input:
+  //      sourceFile - version searched
+  //      searchRequest - the current query
+  //      fullSearch - searches the whole file
+  // Description:
+  //      Returns the occurrences of the pattern of the query, like fullSearch would.
+
+  synchronized List<Cursor> search(SourceFileVersion sourceFile, SearchRequest searchRequest,
+      Function<SearchRequest, List<Cursor>> fullSearch) {
+    String pattern = searchRequest.getPattern();
+    long current = sourceFile.getLineChanges().getVersion();
+    List<LineChanges.Change> changes = sourceFile.getLineChanges().since(version);
+    if (searchRequest.isRegex() || pattern.isEmpty() || changes == null) {
+      patterns.clear();
+      cursors.clear();
+    }
+    // Forget the queries that aren't prefixes of this one.
+    while (!patterns.isEmpty() && !pattern.startsWith(patterns.get(patterns.size() - 1))) {
+      patterns.remove(patterns.size() - 1);
+      cursors.remove(cursors.size() - 1);
+    }
+    if (changes != null && !changes.isEmpty()) {
+      for (int i = 0; i < patterns.size(); i++) {
+        SearchRequest previous =
+            new SearchRequest(0, patterns.get(i), searchRequest.getFileName());
+        cursors.set(i, SearchCache.update(sourceFile, previous, cursors.get(i), changes));
+      }
+    }
+
+    version = current;
+    if (patterns.isEmpty()) {
+      List<Cursor> found = fullSearch.apply(searchRequest);
+      if (!searchRequest.isRegex() && !pattern.isEmpty()) {
+        patterns.add(pattern);
+        cursors.add(found);
+      }
+      return new ArrayList<>(found);
+    }
+    List<Cursor> found = cursors.get(cursors.size() - 1);
+    if (!patterns.get(patterns.size() - 1).equals(pattern)) {
+      found = filter(sourceFile, found, pattern);
+      patterns.add(pattern);
+      cursors.add(found);
+    }
+    return new ArrayList<>(found);
+  }
+
+  // Number of queries whose results are kept.
+  synchronized int getDepth() {
+    return patterns.size();
+  }
+
+  // The candidates, in file order, at which pattern starts.
+  private static List<Cursor> filter(SourceFileVersion sourceFile, List<Cursor> candidates,
+      String pattern) {
+    List<Cursor> res = new ArrayList<>();
+    List<List<String>> segments = sourceFile.getSegments();
+    int segment = 0;
+    int segmentStart = 0;
+    for (Cursor candidate : candidates) {
+      int lineNo = candidate.getLineNo();
+      while (lineNo >= segmentStart + segments.get(segment).size()) {
+        segmentStart += segments.get(segment).size();
+        segment++;
+      }
+      String line = segments.get(segment).get(lineNo - segmentStart);
+      if (line.startsWith(pattern, candidate.getColumnNo())) {
+        res.add(candidate);
+      }
+    }
+    return res;
+  }
+}
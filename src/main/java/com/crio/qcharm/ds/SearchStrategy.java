@@ -0,0 +1,259 @@
+package com.crio.qcharm.ds;
+
+import java.util.Arrays;
+
+// The string search algorithms available to PatternSearchAlgorithm and ParallelSearch.
+//
+// Every strategy compiles a pattern once into a PatternMatcher, which then finds occurrences
+// in any number of lines. forPattern() picks the strategy for a pattern (see
+// SearchBenchmark.searchStrategies for the measurements):
+//
+//   - INDEX_OF by default. String.indexOf is a JIT intrinsic that compares several chars per
+//     instruction. On lines of source code it is the fastest strategy for identifiers and
+//     within a few percent of Horspool for long patterns, without Horspool's collapse on
+//     near matches. Two-Way takes two to five times as long as indexOf on those lines, even
+//     for patterns like "=====" or "0000 0000".
+//   - ADAPTIVE for patterns longer than SHORT_PATTERN made of fewer than FEW_CHARS distinct
+//     chars, like "0000...0001". Lines of at least LONG_LINE chars are searched with Two-Way,
+//     the others with indexOf. Text that nearly matches such a pattern everywhere, like a long
+//     line of "0000...", is the worst case of indexOf, O(n * m), while Two-Way stays linear
+//     with constant extra space. That is the only case where Two-Way wins, and it needs lines
+//     much longer than lines of code.
+//
+// NAIVE and KMP are the original algorithms. HORSPOOL and TWO_WAY are kept for comparison, and
+// TWO_WAY for ADAPTIVE.
+
+enum SearchStrategy {
+
+  NAIVE {
+    @Override
+    PatternMatcher compile(String pattern) {
+      return (text, fromIndex) -> {
+        int m = pattern.length();
+        for (int i = Math.max(fromIndex, 0); i <= text.length() - m; i++) {
+          int j = 0;
+          while (j < m && text.charAt(i + j) == pattern.charAt(j)) {
+            j++;
+          }
+          if (j == m) {
+            return i;
+          }
+        }
+        return -1;
+      };
+    }
+  },
+
+  KMP {
+    @Override
+    PatternMatcher compile(String pattern) {
+      int[] lps = computeLPSArray(pattern);
+      return (text, fromIndex) -> {
+        int m = pattern.length();
+        int n = text.length();
+        int i = Math.max(fromIndex, 0);
+        int j = 0;
+        while (i < n) {
+          if (text.charAt(i) == pattern.charAt(j)) {
+            i++;
+            j++;
+            if (j == m) {
+              return i - m;
+            }
+          } else if (j != 0) {
+            j = lps[j - 1];
+          } else {
+            i++;
+          }
+        }
+        return -1;
+      };
+    }
+  },
+
+  HORSPOOL {
+    @Override
+    PatternMatcher compile(String pattern) {
+      int m = pattern.length();
+      // Shift by the last char of the window. Chars are hashed on their low byte; chars
+      // sharing a slot keep the smallest of their shifts, which is always safe.
+      int[] shift = new int[256];
+      Arrays.fill(shift, m);
+      for (int i = 0; i < m - 1; i++) {
+        shift[pattern.charAt(i) & 0xFF] = m - 1 - i;
+      }
+      char last = pattern.charAt(m - 1);
+      return (text, fromIndex) -> {
+        for (int i = Math.max(fromIndex, 0); i <= text.length() - m; ) {
+          char c = text.charAt(i + m - 1);
+          if (c == last && text.regionMatches(i, pattern, 0, m - 1)) {
+            return i;
+          }
+          i += shift[c & 0xFF];
+        }
+        return -1;
+      };
+    }
+  },
+
+  TWO_WAY {
+    @Override
+    PatternMatcher compile(String pattern) {
+      return new TwoWayMatcher(pattern);
+    }
+  },
+
+  INDEX_OF {
+    @Override
+    PatternMatcher compile(String pattern) {
+      return (text, fromIndex) -> text.indexOf(pattern, fromIndex);
+    }
+  },
+
+  ADAPTIVE {
+    @Override
+    PatternMatcher compile(String pattern) {
+      PatternMatcher twoWay = TWO_WAY.compile(pattern);
+      return (text, fromIndex) -> text.length() >= LONG_LINE
+          ? twoWay.indexOf(text, fromIndex) : text.indexOf(pattern, fromIndex);
+    }
+  };
+
+  // Longest pattern always searched with String.indexOf.
+  static final int SHORT_PATTERN = 16;
+  // Longer patterns with fewer distinct chars than this are searched with ADAPTIVE.
+  static final int FEW_CHARS = 4;
+  // Shortest line ADAPTIVE searches with Two-Way.
+  static final int LONG_LINE = 1024;
+
+  // Input:
+  //      pattern - not empty
+  // Description:
+  //      Preprocesses the pattern for this algorithm.
+
+  abstract PatternMatcher compile(String pattern);
+
+  static SearchStrategy forPattern(String pattern) {
+    if (pattern.length() <= SHORT_PATTERN) {
+      return INDEX_OF;
+    }
+    return distinctChars(pattern, FEW_CHARS) < FEW_CHARS ? ADAPTIVE : INDEX_OF;
+  }
+
+  // Number of distinct chars in the pattern, counting stops at limit.
+  private static int distinctChars(String pattern, int limit) {
+    StringBuilder seen = new StringBuilder(limit);
+    for (int i = 0; i < pattern.length() && seen.length() < limit; i++) {
+      if (seen.indexOf(String.valueOf(pattern.charAt(i))) < 0) {
+        seen.append(pattern.charAt(i));
+      }
+    }
+    return seen.length();
+  }
+
+  private static int[] computeLPSArray(String pattern) {
+    int m = pattern.length();
+    int[] lps = new int[m];
+    int i = 1;
+    int j = 0;
+    while (i < m) {
+      if (pattern.charAt(i) == pattern.charAt(j)) {
+        j++;
+        lps[i] = j;
+        i++;
+      } else if (j != 0) {
+        j = lps[j - 1];
+      } else {
+        i++;
+      }
+    }
+    return lps;
+  }
+
+  // Crochemore-Perrin Two-Way matching. The pattern is cut at a critical factorization
+  // x = x[0..ell] x[ell+1..m), the right part is matched left to right, then the left part
+  // right to left. When the pattern is periodic, the prefix known to match after a shift by
+  // the period is remembered and not compared again, which keeps the search linear.
+  private static final class TwoWayMatcher implements PatternMatcher {
+    private final String pattern;
+    private final int ell;
+    private final int period;
+    private final boolean periodic;
+
+    TwoWayMatcher(String pattern) {
+      this.pattern = pattern;
+      int m = pattern.length();
+      int[] lesser = maximalSuffix(pattern, false);
+      int[] greater = maximalSuffix(pattern, true);
+      int[] critical = lesser[0] > greater[0] ? lesser : greater;
+      this.ell = critical[0];
+      this.periodic = pattern.regionMatches(0, pattern, critical[1], ell + 1);
+      this.period = periodic ? critical[1] : Math.max(ell + 1, m - ell - 1) + 1;
+    }
+
+    @Override
+    public int indexOf(String text, int fromIndex) {
+      int m = pattern.length();
+      int n = text.length();
+      int j = Math.max(fromIndex, 0);
+      // Length - 1 of the prefix already known to match at j, only used when periodic.
+      int memory = -1;
+      while (j <= n - m) {
+        int i = Math.max(ell, memory) + 1;
+        while (i < m && pattern.charAt(i) == text.charAt(i + j)) {
+          i++;
+        }
+        if (i < m) {
+          j += i - ell;
+          memory = -1;
+          continue;
+        }
+        int stop = periodic ? memory : -1;
+        i = ell;
+        while (i > stop && pattern.charAt(i) == text.charAt(i + j)) {
+          i--;
+        }
+        if (i <= stop) {
+          return j;
+        }
+        j += period;
+        if (periodic) {
+          memory = m - period - 1;
+        }
+      }
+      return -1;
+    }
+
+    // Start - 1 and period of the maximal suffix of x, for the reverse order of chars if
+    // reverse is set.
+    private static int[] maximalSuffix(String x, boolean reverse) {
+      int m = x.length();
+      int ms = -1;
+      int j = 0;
+      int k = 1;
+      int p = 1;
+      while (j + k < m) {
+        char a = x.charAt(j + k);
+        char b = x.charAt(ms + k);
+        if (reverse ? a > b : a < b) {
+          j += k;
+          k = 1;
+          p = j - ms;
+        } else if (a == b) {
+          if (k != p) {
+            k++;
+          } else {
+            j += p;
+            k = 1;
+          }
+        } else {
+          ms = j;
+          j = ms + 1;
+          k = 1;
+          p = 1;
+        }
+      }
+      return new int[] {ms, p};
+    }
+  }
+}
@@ -0,0 +1,10 @@
+package com.crio.qcharm.ds;
+
+// Thrown when a search runs past the time budget of its request.
+
+public class SearchTimeoutException extends RuntimeException {
+
+  public SearchTimeoutException(String message) {
+    super(message);
+  }
+}
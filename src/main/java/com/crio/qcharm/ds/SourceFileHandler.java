@@ -1,10 +1,13 @@
 package com.crio.qcharm.ds;
 
 import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.MultiSearchRequest;
 import com.crio.qcharm.request.PageRequest;
 import com.crio.qcharm.request.SearchReplaceRequest;
 import com.crio.qcharm.request.SearchRequest;
 import com.crio.qcharm.request.UndoRequest;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 public interface SourceFileHandler {
@@ -21,6 +24,24 @@ public interface SourceFileHandler {
 
   List<Cursor> search(SearchRequest searchRequest);
 
+  SearchPage searchPage(SearchRequest searchRequest);
+
+  CursorArray searchPacked(SearchRequest searchRequest);
+
+  List<Cursor> searchAsYouType(SearchRequest searchRequest);
+
+  Cursor findNext(SearchRequest searchRequest, Cursor from);
+
+  Cursor findPrevious(SearchRequest searchRequest, Cursor from);
+
+  ViewportSearch searchViewport(SearchRequest searchRequest, PageRequest pageRequest);
+
+  List<FuzzyMatch> searchFuzzy(SearchRequest searchRequest);
+
+  List<CursorRange> searchMultiline(SearchRequest searchRequest);
+
+  List<PatternCursor> searchAll(MultiSearchRequest multiSearchRequest);
+
 
 
   SourceFileVersion cloneObj(SourceFileVersion ver);
@@ -31,13 +52,27 @@ public interface SourceFileHandler {
 
   void editLines(EditRequest editRequest);
 
-  void searchReplace(SearchReplaceRequest searchReplaceRequest);
+  ReplaceResult searchReplace(SearchReplaceRequest searchReplaceRequest);
 
 
   void undo(UndoRequest undoRequest);
 
   void redo(UndoRequest undoRequest);
 
+  void setHistoryLimits(int maxEntries, long maxBytes, long coalesceMillis);
+
+  HistorySize getHistorySize();
+
+  void setTrigramIndex(boolean enabled);
+
+  long getSearchIndexBytes();
+
+  void setJournal(EditJournal journal);
+
+  void spillTo(Path path) throws IOException;
+
+  void reloadFrom(Path path) throws IOException;
+
   Page getCursorPage();
 
 }
@@ -0,0 +1,31 @@
+package com.crio.qcharm.ds;
+
+// Same behaviour as SourceFileHandlerArrayListImpl, but the file is held in a
+// SourceFileVersionArenaImpl to keep the per-line memory overhead low.
+
+public class SourceFileHandlerArenaImpl extends SourceFileHandlerArrayListImpl {
+
+  public SourceFileHandlerArenaImpl(String fileName) {
+    super(fileName);
+  }
+
+  // Input:
+  //      upload - upload whose body has been fully received
+  // Description:
+  //      Ends the upload and loads the uploaded lines, without copying them, then returns the
+  //      first 50 lines.
+
+  public Page loadFile(FileUpload upload) {
+    return loadSourceFileVersion(upload.finish());
+  }
+
+  @Override
+  protected SourceFileVersion createSourceFileVersion(FileInfo fileInfo) {
+    return new SourceFileVersionArenaImpl(fileInfo);
+  }
+
+  @Override
+  public SourceFileVersion cloneObj(SourceFileVersion ver) {
+    return new SourceFileVersionArenaImpl((SourceFileVersionArenaImpl) ver);
+  }
+}
@@ -0,0 +1,33 @@
+package com.crio.qcharm.ds;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// Handler for files that are opened straight from the local disk with loadFile(Path).
+// Files uploaded through loadFile(FileInfo) are kept in a piece table like
+// SourceFileHandlerPieceTableImpl does.
+
+public class SourceFileHandlerMappedImpl extends SourceFileHandlerPieceTableImpl {
+
+  public SourceFileHandlerMappedImpl(String fileName) {
+    super(fileName);
+  }
+
+  // Input:
+  //      path - file on the local disk
+  // Description:
+  //      Maps the file into memory and returns its first 50 lines. Only those lines are read
+  //      before returning, the rest of the file is indexed in the background.
+
+  public Page loadFile(Path path) throws IOException {
+    return loadSourceFileVersion(new SourceFileVersionMappedImpl(path));
+  }
+
+  @Override
+  public SourceFileVersion cloneObj(SourceFileVersion ver) {
+    if (ver instanceof SourceFileVersionMappedImpl) {
+      return new SourceFileVersionMappedImpl((SourceFileVersionMappedImpl) ver);
+    }
+    return super.cloneObj(ver);
+  }
+}
@@ -0,0 +1,22 @@
+package com.crio.qcharm.ds;
+
+// Same behaviour as SourceFileHandlerArrayListImpl, but the file is held in a
+// SourceFileVersionPersistentImpl. cloneObj() shares the tree instead of copying the lines, so
+// the snapshots on the undo and redo stacks only cost what the edits changed.
+
+public class SourceFileHandlerPersistentImpl extends SourceFileHandlerArrayListImpl {
+
+  public SourceFileHandlerPersistentImpl(String fileName) {
+    super(fileName);
+  }
+
+  @Override
+  protected SourceFileVersion createSourceFileVersion(FileInfo fileInfo) {
+    return new SourceFileVersionPersistentImpl(fileInfo);
+  }
+
+  @Override
+  public SourceFileVersion cloneObj(SourceFileVersion ver) {
+    return new SourceFileVersionPersistentImpl((SourceFileVersionPersistentImpl) ver);
+  }
+}
@@ -0,0 +1,27 @@
+package com.crio.qcharm.ds;
+
+// Same behaviour as SourceFileHandlerArrayListImpl, but the file is held in a
+// SourceFileVersionPieceTableImpl so that edits on large files don't rewrite every line.
+
+public class SourceFileHandlerPieceTableImpl extends SourceFileHandlerArrayListImpl {
+
+  public SourceFileHandlerPieceTableImpl(String fileName) {
+    super(fileName);
+  }
+
+  @Override
+  protected SourceFileVersion createSourceFileVersion(FileInfo fileInfo) {
+    return new SourceFileVersionPieceTableImpl(fileInfo);
+  }
+
+  // Input:
+  //      Object of type SourceFileVersionPieceTableImpl
+  // Description:
+  //      make a copy of the the given SourceFileVersionPieceTableImpl object return new object.
+  //      Only the piece list is copied, the line buffers are shared.
+
+  @Override
+  public SourceFileVersion cloneObj(SourceFileVersion ver) {
+    return new SourceFileVersionPieceTableImpl((SourceFileVersionPieceTableImpl) ver);
+  }
+}
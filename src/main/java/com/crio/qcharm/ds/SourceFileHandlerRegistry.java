@@ -0,0 +1,372 @@
+package com.crio.qcharm.ds;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The SourceFileHandlers of all the files open on the server, keyed by session and file name.
+//
+// Handlers are kept in least-recently-used order. Whenever the files in memory are estimated
+// to take more than memoryBudget bytes, the least recently used handlers spill their file and
+// undo/redo steps to spillDirectory (see SourceFileHandler.spillTo()) until the budget is met
+// again. The handler objects themselves stay in the registry; get() reloads a spilled handler
+// before returning it, which may spill others in turn. The most recently used handler is never
+// spilled, even if it alone exceeds the budget.
+//
+// A handler returned by get() may be spilled by the next put() or get() of another file, even
+// while a request is still using it. Requests use lease() instead: a leased handler isn't
+// spilled until the lease is closed, the budget being met again by the first put() or get()
+// after that.
+//
+// The victims are picked under the lock of the registry, but spilled and reloaded without it,
+// so that the other files can be used meanwhile. Until it is done the entry of the file is
+// marked as moving: get(), lease() and remove() of that file wait for it.
+//
+// The size of a file is estimated when it is put or reloaded, from the number of its lines and
+// the length of a sample of them, its undo history is taken as it is at the time of the check.
+
+public class SourceFileHandlerRegistry {
+
+  private static final String SPILL_SUFFIX = ".spill";
+  // Lines read by estimate() for the average length of a line.
+  private static final int SAMPLE_LINES = 256;
+
+  private static class Entry {
+    private final String key;
+    private final String fileName;
+    private final SourceFileHandler handler;
+    private long fileBytes;
+    private Path spillFile;
+    // Leases not closed yet.
+    private int leases;
+    // Being spilled or reloaded by a thread not holding the lock of the registry.
+    private boolean moving;
+
+    Entry(String key, String fileName, SourceFileHandler handler) {
+      this.key = key;
+      this.fileName = fileName;
+      this.handler = handler;
+    }
+
+    long bytes() {
+      return fileBytes + handler.getHistorySize().getBytes();
+    }
+  }
+
+  // Use of the handler of a file by a request: the handler stays in memory until it is closed.
+  public final class Lease implements AutoCloseable {
+    private final Entry entry;
+    private boolean closed;
+
+    private Lease(Entry entry) {
+      this.entry = entry;
+    }
+
+    public SourceFileHandler getHandler() {
+      return entry.handler;
+    }
+
+    @Override
+    public void close() {
+      synchronized (SourceFileHandlerRegistry.this) {
+        if (!closed) {
+          closed = true;
+          entry.leases--;
+        }
+      }
+    }
+  }
+
+  private final Path spillDirectory;
+  private final long memoryBudget;
+
+  // Access order: the eldest entry is the least recently used one.
+  private final LinkedHashMap<String, Entry> resident = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<String, Entry> spilled = new HashMap<>();
+
+  // Spill files left by an earlier run of the server are deleted.
+  public SourceFileHandlerRegistry(Path spillDirectory, long memoryBudget) throws IOException {
+    this.spillDirectory = Files.createDirectories(spillDirectory);
+    this.memoryBudget = memoryBudget;
+    try (DirectoryStream<Path> files =
+        Files.newDirectoryStream(spillDirectory, "*" + SPILL_SUFFIX)) {
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  // Input:
+  //      sessionId, fileName, handler - handler with fileName loaded
+  // Description:
+  //      Registers the handler as the most recently used one, replacing the handler the
+  //      session had for the same file name.
+
+  public void put(String sessionId, String fileName, SourceFileHandler handler)
+      throws IOException {
+    List<Entry> victims;
+    synchronized (this) {
+      remove(sessionId, fileName);
+      String key = key(sessionId, fileName);
+      Entry entry = new Entry(key, fileName, handler);
+      entry.fileBytes = estimate(handler.getLatestSourceFileVersion(fileName));
+      resident.put(key, entry);
+      victims = pickVictims();
+    }
+    spill(victims);
+  }
+
+  // Input:
+  //      sessionId, fileName
+  // Description:
+  //      Returns the handler of the file, reloading it from the disk if it was spilled, or null
+  //      if the session has no such file open.
+
+  public SourceFileHandler get(String sessionId, String fileName) throws IOException {
+    Entry entry = load(key(sessionId, fileName), false);
+    return entry == null ? null : entry.handler;
+  }
+
+  // Input:
+  //      sessionId, fileName
+  // Description:
+  //      Same as get(), the handler staying in memory until the returned lease is closed.
+  //      Returns null if the session has no such file open.
+
+  public Lease lease(String sessionId, String fileName) throws IOException {
+    Entry entry = load(key(sessionId, fileName), true);
+    return entry == null ? null : new Lease(entry);
+  }
+
+  // Forgets the handler of the file, returns null if the session had no such file open. A
+  // spilled handler is returned without being reloaded.
+
+  public synchronized SourceFileHandler remove(String sessionId, String fileName)
+      throws IOException {
+    String key = key(sessionId, fileName);
+    Entry entry = settled(key);
+    if (entry == null) {
+      return null;
+    }
+    if (resident.remove(key) == null) {
+      spilled.remove(key);
+      Files.deleteIfExists(entry.spillFile);
+    }
+    return entry.handler;
+  }
+
+  public synchronized int getResidentCount() {
+    return resident.size();
+  }
+
+  public synchronized int getSpilledCount() {
+    return spilled.size();
+  }
+
+  // Estimated bytes taken by the files in memory and their undo histories.
+
+  public synchronized long getResidentBytes() {
+    long bytes = 0;
+    for (Entry entry : resident.values()) {
+      bytes += entry.bytes();
+    }
+    return bytes;
+  }
+
+  // Picks the least recently used handlers to spill until the budget is met, and marks them as
+  // moving. Leased handlers are skipped, and so are mapped files: their lines aren't on the
+  // heap, and spilling them would copy the whole file. Handlers already moving are on their way
+  // out, their bytes aren't counted.
+  private List<Entry> pickVictims() {
+    long bytes = 0;
+    for (Entry entry : resident.values()) {
+      if (!entry.moving) {
+        bytes += entry.bytes();
+      }
+    }
+    List<Entry> victims = new ArrayList<>();
+    Iterator<Entry> eldest = resident.values().iterator();
+    for (int candidates = resident.size() - 1; bytes > memoryBudget && candidates > 0;
+        candidates--) {
+      Entry entry = eldest.next();
+      if (entry.moving || entry.leases > 0 || isMapped(entry)) {
+        continue;
+      }
+      entry.moving = true;
+      victims.add(entry);
+      bytes -= entry.bytes();
+    }
+    return victims;
+  }
+
+  // Spills the victims picked by pickVictims(), called without holding the lock. A victim which
+  // couldn't be spilled stays in memory.
+  private void spill(List<Entry> victims) throws IOException {
+    int next = 0;
+    try {
+      for (; next < victims.size(); next++) {
+        Entry entry = victims.get(next);
+        Path spillFile = Files.createTempFile(spillDirectory, "handler-", SPILL_SUFFIX);
+        try {
+          entry.handler.spillTo(spillFile);
+        } catch (IOException | RuntimeException e) {
+          Files.deleteIfExists(spillFile);
+          throw e;
+        }
+        spilled(entry, spillFile);
+      }
+    } finally {
+      for (; next < victims.size(); next++) {
+        spilled(victims.get(next), null);
+      }
+    }
+  }
+
+  // Ends the spill of the entry: it joins the spilled handlers if spillFile isn't null, stays
+  // in memory otherwise.
+  private synchronized void spilled(Entry entry, Path spillFile) {
+    entry.moving = false;
+    if (spillFile != null) {
+      resident.remove(entry.key);
+      entry.spillFile = spillFile;
+      spilled.put(entry.key, entry);
+    }
+    notifyAll();
+  }
+
+  private static boolean isMapped(Entry entry) {
+    SourceFileVersion sourceFile = SourceFileVersionIndexedImpl.withIndex(
+        entry.handler.getLatestSourceFileVersion(entry.fileName), false);
+    return sourceFile instanceof SourceFileVersionMappedImpl;
+  }
+
+  // The entry of the key, reloaded if it was spilled, null if there is none. The entry gets a
+  // lease if leased is true.
+  private Entry load(String key, boolean leased) throws IOException {
+    Entry entry;
+    Path spillFile;
+    synchronized (this) {
+      entry = settled(key);
+      if (entry == null) {
+        return null;
+      }
+      if (entry.spillFile == null) {
+        if (leased) {
+          entry.leases++;
+        }
+        return entry;
+      }
+      entry.moving = true;
+      spillFile = entry.spillFile;
+    }
+    boolean reloaded = false;
+    try {
+      entry.handler.reloadFrom(spillFile);
+      entry.fileBytes = estimate(entry.handler.getLatestSourceFileVersion(entry.fileName));
+      reloaded = true;
+    } finally {
+      if (!reloaded) {
+        synchronized (this) {
+          entry.moving = false;
+          notifyAll();
+        }
+      }
+    }
+    List<Entry> victims;
+    synchronized (this) {
+      entry.moving = false;
+      entry.spillFile = null;
+      spilled.remove(key);
+      resident.put(key, entry);
+      if (leased) {
+        entry.leases++;
+      }
+      notifyAll();
+      victims = pickVictims();
+    }
+    try {
+      Files.deleteIfExists(spillFile);
+    } finally {
+      spill(victims);
+    }
+    return entry;
+  }
+
+  // The entry of the key once it isn't moving anymore, null if there is none. Called with the
+  // lock held, which is released while waiting. A resident entry becomes the most recently
+  // used one.
+  private Entry settled(String key) throws InterruptedIOException {
+    while (true) {
+      Entry entry = resident.containsKey(key) ? resident.get(key) : spilled.get(key);
+      if (entry == null || !entry.moving) {
+        return entry;
+      }
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while " + entry.fileName + " was moving");
+      }
+    }
+  }
+
+  private static String key(String sessionId, String fileName) {
+    return sessionId + '\0' + fileName;
+  }
+
+  // Rough heap footprint of the lines of a version, with the same per-line cost as the undo
+  // history's estimate. The lines of a mapped file live in the page cache, only the lines typed
+  // into it are counted, an arena knows its exact size. A trigram index is added to the lines
+  // it indexes. Only the sizes of the segments and SAMPLE_LINES lines spread over them are
+  // read, nothing is copied.
+  static long estimate(SourceFileVersion sourceFile) {
+    if (sourceFile instanceof SourceFileVersionIndexedImpl) {
+      SourceFileVersionIndexedImpl indexed = (SourceFileVersionIndexedImpl) sourceFile;
+      return estimate(indexed.getSourceFile()) + indexed.getIndexMemoryUsage();
+    }
+    if (sourceFile == null) {
+      return 0;
+    }
+    if (sourceFile instanceof SourceFileVersionMappedImpl) {
+      List<String> typed = ((SourceFileVersionMappedImpl) sourceFile).getTypedLines();
+      return estimate(Collections.singletonList(typed));
+    }
+    if (sourceFile instanceof SourceFileVersionArenaImpl) {
+      return ((SourceFileVersionArenaImpl) sourceFile).getMemoryUsage();
+    }
+    return estimate(sourceFile.getSegments());
+  }
+
+  private static long estimate(List<? extends List<String>> segments) {
+    long numberOfLines = 0;
+    for (List<String> segment : segments) {
+      numberOfLines += segment.size();
+    }
+    if (numberOfLines == 0) {
+      return 0;
+    }
+    // Every step-th line of the file is sampled.
+    long step = Math.max(1, numberOfLines / SAMPLE_LINES);
+    long sampled = 0;
+    long sampledChars = 0;
+    long segmentStart = 0;
+    for (List<String> segment : segments) {
+      long first = (step - segmentStart % step) % step;
+      for (long i = first; i < segment.size(); i += step) {
+        sampledChars += segment.get((int) i).length();
+        sampled++;
+      }
+      segmentStart += segment.size();
+    }
+    return 16 + numberOfLines * (8 + 40) + 2 * numberOfLines * sampledChars / sampled;
+  }
+}
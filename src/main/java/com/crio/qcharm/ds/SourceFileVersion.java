@@ -8,7 +8,8 @@ public interface SourceFileVersion {
 
   SourceFileVersion apply(List<Edits> edits);
 
-  void apply(SearchReplace searchReplace);
+  // Returns the number of occurrences replaced and the lines holding them.
+  ReplaceResult apply(SearchReplace searchReplace);
 
   void apply(UpdateLines updateLines);
 
@@ -22,6 +23,14 @@ public interface SourceFileVersion {
 
   List<Cursor> getCursors(SearchRequest searchRequest);
 
+  // The lines in order, as consecutive RandomAccess lists read in place. Only valid until
+  // the version is edited.
+  List<List<String>> getSegments();
+
+  // Id of the version, which changes with every edit, and the line ranges the last edits
+  // changed.
+  LineChanges getLineChanges();
+
   Page getCursorPage();
 
   String getFileName();
@@ -0,0 +1,38 @@
+package com.crio.qcharm.ds;
+
+// Piece table whose original and added buffers are LineArenas, so the text is kept in a few
+// large byte arrays instead of one String per line. Strings are only created for the lines
+// a Page or a search actually looks at.
+
+public class SourceFileVersionArenaImpl extends SourceFileVersionPieceTableImpl {
+
+  private final LineArena original;
+  private final LineArena added;
+
+  public SourceFileVersionArenaImpl(FileInfo fileInfo) {
+    this(fileInfo.getFileName(), new LineArena(fileInfo.getLines()), new LineArena());
+  }
+
+  public SourceFileVersionArenaImpl(SourceFileVersionArenaImpl obj) {
+    super(obj);
+    this.original = obj.original;
+    this.added = obj.added;
+  }
+
+  // original is used as is, like the lines filled in by a FileUpload. It must never change
+  // afterwards.
+  SourceFileVersionArenaImpl(String fileName, LineArena original) {
+    this(fileName, original, new LineArena());
+  }
+
+  private SourceFileVersionArenaImpl(String fileName, LineArena original, LineArena added) {
+    super(fileName, original, added);
+    this.original = original;
+    this.added = added;
+  }
+
+  // Bytes used by the line buffers, which copies of this version share.
+  public long getMemoryUsage() {
+    return original.getMemoryUsage() + added.getMemoryUsage();
+  }
+}
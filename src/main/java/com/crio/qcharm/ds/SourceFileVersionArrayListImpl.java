@@ -9,8 +9,11 @@ import java.util.stream.Collectors;
 public class SourceFileVersionArrayListImpl implements SourceFileVersion {
 
 
+  // The copy shares the lines with obj until either of them is edited.
   public SourceFileVersionArrayListImpl(SourceFileVersionArrayListImpl obj) {
-    this(new FileInfo(obj.getFileName(), obj.getAllLines()));
+    this.fileName = obj.getFileName();
+    this.lines = obj.getAllLines();
+    this.shared = true;
   }
 
 
@@ -35,10 +38,15 @@ public class SourceFileVersionArrayListImpl implements SourceFileVersion {
 
   private String fileName;
   private List<String> lines;
+  // The lines may be seen from outside, they are the file's or getAllLines() handed them out,
+  // and are copied before being changed in place.
+  private boolean shared;
+  private final LineChanges lineChanges = new LineChanges();
 
   public SourceFileVersionArrayListImpl(FileInfo fileInfo) {
     this.fileName = fileInfo.getFileName();
     this.lines = fileInfo.getLines();
+    this.shared = true;
   }
 
   
@@ -61,22 +69,28 @@ public class SourceFileVersionArrayListImpl implements SourceFileVersion {
   //          1. pattern - pattern to be found
   //          2. newPattern - pattern to be replaced with
   //  Description:
-  //      Find every occurrence of the pattern and replace it newPattern.
+  //      Find every occurrence of the pattern and replace it newPattern. The new lines are
+  //      computed in parallel, then only the lines holding the pattern are rewritten, in
+  //      place, the others are left as they are.
 
   @Override
-  public void apply(SearchReplace searchReplace) {
+  public ReplaceResult apply(SearchReplace searchReplace) {
     String pattern = searchReplace.getPattern();
     String newPattern = searchReplace.getNewPattern();
     if (pattern.length() == 0) {
-      return;
+      return new ReplaceResult();
     }
-    List<String> lines = this.getAllLines();
-    List<String> res = new ArrayList<>();
-    for(String s: lines) {
-      String s1 = s.replace(pattern, newPattern);
-      res.add(s1);
+    ReplaceResult result = ParallelSearch.replace(getSegments(), pattern, newPattern);
+    int[] lineNos = result.lineNos();
+    if (lineNos.length > 0 && shared) {
+      this.lines = new ArrayList<>(this.lines);
+      shared = false;
     }
-    this.lines = res;
+    for (int i = 0; i < lineNos.length; i++) {
+      this.lines.set(lineNos[i], result.replacedLines().get(i));
+    }
+    lineChanges.replacedAll();
+    return result;
   }
 
 
@@ -136,6 +150,9 @@ public class SourceFileVersionArrayListImpl implements SourceFileVersion {
       res.add(lines.get(i));
     }
     this.lines = res;
+    this.shared = false;
+    lineChanges.replaced(updateLines.getStartingLineNo(), updateLines.getNumberOfLines(),
+        updateLines.getLines().size());
   }
 
   // Input:
@@ -259,25 +276,24 @@ public class SourceFileVersionArrayListImpl implements SourceFileVersion {
 
   @Override
   public List<Cursor> getCursors(SearchRequest searchRequest) {
-    boolean efficient = true;
-    String pattern = searchRequest.getPattern();
-    List<Cursor> res = new ArrayList<>();
-    List<String> lines = this.getAllLines();
-    for (int i = 0; i < lines.size(); i++) {
-      String s = lines.get(i);
-      List<Integer> searched = PatternSearchAlgorithm.stringSearch(s, pattern, efficient, false);
-      for(int j = 0; j < searched.size(); j++) {
-        Cursor cursor = new Cursor(i, searched.get(j));
-        res.add(cursor);
-      }
-    }
-    return res;
+    return ParallelSearch.search(getSegments(), searchRequest);
+  }
+
+  @Override
+  public List<List<String>> getSegments() {
+    return ParallelSearch.segmentsOf(this.lines);
+  }
+
+  @Override
+  public LineChanges getLineChanges() {
+    return this.lineChanges;
   }
 
 
 
   @Override
   public List<String> getAllLines() {
+    this.shared = true;
     return this.lines;
   }
 
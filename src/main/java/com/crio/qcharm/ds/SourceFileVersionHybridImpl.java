@@ -3,7 +3,6 @@ package com.crio.qcharm.ds;
 import com.crio.qcharm.request.PageRequest;
 import com.crio.qcharm.request.SearchRequest;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
 import lombok.Data;
 
@@ -23,27 +22,22 @@ public class SourceFileVersionHybridImpl implements SourceFileVersion {
   //     1. Use Java List<Page> to store the lines received from fileInfo
 
   private String fileName;
-  private Bucket bucket;
+  Bucket bucket;
+  private final LineChanges lineChanges = new LineChanges();
 
   SourceFileVersionHybridImpl(FileInfo fileInfo) {
-    String fileName = fileInfo.getFileName();
-    this.fileName = fileName;
-    List<String> lines = fileInfo.getLines();
-    List<Page> pages = new ArrayList<>();
-    for(int i = 0; i < lines.size(); i+=50) {
-      int endingIdx = Math.min(i+50, lines.size());
-      Page page = new Page(lines.subList(i, endingIdx), i, fileName, null);
-      pages.add(page);
-    }
-    this.bucket = new Bucket(pages);
+    this.fileName = fileInfo.getFileName();
+    this.bucket = Bucket.fromLines(fileInfo.getLines(), fileName);
   }
 
   public SourceFileVersionHybridImpl() {
     this.bucket = new Bucket();
   }
 
+  // Pages are immutable once they are in a bucket, so the copy shares every line with obj.
   public SourceFileVersionHybridImpl(SourceFileVersionHybridImpl obj) {
-    this(new FileInfo(obj.getFileName(), obj.getAllLines()));
+    this.fileName = obj.getFileName();
+    this.bucket = new Bucket(obj.bucket);
   }
 
 
@@ -63,23 +57,51 @@ public class SourceFileVersionHybridImpl implements SourceFileVersion {
 
 
 
+  // The new lines are computed over the pages in parallel, then only the pages holding at
+  // least one occurrence of the pattern are replaced.
+
   @Override
-  public void apply(SearchReplace searchReplace) {
+  public ReplaceResult apply(SearchReplace searchReplace) {
+    String pattern = searchReplace.getPattern();
+    String newPattern = searchReplace.getNewPattern();
+    if (pattern.length() == 0) {
+      return new ReplaceResult();
+    }
+    ReplaceResult result = ParallelSearch.replace(getSegments(), pattern, newPattern);
+    int[] lineNos = result.lineNos();
+    List<Page> pages = this.bucket.getPages();
+    int pageStart = 0;
+    int changed = 0;
+    for (int i = 0; i < pages.size() && changed < lineNos.length; i++) {
+      List<String> lines = pages.get(i).getLines();
+      if (lineNos[changed] < pageStart + lines.size()) {
+        List<String> res = new ArrayList<>(lines);
+        for (; changed < lineNos.length && lineNos[changed] < pageStart + lines.size();
+            changed++) {
+          res.set(lineNos[changed] - pageStart, result.replacedLines().get(changed));
+        }
+        this.bucket.setPageLines(i, res);
+      }
+      pageStart += lines.size();
+    }
+    lineChanges.replacedAll();
+    return result;
   }
 
+  // Only the pages overlapping the range(startingLineNo, startingLineNo + numberOfLines)
+  // are rebuilt, see Bucket.replaceLines().
 
   @Override
   public void apply(UpdateLines updateLines) {
+    this.bucket.replaceLines(updateLines.getStartingLineNo(), updateLines.getNumberOfLines(),
+        updateLines.getLines());
+    lineChanges.replaced(updateLines.getStartingLineNo(), updateLines.getNumberOfLines(),
+        updateLines.getLines().size());
   }
 
   @Override
   public List<String> getAllLines() {
-    List<String> lines = new LinkedList<>();
-    for(Page page: this.bucket.getPages()) {
-      List<String> line = page.getLines();
-      lines.addAll(line);
-    }
-    return lines;
+    return this.bucket.getLines(0, this.bucket.getNumberOfLines());
   }
 
   // Input:
@@ -104,7 +126,7 @@ public class SourceFileVersionHybridImpl implements SourceFileVersion {
     int lineNumber = pageRequest.getStartingLineNo();
     int numberOfLines = pageRequest.getNumberOfLines();
     int startingLine = Math.max(0, lineNumber - numberOfLines);
-    List<String> lines = this.getLines(startingLine, numberOfLines);
+    List<String> lines = this.getLines(startingLine, lineNumber - startingLine);
     Page page = new Page();
     page.setLines(lines);
     page.setFileName(pageRequest.getFileName());
@@ -133,13 +155,7 @@ public class SourceFileVersionHybridImpl implements SourceFileVersion {
 
 
   List<String> getLines(int lineNumber, int numberOfLines) {
-    List<String> lines = new ArrayList<>(this.getAllLines());
-    int endingLine = Math.min(lineNumber + numberOfLines, lines.size());
-    List<String> res = new LinkedList<>();
-    for (int i = lineNumber; i < endingLine; i++) {
-      res.add(lines.get(i));
-    }
-    return res;
+    return this.bucket.getLines(lineNumber, lineNumber + numberOfLines);
   }
 
   @Override
@@ -204,19 +220,22 @@ public class SourceFileVersionHybridImpl implements SourceFileVersion {
 
   @Override
   public List<Cursor> getCursors(SearchRequest searchRequest) {
-    boolean efficient = true;
-    String pattern = searchRequest.getPattern();
-    List<Cursor> res = new LinkedList<>();
-    List<String> lines = this.getAllLines();
-    for (int i = 0; i < lines.size(); i++) {
-      String s = lines.get(i);
-      List<Integer> searched = PatternSearchAlgorithm.stringSearch(s, pattern, efficient, false);
-      for(int j = 0; j < searched.size(); j++) {
-        Cursor cursor = new Cursor(i, searched.get(j));
-        res.add(cursor);
-      }
+    return ParallelSearch.search(getSegments(), searchRequest);
+  }
+
+  @Override
+  public List<List<String>> getSegments() {
+    List<Page> pages = this.bucket.getPages();
+    List<List<String>> segments = new ArrayList<>(pages.size());
+    for (Page page : pages) {
+      segments.add(page.getLines());
     }
-    return res;
+    return segments;
+  }
+
+  @Override
+  public LineChanges getLineChanges() {
+    return this.lineChanges;
   }
 
   @Override
@@ -0,0 +1,172 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+// Any SourceFileVersion with a TrigramIndex of its lines.
+//
+// Edits go to the wrapped version and are mirrored in the index: UpdateLines replaces the ids
+// of the lines it replaces, SearchReplace those of the lines the wrapped version reports
+// changed. Literal searches for patterns of at least three chars only look at the candidate
+// lines of the index; shorter patterns and regex searches scan the wrapped version like they
+// would without an index.
+
+public class SourceFileVersionIndexedImpl implements SourceFileVersion {
+
+  private final SourceFileVersion sourceFile;
+  private final TrigramIndex index;
+
+  public SourceFileVersionIndexedImpl(SourceFileVersion sourceFile) {
+    this.sourceFile = sourceFile;
+    this.index = new TrigramIndex(sourceFile.getSegments());
+  }
+
+  private SourceFileVersionIndexedImpl(SourceFileVersion sourceFile, TrigramIndex index) {
+    this.sourceFile = sourceFile;
+    this.index = index;
+  }
+
+  // Input:
+  //      copy - copy of the wrapped version
+  // Description:
+  //      Returns copy with a copy of the index, which doesn't index the lines again. Edits to
+  //      either version leave the index of the other as it was.
+
+  SourceFileVersionIndexedImpl copyWith(SourceFileVersion copy) {
+    return new SourceFileVersionIndexedImpl(copy, new TrigramIndex(index));
+  }
+
+  // The given version with a trigram index if indexed is set, without one otherwise.
+
+  static SourceFileVersion withIndex(SourceFileVersion sourceFile, boolean indexed) {
+    if (sourceFile instanceof SourceFileVersionIndexedImpl) {
+      return indexed ? sourceFile : ((SourceFileVersionIndexedImpl) sourceFile).getSourceFile();
+    }
+    return indexed && sourceFile != null ? new SourceFileVersionIndexedImpl(sourceFile)
+        : sourceFile;
+  }
+
+  @Override
+  public SourceFileVersion apply(List<Edits> edits) {
+    for (Edits oneEdit : edits) {
+      if (oneEdit instanceof UpdateLines) {
+        apply((UpdateLines) oneEdit);
+      } else {
+        assert (oneEdit instanceof SearchReplace);
+        apply((SearchReplace) oneEdit);
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public ReplaceResult apply(SearchReplace searchReplace) {
+    ReplaceResult result = sourceFile.apply(searchReplace);
+    int[] lineNos = result.lineNos();
+    for (int i = 0; i < lineNos.length; i++) {
+      index.replace(lineNos[i], result.replacedLines().get(i));
+    }
+    rebuildIfStale();
+    return result;
+  }
+
+  @Override
+  public void apply(UpdateLines updateLines) {
+    sourceFile.apply(updateLines);
+    index.replace(updateLines.getStartingLineNo(), updateLines.getNumberOfLines(),
+        updateLines.getLines());
+    rebuildIfStale();
+  }
+
+  @Override
+  public List<String> getAllLines() {
+    return sourceFile.getAllLines();
+  }
+
+  @Override
+  public Page getLinesBefore(PageRequest pageRequest) {
+    return sourceFile.getLinesBefore(pageRequest);
+  }
+
+  @Override
+  public Page getLinesAfter(PageRequest pageRequest) {
+    return sourceFile.getLinesAfter(pageRequest);
+  }
+
+  @Override
+  public Page getLinesFrom(PageRequest pageRequest) {
+    return sourceFile.getLinesFrom(pageRequest);
+  }
+
+  @Override
+  public List<Cursor> getCursors(SearchRequest searchRequest) {
+    String pattern = searchRequest.getPattern();
+    if (searchRequest.isRegex() || pattern.length() < TrigramIndex.GRAM) {
+      return sourceFile.getCursors(searchRequest);
+    }
+    int[] lineNos = index.candidates(pattern);
+    List<String> lines = linesAt(lineNos);
+    PatternMatcher matcher = SearchStrategy.forPattern(pattern).compile(pattern);
+    List<Cursor> res = new ArrayList<>();
+    for (int i = 0; i < lineNos.length; i++) {
+      String line = lines.get(i);
+      for (int col = matcher.indexOf(line, 0); col >= 0; col = matcher.indexOf(line, col + 1)) {
+        res.add(new Cursor(lineNos[i], col));
+      }
+    }
+    return res;
+  }
+
+  @Override
+  public List<List<String>> getSegments() {
+    return sourceFile.getSegments();
+  }
+
+  @Override
+  public LineChanges getLineChanges() {
+    return sourceFile.getLineChanges();
+  }
+
+  @Override
+  public Page getCursorPage() {
+    return sourceFile.getCursorPage();
+  }
+
+  @Override
+  public String getFileName() {
+    return sourceFile.getFileName();
+  }
+
+  public SourceFileVersion getSourceFile() {
+    return this.sourceFile;
+  }
+
+  // Estimate of the memory taken by the index alone, in bytes.
+  public long getIndexMemoryUsage() {
+    return index.getMemoryUsage();
+  }
+
+  private void rebuildIfStale() {
+    if (index.isStale()) {
+      index.rebuild(sourceFile.getSegments());
+    }
+  }
+
+  // The lines at the given line numbers, which are in increasing order.
+  private List<String> linesAt(int[] lineNos) {
+    List<String> res = new ArrayList<>(lineNos.length);
+    List<List<String>> segments = sourceFile.getSegments();
+    int segment = 0;
+    int segmentStart = 0;
+    for (int lineNo : lineNos) {
+      while (lineNo >= segmentStart + segments.get(segment).size()) {
+        segmentStart += segments.get(segment).size();
+        segment++;
+      }
+      res.add(segments.get(segment).get(lineNo - segmentStart));
+    }
+    return res;
+  }
+}
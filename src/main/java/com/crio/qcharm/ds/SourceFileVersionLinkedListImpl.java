@@ -4,12 +4,14 @@ import com.crio.qcharm.request.PageRequest;
 import com.crio.qcharm.request.SearchRequest;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.ListIterator;
 import java.util.stream.Collectors;
 
 public class SourceFileVersionLinkedListImpl implements SourceFileVersion {
 
   private String fileName;
   private List<String> lines;
+  private final LineChanges lineChanges = new LineChanges();
 
   // Input:
   //     FileInfo - contains following information
@@ -24,7 +26,7 @@ public class SourceFileVersionLinkedListImpl implements SourceFileVersion {
 
 
   SourceFileVersionLinkedListImpl(FileInfo fileInfo) {
-    this.fileName = fileName;
+    this.fileName = fileInfo.getFileName();
     this.lines = new LinkedList<>(fileInfo.getLines());
   }
 
@@ -56,19 +58,29 @@ public class SourceFileVersionLinkedListImpl implements SourceFileVersion {
   //          1. pattern - pattern to be found
   //          2. newPattern - pattern to be replaced with
   //  Description:
-  //      Find every occurrence of the pattern and replace it newPattern.
+  //      Find every occurrence of the pattern and replace it newPattern. The new lines are
+  //      computed in parallel over segments of the list, then the lines holding the pattern
+  //      are set in one pass, the others are left as they are.
 
   @Override
-  public void apply(SearchReplace searchReplace) {
+  public ReplaceResult apply(SearchReplace searchReplace) {
     String pattern = searchReplace.getPattern();
     String newPattern = searchReplace.getNewPattern();
-    List<String> lines = this.getAllLines();
-    List<String> res = new LinkedList<>();
-    for(String s: lines) {
-      String s1 = s.replace(pattern, newPattern);
-      res.add(s1);
+    if (pattern.length() == 0) {
+      return new ReplaceResult();
+    }
+    ReplaceResult result = ParallelSearch.replace(getSegments(), pattern, newPattern);
+    int[] lineNos = result.lineNos();
+    ListIterator<String> it = this.lines.listIterator();
+    for (int i = 0; i < lineNos.length; i++) {
+      while (it.nextIndex() < lineNos[i]) {
+        it.next();
+      }
+      it.next();
+      it.set(result.replacedLines().get(i));
     }
-    this.lines = res;
+    lineChanges.replacedAll();
+    return result;
   }
 
   
@@ -121,6 +133,8 @@ public class SourceFileVersionLinkedListImpl implements SourceFileVersion {
     lines.subList(startingLine, startingLine + numLines).clear();
     lines.addAll(startingLine, newContent);
     this.lines = lines;
+    lineChanges.replaced(updateLines.getStartingLineNo(), updateLines.getNumberOfLines(),
+        updateLines.getLines().size());
   }
 
   @Override
@@ -249,19 +263,17 @@ public class SourceFileVersionLinkedListImpl implements SourceFileVersion {
 
   @Override
   public List<Cursor> getCursors(SearchRequest searchRequest) {
-    boolean efficient = true;
-    String pattern = searchRequest.getPattern();
-    List<Cursor> res = new LinkedList<>();
-    List<String> lines = this.getAllLines();
-    for (int i = 0; i < lines.size(); i++) {
-      String s = lines.get(i);
-      List<Integer> searched = PatternSearchAlgorithm.stringSearch(s, pattern, efficient, false);
-      for(int j = 0; j < searched.size(); j++) {
-        Cursor cursor = new Cursor(i, searched.get(j));
-        res.add(cursor);
-      }
-    }
-    return res;
+    return ParallelSearch.search(getSegments(), searchRequest);
+  }
+
+  @Override
+  public List<List<String>> getSegments() {
+    return ParallelSearch.segmentsOf(this.lines);
+  }
+
+  @Override
+  public LineChanges getLineChanges() {
+    return this.lineChanges;
   }
 
   @Override
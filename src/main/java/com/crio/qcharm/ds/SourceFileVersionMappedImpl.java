@@ -0,0 +1,173 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// SourceFileVersion for big, mostly read-only files on the local disk.
+//
+// The file is never copied into a List<String>. Lines are served from a MappedFileLines, which
+// indexes the file lazily, so the first page is available as soon as the first few lines have
+// been scanned. Edits are layered on top with a SourceFileVersionPieceTableImpl that uses the
+// mapped lines as its original buffer; it is only created by the first edit.
+
+public class SourceFileVersionMappedImpl implements SourceFileVersion {
+
+  private final String fileName;
+  private final MappedFileLines mappedLines;
+  private SourceFileVersionPieceTableImpl edits;
+  private final LineChanges lineChanges = new LineChanges();
+
+  public SourceFileVersionMappedImpl(Path path) throws IOException {
+    this.fileName = path.toString();
+    this.mappedLines = MappedFileLines.open(path);
+    this.mappedLines.indexInBackground();
+  }
+
+  public SourceFileVersionMappedImpl(SourceFileVersionMappedImpl obj) {
+    this.fileName = obj.fileName;
+    this.mappedLines = obj.mappedLines;
+    if (obj.edits != null) {
+      this.edits = new SourceFileVersionPieceTableImpl(obj.edits);
+    }
+  }
+
+  private SourceFileVersionPieceTableImpl edited() {
+    if (edits == null) {
+      edits = new SourceFileVersionPieceTableImpl(fileName, mappedLines);
+    }
+    return edits;
+  }
+
+  @Override
+  public SourceFileVersion apply(List<Edits> edits) {
+    for (Edits oneEdit : edits) {
+      if (oneEdit instanceof UpdateLines) {
+        apply((UpdateLines) oneEdit);
+      } else {
+        assert (oneEdit instanceof SearchReplace);
+        apply((SearchReplace) oneEdit);
+      }
+    }
+    return this;
+  }
+
+  @Override
+  public ReplaceResult apply(SearchReplace searchReplace) {
+    ReplaceResult result = edited().apply(searchReplace);
+    lineChanges.replacedAll();
+    return result;
+  }
+
+  @Override
+  public void apply(UpdateLines updateLines) {
+    edited().apply(updateLines);
+    lineChanges.replaced(updateLines.getStartingLineNo(), updateLines.getNumberOfLines(),
+        updateLines.getLines().size());
+  }
+
+  @Override
+  public List<String> getAllLines() {
+    if (edits != null) {
+      return edits.getAllLines();
+    }
+    return mappedLines;
+  }
+
+  // Lines [startingLine, endingLine) of the unedited file. Only scans the file as far as needed.
+  private List<String> getLines(int startingLine, int endingLine) {
+    endingLine = mappedLines.linesAvailable(endingLine);
+    List<String> res = new ArrayList<>(Math.max(0, endingLine - startingLine));
+    // Not subList(), its range check would call size() and index the whole file.
+    for (int i = startingLine; i < endingLine; i++) {
+      res.add(mappedLines.get(i));
+    }
+    return res;
+  }
+
+  @Override
+  public Page getLinesBefore(PageRequest pageRequest) {
+    if (edits != null) {
+      return edits.getLinesBefore(pageRequest);
+    }
+    int lineNumber = pageRequest.getStartingLineNo();
+    int numberOfLines = pageRequest.getNumberOfLines();
+    int startingLine = Math.max(0, lineNumber - numberOfLines);
+    Page page = new Page();
+    page.setLines(getLines(startingLine, lineNumber));
+    page.setFileName(pageRequest.getFileName());
+    page.setStartingLineNo(startingLine);
+    page.setCursorAt(pageRequest.getCursorAt());
+    return page;
+  }
+
+  @Override
+  public Page getLinesAfter(PageRequest pageRequest) {
+    if (edits != null) {
+      return edits.getLinesAfter(pageRequest);
+    }
+    int lineNumber = pageRequest.getStartingLineNo();
+    int numberOfLines = pageRequest.getNumberOfLines();
+    Page page = new Page();
+    page.setFileName(pageRequest.getFileName());
+    page.setCursorAt(pageRequest.getCursorAt());
+    page.setLines(getLines(lineNumber + 1, lineNumber + numberOfLines + 1));
+    page.setStartingLineNo(lineNumber);
+    return page;
+  }
+
+  @Override
+  public Page getLinesFrom(PageRequest pageRequest) {
+    if (edits != null) {
+      return edits.getLinesFrom(pageRequest);
+    }
+    int lineNumber = pageRequest.getStartingLineNo();
+    int numberOfLines = pageRequest.getNumberOfLines();
+    Page page = new Page();
+    page.setFileName(pageRequest.getFileName());
+    page.setLines(getLines(lineNumber, lineNumber + numberOfLines));
+    page.setCursorAt(new Cursor(lineNumber, 0));
+    page.setStartingLineNo(lineNumber);
+    return page;
+  }
+
+  @Override
+  public List<Cursor> getCursors(SearchRequest searchRequest) {
+    if (edits != null) {
+      return edits.getCursors(searchRequest);
+    }
+    return ParallelSearch.search(getSegments(), searchRequest);
+  }
+
+  @Override
+  public List<List<String>> getSegments() {
+    if (edits != null) {
+      return edits.getSegments();
+    }
+    return Collections.singletonList(mappedLines);
+  }
+
+  // The lines typed into the file, the only ones held on the heap.
+  List<String> getTypedLines() {
+    return edits == null ? Collections.<String>emptyList() : edits.getAddedLines();
+  }
+
+  @Override
+  public LineChanges getLineChanges() {
+    return this.lineChanges;
+  }
+
+  @Override
+  public Page getCursorPage() {
+    return null;
+  }
+
+  @Override
+  public String getFileName() {
+    return this.fileName;
+  }
+}
@@ -0,0 +1,347 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// SourceFileVersion backed by a persistent (immutable) balanced tree of lines.
+//
+// Lines are kept in leaves of up to LEAF_SIZE lines, internal nodes only hold the number of
+// lines below them. The tree is an AVL tree ordered by line number. Nodes are never modified:
+// an edit splits the tree at the edited range and joins the pieces back around the new lines,
+// copying only the O(log n) nodes along the way. Everything else is shared with the previous
+// tree.
+//
+// This makes a copy of a version a single pointer copy, and an undo snapshot only costs the
+// nodes the following edit had to rebuild.
+
+public class SourceFileVersionPersistentImpl implements SourceFileVersion {
+
+  static final int LEAF_SIZE = 32;
+
+  static final class Node {
+    final String[] lines;
+    final Node left;
+    final Node right;
+    final int size;
+    final int height;
+
+    Node(String[] lines) {
+      this.lines = lines;
+      this.left = null;
+      this.right = null;
+      this.size = lines.length;
+      this.height = 1;
+    }
+
+    Node(Node left, Node right) {
+      this.lines = null;
+      this.left = left;
+      this.right = right;
+      this.size = left.size + right.size;
+      this.height = Math.max(left.height, right.height) + 1;
+    }
+
+    boolean isLeaf() {
+      return lines != null;
+    }
+  }
+
+  private final String fileName;
+  private Node root;
+  private final LineChanges lineChanges = new LineChanges();
+
+  public SourceFileVersionPersistentImpl(FileInfo fileInfo) {
+    this.fileName = fileInfo.getFileName();
+    this.root = build(fileInfo.getLines());
+  }
+
+  // Shares the whole tree with obj, later edits on either version don't affect the other.
+  public SourceFileVersionPersistentImpl(SourceFileVersionPersistentImpl obj) {
+    this.fileName = obj.fileName;
+    this.root = obj.root;
+  }
+
+  @Override
+  public SourceFileVersion apply(List<Edits> edits) {
+    for (Edits oneEdit : edits) {
+      if (oneEdit instanceof UpdateLines) {
+        apply((UpdateLines) oneEdit);
+      } else {
+        assert (oneEdit instanceof SearchReplace);
+        apply((SearchReplace) oneEdit);
+      }
+    }
+    return this;
+  }
+
+  // The leaves are searched in parallel. Leaves without an occurrence of the pattern, and
+  // every subtree made only of such leaves, are kept as they are.
+
+  @Override
+  public ReplaceResult apply(SearchReplace searchReplace) {
+    String pattern = searchReplace.getPattern();
+    String newPattern = searchReplace.getNewPattern();
+    if (pattern.length() == 0) {
+      return new ReplaceResult();
+    }
+    ReplaceResult result = ParallelSearch.replace(getSegments(), pattern, newPattern);
+    root = setLines(root, 0, result.lineNos(), result.replacedLines(), new int[1]);
+    lineChanges.replacedAll();
+    return result;
+  }
+
+  @Override
+  public void apply(UpdateLines updateLines) {
+    int startingLine = Math.min(updateLines.getStartingLineNo(), size(root));
+    int endingLine = Math.min(startingLine + updateLines.getNumberOfLines(), size(root));
+    Node[] head = split(root, startingLine);
+    Node[] tail = split(head[1], endingLine - startingLine);
+    root = join(join(head[0], build(updateLines.getLines())), tail[1]);
+    lineChanges.replaced(updateLines.getStartingLineNo(), updateLines.getNumberOfLines(),
+        updateLines.getLines().size());
+  }
+
+  @Override
+  public List<String> getAllLines() {
+    List<String> res = new ArrayList<>(size(root));
+    collect(root, 0, size(root), res);
+    return res;
+  }
+
+  private List<String> getLines(int startingLine, int endingLine) {
+    endingLine = Math.min(endingLine, size(root));
+    List<String> res = new ArrayList<>(Math.max(0, endingLine - startingLine));
+    if (startingLine < endingLine) {
+      collect(root, startingLine, endingLine, res);
+    }
+    return res;
+  }
+
+  @Override
+  public Page getLinesBefore(PageRequest pageRequest) {
+    int lineNumber = pageRequest.getStartingLineNo();
+    int numberOfLines = pageRequest.getNumberOfLines();
+    int startingLine = Math.max(0, lineNumber - numberOfLines);
+    Page page = new Page();
+    page.setLines(getLines(startingLine, lineNumber));
+    page.setFileName(pageRequest.getFileName());
+    page.setStartingLineNo(startingLine);
+    page.setCursorAt(pageRequest.getCursorAt());
+    return page;
+  }
+
+  @Override
+  public Page getLinesAfter(PageRequest pageRequest) {
+    int lineNumber = pageRequest.getStartingLineNo();
+    int numberOfLines = pageRequest.getNumberOfLines();
+    Page page = new Page();
+    page.setFileName(pageRequest.getFileName());
+    page.setCursorAt(pageRequest.getCursorAt());
+    page.setLines(getLines(lineNumber + 1, lineNumber + numberOfLines + 1));
+    page.setStartingLineNo(lineNumber);
+    return page;
+  }
+
+  @Override
+  public Page getLinesFrom(PageRequest pageRequest) {
+    int lineNumber = pageRequest.getStartingLineNo();
+    int numberOfLines = pageRequest.getNumberOfLines();
+    Page page = new Page();
+    page.setFileName(pageRequest.getFileName());
+    page.setLines(getLines(lineNumber, lineNumber + numberOfLines));
+    page.setCursorAt(new Cursor(lineNumber, 0));
+    page.setStartingLineNo(lineNumber);
+    return page;
+  }
+
+  @Override
+  public List<Cursor> getCursors(SearchRequest searchRequest) {
+    return ParallelSearch.search(getSegments(), searchRequest);
+  }
+
+  @Override
+  public List<List<String>> getSegments() {
+    List<List<String>> segments = new ArrayList<>(size(root) / LEAF_SIZE + 1);
+    leaves(root, segments);
+    return segments;
+  }
+
+  @Override
+  public LineChanges getLineChanges() {
+    return this.lineChanges;
+  }
+
+  @Override
+  public Page getCursorPage() {
+    return null;
+  }
+
+  @Override
+  public String getFileName() {
+    return this.fileName;
+  }
+
+  public int getNumberOfLines() {
+    return size(root);
+  }
+
+  Node getRoot() {
+    return this.root;
+  }
+
+  // Appends the lines of every leaf of the subtree to segments, in order.
+  private static void leaves(Node node, List<List<String>> segments) {
+    if (node == null) {
+      return;
+    }
+    if (node.isLeaf()) {
+      segments.add(Arrays.asList(node.lines));
+      return;
+    }
+    leaves(node.left, segments);
+    leaves(node.right, segments);
+  }
+
+  // Appends lines [from, to) of the subtree to res, line numbers being relative to the subtree.
+  private static void collect(Node node, int from, int to, List<String> res) {
+    if (node == null || from >= to) {
+      return;
+    }
+    if (node.isLeaf()) {
+      for (int i = from; i < to; i++) {
+        res.add(node.lines[i]);
+      }
+      return;
+    }
+    int leftSize = node.left.size;
+    if (from < leftSize) {
+      collect(node.left, from, Math.min(to, leftSize), res);
+    }
+    if (to > leftSize) {
+      collect(node.right, Math.max(from, leftSize) - leftSize, to - leftSize, res);
+    }
+  }
+
+  // Sets the lines lineNos[next[0]], lineNos[next[0] + 1]... that are in the node to the
+  // matching lines, firstLine being the line number of the first line of the node. next[0]
+  // is moved past them.
+  private static Node setLines(Node node, int firstLine, int[] lineNos, List<String> lines,
+      int[] next) {
+    if (node == null || next[0] == lineNos.length || lineNos[next[0]] >= firstLine + node.size) {
+      return node;
+    }
+    if (node.isLeaf()) {
+      String[] res = node.lines.clone();
+      for (; next[0] < lineNos.length && lineNos[next[0]] < firstLine + res.length; next[0]++) {
+        res[lineNos[next[0]] - firstLine] = lines.get(next[0]);
+      }
+      return new Node(res);
+    }
+    Node left = setLines(node.left, firstLine, lineNos, lines, next);
+    Node right = setLines(node.right, firstLine + size(node.left), lineNos, lines, next);
+    if (left == node.left && right == node.right) {
+      return node;
+    }
+    return new Node(left, right);
+  }
+
+  static int size(Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static int height(Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  // Balanced tree over the given lines, LEAF_SIZE lines per leaf.
+  static Node build(List<String> lines) {
+    List<Node> leaves = new ArrayList<>();
+    for (int i = 0; i < lines.size(); i += LEAF_SIZE) {
+      int endingIdx = Math.min(i + LEAF_SIZE, lines.size());
+      leaves.add(new Node(lines.subList(i, endingIdx).toArray(new String[0])));
+    }
+    return build(leaves, 0, leaves.size());
+  }
+
+  private static Node build(List<Node> leaves, int from, int to) {
+    if (from >= to) {
+      return null;
+    }
+    if (to - from == 1) {
+      return leaves.get(from);
+    }
+    int mid = (from + to) >>> 1;
+    return new Node(build(leaves, from, mid), build(leaves, mid, to));
+  }
+
+  // Splits the subtree into its first k lines and the rest.
+  static Node[] split(Node node, int k) {
+    if (node == null) {
+      return new Node[] {null, null};
+    }
+    if (k <= 0) {
+      return new Node[] {null, node};
+    }
+    if (k >= node.size) {
+      return new Node[] {node, null};
+    }
+    if (node.isLeaf()) {
+      String[] head = new String[k];
+      String[] tail = new String[node.size - k];
+      System.arraycopy(node.lines, 0, head, 0, k);
+      System.arraycopy(node.lines, k, tail, 0, tail.length);
+      return new Node[] {new Node(head), new Node(tail)};
+    }
+    if (k <= node.left.size) {
+      Node[] parts = split(node.left, k);
+      return new Node[] {parts[0], join(parts[1], node.right)};
+    }
+    Node[] parts = split(node.right, k - node.left.size);
+    return new Node[] {join(node.left, parts[0]), parts[1]};
+  }
+
+  // Concatenates two trees, keeping the result balanced.
+  static Node join(Node left, Node right) {
+    if (left == null) {
+      return right;
+    }
+    if (right == null) {
+      return left;
+    }
+    if (left.isLeaf() && right.isLeaf() && left.size + right.size <= LEAF_SIZE) {
+      String[] lines = new String[left.size + right.size];
+      System.arraycopy(left.lines, 0, lines, 0, left.size);
+      System.arraycopy(right.lines, 0, lines, left.size, right.size);
+      return new Node(lines);
+    }
+    if (left.height > right.height + 1) {
+      return balance(left.left, join(left.right, right));
+    }
+    if (right.height > left.height + 1) {
+      return balance(join(left, right.left), right.right);
+    }
+    return new Node(left, right);
+  }
+
+  // Node over left and right, whose heights differ by at most two, with AVL rotations applied.
+  private static Node balance(Node left, Node right) {
+    if (height(left) > height(right) + 1) {
+      if (height(left.left) >= height(left.right)) {
+        return new Node(left.left, new Node(left.right, right));
+      }
+      return new Node(new Node(left.left, left.right.left),
+          new Node(left.right.right, right));
+    }
+    if (height(right) > height(left) + 1) {
+      if (height(right.right) >= height(right.left)) {
+        return new Node(new Node(left, right.left), right.right);
+      }
+      return new Node(new Node(left, right.left.left),
+          new Node(right.left.right, right.right));
+    }
+    return new Node(left, right);
+  }
+}
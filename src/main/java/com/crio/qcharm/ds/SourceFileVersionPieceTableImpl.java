@@ -0,0 +1,315 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Line oriented piece table.
+//
+// The loaded file is kept untouched in the "original" buffer. Every line that is typed in
+// later is appended to the "added" buffer, which only ever grows. The document itself is
+// described by an ordered list of pieces, each of which points at a run of lines inside one of
+// the two buffers.
+//
+// Because the buffers are never modified, an edit only has to split at most two pieces and
+// insert one new piece, so the cost of apply(UpdateLines) depends on the size of the edit and
+// on the number of pieces, not on the number of lines in the file.
+
+public class SourceFileVersionPieceTableImpl implements SourceFileVersion {
+
+  static class Piece {
+    final boolean added;
+    final int start;
+    final int length;
+
+    Piece(boolean added, int start, int length) {
+      this.added = added;
+      this.start = start;
+      this.length = length;
+    }
+  }
+
+  private String fileName;
+  private final List<String> original;
+  private final List<String> added;
+  private List<Piece> pieces;
+  private final LineChanges lineChanges = new LineChanges();
+
+  // pieceStarts[i] is the document line number of the first line of pieces.get(i).
+  // It is rebuilt lazily after an edit.
+  private int[] pieceStarts;
+  private int numberOfLines;
+
+  public SourceFileVersionPieceTableImpl(FileInfo fileInfo) {
+    this(fileInfo.getFileName(), Collections.unmodifiableList(fileInfo.getLines()));
+  }
+
+  // original is used as is, without copying it. It must never change afterwards.
+  SourceFileVersionPieceTableImpl(String fileName, List<String> original) {
+    this(fileName, original, new ArrayList<>());
+  }
+
+  // added must be empty. New lines are only ever appended to it.
+  SourceFileVersionPieceTableImpl(String fileName, List<String> original, List<String> added) {
+    this.fileName = fileName;
+    this.original = original;
+    this.added = added;
+    this.pieces = new ArrayList<>();
+    if (!original.isEmpty()) {
+      this.pieces.add(new Piece(false, 0, original.size()));
+    }
+    this.numberOfLines = original.size();
+  }
+
+  // Both buffers are append-only, so a copy only needs its own piece list. The pieces of the
+  // copy keep pointing at lines that can never change underneath them.
+  public SourceFileVersionPieceTableImpl(SourceFileVersionPieceTableImpl obj) {
+    this.fileName = obj.fileName;
+    this.original = obj.original;
+    this.added = obj.added;
+    this.pieces = new ArrayList<>(obj.pieces);
+    this.pieceStarts = obj.pieceStarts;
+    this.numberOfLines = obj.numberOfLines;
+  }
+
+  @Override
+  public SourceFileVersion apply(List<Edits> edits) {
+    for (Edits oneEdit : edits) {
+      if (oneEdit instanceof UpdateLines) {
+        apply((UpdateLines) oneEdit);
+      } else {
+        assert (oneEdit instanceof SearchReplace);
+        apply((SearchReplace) oneEdit);
+      }
+    }
+    return this;
+  }
+
+  // The new lines are computed over the pieces in parallel and appended to the added buffer at
+  // once. The new piece list is then built in one pass over the pieces and the runs of changed
+  // lines, which come sorted: each run becomes one piece of the added buffer, every other line
+  // keeps pointing at the buffer it already lives in. The cost is O(pieces + runs), the piece
+  // starts are rebuilt once afterwards.
+
+  @Override
+  public ReplaceResult apply(SearchReplace searchReplace) {
+    String pattern = searchReplace.getPattern();
+    String newPattern = searchReplace.getNewPattern();
+    if (pattern.length() == 0) {
+      return new ReplaceResult();
+    }
+    ReplaceResult result = ParallelSearch.replace(getSegments(), pattern, newPattern);
+    List<CursorRange> ranges = result.getRanges();
+    if (!ranges.isEmpty()) {
+      int addStart = added.size();
+      added.addAll(result.replacedLines());
+      List<Piece> newPieces = new ArrayList<>(pieces.size() + 2 * ranges.size());
+      int run = 0;
+      int pieceStart = 0;
+      for (Piece piece : pieces) {
+        int pieceEnd = pieceStart + piece.length;
+        // First line of the piece left to place.
+        int lineNo = pieceStart;
+        while (lineNo < pieceEnd) {
+          int runStart = run < ranges.size() ? ranges.get(run).getStart().getLineNo() : pieceEnd;
+          if (lineNo < runStart) {
+            int end = Math.min(runStart, pieceEnd);
+            newPieces.add(lineNo == pieceStart && end == pieceEnd ? piece
+                : new Piece(piece.added, piece.start + lineNo - pieceStart, end - lineNo));
+            lineNo = end;
+          } else {
+            int runEnd = ranges.get(run).getEnd().getLineNo() + 1;
+            if (lineNo == runStart) {
+              newPieces.add(new Piece(true, addStart, runEnd - runStart));
+              addStart += runEnd - runStart;
+            }
+            lineNo = Math.min(runEnd, pieceEnd);
+            if (lineNo == runEnd) {
+              run++;
+            }
+          }
+        }
+        pieceStart = pieceEnd;
+      }
+      pieces = newPieces;
+      pieceStarts = null;
+    }
+    lineChanges.replacedAll();
+    return result;
+  }
+
+  @Override
+  public void apply(UpdateLines updateLines) {
+    replaceLines(updateLines.getStartingLineNo(), updateLines.getNumberOfLines(),
+        updateLines.getLines());
+    lineChanges.replaced(updateLines.getStartingLineNo(), updateLines.getNumberOfLines(),
+        updateLines.getLines().size());
+  }
+
+  private void replaceLines(int startingLine, int numLines, List<String> newContent) {
+    int endingLine = Math.min(startingLine + numLines, numberOfLines);
+    int from = splitAt(startingLine);
+    int to = splitAt(endingLine);
+    pieces.subList(from, to).clear();
+    if (!newContent.isEmpty()) {
+      int addStart = added.size();
+      added.addAll(newContent);
+      pieces.add(from, new Piece(true, addStart, newContent.size()));
+    }
+    numberOfLines += newContent.size() - (endingLine - startingLine);
+    pieceStarts = null;
+  }
+
+  // Makes sure a piece boundary exists at the given line number and returns the index of the
+  // piece that starts there (pieces.size() if the line is past the end of the document).
+  private int splitAt(int lineNo) {
+    if (lineNo >= numberOfLines) {
+      return pieces.size();
+    }
+    int idx = findPiece(lineNo);
+    int offset = lineNo - pieceStarts[idx];
+    if (offset == 0) {
+      return idx;
+    }
+    Piece piece = pieces.get(idx);
+    pieces.set(idx, new Piece(piece.added, piece.start, offset));
+    pieces.add(idx + 1, new Piece(piece.added, piece.start + offset, piece.length - offset));
+    pieceStarts = null;
+    return idx + 1;
+  }
+
+  // Index of the piece which holds the given line number.
+  private int findPiece(int lineNo) {
+    if (pieceStarts == null) {
+      pieceStarts = new int[pieces.size()];
+      int start = 0;
+      for (int i = 0; i < pieces.size(); i++) {
+        pieceStarts[i] = start;
+        start += pieces.get(i).length;
+      }
+    }
+    int lo = 0;
+    int hi = pieces.size() - 1;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (pieceStarts[mid] <= lineNo) {
+        lo = mid;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  // Every line typed since the file was loaded, in this version or in the ones sharing its
+  // buffers.
+  List<String> getAddedLines() {
+    return this.added;
+  }
+
+  private List<String> bufferOf(Piece piece) {
+    return piece.added ? added : original;
+  }
+
+  // Copies the lines in range [startingLine, endingLine) out of the pieces.
+  private List<String> getLines(int startingLine, int endingLine) {
+    List<String> res = new ArrayList<>(Math.max(0, endingLine - startingLine));
+    if (startingLine >= endingLine) {
+      return res;
+    }
+    int idx = findPiece(startingLine);
+    int offset = startingLine - pieceStarts[idx];
+    while (res.size() < endingLine - startingLine) {
+      Piece piece = pieces.get(idx);
+      List<String> buffer = bufferOf(piece);
+      int count = Math.min(piece.length - offset, endingLine - startingLine - res.size());
+      res.addAll(buffer.subList(piece.start + offset, piece.start + offset + count));
+      idx++;
+      offset = 0;
+    }
+    return res;
+  }
+
+  @Override
+  public List<String> getAllLines() {
+    return getLines(0, numberOfLines);
+  }
+
+  @Override
+  public Page getLinesBefore(PageRequest pageRequest) {
+    int lineNumber = pageRequest.getStartingLineNo();
+    int numberOfLines = pageRequest.getNumberOfLines();
+    int startingLine = Math.max(0, lineNumber - numberOfLines);
+    Page page = new Page();
+    page.setLines(getLines(startingLine, Math.min(lineNumber, this.numberOfLines)));
+    page.setFileName(pageRequest.getFileName());
+    page.setStartingLineNo(startingLine);
+    page.setCursorAt(pageRequest.getCursorAt());
+    return page;
+  }
+
+  @Override
+  public Page getLinesAfter(PageRequest pageRequest) {
+    int lineNumber = pageRequest.getStartingLineNo();
+    int numberOfLines = pageRequest.getNumberOfLines();
+    int endingLine = Math.min(lineNumber + numberOfLines + 1, this.numberOfLines);
+    Page page = new Page();
+    page.setFileName(pageRequest.getFileName());
+    page.setCursorAt(pageRequest.getCursorAt());
+    page.setLines(getLines(lineNumber + 1, endingLine));
+    page.setStartingLineNo(lineNumber);
+    return page;
+  }
+
+  @Override
+  public Page getLinesFrom(PageRequest pageRequest) {
+    int lineNumber = pageRequest.getStartingLineNo();
+    int numberOfLines = pageRequest.getNumberOfLines();
+    int endingLine = Math.min(lineNumber + numberOfLines, this.numberOfLines);
+    Page page = new Page();
+    page.setFileName(pageRequest.getFileName());
+    page.setLines(getLines(lineNumber, endingLine));
+    page.setCursorAt(new Cursor(lineNumber, 0));
+    page.setStartingLineNo(lineNumber);
+    return page;
+  }
+
+  @Override
+  public List<Cursor> getCursors(SearchRequest searchRequest) {
+    return ParallelSearch.search(getSegments(), searchRequest);
+  }
+
+  @Override
+  public List<List<String>> getSegments() {
+    List<List<String>> segments = new ArrayList<>(pieces.size());
+    for (Piece piece : pieces) {
+      segments.add(bufferOf(piece).subList(piece.start, piece.start + piece.length));
+    }
+    return segments;
+  }
+
+  @Override
+  public LineChanges getLineChanges() {
+    return this.lineChanges;
+  }
+
+  public int getNumberOfLines() {
+    return this.numberOfLines;
+  }
+
+  int getNumberOfPieces() {
+    return this.pieces.size();
+  }
+
+  @Override
+  public String getFileName() {
+    return this.fileName;
+  }
+
+  @Override
+  public Page getCursorPage() {
+    return null;
+  }
+}
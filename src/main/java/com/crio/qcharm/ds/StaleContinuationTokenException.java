@@ -0,0 +1,11 @@
+package com.crio.qcharm.ds;
+
+// Thrown when the next page of a paged search is asked for after more edits than the file
+// remembers, or after a SearchReplace: where the previous page stopped can't be told anymore.
+
+public class StaleContinuationTokenException extends RuntimeException {
+
+  public StaleContinuationTokenException(String message) {
+    super(message);
+  }
+}
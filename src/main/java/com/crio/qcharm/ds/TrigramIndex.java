@@ -0,0 +1,271 @@
+package com.crio.qcharm.ds;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Inverted index from the trigrams (runs of three chars) of the lines of a file to the lines
+// containing them.
+//
+// Lines are known by ids that don't change when lines are inserted or removed before them.
+// ids holds the id of every line in document order, a line edited in any way gets a new id.
+// Posting lists are sorted arrays of ids, new ids being larger than all the others they are
+// only ever appended to. The ids of removed lines are left in the posting lists: they no
+// longer have a position so they are skipped when looked up, and the whole index is rebuilt
+// once they outnumber the live ones.
+//
+// A line containing a pattern contains every trigram of the pattern, so the lines found in all
+// the posting lists of those trigrams are the only candidates, which still have to be checked.
+//
+// A copy shares the posting lists of the index it was made from. Each index appends only to
+// the posting lists it owns and copies the others on their first change, so that neither
+// sees the changes of the other.
+//
+// Searches look up candidates while the file is edited, and several of them can find the
+// positions stale and rebuild them. Every method touching the state of the index is
+// synchronized on it, so a search never sees positions half built or ids being moved. The
+// lock is held for the lookup of the posting lists and, once after each edit, for the
+// rebuild of the positions, never while lines are being matched.
+//
+// ids is a plain array in document order, so replacing lines by a different number of lines
+// moves the ids of the lines after them, 4 bytes a line. That is the same shift the lists
+// of most versions do; replacing lines by as many others moves nothing.
+
+final class TrigramIndex {
+
+  // Patterns shorter than this have no trigram.
+  static final int GRAM = 3;
+
+  private static final int[] NO_IDS = new int[0];
+  // Rough size of a posting list besides its ids: map entry, boxed key and the list itself.
+  private static final long POSTING_OVERHEAD = 32 + 24 + 24 + 16;
+
+  private final Map<Long, Posting> postings;
+  // Posting lists owned by this index hold this object.
+  private Object owner = new Object();
+  private int[] ids = NO_IDS;
+  private int numberOfLines;
+  private int nextId;
+  private int deadIds;
+  private long postedIds;
+  // Position of every id, -1 for removed lines. Rebuilt after edits, when next needed.
+  private int[] positions;
+
+  // Input:
+  //      segments - the lines of the file in order
+  // Description:
+  //      Indexes every line.
+
+  TrigramIndex(List<? extends List<String>> segments) {
+    this.postings = new HashMap<>();
+    rebuild(segments);
+  }
+
+  // Input:
+  //      index - index of the lines of a SourceFileVersion being copied
+  // Description:
+  //      Same index for the copy, sharing the posting lists until either index changes them.
+
+  TrigramIndex(TrigramIndex index) {
+    synchronized (index) {
+      this.postings = new HashMap<>(index.postings);
+      this.ids = Arrays.copyOf(index.ids, index.ids.length);
+      this.numberOfLines = index.numberOfLines;
+      this.nextId = index.nextId;
+      this.deadIds = index.deadIds;
+      this.postedIds = index.postedIds;
+      this.positions = index.positions;
+      index.owner = new Object();
+    }
+  }
+
+  synchronized void rebuild(List<? extends List<String>> segments) {
+    postings.clear();
+    int total = 0;
+    for (List<String> segment : segments) {
+      total += segment.size();
+    }
+    ids = new int[Math.max(16, total)];
+    numberOfLines = 0;
+    nextId = 0;
+    deadIds = 0;
+    postedIds = 0;
+    positions = null;
+    for (List<String> segment : segments) {
+      for (String line : segment) {
+        ids[numberOfLines++] = add(line);
+      }
+    }
+  }
+
+  // Input:
+  //      startingLineNo, numberOfLines - lines removed
+  //      lines - lines inserted in their place
+  // Description:
+  //      Mirrors UpdateLines: indexes the new lines and forgets the removed ones.
+
+  synchronized void replace(int startingLineNo, int numberOfLines, List<String> lines) {
+    int from = Math.min(startingLineNo, this.numberOfLines);
+    int to = Math.min(from + numberOfLines, this.numberOfLines);
+    int newSize = this.numberOfLines - (to - from) + lines.size();
+    if (newSize > ids.length) {
+      ids = Arrays.copyOf(ids, Math.max(newSize, ids.length + (ids.length >> 1)));
+    }
+    if (to - from != lines.size()) {
+      System.arraycopy(ids, to, ids, from + lines.size(), this.numberOfLines - to);
+    }
+    deadIds += to - from;
+    for (int i = 0; i < lines.size(); i++) {
+      ids[from + i] = add(lines.get(i));
+    }
+    this.numberOfLines = newSize;
+    positions = null;
+  }
+
+  // Input:
+  //      lineNo - line that was edited in place
+  //      line - its new content
+  // Description:
+  //      Gives the line a new id holding the new content.
+
+  synchronized void replace(int lineNo, String line) {
+    deadIds++;
+    ids[lineNo] = add(line);
+    positions = null;
+  }
+
+  // True once the removed lines outnumber the live ones and rebuild() should be called.
+  synchronized boolean isStale() {
+    return deadIds > numberOfLines + 1024;
+  }
+
+  // Input:
+  //      pattern - at least GRAM chars long
+  // Description:
+  //      Returns the line numbers, in increasing order, of the lines holding every trigram of
+  //      the pattern. The lines containing the pattern are among them.
+
+  int[] candidates(String pattern) {
+    int[] res;
+    int[] positions;
+    synchronized (this) {
+      res = lookup(pattern);
+      if (res.length == 0) {
+        return res;
+      }
+      positions = positions();
+    }
+
+    int found = 0;
+    for (int i = 0; i < res.length; i++) {
+      int position = positions[res[i]];
+      if (position >= 0) {
+        res[found++] = position;
+      }
+    }
+    res = Arrays.copyOf(res, found);
+    Arrays.sort(res);
+    return res;
+  }
+
+  // The ids of the lines holding every trigram of the pattern. Called with the lock held.
+  private int[] lookup(String pattern) {
+    List<Posting> lists = new ArrayList<>();
+    for (int i = 0; i + GRAM <= pattern.length(); i++) {
+      Posting posting = postings.get(trigram(pattern, i));
+      if (posting == null) {
+        return NO_IDS;
+      }
+      lists.add(posting);
+    }
+    lists.sort((a, b) -> Integer.compare(a.size, b.size));
+    int[] res = Arrays.copyOf(lists.get(0).ids, lists.get(0).size);
+    int size = res.length;
+    for (int i = 1; i < lists.size() && size > 0; i++) {
+      size = intersect(res, size, lists.get(i));
+    }
+    return Arrays.copyOf(res, size);
+  }
+
+  synchronized int getNumberOfLines() {
+    return this.numberOfLines;
+  }
+
+  // Estimate of the memory taken by the index, in bytes.
+  synchronized long getMemoryUsage() {
+    return postings.size() * POSTING_OVERHEAD + 4 * postedIds + 4L * ids.length
+        + (positions == null ? 0 : 4L * positions.length);
+  }
+
+  private int add(String line) {
+    int id = nextId++;
+    for (int i = 0; i + GRAM <= line.length(); i++) {
+      long key = trigram(line, i);
+      Posting posting = postings.get(key);
+      // A line holding a trigram more than once is posted once.
+      if (posting == null || posting.ids[posting.size - 1] != id) {
+        if (posting == null || posting.owner != owner) {
+          posting = new Posting(owner, posting);
+          postings.put(key, posting);
+        }
+        posting.add(id);
+        postedIds++;
+      }
+    }
+    return id;
+  }
+
+  // Called with the lock of the index held.
+  private int[] positions() {
+    if (positions == null) {
+      positions = new int[nextId];
+      Arrays.fill(positions, -1);
+      for (int i = 0; i < numberOfLines; i++) {
+        positions[ids[i]] = i;
+      }
+    }
+    return positions;
+  }
+
+  // Keeps in ids[0, size) the ids that are also in the posting, returns their number.
+  private static int intersect(int[] ids, int size, Posting posting) {
+    int found = 0;
+    int j = 0;
+    for (int i = 0; i < size && j < posting.size; i++) {
+      j = Arrays.binarySearch(posting.ids, j, posting.size, ids[i]);
+      if (j >= 0) {
+        ids[found++] = ids[i];
+        j++;
+      } else {
+        j = -j - 1;
+      }
+    }
+    return found;
+  }
+
+  private static long trigram(String s, int i) {
+    return (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+  }
+
+  private static final class Posting {
+    private final Object owner;
+    private int[] ids;
+    private int size;
+
+    // A posting list of the given owner, holding the ids of shared if not null.
+    Posting(Object owner, Posting shared) {
+      this.owner = owner;
+      this.ids = shared == null ? new int[2] : Arrays.copyOf(shared.ids, shared.size + 2);
+      this.size = shared == null ? 0 : shared.size;
+    }
+
+    void add(int id) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+      }
+      ids[size++] = id;
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+// A search that first finds the occurrences in the lines on screen, which is all the editor
+// needs to highlight, and leaves the search of the whole file to be run afterwards, usually
+// on another thread.
+//
+// The ViewportSearch is given a snapshot of the version, a copy made with cloneObj() that shares
+// the lines of the version, so the version can be edited while the search is running. The
+// lines on screen are read from it when the ViewportSearch is created, the rest of the file
+// only by searchAll().
+
+public final class ViewportSearch {
+
+  private final List<Cursor> viewportCursors;
+  private final SourceFileVersion snapshot;
+  private final SearchRequest searchRequest;
+
+  // Input:
+  //      snapshot - copy of the version, no longer edited
+  //      searchRequest - the pattern, literal or regex
+  //      startingLineNo, numberOfLines - the lines on screen
+  // Description:
+  //      Searches the lines on screen. Throws a PatternSyntaxException if the regex is invalid
+  //      and a SearchTimeoutException if they take longer than the budget of the request.
+
+  ViewportSearch(SourceFileVersion snapshot, SearchRequest searchRequest,
+      int startingLineNo, int numberOfLines) {
+    this.snapshot = snapshot;
+    this.searchRequest = searchRequest;
+    this.viewportCursors = new ArrayList<>();
+    if (numberOfLines > 0) {
+      SearchScan scan =
+          new SearchScan(snapshot, searchRequest, new Cursor(startingLineNo, 0));
+      scan.setEndLineNo(startingLineNo + numberOfLines);
+      for (Cursor cursor = scan.next(); cursor != null; cursor = scan.next()) {
+        viewportCursors.add(cursor);
+      }
+    }
+  }
+
+  // The occurrences in the lines on screen, sorted by line then column.
+  public List<Cursor> getViewportCursors() {
+    return this.viewportCursors;
+  }
+
+  // Returns every occurrence in the file as it was when the search was created, sorted by
+  // line then column, like SourceFileVersion.getCursors(). Can be called from any thread.
+
+  public List<Cursor> searchAll() {
+    return ParallelSearch.search(snapshot.getSegments(), searchRequest);
+  }
+}
@@ -3,16 +3,34 @@ package com.crio.qcharm.ide;
 
 import com.crio.qcharm.ds.CopyBuffer;
 import com.crio.qcharm.ds.Cursor;
+import com.crio.qcharm.ds.CursorArray;
+import com.crio.qcharm.ds.CursorRange;
+import com.crio.qcharm.ds.EditJournal;
 import com.crio.qcharm.ds.FileInfo;
+import com.crio.qcharm.ds.FileUpload;
+import com.crio.qcharm.ds.FuzzyMatch;
+import com.crio.qcharm.ds.HistorySize;
 import com.crio.qcharm.ds.Page;
+import com.crio.qcharm.ds.PatternCursor;
+import com.crio.qcharm.ds.ReplaceResult;
 import com.crio.qcharm.ds.RunCodeArgs;
 import com.crio.qcharm.ds.RunCodeOutput;
+import com.crio.qcharm.ds.SearchPage;
+import com.crio.qcharm.ds.SearchTimeoutException;
 import com.crio.qcharm.ds.SourceFileHandler;
-import com.crio.qcharm.ds.SourceFileHandlerArrayListImpl;
+import com.crio.qcharm.ds.SourceFileHandlerArenaImpl;
+import com.crio.qcharm.ds.SourceFileHandlerMappedImpl;
+import com.crio.qcharm.ds.SourceFileHandlerPersistentImpl;
+import com.crio.qcharm.ds.SourceFileHandlerPieceTableImpl;
+import com.crio.qcharm.ds.SourceFileHandlerRegistry;
+import com.crio.qcharm.ds.SourceFileHandlerRegistry.Lease;
+import com.crio.qcharm.ds.StaleContinuationTokenException;
+import com.crio.qcharm.ds.ViewportSearch;
 import com.crio.qcharm.request.EditRequest;
 import com.crio.qcharm.request.MasterRequest;
 import com.crio.qcharm.request.PageRequest;
 import com.crio.qcharm.request.SearchReplaceRequest;
+import com.crio.qcharm.request.SearchRequest;
 import com.crio.qcharm.runner.BaseRunner;
 import com.crio.qcharm.runner.CRunner;
 import com.crio.qcharm.runner.CppRunner;
@@ -20,173 +38,1053 @@ import com.crio.qcharm.runner.JavaRunner;
 import com.crio.qcharm.runner.PythonRunner;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.PatternSyntaxException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @CrossOrigin(origins = "*")
 @RestController
 @RequestMapping("qcharm")
 public class QCharmController {
-  SourceFileHandler sourceFileHandler =
-      new SourceFileHandlerArrayListImpl("fileName");
+  // Files with at least this many lines are kept in a piece table, so that an edit
+  // doesn't have to copy the whole file. Smaller files use the persistent tree, whose
+  // undo snapshots are shared with the current version.
+  static final int PIECE_TABLE_THRESHOLD = 10000;
+
+  // Header telling the files of one editor session apart from another's. Requests without it
+  // all belong to the same session.
+  static final String SESSION_HEADER = "X-Session-Id";
+  static final String DEFAULT_SESSION = "default";
+
+  // Uploaded bodies are decoded this many chars at a time.
+  static final int UPLOAD_BUFFER_CHARS = 1 << 16;
+
+  // Largest file accepted by the upload endpoints, see application.properties.
+  @Value("${qcharm.upload.max-bytes:268435456}")
+  long uploadMaxBytes = 256L << 20;
+
+  // Directory of the files load_local_file_new may open, see application.properties.
+  @Value("${qcharm.local-files.root:local-files}")
+  String localFilesRoot = "local-files";
+
+  // How long upload_first_page_new waits for the first page of a file being uploaded.
+  static final long FIRST_PAGE_TIMEOUT_MILLIS = 10000;
+
+  // Undo history budget of every open file, see application.properties.
+  @Value("${qcharm.undo.max-entries:1000}")
+  int undoMaxEntries = 1000;
+
+  @Value("${qcharm.undo.max-bytes:67108864}")
+  long undoMaxBytes = 64L << 20;
+
+  @Value("${qcharm.undo.coalesce-millis:1000}")
+  long undoCoalesceMillis = 1000;
+
+  // Directory of the edit journals of the open files, no journal if empty.
+  @Value("${qcharm.journal.dir:}")
+  String journalDir = "";
+
+  @Value("${qcharm.journal.sync-every-records:32}")
+  int journalSyncEveryRecords = 32;
+
+  @Value("${qcharm.journal.sync-interval-millis:100}")
+  long journalSyncIntervalMillis = 100;
+
+  @Value("${qcharm.journal.snapshot-every-records:1000}")
+  int journalSnapshotEveryRecords = 1000;
+
+  // Memory the open files may take before the least recently used ones are spilled to
+  // spill-dir, a qcharm-spill directory in java.io.tmpdir if empty.
+  @Value("${qcharm.registry.spill-dir:}")
+  String spillDir = "";
+
+  @Value("${qcharm.registry.memory-budget:536870912}")
+  long memoryBudget = 512L << 20;
+
+  // Time budget of a regex search.
+  @Value("${qcharm.search.regex-timeout-millis:2000}")
+  long regexTimeoutMillis = 2000;
+
+  // Files with at least this many lines get a trigram index for their searches, no file does
+  // if 0.
+  @Value("${qcharm.search.trigram-index-min-lines:100000}")
+  int trigramIndexMinLines = 100000;
+
+  // Threads of search_stream_new and search_viewport_new, and streams waiting for one of them,
+  // see application.properties.
+  @Value("${qcharm.search.stream-threads:8}")
+  int searchStreamThreads = 8;
+
+  @Value("${qcharm.search.stream-queue:64}")
+  int searchStreamQueue = 64;
+
+  private SourceFileHandlerRegistry registry;
+
+  // Journal of every open file, by session and file name, kept across reloads of the file.
+  private final Map<String, EditJournal> journals = new ConcurrentHashMap<>();
+
+  // Thread forcing the journaled edits to the disk every journalSyncIntervalMillis, even when
+  // no edit comes to force them. Null without journals.
+  private ScheduledExecutorService journalSync;
+
+  // Clipboard of every session, shared by all the files of the session.
+  private final Map<String, CopyBuffer> copyBuffers = new ConcurrentHashMap<>();
+
+  // Files being uploaded, by session and file name.
+  private final Map<String, FileUpload> uploads = new ConcurrentHashMap<>();
+
+  // Threads sending the matches of search_stream_new and search_viewport_new. A stream takes
+  // one of searchStreamSlots before doing anything and gives it back once its task is over, so
+  // at most searchStreamThreads + searchStreamQueue streams are running or waiting. Both are
+  // created by the first stream.
+  private ExecutorService searchStreams;
+  private Semaphore searchStreamSlots;
+
+  synchronized SourceFileHandlerRegistry getRegistry() throws IOException {
+    if (registry == null) {
+      Path directory = spillDir == null || spillDir.isEmpty()
+          ? Paths.get(System.getProperty("java.io.tmpdir"), "qcharm-spill")
+          : Paths.get(spillDir);
+      registry = new SourceFileHandlerRegistry(directory, memoryBudget);
+    }
+    return registry;
+  }
+
+  // Reopens the files that were being edited before the server restarted, from the latest
+  // snapshot of their journal and the edits journaled after it, and starts journalSync. The
+  // journal of a file lives in journalDir/<session>/<file name>, both names URL-encoded.
+  @PostConstruct
+  void recoverFromJournal() throws IOException {
+    if (journalDir == null || journalDir.isEmpty()) {
+      return;
+    }
+    journalSync = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "journal-sync");
+      thread.setDaemon(true);
+      return thread;
+    });
+    journalSync.scheduleWithFixedDelay(this::syncJournals, journalSyncIntervalMillis,
+        journalSyncIntervalMillis, TimeUnit.MILLISECONDS);
+    Path root = Files.createDirectories(Paths.get(journalDir));
+    try (DirectoryStream<Path> sessions = Files.newDirectoryStream(root, Files::isDirectory)) {
+      for (Path sessionDirectory : sessions) {
+        String sessionId = URLDecoder.decode(sessionDirectory.getFileName().toString(), "UTF-8");
+        try (DirectoryStream<Path> files =
+            Files.newDirectoryStream(sessionDirectory, Files::isDirectory)) {
+          for (Path fileDirectory : files) {
+            String fileName = URLDecoder.decode(fileDirectory.getFileName().toString(), "UTF-8");
+            EditJournal journal = getJournal(sessionId, fileName);
+            SourceFileHandler recovered = journal.recover(this::getSourceFileHandler);
+            if (recovered != null) {
+              getRegistry().put(sessionId, fileName, recovered);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void syncJournals() {
+    for (EditJournal journal : journals.values()) {
+      try {
+        journal.syncIfDue();
+      } catch (IOException e) {
+        // Retried on the next run, or by the next edit.
+        System.out.println("Could not sync a journal: " + e);
+      }
+    }
+  }
+
+  // Stops the threads of the controller and forces the journaled edits to the disk.
+  @PreDestroy
+  void shutdown() {
+    if (journalSync != null) {
+      journalSync.shutdown();
+    }
+    synchronized (this) {
+      if (searchStreams != null) {
+        searchStreams.shutdownNow();
+      }
+    }
+    for (EditJournal journal : journals.values()) {
+      try {
+        journal.close();
+      } catch (IOException e) {
+        System.out.println("Could not close a journal: " + e);
+      }
+    }
+  }
+
+  private static String key(String sessionId, String fileName) {
+    return sessionId + '\0' + fileName;
+  }
+
+  private EditJournal getJournal(String sessionId, String fileName) throws IOException {
+    try {
+      return journals.computeIfAbsent(key(sessionId, fileName), key -> {
+        try {
+          Path directory = Paths.get(journalDir, URLEncoder.encode(sessionId, "UTF-8"),
+              URLEncoder.encode(fileName, "UTF-8"));
+          return new EditJournal(directory, journalSyncEveryRecords, journalSyncIntervalMillis,
+              journalSnapshotEveryRecords);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+
+  SourceFileHandler getSourceFileHandler(FileInfo fileInfo) {
+    SourceFileHandler handler;
+    if (fileInfo.getLines().size() >= PIECE_TABLE_THRESHOLD) {
+      handler = new SourceFileHandlerPieceTableImpl(fileInfo.getFileName());
+    } else {
+      handler = new SourceFileHandlerPersistentImpl(fileInfo.getFileName());
+    }
+    handler.setHistoryLimits(undoMaxEntries, undoMaxBytes, undoCoalesceMillis);
+    handler.setTrigramIndex(needsTrigramIndex(fileInfo.getLines().size()));
+    return handler;
+  }
+
+  private boolean needsTrigramIndex(int numberOfLines) {
+    return trigramIndexMinLines > 0 && numberOfLines >= trigramIndexMinLines;
+  }
+
+  // Handler of a file opened earlier by the session, reloaded from the disk if it was spilled.
+  // The registry doesn't spill it until the lease is closed, at the end of the request.
+  private Lease lease(String sessionId, String fileName) throws IOException {
+    Lease lease = getRegistry().lease(sessionId, fileName);
+    if (lease == null) {
+      throw new IllegalStateException("File " + fileName + " is not open in session " + sessionId);
+    }
+    return lease;
+  }
 
   @PostMapping("/get_prev_lines_new")
   @ResponseBody
-  public Object getPrevLinesNew(@RequestBody MasterRequest masterRequest) {
-    Page prevPage = sourceFileHandler.getPrevLines(masterRequest.getPageRequest());
-    return new ResponseEntity<>(prevPage, HttpStatus.OK);
+  public Object getPrevLinesNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      Page prevPage = sourceFileHandler.getPrevLines(masterRequest.getPageRequest());
+      return new ResponseEntity<>(prevPage, HttpStatus.OK);
+    }
   }
 
   @PostMapping("/get_next_lines_new")
   @ResponseBody
-  public Object getNextLinesNew(@RequestBody MasterRequest masterRequest) {
-    sourceFileHandler.editLines(masterRequest.getEditRequest());
-    Page prevPage = sourceFileHandler.getNextLines(masterRequest.getPageRequest());
-    return new ResponseEntity<>(prevPage, HttpStatus.OK);
+  public Object getNextLinesNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      Page prevPage = sourceFileHandler.getNextLines(masterRequest.getPageRequest());
+      return new ResponseEntity<>(prevPage, HttpStatus.OK);
+    }
   }
 
   @PostMapping("/load_file_new")
   @ResponseBody
-  public Object loadFileNew(@RequestBody MasterRequest masterRequest) {
+  public Object loadFileNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
     FileInfo fileInfo = masterRequest.getFileInfo();
+    SourceFileHandler sourceFileHandler = getSourceFileHandler(fileInfo);
+    sourceFileHandler.setCopyBuffer(copyBuffers.get(sessionId));
+    if (journalDir != null && !journalDir.isEmpty()) {
+      sourceFileHandler.setJournal(getJournal(sessionId, fileInfo.getFileName()));
+    }
     Page page = sourceFileHandler.loadFile(fileInfo);
+    getRegistry().put(sessionId, fileInfo.getFileName(), sourceFileHandler);
     return new ResponseEntity<>(page, HttpStatus.OK);
   }
 
-  @PostMapping("/jump_new")
+  // Loads a file sent as the raw request body, fileName being a query parameter. The body may
+  // be sent with chunked transfer encoding: lines are stored as they arrive instead of being
+  // held in one dataNow string, and upload_first_page_new can serve the first page before the
+  // upload is over. Returns the first page once the whole file has been received, 413 if the
+  // body is longer than uploadMaxBytes.
+  @PostMapping("/upload_file_new")
   @ResponseBody
-  public Object getLinesNew(@RequestBody MasterRequest masterRequest) {
-    sourceFileHandler.editLines(masterRequest.getEditRequest());
-    Page page = sourceFileHandler.getLinesFrom(masterRequest.getPageRequest());
+  public Object uploadFileNew(@RequestParam("fileName") String fileName, InputStream body,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    Page page = ingest(sessionId, fileName, body);
+    if (page == null) {
+      return new ResponseEntity<>(tooLarge(), HttpStatus.PAYLOAD_TOO_LARGE);
+    }
     return new ResponseEntity<>(page, HttpStatus.OK);
   }
 
-  @PostMapping("/search_new")
+  // Same as upload_file_new for a multipart/form-data body with the file in the "file" part.
+  // fileName defaults to the name of the uploaded file.
+  // The container reads the whole multipart body, into memory or a temporary file, before
+  // this method is called, and refuses it past spring.servlet.multipart.max-request-size.
+  // The upload is therefore over before the lines are stored: upload_first_page_new can't
+  // serve the first page sooner than the end of the upload, only upload_file_new streams.
+  @PostMapping("/upload_multipart_file_new")
   @ResponseBody
-  public Object searchNew(@RequestBody MasterRequest masterRequest) {
-    sourceFileHandler.editLines(masterRequest.getEditRequest());
-    List<Cursor> cursors = sourceFileHandler.search(masterRequest.getSearchRequest());
-    return new ResponseEntity<>(cursors, HttpStatus.OK);
+  public Object uploadMultipartFileNew(@RequestParam("file") MultipartFile file,
+      @RequestParam(value = "fileName", required = false) String fileName,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    if (fileName == null) {
+      fileName = file.getOriginalFilename();
+    }
+    try (InputStream body = file.getInputStream()) {
+      Page page = ingest(sessionId, fileName, body);
+      if (page == null) {
+        return new ResponseEntity<>(tooLarge(), HttpStatus.PAYLOAD_TOO_LARGE);
+      }
+      return new ResponseEntity<>(page, HttpStatus.OK);
+    }
   }
 
-  @PostMapping("/cut_new")
+  // First 50 lines of a file, as soon as they have been received if the file is still being
+  // uploaded.
+  @PostMapping("/upload_first_page_new")
   @ResponseBody
-  public Object cutNew(@RequestBody MasterRequest masterRequest) {
+  public Object uploadFirstPageNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException, InterruptedException {
+    String fileName = masterRequest.getFileName();
+    PageRequest pageRequest = new PageRequest(0, fileName, 50, new Cursor(0, 0));
+    FileUpload upload = uploads.get(key(sessionId, fileName));
+    if (upload != null) {
+      upload.awaitLines(50, FIRST_PAGE_TIMEOUT_MILLIS);
+      return new ResponseEntity<>(upload.getLinesFrom(pageRequest), HttpStatus.OK);
+    }
+    try (Lease lease = lease(sessionId, fileName)) {
+      Page page = lease.getHandler().getLinesFrom(pageRequest);
+      return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+  }
+
+  // Reads the body into a FileUpload, then loads it into a new handler of the session.
+  // Returns null without loading anything if the body is longer than uploadMaxBytes.
+  private Page ingest(String sessionId, String fileName, InputStream body) throws IOException {
+    String key = key(sessionId, fileName);
+    FileUpload upload = new FileUpload(fileName);
+    uploads.put(key, upload);
+    try {
+      LimitedInputStream limited = new LimitedInputStream(body, uploadMaxBytes);
+      Reader reader = new InputStreamReader(limited, StandardCharsets.UTF_8);
+      char[] buffer = new char[UPLOAD_BUFFER_CHARS];
+      int read;
+      while ((read = reader.read(buffer)) != -1) {
+        upload.append(buffer, 0, read);
+      }
+      if (limited.exceeded) {
+        return null;
+      }
+      SourceFileHandlerArenaImpl handler = new SourceFileHandlerArenaImpl(fileName);
+      handler.setCopyBuffer(copyBuffers.get(sessionId));
+      handler.setHistoryLimits(undoMaxEntries, undoMaxBytes, undoCoalesceMillis);
+      handler.setTrigramIndex(needsTrigramIndex(upload.getNumberOfLines()));
+      if (journalDir != null && !journalDir.isEmpty()) {
+        handler.setJournal(getJournal(sessionId, fileName));
+      }
+      Page page = handler.loadFile(upload);
+      getRegistry().put(sessionId, fileName, handler);
+      return page;
+    } finally {
+      upload.abort();
+      uploads.remove(key, upload);
+    }
+  }
 
-    final Pair<CopyBuffer, List<String>> buffers = masterRequest.getCopyBuffer();
-    sourceFileHandler.setCopyBuffer(buffers.getKey());
-    EditRequest editRequest = masterRequest.getEditRequest();
-    editRequest.setNewContent(buffers.getValue());
-    sourceFileHandler.editLines(editRequest);
-    final PageRequest pageRequest = masterRequest.getPageRequestPostEdit();
-    final Page page = sourceFileHandler.getLinesFrom(pageRequest);
-    page.setCursorAt(masterRequest.getCursorStart());
+  private String tooLarge() {
+    return "Files are limited to " + uploadMaxBytes + " bytes";
+  }
+
+  // Body of an upload, ending early with exceeded set once more than maxBytes have been read.
+  private static final class LimitedInputStream extends FilterInputStream {
+    private long remaining;
+    private boolean exceeded;
+
+    LimitedInputStream(InputStream in, long maxBytes) {
+      super(in);
+      this.remaining = maxBytes;
+    }
 
+    @Override
+    public int read() throws IOException {
+      byte[] one = new byte[1];
+      return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (exceeded) {
+        return -1;
+      }
+      int read = in.read(b, off, (int) Math.min(len, remaining + 1));
+      if (read > 0) {
+        remaining -= read;
+        if (remaining < 0) {
+          exceeded = true;
+          return -1;
+        }
+      }
+      return read;
+    }
+  }
+
+
+  // Opens a file which already lives on the server's disk, fileName being its path relative
+  // to localFilesRoot. The file is memory mapped instead of being uploaded through dataNow.
+  // Answers 400 if fileName isn't a valid path, 403 if it is absolute or leads out of
+  // localFilesRoot, 404 if there is no such file.
+  @PostMapping("/load_local_file_new")
+  @ResponseBody
+  public Object loadLocalFileNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    String fileName = masterRequest.getFileName();
+    Path path;
+    try {
+      path = localFile(fileName);
+    } catch (InvalidPathException e) {
+      return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+    } catch (NoSuchFileException e) {
+      return new ResponseEntity<>("No such file: " + fileName, HttpStatus.NOT_FOUND);
+    }
+    if (path == null) {
+      return new ResponseEntity<>(fileName + " is not under the local files root",
+          HttpStatus.FORBIDDEN);
+    }
+    SourceFileHandlerMappedImpl handler = new SourceFileHandlerMappedImpl(fileName);
+    handler.setCopyBuffer(copyBuffers.get(sessionId));
+    handler.setHistoryLimits(undoMaxEntries, undoMaxBytes, undoCoalesceMillis);
+    Page page = handler.loadFile(path);
+    getRegistry().put(sessionId, fileName, handler);
+    // The file isn't journaled anymore, the journal of the handler it replaced is released.
+    EditJournal journal = journals.remove(key(sessionId, fileName));
+    if (journal != null) {
+      journal.close();
+    }
     return new ResponseEntity<>(page, HttpStatus.OK);
   }
 
+  // The real path of the file fileName names under localFilesRoot, null if fileName is
+  // absolute or leads out of localFilesRoot, with ".." or through a symbolic link. Throws a
+  // NoSuchFileException if there is no such file.
+  Path localFile(String fileName) throws IOException {
+    Path root = Files.createDirectories(Paths.get(localFilesRoot)).toRealPath();
+    Path relative = Paths.get(fileName);
+    if (relative.isAbsolute()) {
+      return null;
+    }
+    Path path = root.resolve(relative).normalize();
+    if (!path.startsWith(root)) {
+      return null;
+    }
+    Path real = path.toRealPath();
+    return real.startsWith(root) ? real : null;
+  }
+
+  @PostMapping("/jump_new")
+  @ResponseBody
+  public Object getLinesNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      Page page = sourceFileHandler.getLinesFrom(masterRequest.getPageRequest());
+      return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+  }
+
+  @PostMapping("/search_new")
+  @ResponseBody
+  public Object searchNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      SearchRequest searchRequest = masterRequest.getSearchRequest();
+      searchRequest.setTimeoutMillis(regexTimeoutMillis);
+      try {
+        List<Cursor> cursors = sourceFileHandler.search(searchRequest);
+        return new ResponseEntity<>(cursors, HttpStatus.OK);
+      } catch (PatternSyntaxException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+      } catch (SearchTimeoutException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+      }
+    }
+  }
+
+  // Same as search_new, for the query of a search box sent on every keystroke: while the
+  // query is only extended or shortened, the matches are found from the previous ones.
+  @PostMapping("/search_as_you_type_new")
+  @ResponseBody
+  public Object searchAsYouTypeNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      SearchRequest searchRequest = masterRequest.getSearchRequest();
+      searchRequest.setTimeoutMillis(regexTimeoutMillis);
+      try {
+        List<Cursor> cursors = sourceFileHandler.searchAsYouType(searchRequest);
+        return new ResponseEntity<>(cursors, HttpStatus.OK);
+      } catch (PatternSyntaxException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+      } catch (SearchTimeoutException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+      }
+    }
+  }
+
+  // The first match at or after cursorStart, 204 if there is none. With wrapAround, the
+  // search goes on from the start of the file.
+  @PostMapping("/find_next_new")
+  @ResponseBody
+  public Object findNextNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      SearchRequest searchRequest = masterRequest.getSearchRequest();
+      searchRequest.setTimeoutMillis(regexTimeoutMillis);
+      try {
+        Cursor cursor = sourceFileHandler.findNext(searchRequest, masterRequest.getCursorStart());
+        return cursor == null ? new ResponseEntity<>(HttpStatus.NO_CONTENT)
+            : new ResponseEntity<>(cursor, HttpStatus.OK);
+      } catch (PatternSyntaxException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+      } catch (SearchTimeoutException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+      }
+    }
+  }
+
+  // The last match before cursorStart, 204 if there is none. With wrapAround, the search goes
+  // on from the end of the file.
+  @PostMapping("/find_previous_new")
+  @ResponseBody
+  public Object findPreviousNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      SearchRequest searchRequest = masterRequest.getSearchRequest();
+      searchRequest.setTimeoutMillis(regexTimeoutMillis);
+      try {
+        Cursor cursor =
+            sourceFileHandler.findPrevious(searchRequest, masterRequest.getCursorStart());
+        return cursor == null ? new ResponseEntity<>(HttpStatus.NO_CONTENT)
+            : new ResponseEntity<>(cursor, HttpStatus.OK);
+      } catch (PatternSyntaxException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+      } catch (SearchTimeoutException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+      }
+    }
+  }
+
+  // Same matches as search_new as {"lineNos":[...],"columnNos":[...]}, the line and column of
+  // the i-th match being the i-th element of each array.
+  @PostMapping(value = "/search_packed_new", produces = "application/json")
+  @ResponseBody
+  public Object searchPackedNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      SearchRequest searchRequest = masterRequest.getSearchRequest();
+      searchRequest.setTimeoutMillis(regexTimeoutMillis);
+      try {
+        CursorArray cursors = sourceFileHandler.searchPacked(searchRequest);
+        return new ResponseEntity<>(cursors.toJson(), HttpStatus.OK);
+      } catch (PatternSyntaxException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+      } catch (SearchTimeoutException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+      }
+    }
+  }
+
+  // First maxResults matches of the pattern and a continuationToken to pass back in the
+  // request of the next page, null on the last page. A token older than the edits the file
+  // remembers is answered with 410.
+  @PostMapping("/search_page_new")
+  @ResponseBody
+  public Object searchPageNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      SearchRequest searchRequest = masterRequest.getSearchRequest();
+      searchRequest.setTimeoutMillis(regexTimeoutMillis);
+      try {
+        SearchPage page = sourceFileHandler.searchPage(searchRequest);
+        return new ResponseEntity<>(page, HttpStatus.OK);
+      } catch (IllegalArgumentException e) {
+        // PatternSyntaxException included.
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+      } catch (StaleContinuationTokenException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.GONE);
+      } catch (SearchTimeoutException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+      }
+    }
+  }
+
+  // Server-sent events with the matches of the pattern as the search goes through the file:
+  // "cursors" events holding up to maxResults matches each, then a "done" event with the
+  // number of matches, or an "error" event with the reason the search stopped. Answered with
+  // 503, without applying the edit, when too many streams are running already.
+  @PostMapping("/search_stream_new")
+  public ResponseEntity<SseEmitter> searchStreamNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    if (!reserveSearchStream()) {
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    boolean started = false;
+    try {
+      // The lease is closed by the search task once the stream is over.
+      Lease lease = lease(sessionId, masterRequest.getFileName());
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      SearchRequest searchRequest = masterRequest.getSearchRequest();
+      SseEmitter emitter = new SseEmitter(0L);
+      try {
+        sourceFileHandler.editLines(masterRequest.getEditRequest());
+        searchRequest.setTimeoutMillis(regexTimeoutMillis);
+        startSearchStream(() -> {
+          try {
+            long found = 0;
+            do {
+              SearchPage page = sourceFileHandler.searchPage(searchRequest);
+              found += page.getCursors().size();
+              if (!page.getCursors().isEmpty()) {
+                emitter.send(SseEmitter.event().name("cursors").data(page.getCursors()));
+              }
+              searchRequest.setContinuationToken(page.getContinuationToken());
+            } while (searchRequest.getContinuationToken() != null);
+            emitter.send(SseEmitter.event().name("done").data(found));
+            emitter.complete();
+          } catch (IllegalArgumentException | StaleContinuationTokenException
+              | SearchTimeoutException e) {
+            try {
+              emitter.send(SseEmitter.event().name("error").data(e.getMessage()));
+              emitter.complete();
+            } catch (IOException sendFailed) {
+              emitter.completeWithError(sendFailed);
+            }
+          } catch (IOException | RuntimeException e) {
+            emitter.completeWithError(e);
+          } finally {
+            lease.close();
+          }
+        });
+        started = true;
+      } catch (RuntimeException e) {
+        lease.close();
+        throw e;
+      }
+      return new ResponseEntity<>(emitter, HttpStatus.OK);
+    } finally {
+      if (!started) {
+        searchStreamSlots.release();
+      }
+    }
+  }
+
+  // Server-sent events for highlighting the page on screen first: a "viewport" event with the
+  // matches in the numberOfLines lines from lineNumber, sent as soon as they are found, then
+  // a "cursors" event with the matches of the whole file once the rest of it is searched, or
+  // an "error" event with the reason the search stopped. Answered with 503, like
+  // search_stream_new, when too many streams are running already.
+  @PostMapping("/search_viewport_new")
+  public ResponseEntity<SseEmitter> searchViewportNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    if (!reserveSearchStream()) {
+      return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    boolean started = false;
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      SearchRequest searchRequest = masterRequest.getSearchRequest();
+      searchRequest.setTimeoutMillis(regexTimeoutMillis);
+      SseEmitter emitter = new SseEmitter(0L);
+      ViewportSearch viewportSearch;
+      try {
+        viewportSearch =
+            sourceFileHandler.searchViewport(searchRequest, masterRequest.getPageRequest());
+        emitter.send(SseEmitter.event().name("viewport")
+            .data(viewportSearch.getViewportCursors()));
+      } catch (PatternSyntaxException | SearchTimeoutException e) {
+        emitter.send(SseEmitter.event().name("error").data(e.getMessage()));
+        emitter.complete();
+        return new ResponseEntity<>(emitter, HttpStatus.OK);
+      }
+      startSearchStream(() -> {
+        try {
+          List<Cursor> cursors = viewportSearch.searchAll();
+          emitter.send(SseEmitter.event().name("cursors").data(cursors));
+          emitter.complete();
+        } catch (SearchTimeoutException e) {
+          try {
+            emitter.send(SseEmitter.event().name("error").data(e.getMessage()));
+            emitter.complete();
+          } catch (IOException sendFailed) {
+            emitter.completeWithError(sendFailed);
+          }
+        } catch (IOException | RuntimeException e) {
+          emitter.completeWithError(e);
+        }
+      });
+      started = true;
+      return new ResponseEntity<>(emitter, HttpStatus.OK);
+    } finally {
+      if (!started) {
+        searchStreamSlots.release();
+      }
+    }
+  }
+
+  // Input:
+  //     None
+  // Description:
+  //     Takes one of the search stream slots, creating the threads on first use. Returns false
+  //     when searchStreamThreads streams are running and searchStreamQueue more are waiting.
+  private synchronized boolean reserveSearchStream() {
+    if (searchStreams == null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(searchStreamThreads,
+          searchStreamThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, "search-stream");
+            thread.setDaemon(true);
+            return thread;
+          });
+      executor.allowCoreThreadTimeOut(true);
+      searchStreams = executor;
+      searchStreamSlots = new Semaphore(searchStreamThreads + searchStreamQueue);
+    }
+    return searchStreamSlots.tryAcquire();
+  }
+
+  // Input:
+  //     task - the rest of a stream, run after a successful reserveSearchStream()
+  // Description:
+  //     Runs the task on a search stream thread and gives its slot back when it is over.
+  private void startSearchStream(Runnable task) {
+    Semaphore slots;
+    ExecutorService executor;
+    synchronized (this) {
+      slots = searchStreamSlots;
+      executor = searchStreams;
+    }
+    executor.execute(() -> {
+      try {
+        task.run();
+      } finally {
+        slots.release();
+      }
+    });
+  }
+
+  // The substrings at most maxEdits edits away from the pattern, closest first, 400 if the
+  // pattern is empty or longer than 64 chars or maxEdits isn't less than its length.
+  @PostMapping("/search_fuzzy_new")
+  @ResponseBody
+  public Object searchFuzzyNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      try {
+        List<FuzzyMatch> matches =
+            sourceFileHandler.searchFuzzy(masterRequest.getSearchRequest());
+        return new ResponseEntity<>(matches, HttpStatus.OK);
+      } catch (IllegalArgumentException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+      }
+    }
+  }
+
+  // Matches of a pattern that may span several lines, like "}\n  else", each from its start
+  // to the position after its end.
+  @PostMapping("/search_multiline_new")
+  @ResponseBody
+  public Object searchMultilineNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      SearchRequest searchRequest = masterRequest.getSearchRequest();
+      searchRequest.setTimeoutMillis(regexTimeoutMillis);
+      try {
+        List<CursorRange> ranges = sourceFileHandler.searchMultiline(searchRequest);
+        return new ResponseEntity<>(ranges, HttpStatus.OK);
+      } catch (PatternSyntaxException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+      } catch (SearchTimeoutException e) {
+        return new ResponseEntity<>(e.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+      }
+    }
+  }
+
+  @PostMapping("/multi_search_new")
+  @ResponseBody
+  public Object multiSearchNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      List<PatternCursor> cursors =
+          sourceFileHandler.searchAll(masterRequest.getMultiSearchRequest());
+      return new ResponseEntity<>(cursors, HttpStatus.OK);
+    }
+  }
+
+  @PostMapping("/cut_new")
+  @ResponseBody
+  public Object cutNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      final Pair<CopyBuffer, List<String>> buffers = masterRequest.getCopyBuffer();
+      sourceFileHandler.setCopyBuffer(buffers.getKey());
+      copyBuffers.put(sessionId, buffers.getKey());
+      EditRequest editRequest = masterRequest.getEditRequest();
+      editRequest.setNewContent(buffers.getValue());
+      sourceFileHandler.editLines(editRequest);
+      final PageRequest pageRequest = masterRequest.getPageRequestPostEdit();
+      final Page page = sourceFileHandler.getLinesFrom(pageRequest);
+      page.setCursorAt(masterRequest.getCursorStart());
+
+      return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+  }
+
   @PostMapping("/copy_new")
   @ResponseBody
-  public Object copyNew(@RequestBody MasterRequest masterRequest) {
-    final Pair<CopyBuffer, List<String>> buffers = masterRequest.getCopyBuffer();
+  public Object copyNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      final Pair<CopyBuffer, List<String>> buffers = masterRequest.getCopyBuffer();
 
-    CopyBuffer copyBuffer = buffers.getKey();
-    sourceFileHandler.setCopyBuffer(copyBuffer);
+      CopyBuffer copyBuffer = buffers.getKey();
+      sourceFileHandler.setCopyBuffer(copyBuffer);
+      copyBuffers.put(sessionId, copyBuffer);
 
-    EditRequest editRequest = masterRequest.getEditRequest();
-    sourceFileHandler.editLines(editRequest);
-    final PageRequest pageRequest = masterRequest.getPageRequestPostEdit();
-    final Page page = sourceFileHandler.getLinesFrom(pageRequest);
-    page.setCursorAt(masterRequest.getCursorStart());
-    return new ResponseEntity<>(page, HttpStatus.OK);
+      EditRequest editRequest = masterRequest.getEditRequest();
+      sourceFileHandler.editLines(editRequest);
+      final PageRequest pageRequest = masterRequest.getPageRequestPostEdit();
+      final Page page = sourceFileHandler.getLinesFrom(pageRequest);
+      page.setCursorAt(masterRequest.getCursorStart());
+      return new ResponseEntity<>(page, HttpStatus.OK);
+    }
   }
 
   @PostMapping("/paste_new")
   @ResponseBody
-  public Object pasteNew(@RequestBody MasterRequest masterRequest) {
-    sourceFileHandler.editLines(masterRequest.getEditRequest());
+  public Object pasteNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
 
-    masterRequest.applyPaste(sourceFileHandler.getCopyBuffer());
+      masterRequest.applyPaste(copyBuffers.get(sessionId));
 
-    sourceFileHandler.editLines(masterRequest.getEditRequest());
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
 
-    final PageRequest pageRequest = masterRequest.getPageRequestPostEdit();
-    final Page page = sourceFileHandler.getLinesFrom(pageRequest);
-    page.setCursorAt(masterRequest.getCursorStart());
-    System.out.println(page);
-    return new ResponseEntity<>(page, HttpStatus.OK);
+      final PageRequest pageRequest = masterRequest.getPageRequestPostEdit();
+      final Page page = sourceFileHandler.getLinesFrom(pageRequest);
+      page.setCursorAt(masterRequest.getCursorStart());
+      System.out.println(page);
+      return new ResponseEntity<>(page, HttpStatus.OK);
+    }
   }
 
   @PostMapping("/edit_new")
   @ResponseBody
-  public Object editNew(@RequestBody MasterRequest masterRequest) {
-    sourceFileHandler.editLines(masterRequest.getEditRequest());
-    final PageRequest pageRequest = masterRequest.getPageRequestPostEdit();
-    final Page page = sourceFileHandler.getLinesFrom(pageRequest);
-    page.setCursorAt(masterRequest.getCursorStart());
+  public Object editNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      final PageRequest pageRequest = masterRequest.getPageRequestPostEdit();
+      final Page page = sourceFileHandler.getLinesFrom(pageRequest);
+      page.setCursorAt(masterRequest.getCursorStart());
 
-    return new ResponseEntity<>(page, HttpStatus.OK);
+      return new ResponseEntity<>(page, HttpStatus.OK);
+    }
   }
 
   @PostMapping("/search_replace_new")
   @ResponseBody
-  public Object searchReplaceNew(@RequestBody MasterRequest masterRequest) {
-    final SearchReplaceRequest searchReplaceRequest = masterRequest.getSearchReplaceRequest();
-    sourceFileHandler.editLines(masterRequest.getEditRequest());
-    sourceFileHandler.searchReplace(searchReplaceRequest);
-    final PageRequest pageRequestAfterReplace = masterRequest.getPageRequestPostEdit();
-    final Page linesAfterReplace = sourceFileHandler.getLinesFrom(pageRequestAfterReplace);
+  public Object searchReplaceNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      final SearchReplaceRequest searchReplaceRequest = masterRequest.getSearchReplaceRequest();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      sourceFileHandler.searchReplace(searchReplaceRequest);
+      final PageRequest pageRequestAfterReplace = masterRequest.getPageRequestPostEdit();
+      final Page linesAfterReplace = sourceFileHandler.getLinesFrom(pageRequestAfterReplace);
 
-    return new ResponseEntity<>(linesAfterReplace, HttpStatus.OK);
+      return new ResponseEntity<>(linesAfterReplace, HttpStatus.OK);
+    }
+  }
+
+  // Replaces every occurrence like search_replace_new, answering with the number of
+  // occurrences replaced and the ranges of lines holding them, for the client to refresh
+  // only those.
+  @PostMapping("/search_replace_ranges_new")
+  @ResponseBody
+  public Object searchReplaceRangesNew(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      ReplaceResult result =
+          sourceFileHandler.searchReplace(masterRequest.getSearchReplaceRequest());
+      return new ResponseEntity<>(result, HttpStatus.OK);
+    }
   }
 
 
   //FIXME: NOT COMPLETE
   @PostMapping("/undo_new")
   @ResponseBody
-  public Object undo(@RequestBody MasterRequest masterRequest) {
+  public Object undo(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
     System.out.println("Called Undo");
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
 
-    sourceFileHandler.editLines(masterRequest.getEditRequest());
-    sourceFileHandler.undo(masterRequest.getUndoRequest());
-    Page page = sourceFileHandler.getCursorPage();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      sourceFileHandler.undo(masterRequest.getUndoRequest());
+      Page page = sourceFileHandler.getCursorPage();
 
-    return new ResponseEntity<>(page, HttpStatus.OK);
+      return new ResponseEntity<>(page, HttpStatus.OK);
+    }
   }
 
   //FIXME: NOT COMPLETE
   @PostMapping("/redo_new")
   @ResponseBody
-  public Object redo(@RequestBody MasterRequest masterRequest) {
+  public Object redo(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
     System.out.println("Called Redo");
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
 
-    sourceFileHandler.editLines(masterRequest.getEditRequest());
-    sourceFileHandler.redo(masterRequest.getUndoRequest());
-    Page page = sourceFileHandler.getCursorPage();
+      sourceFileHandler.editLines(masterRequest.getEditRequest());
+      sourceFileHandler.redo(masterRequest.getUndoRequest());
+      Page page = sourceFileHandler.getCursorPage();
 
-    return new ResponseEntity<>(page, HttpStatus.OK);
+      return new ResponseEntity<>(page, HttpStatus.OK);
+    }
+  }
+
+
+  @PostMapping("/history_size_new")
+  @ResponseBody
+  public Object historySize(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      HistorySize historySize = sourceFileHandler.getHistorySize();
+      return new ResponseEntity<>(historySize, HttpStatus.OK);
+    }
   }
 
+  // Memory taken by the trigram index of the file in bytes, 0 if the file has none.
+  @PostMapping("/search_index_size_new")
+  @ResponseBody
+  public Object searchIndexSize(@RequestBody MasterRequest masterRequest,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws IOException {
+    try (Lease lease = lease(sessionId, masterRequest.getFileName())) {
+      SourceFileHandler sourceFileHandler = lease.getHandler();
+      return new ResponseEntity<>(sourceFileHandler.getSearchIndexBytes(), HttpStatus.OK);
+    }
+  }
 
   @PostMapping("/run_file")
   @ResponseBody
-  public RunCodeOutput execute(@RequestBody RunCodeArgs runCodeArgs) throws Exception {
+  public RunCodeOutput execute(@RequestBody RunCodeArgs runCodeArgs,
+      @RequestHeader(value = SESSION_HEADER, defaultValue = DEFAULT_SESSION) String sessionId)
+      throws Exception {
     System.out.println("Called run-file");
 
-    List<String> allLines = sourceFileHandler
-        .getLatestSourceFileVersion(runCodeArgs.getFileName()).getAllLines();
-    runCodeArgs.setLines(allLines);
+    try (Lease lease = lease(sessionId, runCodeArgs.getFileName())) {
+      List<String> allLines = lease.getHandler()
+          .getLatestSourceFileVersion(runCodeArgs.getFileName()).getAllLines();
+      runCodeArgs.setLines(allLines);
+    }
     return runCode(runCodeArgs);
   }
 
@@ -30,6 +30,13 @@
     int numberOfLines;
     String pattern;
     String newPattern;
+    List<String> patterns;
+    boolean regex;
+    int flags;
+    int maxResults;
+    String continuationToken;
+    boolean wrapAround;
+    int maxEdits;
 
     static final String splitter = "\\n";
 
@@ -51,13 +58,21 @@
     }
 
     public SearchRequest getSearchRequest() {
-      return new SearchRequest(startingLineNo, pattern, fileName);
+      SearchRequest searchRequest =
+          new SearchRequest(startingLineNo, pattern, fileName, regex, flags);
+      searchRequest.setMaxResults(maxResults);
+      searchRequest.setContinuationToken(continuationToken);
+      searchRequest.setWrapAround(wrapAround);
+      searchRequest.setMaxEdits(maxEdits);
+      return searchRequest;
+    }
+
+    public MultiSearchRequest getMultiSearchRequest() {
+      return new MultiSearchRequest(startingLineNo, patterns, fileName);
     }
 
     public FileInfo getFileInfo() {
       String[] lines = dataNow.split(splitter, -1);
-      System.out.printf("lines len = %d\n", lines.length);
-      System.out.println(dataNow);
       return new FileInfo(fileName, Arrays.asList(lines));
     }
 
@@ -146,6 +161,34 @@
       return this.newPattern;
     }
 
+    public List<String> getPatterns() {
+      return this.patterns;
+    }
+
+    public boolean isRegex() {
+      return this.regex;
+    }
+
+    public int getFlags() {
+      return this.flags;
+    }
+
+    public int getMaxResults() {
+      return this.maxResults;
+    }
+
+    public String getContinuationToken() {
+      return this.continuationToken;
+    }
+
+    public boolean isWrapAround() {
+      return this.wrapAround;
+    }
+
+    public int getMaxEdits() {
+      return this.maxEdits;
+    }
+
     public void setCursorStart(@NotNull Cursor cursorStart) {
       this.cursorStart = cursorStart;
     }
@@ -195,6 +238,34 @@
       this.newPattern = newPattern;
     }
 
+    public void setPatterns(List<String> patterns) {
+      this.patterns = patterns;
+    }
+
+    public void setRegex(boolean regex) {
+      this.regex = regex;
+    }
+
+    public void setFlags(int flags) {
+      this.flags = flags;
+    }
+
+    public void setMaxResults(int maxResults) {
+      this.maxResults = maxResults;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+      this.continuationToken = continuationToken;
+    }
+
+    public void setWrapAround(boolean wrapAround) {
+      this.wrapAround = wrapAround;
+    }
+
+    public void setMaxEdits(int maxEdits) {
+      this.maxEdits = maxEdits;
+    }
+
     public boolean equals(final Object o) {
       if (o == this) {
         return true;
@@ -257,6 +328,33 @@
           : !this$newPattern.equals(other$newPattern)) {
         return false;
       }
+      final Object this$patterns = this.getPatterns();
+      final Object other$patterns = other.getPatterns();
+      if (this$patterns == null ? other$patterns != null
+          : !this$patterns.equals(other$patterns)) {
+        return false;
+      }
+      if (this.isRegex() != other.isRegex()) {
+        return false;
+      }
+      if (this.getFlags() != other.getFlags()) {
+        return false;
+      }
+      if (this.getMaxResults() != other.getMaxResults()) {
+        return false;
+      }
+      final Object this$continuationToken = this.getContinuationToken();
+      final Object other$continuationToken = other.getContinuationToken();
+      if (this$continuationToken == null ? other$continuationToken != null
+          : !this$continuationToken.equals(other$continuationToken)) {
+        return false;
+      }
+      if (this.isWrapAround() != other.isWrapAround()) {
+        return false;
+      }
+      if (this.getMaxEdits() != other.getMaxEdits()) {
+        return false;
+      }
       return true;
     }
 
@@ -285,6 +383,15 @@
       result = result * PRIME + ($pattern == null ? 43 : $pattern.hashCode());
       final Object $newPattern = this.getNewPattern();
       result = result * PRIME + ($newPattern == null ? 43 : $newPattern.hashCode());
+      final Object $patterns = this.getPatterns();
+      result = result * PRIME + ($patterns == null ? 43 : $patterns.hashCode());
+      result = result * PRIME + (this.isRegex() ? 79 : 97);
+      result = result * PRIME + this.getFlags();
+      result = result * PRIME + this.getMaxResults();
+      final Object $continuationToken = this.getContinuationToken();
+      result = result * PRIME + ($continuationToken == null ? 43 : $continuationToken.hashCode());
+      result = result * PRIME + (this.isWrapAround() ? 79 : 97);
+      result = result * PRIME + this.getMaxEdits();
       return result;
     }
 
@@ -295,7 +402,11 @@
           .getEndingLineNo() + ", dataNow=" + this.getDataNow() + ", fileName=" + this.getFileName()
           + ", start=" + this.getStart() + ", end=" + this.getEnd() + ", lineNumber=" + this
           .getLineNumber() + ", numberOfLines=" + this.getNumberOfLines() + ", pattern=" + this
-          .getPattern() + ", newPattern=" + this.getNewPattern() + ")";
+          .getPattern() + ", newPattern=" + this.getNewPattern() + ", patterns=" + this
+          .getPatterns() + ", regex=" + this.isRegex() + ", flags=" + this.getFlags()
+          + ", maxResults=" + this.getMaxResults() + ", continuationToken=" + this
+          .getContinuationToken() + ", wrapAround=" + this.isWrapAround()
+          + ", maxEdits=" + this.getMaxEdits() + ")";
     }
 
     public UndoRequest getUndoRequest() {
@@ -0,0 +1,89 @@
+package com.crio.qcharm.request;
+
+import java.util.List;
+
+public class MultiSearchRequest {
+  int startingLineNo;
+  List<String> patterns;
+  String fileName;
+
+  public MultiSearchRequest(int startingLineNo, List<String> patterns, String fileName) {
+    this.startingLineNo = startingLineNo;
+    this.patterns = patterns;
+    this.fileName = fileName;
+  }
+
+  public MultiSearchRequest() {
+  }
+
+  public int getStartingLineNo() {
+    return this.startingLineNo;
+  }
+
+  public List<String> getPatterns() {
+    return this.patterns;
+  }
+
+  public String getFileName() {
+    return this.fileName;
+  }
+
+  public void setStartingLineNo(int startingLineNo) {
+    this.startingLineNo = startingLineNo;
+  }
+
+  public void setPatterns(List<String> patterns) {
+    this.patterns = patterns;
+  }
+
+  public void setFileName(String fileName) {
+    this.fileName = fileName;
+  }
+
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (!(o instanceof MultiSearchRequest)) {
+      return false;
+    }
+    final MultiSearchRequest other = (MultiSearchRequest) o;
+    if (!other.canEqual((Object) this)) {
+      return false;
+    }
+    if (this.getStartingLineNo() != other.getStartingLineNo()) {
+      return false;
+    }
+    final Object this$patterns = this.getPatterns();
+    final Object other$patterns = other.getPatterns();
+    if (this$patterns == null ? other$patterns != null : !this$patterns.equals(other$patterns)) {
+      return false;
+    }
+    final Object this$fileName = this.getFileName();
+    final Object other$fileName = other.getFileName();
+    if (this$fileName == null ? other$fileName != null : !this$fileName.equals(other$fileName)) {
+      return false;
+    }
+    return true;
+  }
+
+  protected boolean canEqual(final Object other) {
+    return other instanceof MultiSearchRequest;
+  }
+
+  public int hashCode() {
+    final int PRIME = 59;
+    int result = 1;
+    result = result * PRIME + this.getStartingLineNo();
+    final Object $patterns = this.getPatterns();
+    result = result * PRIME + ($patterns == null ? 43 : $patterns.hashCode());
+    final Object $fileName = this.getFileName();
+    result = result * PRIME + ($fileName == null ? 43 : $fileName.hashCode());
+    return result;
+  }
+
+  public String toString() {
+    return "MultiSearchRequest(startingLineNo=" + this.getStartingLineNo() + ", patterns="
+        + this.getPatterns() + ", fileName=" + this.getFileName() + ")";
+  }
+}
@@ -4,6 +4,19 @@ public class SearchRequest {
   int startingLineNo;
   String pattern;
   String fileName;
+  // pattern is a java.util.regex regex, compiled with flags.
+  boolean regex;
+  int flags;
+  // Time budget of a regex search, the default one if 0.
+  long timeoutMillis;
+  // Number of occurrences returned by a paged search, the default one if 0.
+  int maxResults;
+  // Where a paged search goes on, from the previous page. The first page if null.
+  String continuationToken;
+  // Whether find next/previous goes on from the other end of the file.
+  boolean wrapAround;
+  // Edits (inserted, deleted or replaced chars) allowed in an occurrence by a fuzzy search.
+  int maxEdits;
 
   public SearchRequest(int startingLineNo, String pattern, String fileName) {
     this.startingLineNo = startingLineNo;
@@ -11,6 +24,13 @@ public class SearchRequest {
     this.fileName = fileName;
   }
 
+  public SearchRequest(int startingLineNo, String pattern, String fileName, boolean regex,
+      int flags) {
+    this(startingLineNo, pattern, fileName);
+    this.regex = regex;
+    this.flags = flags;
+  }
+
   public SearchRequest() {
   }
 
@@ -26,6 +46,34 @@ public class SearchRequest {
     return this.fileName;
   }
 
+  public boolean isRegex() {
+    return this.regex;
+  }
+
+  public int getFlags() {
+    return this.flags;
+  }
+
+  public long getTimeoutMillis() {
+    return this.timeoutMillis;
+  }
+
+  public int getMaxResults() {
+    return this.maxResults;
+  }
+
+  public String getContinuationToken() {
+    return this.continuationToken;
+  }
+
+  public boolean isWrapAround() {
+    return this.wrapAround;
+  }
+
+  public int getMaxEdits() {
+    return this.maxEdits;
+  }
+
   public void setStartingLineNo(int startingLineNo) {
     this.startingLineNo = startingLineNo;
   }
@@ -38,6 +86,34 @@ public class SearchRequest {
     this.fileName = fileName;
   }
 
+  public void setRegex(boolean regex) {
+    this.regex = regex;
+  }
+
+  public void setFlags(int flags) {
+    this.flags = flags;
+  }
+
+  public void setTimeoutMillis(long timeoutMillis) {
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  public void setMaxResults(int maxResults) {
+    this.maxResults = maxResults;
+  }
+
+  public void setContinuationToken(String continuationToken) {
+    this.continuationToken = continuationToken;
+  }
+
+  public void setWrapAround(boolean wrapAround) {
+    this.wrapAround = wrapAround;
+  }
+
+  public void setMaxEdits(int maxEdits) {
+    this.maxEdits = maxEdits;
+  }
+
   public boolean equals(final Object o) {
     if (o == this) {
       return true;
@@ -62,6 +138,30 @@ public class SearchRequest {
     if (this$fileName == null ? other$fileName != null : !this$fileName.equals(other$fileName)) {
       return false;
     }
+    if (this.isRegex() != other.isRegex()) {
+      return false;
+    }
+    if (this.getFlags() != other.getFlags()) {
+      return false;
+    }
+    if (this.getTimeoutMillis() != other.getTimeoutMillis()) {
+      return false;
+    }
+    if (this.getMaxResults() != other.getMaxResults()) {
+      return false;
+    }
+    final Object this$continuationToken = this.getContinuationToken();
+    final Object other$continuationToken = other.getContinuationToken();
+    if (this$continuationToken == null ? other$continuationToken != null
+        : !this$continuationToken.equals(other$continuationToken)) {
+      return false;
+    }
+    if (this.isWrapAround() != other.isWrapAround()) {
+      return false;
+    }
+    if (this.getMaxEdits() != other.getMaxEdits()) {
+      return false;
+    }
     return true;
   }
 
@@ -77,11 +177,24 @@ public class SearchRequest {
     result = result * PRIME + ($pattern == null ? 43 : $pattern.hashCode());
     final Object $fileName = this.getFileName();
     result = result * PRIME + ($fileName == null ? 43 : $fileName.hashCode());
+    result = result * PRIME + (this.isRegex() ? 79 : 97);
+    result = result * PRIME + this.getFlags();
+    final long $timeoutMillis = this.getTimeoutMillis();
+    result = result * PRIME + (int) ($timeoutMillis >>> 32 ^ $timeoutMillis);
+    result = result * PRIME + this.getMaxResults();
+    final Object $continuationToken = this.getContinuationToken();
+    result = result * PRIME + ($continuationToken == null ? 43 : $continuationToken.hashCode());
+    result = result * PRIME + (this.isWrapAround() ? 79 : 97);
+    result = result * PRIME + this.getMaxEdits();
     return result;
   }
 
   public String toString() {
     return "SearchRequest(startingLineNo=" + this.getStartingLineNo() + ", pattern=" + this
-        .getPattern() + ", fileName=" + this.getFileName() + ")";
+        .getPattern() + ", fileName=" + this.getFileName() + ", regex=" + this.isRegex()
+        + ", flags=" + this.getFlags() + ", timeoutMillis=" + this.getTimeoutMillis()
+        + ", maxResults=" + this.getMaxResults() + ", continuationToken=" + this
+        .getContinuationToken() + ", wrapAround=" + this.isWrapAround()
+        + ", maxEdits=" + this.getMaxEdits() + ")";
   }
 }
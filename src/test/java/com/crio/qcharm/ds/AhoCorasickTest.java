@@ -0,0 +1,116 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.MultiSearchRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AhoCorasickTest {
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private List<String> makeLines(Random random, int n, String alphabet) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int length = random.nextInt(30);
+      for (int j = 0; j < length; ++j) {
+        line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  // One search per pattern, merged by position then pattern index.
+  private List<PatternCursor> searchEachPattern(List<String> lines, List<String> patterns) {
+    List<PatternCursor> res = new ArrayList<>();
+    for (int i = 0; i < lines.size(); ++i) {
+      String line = lines.get(i);
+      for (int col = 0; col < line.length(); ++col) {
+        for (int index = 0; index < patterns.size(); ++index) {
+          String pattern = patterns.get(index);
+          if (!pattern.isEmpty() && line.startsWith(pattern, col)) {
+            res.add(new PatternCursor(index, i, col));
+          }
+        }
+      }
+    }
+    return res;
+  }
+
+  @Test
+  void findsEveryPatternInOnePass() {
+    Random random = new Random(0x1231);
+    List<String> lines = makeLines(random, 2000, "abc");
+    List<List<String>> patternLists = Arrays.asList(
+        Arrays.asList("a"),
+        Arrays.asList("ab", "b", "abc", "bca", "c"),
+        // Patterns that are suffixes and prefixes of each other, a duplicate and an empty one.
+        Arrays.asList("aa", "aaa", "a", "", "aaa", "baa"),
+        Arrays.asList("abcabc", "cab", "d", "bcab"));
+    for (List<String> patterns : patternLists) {
+      AhoCorasick automaton = new AhoCorasick(patterns);
+      List<PatternCursor> res = new ArrayList<>();
+      for (int i = 0; i < lines.size(); ++i) {
+        automaton.search(lines.get(i), i, res);
+      }
+      assertEquals(searchEachPattern(lines, patterns), res, patterns.toString());
+    }
+  }
+
+  @Test
+  void patternsShareTheirPrefixes() {
+    AhoCorasick automaton =
+        new AhoCorasick(Arrays.asList("getLines", "getLinesFrom", "getLinesBefore", "get"));
+    // Root, "getLines", then "From" and "Before".
+    assertEquals(1 + 8 + 4 + 6, automaton.getNumberOfNodes());
+
+    List<PatternCursor> res = new ArrayList<>();
+    automaton.search("x.getLinesFrom(getLinesBefore)", 3, res);
+    assertEquals(Arrays.asList(
+        new PatternCursor(0, 3, 2), new PatternCursor(1, 3, 2), new PatternCursor(3, 3, 2),
+        new PatternCursor(0, 3, 15), new PatternCursor(2, 3, 15), new PatternCursor(3, 3, 15)),
+        res);
+  }
+
+  @Test
+  void handlersTagTheCursorsOfEachPattern() {
+    Random random = new Random(0x4321);
+    List<String> lines = makeLines(random, 2 * ParallelSearch.CHUNK_LINES + 5, "abcd");
+    List<String> patterns = Arrays.asList("abc", "dd", "cab", "a");
+    MultiSearchRequest multiSearchRequest = new MultiSearchRequest(0, patterns, "search");
+
+    List<SourceFileHandler> handlers = Arrays.asList(
+        new SourceFileHandlerArrayListImpl("search"),
+        new SourceFileHandlerHybridImpl("search"),
+        new SourceFileHandlerPieceTableImpl("search"),
+        new SourceFileHandlerPersistentImpl("search"));
+    for (SourceFileHandler handler : handlers) {
+      handler.loadFile(new FileInfo("search", new ArrayList<>(lines)));
+      List<PatternCursor> res = handler.searchAll(multiSearchRequest);
+      assertEquals(searchEachPattern(lines, patterns), res);
+
+      for (int index = 0; index < patterns.size(); ++index) {
+        List<Cursor> cursors = new ArrayList<>();
+        for (PatternCursor patternCursor : res) {
+          if (patternCursor.getPatternIndex() == index) {
+            cursors.add(patternCursor.getCursor());
+          }
+        }
+        assertEquals(handler.search(new SearchRequest(0, patterns.get(index), "search")),
+            cursors);
+      }
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CursorArrayTest {
+
+  private static final String[] WORDS = {"int", "page", "cursor", "x", "=", "getLines", "0;",
+      "return", "pageRequest", "fileName", "{", "}", ";"};
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int numberOfWords = random.nextInt(12);
+      for (int j = 0; j < numberOfWords; ++j) {
+        line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  @Test
+  void packsLinesAndColumns() {
+    CursorArray cursors = new CursorArray();
+    cursors.add(0, 0);
+    cursors.add(7, 3);
+    cursors.add(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    assertEquals(3, cursors.size());
+    assertEquals(Integer.MAX_VALUE, cursors.getLineNo(2));
+    assertEquals(Integer.MAX_VALUE, cursors.getColumnNo(2));
+    assertEquals(Arrays.asList(new Cursor(0, 0), new Cursor(7, 3),
+        new Cursor(Integer.MAX_VALUE, Integer.MAX_VALUE)), cursors.toCursors());
+    assertEquals("{\"lineNos\":[0,7,2147483647],\"columnNos\":[0,3,2147483647]}",
+        cursors.toJson());
+    assertEquals("{\"lineNos\":[],\"columnNos\":[]}", new CursorArray().toJson());
+  }
+
+  @Test
+  void packedSearchFindsWhatGetCursorsFinds() {
+    Random random = new Random(0x1618);
+    List<String> lines = makeLines(random, 3 * ParallelSearch.CHUNK_LINES + 17);
+    List<SourceFileVersion> versions = Arrays.asList(
+        new SourceFileVersionArrayListImpl(new FileInfo("packed", lines)),
+        new SourceFileVersionLinkedListImpl(new FileInfo("packed", new ArrayList<>(lines))),
+        new SourceFileVersionPieceTableImpl(new FileInfo("packed", lines)),
+        new SourceFileVersionPersistentImpl(new FileInfo("packed", lines)));
+    List<SearchRequest> searchRequests = Arrays.asList(
+        new SearchRequest(0, ";", "packed"),
+        new SearchRequest(0, "pageRequest fileName", "packed"),
+        new SearchRequest(0, "", "packed"),
+        new SearchRequest(0, "[xy] =", "packed", true, 0));
+    for (SourceFileVersion sourceFile : versions) {
+      for (SearchRequest searchRequest : searchRequests) {
+        assertEquals(sourceFile.getCursors(searchRequest),
+            ParallelSearch.searchPacked(sourceFile.getSegments(), searchRequest).toCursors(),
+            searchRequest.toString());
+      }
+    }
+  }
+
+  @Test
+  void handlerSearchPackedFindsWhatSearchFinds() {
+    Random random = new Random(0x1619);
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl("packed");
+    handler.loadFile(new FileInfo("packed", makeLines(random, 2000)));
+    SearchRequest searchRequest = new SearchRequest(0, ";", "packed");
+
+    CursorArray cursors = handler.searchPacked(searchRequest);
+    assertTrue(cursors.size() > 1000);
+    assertEquals(handler.search(searchRequest), cursors.toCursors());
+  }
+}
@@ -0,0 +1,191 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EditHistoryTest {
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private FileInfo makeFile(String fileName, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= n; ++i) {
+      StringBuffer oneLine = new StringBuffer("lineno");
+      oneLine.append(i);
+      lines.add(oneLine.toString());
+    }
+    return new FileInfo(fileName, lines);
+  }
+
+  @Test
+  void undoAllThenRedoAll() {
+    Random random = new Random(0x1231);
+    FileInfo fileInfo = makeFile("undoRedo", 300);
+    SourceFileVersion sourceFile = new SourceFileVersionArrayListImpl(fileInfo);
+    EditHistory history = new EditHistory();
+
+    List<List<String>> versions = new ArrayList<>();
+    versions.add(new ArrayList<>(sourceFile.getAllLines()));
+    for (int i = 0; i < 100; ++i) {
+      if (i % 10 == 9) {
+        history.apply(sourceFile, new SearchReplace(0, 0, null, "no" + (i % 4), "NO"));
+      } else {
+        int size = sourceFile.getAllLines().size();
+        int start = random.nextInt(size + 1);
+        int length = random.nextInt(Math.min(10, size - start) + 1);
+        List<String> content = new ArrayList<>();
+        for (int j = random.nextInt(5); j > 0; --j) {
+          content.add("edit" + i + "_" + j);
+        }
+        history.apply(sourceFile, new UpdateLines(start, length, content, new Cursor(start, 0)));
+      }
+      versions.add(new ArrayList<>(sourceFile.getAllLines()));
+    }
+
+    for (int i = versions.size() - 2; i >= 0; --i) {
+      assertTrue(history.undo(sourceFile));
+      assertEquals(versions.get(i), sourceFile.getAllLines());
+    }
+    assertFalse(history.undo(sourceFile));
+
+    for (int i = 1; i < versions.size(); ++i) {
+      assertTrue(history.redo(sourceFile));
+      assertEquals(versions.get(i), sourceFile.getAllLines());
+    }
+    assertFalse(history.redo(sourceFile));
+  }
+
+  @Test
+  void newEditClearsRedo() {
+    FileInfo fileInfo = makeFile("clearRedo", 10);
+    SourceFileVersion sourceFile = new SourceFileVersionArrayListImpl(fileInfo);
+    EditHistory history = new EditHistory();
+
+    history.apply(sourceFile, new UpdateLines(0, 1, Arrays.asList("first"), new Cursor(0, 0)));
+    history.undo(sourceFile);
+    history.apply(sourceFile, new UpdateLines(1, 1, Arrays.asList("second"), new Cursor(1, 0)));
+
+    assertFalse(history.redo(sourceFile));
+    assertEquals("lineno1", sourceFile.getAllLines().get(0));
+    assertEquals("second", sourceFile.getAllLines().get(1));
+  }
+
+  @Test
+  void editAtTheEndOfTheFile() {
+    FileInfo fileInfo = makeFile("atEnd", 10);
+    SourceFileVersion sourceFile = new SourceFileVersionArrayListImpl(fileInfo);
+    EditHistory history = new EditHistory();
+
+    history.apply(sourceFile, new UpdateLines(8, 5, Arrays.asList("a", "b", "c"),
+        new Cursor(8, 0)));
+    history.undo(sourceFile);
+
+    assertEquals(fileInfo.getLines(), sourceFile.getAllLines());
+  }
+
+  @Test
+  void keystrokesOnTheSameLinesAreCoalesced() {
+    long[] now = {0};
+    FileInfo fileInfo = makeFile("coalesce", 10);
+    SourceFileVersion sourceFile = new SourceFileVersionArrayListImpl(fileInfo);
+    EditHistory history = new EditHistory(100, Long.MAX_VALUE, 1000, () -> now[0]);
+
+    history.apply(sourceFile, new UpdateLines(2, 3, Arrays.asList("h", "lineno4", "lineno5"),
+        new Cursor(2, 1)));
+    now[0] += 500;
+    history.apply(sourceFile, new UpdateLines(2, 3, Arrays.asList("he", "lineno4", "lineno5"),
+        new Cursor(2, 2)));
+    now[0] += 500;
+    history.apply(sourceFile, new UpdateLines(3, 1, Arrays.asList("x", "y"), new Cursor(4, 1)));
+    assertEquals(1, history.getHistorySize().getUndoEntries());
+
+    now[0] += 1001;
+    history.apply(sourceFile, new UpdateLines(2, 1, Arrays.asList("hey"), new Cursor(2, 3)));
+    assertEquals(2, history.getHistorySize().getUndoEntries());
+    assertEquals(Arrays.asList("lineno1", "lineno2", "hey", "x", "y", "lineno5"),
+        sourceFile.getAllLines().subList(0, 6));
+
+    history.undo(sourceFile);
+    assertEquals(Arrays.asList("lineno1", "lineno2", "he", "x", "y", "lineno5"),
+        sourceFile.getAllLines().subList(0, 6));
+    history.undo(sourceFile);
+    assertEquals(fileInfo.getLines(), sourceFile.getAllLines());
+    history.redo(sourceFile);
+    assertEquals(Arrays.asList("lineno1", "lineno2", "he", "x", "y", "lineno5"),
+        sourceFile.getAllLines().subList(0, 6));
+  }
+
+  @Test
+  void editAfterUndoIsNotCoalesced() {
+    FileInfo fileInfo = makeFile("afterUndo", 10);
+    SourceFileVersion sourceFile = new SourceFileVersionArrayListImpl(fileInfo);
+    EditHistory history = new EditHistory(100, Long.MAX_VALUE, 1000, () -> 0);
+
+    history.apply(sourceFile, new UpdateLines(0, 1, Arrays.asList("a"), new Cursor(0, 0)));
+    history.apply(sourceFile, new UpdateLines(0, 1, Arrays.asList("ab"), new Cursor(0, 0)));
+    history.undo(sourceFile);
+    history.apply(sourceFile, new UpdateLines(0, 1, Arrays.asList("c"), new Cursor(0, 0)));
+
+    assertEquals(1, history.getHistorySize().getUndoEntries());
+    history.undo(sourceFile);
+    assertEquals(fileInfo.getLines(), sourceFile.getAllLines());
+  }
+
+  @Test
+  void oldestEntriesAreEvicted() {
+    long[] now = {0};
+    FileInfo fileInfo = makeFile("evict", 100);
+    SourceFileVersion sourceFile = new SourceFileVersionArrayListImpl(fileInfo);
+    EditHistory history = new EditHistory(5, Long.MAX_VALUE, 0, () -> now[0]++);
+
+    for (int i = 0; i < 8; ++i) {
+      history.apply(sourceFile, new UpdateLines(i, 1, Arrays.asList("edit" + i),
+          new Cursor(i, 0)));
+    }
+
+    assertEquals(5, history.getHistorySize().getUndoEntries());
+    while (history.undo(sourceFile)) {
+      assertTrue(history.getHistorySize().getBytes() > 0);
+    }
+    assertEquals(Arrays.asList("edit0", "edit1", "edit2", "lineno4"),
+        sourceFile.getAllLines().subList(0, 4));
+  }
+
+  @Test
+  void byteBudgetKeepsTheLastEntry() {
+    long[] now = {0};
+    FileInfo fileInfo = makeFile("bytes", 100);
+    SourceFileVersion sourceFile = new SourceFileVersionArrayListImpl(fileInfo);
+    EditHistory history = new EditHistory(100, 1000, 0, () -> now[0]++);
+
+    List<String> big = new ArrayList<>();
+    for (int i = 0; i < 20; ++i) {
+      big.add("a fairly long line of text number " + i);
+    }
+    history.apply(sourceFile, new UpdateLines(0, 1, Arrays.asList("small"), new Cursor(0, 0)));
+    history.apply(sourceFile, new UpdateLines(10, 20, big, new Cursor(10, 0)));
+
+    HistorySize historySize = history.getHistorySize();
+    assertEquals(1, historySize.getUndoEntries());
+    assertTrue(historySize.getBytes() > 1000);
+
+    history.undo(sourceFile);
+    assertEquals(0, history.getHistorySize().getUndoEntries());
+    assertEquals(1, history.getHistorySize().getRedoEntries());
+    history.apply(sourceFile, new UpdateLines(1, 1, Arrays.asList("x"), new Cursor(1, 0)));
+    assertEquals(0, history.getHistorySize().getRedoEntries());
+    assertTrue(history.getHistorySize().getBytes() < 1000);
+  }
+}
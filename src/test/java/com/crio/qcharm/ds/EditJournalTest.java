@@ -0,0 +1,208 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.SearchReplaceRequest;
+import com.crio.qcharm.request.UndoRequest;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EditJournalTest {
+
+  private Path directory;
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() throws IOException {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+    directory = Files.createTempDirectory("qcharm-journal");
+  }
+
+  @AfterEach
+  public void deleteDirectory() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private FileInfo makeFile(String fileName, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= n; ++i) {
+      StringBuffer oneLine = new StringBuffer("lineno");
+      oneLine.append(i);
+      lines.add(oneLine.toString());
+    }
+    return new FileInfo(fileName, lines);
+  }
+
+  private List<String> allLines(SourceFileHandler handler, String fileName) {
+    return handler.getLatestSourceFileVersion(fileName).getAllLines();
+  }
+
+  @Test
+  void emptyDirectoryHasNothingToRecover() throws IOException {
+    EditJournal journal = new EditJournal(directory, 1, 0, 100);
+
+    assertNull(journal.recover(fileInfo -> new SourceFileHandlerArrayListImpl("none")));
+  }
+
+  @Test
+  void editsUndoAndRedoAreRecovered() throws IOException {
+    Random random = new Random(0x1231);
+    String fileName = "recover";
+    FileInfo fileInfo = makeFile(fileName, 200);
+
+    EditJournal journal = new EditJournal(directory, 4, 1000, 7);
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl(fileName);
+    handler.setJournal(journal);
+    handler.loadFile(fileInfo);
+    for (int i = 0; i < 50; ++i) {
+      int size = allLines(handler, fileName).size();
+      int start = random.nextInt(size);
+      int end = Math.min(size, start + random.nextInt(5));
+      if (i % 10 == 3) {
+        handler.searchReplace(new SearchReplaceRequest(0, 2, "no1", "NO", fileName));
+      } else if (i % 10 == 6) {
+        handler.undo(new UndoRequest(fileName));
+      } else if (i % 10 == 7) {
+        handler.redo(new UndoRequest(fileName));
+      } else {
+        handler.editLines(new EditRequest(start, end, Arrays.asList("edit" + i, "more" + i),
+            fileName, new Cursor(start, 0)));
+      }
+    }
+    List<String> expected = allLines(handler, fileName);
+    journal.close();
+
+    EditJournal reopened = new EditJournal(directory, 4, 1000, 7);
+    SourceFileHandler recovered =
+        reopened.recover(recoveredFile -> new SourceFileHandlerPersistentImpl(fileName));
+    assertEquals(expected, allLines(recovered, fileName));
+
+    // Later edits go to the same journal.
+    recovered.editLines(new EditRequest(0, 1, Arrays.asList("after"), fileName,
+        new Cursor(0, 0)));
+    reopened.close();
+    SourceFileHandler again = new EditJournal(directory, 4, 1000, 7)
+        .recover(recoveredFile -> new SourceFileHandlerArrayListImpl(fileName));
+    assertEquals("after", allLines(again, fileName).get(0));
+    assertEquals(expected.subList(1, expected.size()),
+        allLines(again, fileName).subList(1, expected.size()));
+  }
+
+  @Test
+  void snapshotsReplaceOlderGenerations() throws IOException {
+    String fileName = "snapshots";
+    EditJournal journal = new EditJournal(directory, 1, 0, 5);
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl(fileName);
+    handler.setJournal(journal);
+    handler.loadFile(makeFile(fileName, 20));
+
+    for (int i = 0; i < 12; ++i) {
+      handler.editLines(new EditRequest(i, i + 1, Arrays.asList("edit" + i), fileName,
+          new Cursor(i, 0)));
+    }
+    journal.close();
+
+    try (Stream<Path> files = Files.list(directory)) {
+      List<String> names = files.map(file -> file.getFileName().toString()).sorted()
+          .collect(Collectors.toList());
+      assertEquals(Arrays.asList("journal-2", "snapshot-2"), names);
+    }
+    // Only edit10 and edit11 are left: record header, type, range, cursor and one line each.
+    assertEquals(2 * (8 + 1 + 8 + 9 + 4 + 4 + "edit10".length()),
+        Files.size(directory.resolve("journal-2")));
+  }
+
+  @Test
+  void tornRecordAtTheEndIsDropped() throws IOException {
+    String fileName = "torn";
+    FileInfo fileInfo = makeFile(fileName, 10);
+    EditJournal journal = new EditJournal(directory, 1, 0, 100);
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl(fileName);
+    handler.setJournal(journal);
+    handler.loadFile(fileInfo);
+    handler.editLines(new EditRequest(0, 1, Arrays.asList("kept"), fileName, new Cursor(0, 0)));
+    handler.editLines(new EditRequest(1, 2, Arrays.asList("torn"), fileName, new Cursor(1, 0)));
+    journal.close();
+
+    Path journalFile = directory.resolve("journal-0");
+    byte[] bytes = Files.readAllBytes(journalFile);
+    Files.write(journalFile, Arrays.copyOf(bytes, bytes.length - 3),
+        StandardOpenOption.TRUNCATE_EXISTING);
+
+    EditJournal reopened = new EditJournal(directory, 1, 0, 100);
+    SourceFileHandler recovered =
+        reopened.recover(recoveredFile -> new SourceFileHandlerArrayListImpl(fileName));
+    List<String> expected = new ArrayList<>(fileInfo.getLines());
+    expected.set(0, "kept");
+    assertEquals(expected, allLines(recovered, fileName));
+
+    recovered.editLines(new EditRequest(2, 3, Arrays.asList("new"), fileName, new Cursor(2, 0)));
+    reopened.close();
+    expected.set(2, "new");
+    assertEquals(expected, allLines(new EditJournal(directory, 1, 0, 100)
+        .recover(recoveredFile -> new SourceFileHandlerArrayListImpl(fileName)), fileName));
+  }
+
+  @Test
+  void garbageRecordLengthIsDroppedAsTorn() throws IOException {
+    String fileName = "garbage";
+    FileInfo fileInfo = makeFile(fileName, 10);
+    EditJournal journal = new EditJournal(directory, 1, 0, 100);
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl(fileName);
+    handler.setJournal(journal);
+    handler.loadFile(fileInfo);
+    handler.editLines(new EditRequest(0, 1, Arrays.asList("kept"), fileName, new Cursor(0, 0)));
+    journal.close();
+
+    // A record header claiming almost 2 GB, nothing may be allocated for it.
+    Files.write(directory.resolve("journal-0"),
+        new byte[] {0x7f, (byte) 0xff, (byte) 0xff, (byte) 0xf0, 0, 0, 0, 0},
+        StandardOpenOption.APPEND);
+
+    SourceFileHandler recovered = new EditJournal(directory, 1, 0, 100)
+        .recover(recoveredFile -> new SourceFileHandlerArrayListImpl(fileName));
+    List<String> expected = new ArrayList<>(fileInfo.getLines());
+    expected.set(0, "kept");
+    assertEquals(expected, allLines(recovered, fileName));
+  }
+
+  @Test
+  void editsAfterCloseReopenTheJournal() throws IOException {
+    String fileName = "reopen";
+    FileInfo fileInfo = makeFile(fileName, 10);
+    EditJournal journal = new EditJournal(directory, 100, 1000, 100);
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl(fileName);
+    handler.setJournal(journal);
+    handler.loadFile(fileInfo);
+    handler.editLines(new EditRequest(0, 1, Arrays.asList("before"), fileName,
+        new Cursor(0, 0)));
+    journal.close();
+
+    handler.editLines(new EditRequest(1, 2, Arrays.asList("after"), fileName,
+        new Cursor(1, 0)));
+    journal.syncIfDue();
+    journal.close();
+
+    SourceFileHandler recovered = new EditJournal(directory, 1, 0, 100)
+        .recover(recoveredFile -> new SourceFileHandlerArrayListImpl(fileName));
+    assertEquals(allLines(handler, fileName), allLines(recovered, fileName));
+  }
+}
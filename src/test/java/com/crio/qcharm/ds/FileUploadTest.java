@@ -0,0 +1,105 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.UndoRequest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileUploadTest {
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private String makeText(int n) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 1; i <= n; ++i) {
+      text.append("lineno").append(i);
+      if (i % 7 == 0) {
+        text.append(" \u00e9t\u00e9 \u4e2d\u6587");
+      }
+      text.append('\n');
+    }
+    return text.toString();
+  }
+
+  @Test
+  void linesAreSplitLikeDataNowWhateverTheChunks() {
+    Random random = new Random(0x1231);
+    for (String text : Arrays.asList("", "\n", "a", "a\n", "\n\nb\n\n", makeText(500),
+        makeText(500) + "last")) {
+      List<String> expected = Arrays.asList(text.split("\\n", -1));
+      for (int round = 0; round < 5; ++round) {
+        FileUpload upload = new FileUpload("chunks");
+        int i = 0;
+        while (i < text.length()) {
+          int end = Math.min(text.length(), i + 1 + random.nextInt(40));
+          upload.append(text.substring(i, end));
+          i = end;
+        }
+        assertEquals(expected, upload.finish().getAllLines());
+      }
+    }
+  }
+
+  @Test
+  void firstPageIsServedBeforeTheUploadIsOver() throws InterruptedException {
+    FileUpload upload = new FileUpload("partial");
+    upload.append("first\nsecond\nthi");
+
+    assertEquals(2, upload.awaitLines(50, 0));
+    Page page = upload.getLinesFrom(new PageRequest(0, "partial", 50, new Cursor(0, 0)));
+    assertEquals(Arrays.asList("first", "second"), page.getLines());
+    assertEquals(0, page.getStartingLineNo());
+    assertFalse(upload.isFinished());
+
+    AtomicInteger received = new AtomicInteger();
+    Thread reader = new Thread(() -> {
+      try {
+        received.set(upload.awaitLines(4, 10000));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    });
+    reader.start();
+    upload.append("rd\nfourth\nfif");
+    reader.join();
+    assertEquals(4, received.get());
+
+    SourceFileVersion version = upload.finish();
+    assertTrue(upload.isFinished());
+    assertEquals(Arrays.asList("first", "second", "third", "fourth", "fif"),
+        version.getAllLines());
+  }
+
+  @Test
+  void uploadedFileIsEditedLikeAnyOther() {
+    String fileName = "edited";
+    FileUpload upload = new FileUpload(fileName);
+    upload.append(makeText(100));
+    SourceFileHandlerArenaImpl handler = new SourceFileHandlerArenaImpl(fileName);
+
+    Page page = handler.loadFile(upload);
+    assertEquals(50, page.getLines().size());
+    assertEquals("lineno1", page.getLines().get(0));
+
+    handler.editLines(new EditRequest(0, 1, Arrays.asList("edited"),
+        fileName, new Cursor(0, 0)));
+    handler.undo(new UndoRequest(fileName));
+    handler.redo(new UndoRequest(fileName));
+    List<String> lines = handler.getLatestSourceFileVersion(fileName).getAllLines();
+    assertEquals("edited", lines.get(0));
+    assertEquals(101, lines.size());
+  }
+}
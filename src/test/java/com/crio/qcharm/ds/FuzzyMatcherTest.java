@@ -0,0 +1,157 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FuzzyMatcherTest {
+
+  private static final String[] WORDS = {"int", "page", "cursor", "x", "=", "getLines", "0;",
+      "return", "pageRequest", "fileName", "{", "}", "pgaeReqeust", "pageReqest"};
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int numberOfWords = random.nextInt(12);
+      for (int j = 0; j < numberOfWords; ++j) {
+        line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  private static int editDistance(String a, String b) {
+    int[][] d = new int[a.length() + 1][b.length() + 1];
+    for (int i = 0; i <= a.length(); i++) {
+      for (int j = 0; j <= b.length(); j++) {
+        if (i == 0 || j == 0) {
+          d[i][j] = i + j;
+        } else {
+          int replace = d[i - 1][j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+          d[i][j] = Math.min(replace, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+        }
+      }
+    }
+    return d[a.length()][b.length()];
+  }
+
+  // The occurrences as FuzzyMatcher defines them, with the distances computed for every
+  // substring.
+  private List<FuzzyMatch> expected(String line, String pattern, int maxEdits) {
+    List<FuzzyMatch> res = new ArrayList<>();
+    int bestEnd = -1;
+    int bestScore = 0;
+    for (int end = 0; end <= line.length(); end++) {
+      int score = Integer.MAX_VALUE;
+      for (int start = 0; end < line.length() && start <= end; start++) {
+        score = Math.min(score, editDistance(pattern, line.substring(start, end + 1)));
+      }
+      if (score <= maxEdits) {
+        if (bestEnd < 0 || score < bestScore) {
+          bestEnd = end;
+          bestScore = score;
+        }
+      } else if (bestEnd >= 0) {
+        int start = 0;
+        while (editDistance(pattern, line.substring(start, bestEnd + 1)) != bestScore) {
+          start++;
+        }
+        res.add(new FuzzyMatch(0, start, bestEnd + 1 - start, bestScore));
+        bestEnd = -1;
+      }
+    }
+    return res;
+  }
+
+  @Test
+  void findsWhatTheDynamicProgrammingFinds() {
+    Random random = new Random(0x6161);
+    for (int i = 0; i < 2000; ++i) {
+      StringBuilder line = new StringBuilder();
+      int length = random.nextInt(30);
+      for (int j = 0; j < length; j++) {
+        line.append("abc\u00e9".charAt(random.nextInt(4)));
+      }
+      StringBuilder pattern = new StringBuilder();
+      int patternLength = 1 + random.nextInt(6);
+      for (int j = 0; j < patternLength; j++) {
+        pattern.append("abc\u00e9".charAt(random.nextInt(4)));
+      }
+      int maxEdits = random.nextInt(patternLength);
+      List<FuzzyMatch> found = new ArrayList<>();
+      new FuzzyMatcher(pattern.toString(), maxEdits).search(line.toString(), 0, found);
+      assertEquals(expected(line.toString(), pattern.toString(), maxEdits), found,
+          line + " " + pattern + " " + maxEdits);
+    }
+
+    // A pattern of 64 chars uses every bit.
+    StringBuilder longPattern = new StringBuilder();
+    for (int i = 0; i < 64; i++) {
+      longPattern.append((char) ('a' + i % 26));
+    }
+    String line = "xx" + longPattern.substring(0, 30) + "Z" + longPattern.substring(31) + "yy";
+    assertEquals(new FuzzyMatch(0, 2, 64, 1),
+        PatternSearchAlgorithm.fuzzySearch(line, longPattern.toString(), 3).get(0));
+
+    assertThrows(IllegalArgumentException.class, () -> new FuzzyMatcher("", 0));
+    assertThrows(IllegalArgumentException.class, () -> new FuzzyMatcher("page", 4));
+    assertThrows(IllegalArgumentException.class,
+        () -> new FuzzyMatcher(longPattern + "a", 1));
+  }
+
+  @Test
+  void ranksTheClosestFirst() {
+    List<String> lines = Arrays.asList("int pgaeReqeust = 0;", "pageRequest x;",
+        "return pageReqest;", "fileName");
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl("fuzzy");
+    handler.loadFile(new FileInfo("fuzzy", lines));
+    SearchRequest searchRequest = new SearchRequest(0, "pageRequest", "fuzzy");
+    searchRequest.setMaxEdits(4);
+    assertEquals(Arrays.asList(new FuzzyMatch(1, 0, 11, 0), new FuzzyMatch(2, 7, 10, 1),
+        new FuzzyMatch(0, 4, 11, 4)), handler.searchFuzzy(searchRequest));
+
+    // No edit allowed, the exact occurrences.
+    List<String> many = makeLines(new Random(0x6262), 3 * ParallelSearch.CHUNK_LINES);
+    List<FuzzyMatch> exact = ParallelSearch.searchFuzzy(Arrays.asList(many), "pageRequest", 0);
+    List<Cursor> cursors = new ArrayList<>();
+    for (FuzzyMatch match : exact) {
+      cursors.add(match.getCursor());
+    }
+    assertEquals(ParallelSearch.search(Arrays.asList(many), "pageRequest"), cursors);
+  }
+
+  @Test
+  void exactMatcherFindsWhatKmpFindsAndFuzzyMore() {
+    List<String> lines = makeLines(new Random(0x6363), 10000);
+    PatternMatcher kmp = SearchStrategy.KMP.compile("pageRequest");
+    FuzzyMatcher exact = new FuzzyMatcher("pageRequest", 0);
+    FuzzyMatcher fuzzy = new FuzzyMatcher("pageRequest", 2);
+
+    int kmpMatches = 0;
+    List<FuzzyMatch> exactMatches = new ArrayList<>();
+    List<FuzzyMatch> fuzzyMatches = new ArrayList<>();
+    for (int lineNo = 0; lineNo < lines.size(); lineNo++) {
+      kmpMatches += PatternSearchAlgorithm.stringSearch(lines.get(lineNo), kmp, false).size();
+      exact.search(lines.get(lineNo), lineNo, exactMatches);
+      fuzzy.search(lines.get(lineNo), lineNo, fuzzyMatches);
+    }
+    assertEquals(kmpMatches, exactMatches.size());
+    assertTrue(fuzzyMatches.size() > kmpMatches);
+  }
+}
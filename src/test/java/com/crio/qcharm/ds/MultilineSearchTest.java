@@ -0,0 +1,114 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MultilineSearchTest {
+
+  private static final String[] WORDS = {"int", "x", "=", "0;", "return", "}", "{", "else",
+      "if", "  "};
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int numberOfWords = random.nextInt(5);
+      for (int j = 0; j < numberOfWords; ++j) {
+        if (j > 0) {
+          line.append(' ');
+        }
+        line.append(WORDS[random.nextInt(WORDS.length)]);
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  // offsets[i] is the index of line i in the joined file.
+  private Cursor cursorAt(int[] offsets, int index) {
+    int lineNo = Arrays.binarySearch(offsets, index);
+    if (lineNo < 0) {
+      lineNo = -lineNo - 2;
+    }
+    return new Cursor(lineNo, index - offsets[lineNo]);
+  }
+
+  // The matches in the whole file joined into one String.
+  private List<CursorRange> expected(List<String> lines, SearchRequest searchRequest) {
+    String text = String.join("\n", lines);
+    int[] offsets = new int[lines.size()];
+    for (int i = 1; i < lines.size(); i++) {
+      offsets[i] = offsets[i - 1] + lines.get(i - 1).length() + 1;
+    }
+    String pattern = searchRequest.getPattern();
+    List<CursorRange> res = new ArrayList<>();
+    if (pattern.isEmpty()) {
+      return res;
+    }
+    if (!searchRequest.isRegex()) {
+      for (int i = text.indexOf(pattern); i >= 0; i = text.indexOf(pattern, i + 1)) {
+        res.add(new CursorRange(cursorAt(offsets, i), cursorAt(offsets, i + pattern.length())));
+      }
+      return res;
+    }
+    Matcher matcher = Pattern.compile(pattern, searchRequest.getFlags()).matcher(text);
+    while (matcher.find()) {
+      if (matcher.end() > matcher.start()) {
+        res.add(new CursorRange(cursorAt(offsets, matcher.start()),
+            cursorAt(offsets, matcher.end())));
+      }
+    }
+    return res;
+  }
+
+  @Test
+  void findsWhatTheJoinedFileHolds() {
+    Random random = new Random(0x7171);
+    SourceFileHandler handler = new SourceFileHandlerPieceTableImpl("multiline");
+    handler.loadFile(new FileInfo("multiline", makeLines(random, 3000)));
+    // A few pieces, so that the patterns span segments.
+    for (int i = 0; i < 30; ++i) {
+      int start = random.nextInt(2900);
+      handler.editLines(new EditRequest(start, start + 3, makeLines(random, 5), "multiline",
+          new Cursor(start, 0)));
+    }
+    List<String> lines = handler.getLatestSourceFileVersion("multiline").getAllLines();
+
+    List<SearchRequest> searchRequests = Arrays.asList(
+        new SearchRequest(0, "}\n  else", "multiline"),
+        new SearchRequest(0, "}\nelse", "multiline"),
+        new SearchRequest(0, "\n\n", "multiline"),
+        new SearchRequest(0, "x\nint\nreturn", "multiline"),
+        new SearchRequest(0, "0;\n\n\n", "multiline"),
+        new SearchRequest(0, "else", "multiline"),
+        new SearchRequest(0, "", "multiline"),
+        new SearchRequest(0, "\\}\\s+else", "multiline", true, 0),
+        new SearchRequest(0, "^int", "multiline", true, 0),
+        new SearchRequest(0, "^int", "multiline", true, Pattern.MULTILINE),
+        new SearchRequest(0, "\\n\\n\\n", "multiline", true, 0),
+        new SearchRequest(0, "x$", "multiline", true, 0),
+        new SearchRequest(0, "(?<=\\n)else\\b[^}]*}", "multiline", true, 0),
+        new SearchRequest(0, "return.{0,40}?else", "multiline", true, Pattern.DOTALL),
+        new SearchRequest(0, "\\s*", "multiline", true, 0));
+    for (SearchRequest searchRequest : searchRequests) {
+      assertEquals(expected(lines, searchRequest), handler.searchMultiline(searchRequest),
+          searchRequest.toString());
+    }
+  }
+}
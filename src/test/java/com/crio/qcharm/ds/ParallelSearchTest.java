@@ -0,0 +1,102 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelSearchTest {
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int length = random.nextInt(30);
+      for (int j = 0; j < length; ++j) {
+        line.append((char) ('a' + random.nextInt(3)));
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  private List<Cursor> sequentialSearch(List<String> lines, String pattern) {
+    List<Cursor> res = new ArrayList<>();
+    for (int i = 0; i < lines.size(); i++) {
+      for (int j = lines.get(i).indexOf(pattern); j >= 0 && !pattern.isEmpty();
+          j = lines.get(i).indexOf(pattern, j + 1)) {
+        res.add(new Cursor(i, j));
+      }
+    }
+    return res;
+  }
+
+  @Test
+  void cursorsAreInOrderWhateverTheSegments() {
+    Random random = new Random(0x1231);
+    List<String> lines = makeLines(random, 3 * ParallelSearch.CHUNK_LINES + 17);
+    for (String pattern : Arrays.asList("a", "ab", "aba", "abcab", "d", "")) {
+      List<Cursor> expected = sequentialSearch(lines, pattern);
+
+      assertEquals(expected, ParallelSearch.search(Collections.singletonList(lines), pattern));
+      assertEquals(expected,
+          ParallelSearch.search(ParallelSearch.segmentsOf(new LinkedList<>(lines)), pattern));
+
+      // Segments of random sizes, some of them empty.
+      List<List<String>> segments = new ArrayList<>();
+      int start = 0;
+      while (start < lines.size()) {
+        int end = Math.min(lines.size(), start + random.nextInt(3000));
+        segments.add(lines.subList(start, end));
+        start = end;
+      }
+      assertEquals(expected, ParallelSearch.search(segments, pattern));
+    }
+    assertTrue(ParallelSearch.search(new ArrayList<List<String>>(), "a").isEmpty());
+  }
+
+  @Test
+  void everyVersionSearchesItsOwnStorage() {
+    Random random = new Random(0x4321);
+    List<String> lines = makeLines(random, 2 * ParallelSearch.CHUNK_LINES + 5);
+    FileInfo fileInfo = new FileInfo("search", lines);
+    SearchRequest searchRequest = new SearchRequest(0, "abc", "search");
+    List<Cursor> expected = sequentialSearch(lines, "abc");
+
+    List<SourceFileVersion> versions = Arrays.asList(
+        new SourceFileVersionArrayListImpl(fileInfo),
+        new SourceFileVersionLinkedListImpl(fileInfo),
+        new SourceFileVersionHybridImpl(fileInfo),
+        new SourceFileVersionPieceTableImpl(fileInfo),
+        new SourceFileVersionArenaImpl(fileInfo),
+        new SourceFileVersionPersistentImpl(fileInfo));
+    for (SourceFileVersion version : versions) {
+      assertEquals(expected, version.getCursors(searchRequest));
+    }
+
+    // After an edit the pieces and leaves no longer line up with the chunks.
+    List<String> edited = new ArrayList<>(lines);
+    edited.subList(100, 4200).clear();
+    edited.addAll(100, Arrays.asList("abcabc", "xabc"));
+    UpdateLines updateLines =
+        new UpdateLines(100, 4100, Arrays.asList("abcabc", "xabc"), new Cursor(100, 0));
+    for (SourceFileVersion version : versions) {
+      version.apply(updateLines);
+      assertEquals(sequentialSearch(edited, "abc"), version.getCursors(searchRequest));
+    }
+  }
+}
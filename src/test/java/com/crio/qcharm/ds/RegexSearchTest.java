@@ -0,0 +1,116 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegexSearchTest {
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    String[] words = {"int", "x", "=", "42;", "getLines()", "Page", "page", "return", "0x1F"};
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int numberOfWords = random.nextInt(8);
+      for (int j = 0; j < numberOfWords; ++j) {
+        line.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  private List<Cursor> findEachLine(List<String> lines, String regex, int flags) {
+    List<Cursor> res = new ArrayList<>();
+    Pattern pattern = Pattern.compile(regex, flags);
+    for (int i = 0; i < lines.size(); ++i) {
+      Matcher matcher = pattern.matcher(lines.get(i));
+      while (matcher.find()) {
+        if (matcher.end() > matcher.start()) {
+          res.add(new Cursor(i, matcher.start()));
+        }
+      }
+    }
+    return res;
+  }
+
+  @Test
+  void everyVersionFindsTheMatchesOfEachLine() {
+    Random random = new Random(0x1231);
+    List<String> lines = makeLines(random, ParallelSearch.CHUNK_LINES + 5);
+    FileInfo fileInfo = new FileInfo("regex", lines);
+    List<SourceFileVersion> versions = Arrays.asList(
+        new SourceFileVersionArrayListImpl(fileInfo),
+        new SourceFileVersionLinkedListImpl(fileInfo),
+        new SourceFileVersionHybridImpl(fileInfo),
+        new SourceFileVersionPieceTableImpl(fileInfo),
+        new SourceFileVersionPersistentImpl(fileInfo));
+    List<SearchRequest> searchRequests = Arrays.asList(
+        new SearchRequest(0, "\\d+;", "regex", true, 0),
+        new SearchRequest(0, "page", "regex", true, Pattern.CASE_INSENSITIVE),
+        new SearchRequest(0, "^return", "regex", true, 0),
+        new SearchRequest(0, "x*", "regex", true, 0),
+        new SearchRequest(0, "", "regex", true, 0));
+    for (SearchRequest searchRequest : searchRequests) {
+      List<Cursor> expected = searchRequest.getPattern().isEmpty() ? new ArrayList<>()
+          : findEachLine(lines, searchRequest.getPattern(), searchRequest.getFlags());
+      for (SourceFileVersion version : versions) {
+        assertEquals(expected, version.getCursors(searchRequest), searchRequest.toString());
+      }
+    }
+
+    // Without the regex flag the pattern is a literal.
+    assertEquals(new ArrayList<>(), versions.get(0).getCursors(
+        new SearchRequest(0, "\\d+;", "regex")));
+    assertThrows(PatternSyntaxException.class, () -> versions.get(0).getCursors(
+        new SearchRequest(0, "getLines(", "regex", true, 0)));
+  }
+
+  @Test
+  void compiledPatternsAreCachedByRegexAndFlags() {
+    Pattern pattern = RegexSearch.compile("a+b", 0);
+    assertSame(pattern, RegexSearch.compile("a+b", 0));
+    assertNotSame(pattern, RegexSearch.compile("a+b", Pattern.CASE_INSENSITIVE));
+
+    for (int i = 0; i < RegexSearch.CACHE_SIZE; ++i) {
+      RegexSearch.compile("c" + i, 0);
+    }
+    assertNotSame(pattern, RegexSearch.compile("a+b", 0));
+  }
+
+  // The backreference keeps the regex engine from memoizing the loop, each line would take
+  // minutes: the timeout only fails if the 200 ms deadline is ignored.
+  @Test
+  @Timeout(value = 60, unit = TimeUnit.SECONDS)
+  void catastrophicBacktrackingIsStoppedAtTheDeadline() {
+    char[] as = new char[40];
+    Arrays.fill(as, 'a');
+    List<String> lines = Collections.nCopies(2 * ParallelSearch.CHUNK_LINES, new String(as));
+
+    SearchTimeoutException e = assertThrows(SearchTimeoutException.class,
+        () -> RegexSearch.search(Collections.singletonList(lines), "(a|aa)+\\1b", 0, 200));
+    assertTrue(e.getMessage().contains("(a|aa)+\\1b"));
+  }
+}
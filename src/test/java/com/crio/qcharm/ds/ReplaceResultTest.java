@@ -0,0 +1,298 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchReplaceRequest;
+import com.crio.qcharm.request.SearchRequest;
+import com.crio.qcharm.request.UndoRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReplaceResultTest {
+
+  private static final String[] WORDS = {"int", "page", "cursor", "x", "=", "pagepage", "0;",
+      "return", "pageRequest", "fileName", "{", "}"};
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int numberOfWords = random.nextInt(4);
+      for (int j = 0; j < numberOfWords; ++j) {
+        line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  // What String.replace does to every line, the changed lines grouped in runs.
+  private ReplaceResult expected(List<String> lines, String pattern, String newPattern,
+      List<String> replaced) {
+    int replacements = 0;
+    List<CursorRange> ranges = new ArrayList<>();
+    for (int lineNo = 0; lineNo < lines.size(); lineNo++) {
+      String line = lines.get(lineNo);
+      String newLine = line.replace(pattern, newPattern);
+      replaced.add(newLine);
+      if (!line.contains(pattern)) {
+        continue;
+      }
+      replacements += (line.length() - line.replace(pattern, "").length()) / pattern.length();
+      int start = lineNo;
+      while (lineNo + 1 < lines.size() && lines.get(lineNo + 1).contains(pattern)) {
+        lineNo++;
+        newLine = lines.get(lineNo).replace(pattern, newPattern);
+        replaced.add(newLine);
+        replacements += (lines.get(lineNo).length()
+            - lines.get(lineNo).replace(pattern, "").length()) / pattern.length();
+      }
+      ranges.add(new CursorRange(new Cursor(start, 0), new Cursor(lineNo, newLine.length())));
+    }
+    return new ReplaceResult(replacements, ranges);
+  }
+
+  @Test
+  void everyHandlerReportsWhatChanged() {
+    Random random = new Random(0x7373);
+    // Several chunks, with a run of changed lines across the first boundary.
+    List<String> lines = makeLines(random, 3 * ParallelSearch.CHUNK_LINES + 500);
+    lines.set(ParallelSearch.CHUNK_LINES - 1, "page");
+    lines.set(ParallelSearch.CHUNK_LINES, "page");
+    SourceFileHandler indexed = new SourceFileHandlerArrayListImpl("replace");
+    indexed.setTrigramIndex(true);
+    List<SourceFileHandler> handlers = Arrays.asList(
+        new SourceFileHandlerArrayListImpl("replace"),
+        new SourceFileHandlerLinkedListImpl("replace"),
+        new SourceFileHandlerHybridImpl("replace"),
+        new SourceFileHandlerPieceTableImpl("replace"),
+        new SourceFileHandlerPersistentImpl("replace"),
+        indexed);
+    for (SourceFileHandler handler : handlers) {
+      handler.loadFile(new FileInfo("replace", new ArrayList<>(lines)));
+      // An edit first, so that the lines aren't all where they were loaded.
+      List<String> edited = new ArrayList<>(lines);
+      edited.subList(100, 103).clear();
+      edited.addAll(100, Arrays.asList("page page", "pagepagepage", "no"));
+      handler.editLines(new EditRequest(100, 103, edited.subList(100, 103), "replace",
+          new Cursor(100, 0)));
+
+      for (String[] patterns : new String[][] {{"page", "cursor"}, {"pagepage", "p"},
+          {"absent", "x"}, {"", "x"}}) {
+        List<String> before =
+            new ArrayList<>(handler.getLatestSourceFileVersion("replace").getAllLines());
+        List<String> after = new ArrayList<>();
+        ReplaceResult expected = patterns[0].isEmpty() ? new ReplaceResult()
+            : expected(before, patterns[0], patterns[1], after);
+        ReplaceResult result = handler.searchReplace(
+            new SearchReplaceRequest(0, 0, patterns[0], patterns[1], "replace"));
+        String name = handler.getClass().getSimpleName() + " " + patterns[0];
+        assertEquals(expected, result, name);
+        assertEquals(patterns[0].isEmpty() ? before : after,
+            handler.getLatestSourceFileVersion("replace").getAllLines(), name);
+
+        handler.undo(new UndoRequest("replace"));
+        assertEquals(before, handler.getLatestSourceFileVersion("replace").getAllLines(), name);
+        handler.redo(new UndoRequest("replace"));
+      }
+    }
+  }
+
+  @Test
+  void onlyTheLinesHoldingThePatternAreRewritten() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 50000; i++) {
+      lines.add("line " + i);
+    }
+    lines.set(10, "needle");
+    lines.set(11, "a needle and a needle");
+    lines.set(40000, "needle");
+    List<String> loaded = new ArrayList<>(lines);
+    SourceFileVersion sourceFile = new SourceFileVersionArrayListImpl(new FileInfo("replace",
+        loaded));
+
+    // The lines of the file are copied before the first change, never changed.
+    ReplaceResult result = sourceFile.apply(new SearchReplace(0, 0, null, "needle", "pin"));
+    assertEquals(lines, loaded);
+    assertEquals(new ReplaceResult(4, Arrays.asList(
+        new CursorRange(new Cursor(10, 0), new Cursor(11, 15)),
+        new CursorRange(new Cursor(40000, 0), new Cursor(40000, 3)))), result);
+
+    result = sourceFile.apply(new SearchReplace(0, 0, null, "pin", "needle"));
+    assertEquals(4, result.getReplacements());
+    List<String> replaced = sourceFile.getAllLines();
+    assertEquals(lines, replaced);
+    for (int i = 0; i < 1000; i++) {
+      if (i != 10 && i != 11) {
+        assertSame(lines.get(i), replaced.get(i));
+      }
+    }
+  }
+
+  @Test
+  void readersSeeTheVersionBeforeTheReplaceUntilItIsDone() throws Exception {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 200000; i++) {
+      lines.add("old line " + i);
+    }
+    List<SourceFileHandler> handlers = Arrays.asList(
+        new SourceFileHandlerArrayListImpl("replace"),
+        new SourceFileHandlerLinkedListImpl("replace"),
+        new SourceFileHandlerHybridImpl("replace"),
+        new SourceFileHandlerPieceTableImpl("replace"),
+        new SourceFileHandlerPersistentImpl("replace"));
+    for (SourceFileHandler handler : handlers) {
+      String name = handler.getClass().getSimpleName();
+      handler.loadFile(new FileInfo("replace", new ArrayList<>(lines)));
+      SourceFileVersion before = handler.getLatestSourceFileVersion("replace");
+
+      // Every page read while the replace runs is either all old or all new.
+      AtomicBoolean done = new AtomicBoolean();
+      AtomicInteger mixed = new AtomicInteger();
+      AtomicInteger reads = new AtomicInteger();
+      Thread reader = new Thread(() -> {
+        Random random = new Random(0x7474);
+        while (!done.get()) {
+          Page page = handler.getLinesFrom(new PageRequest(random.nextInt(199000), "replace",
+              1000, new Cursor(0, 0)));
+          boolean old = page.getLines().get(0).startsWith("old");
+          for (String line : page.getLines()) {
+            if (line.startsWith("old") != old) {
+              mixed.incrementAndGet();
+              break;
+            }
+          }
+          reads.incrementAndGet();
+        }
+      });
+      reader.start();
+      for (int i = 0; i < 4; i++) {
+        handler.searchReplace(new SearchReplaceRequest(0, 0, i % 2 == 0 ? "old" : "new",
+            i % 2 == 0 ? "new" : "old", "replace"));
+      }
+      done.set(true);
+      reader.join();
+      assertEquals(0, mixed.get(), name);
+      assertTrue(reads.get() > 0, name);
+
+      // The version read before the replace never changed, the latest one has one undo entry
+      // for every replace.
+      assertEquals(lines, before.getAllLines(), name);
+      ReplaceResult result = handler.searchReplace(
+          new SearchReplaceRequest(0, 0, "old", "new", "replace"));
+      assertEquals(200000, result.getReplacements(), name);
+      assertEquals(Arrays.asList(new CursorRange(new Cursor(0, 0),
+          new Cursor(199999, "new line 199999".length()))), result.getRanges(), name);
+      handler.undo(new UndoRequest("replace"));
+      assertEquals(lines, handler.getLatestSourceFileVersion("replace").getAllLines(), name);
+    }
+  }
+
+  @Test
+  void editsDuringTheReplaceAreKept() throws Exception {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 200000; i++) {
+      lines.add("old line " + i);
+    }
+    SourceFileHandler indexed = new SourceFileHandlerPieceTableImpl("replace");
+    indexed.setTrigramIndex(true);
+    List<SourceFileHandler> handlers = Arrays.asList(
+        new SourceFileHandlerArrayListImpl("replace"),
+        new SourceFileHandlerLinkedListImpl("replace"),
+        new SourceFileHandlerHybridImpl("replace"),
+        new SourceFileHandlerPieceTableImpl("replace"),
+        new SourceFileHandlerPersistentImpl("replace"),
+        indexed);
+    for (SourceFileHandler handler : handlers) {
+      String name = handler.getClass().getSimpleName();
+      handler.loadFile(new FileInfo("replace", new ArrayList<>(lines)));
+
+      // Lines typed at the top of the file by another request while the replaces run.
+      int edits = 200;
+      Thread editor = new Thread(() -> {
+        for (int i = 0; i < edits; i++) {
+          handler.editLines(new EditRequest(0, 0, Arrays.asList("typed " + i), "replace",
+              new Cursor(0, 0)));
+          Thread.yield();
+        }
+      });
+      editor.start();
+      for (int i = 0; i < 4; i++) {
+        handler.searchReplace(new SearchReplaceRequest(0, 0, i % 2 == 0 ? "old" : "new",
+            i % 2 == 0 ? "new" : "old", "replace"));
+      }
+      editor.join();
+
+      List<String> edited = handler.getLatestSourceFileVersion("replace").getAllLines();
+      assertEquals(lines.size() + edits, edited.size(), name);
+      for (int i = 0; i < edits; i++) {
+        assertEquals("typed " + (edits - 1 - i), edited.get(i), name);
+      }
+      assertEquals(lines, edited.subList(edits, edited.size()), name);
+      for (int i = 0; i < edits + 4; i++) {
+        handler.undo(new UndoRequest("replace"));
+      }
+      assertEquals(lines, handler.getLatestSourceFileVersion("replace").getAllLines(), name);
+    }
+  }
+
+  @Test
+  void searchesDuringEditsSeeOneVersion() throws Exception {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      lines.add("old line " + i);
+    }
+    SourceFileHandler indexed = new SourceFileHandlerPieceTableImpl("replace");
+    indexed.setTrigramIndex(true);
+    List<SourceFileHandler> handlers = Arrays.asList(
+        new SourceFileHandlerArrayListImpl("replace"),
+        new SourceFileHandlerLinkedListImpl("replace"),
+        new SourceFileHandlerHybridImpl("replace"),
+        new SourceFileHandlerPieceTableImpl("replace"),
+        new SourceFileHandlerPersistentImpl("replace"),
+        indexed);
+    for (SourceFileHandler handler : handlers) {
+      String name = handler.getClass().getSimpleName();
+      handler.loadFile(new FileInfo("replace", new ArrayList<>(lines)));
+
+      // Lines are typed then removed at the top of the file, the old lines are always there.
+      AtomicBoolean done = new AtomicBoolean();
+      AtomicInteger wrong = new AtomicInteger();
+      Thread editor = new Thread(() -> {
+        for (int i = 0; i < 2000; i++) {
+          handler.editLines(new EditRequest(0, 0, Arrays.asList("typed " + i), "replace",
+              new Cursor(0, 0)));
+          handler.editLines(new EditRequest(0, 1, new ArrayList<>(), "replace",
+              new Cursor(0, 0)));
+        }
+        done.set(true);
+      });
+      editor.start();
+      while (!done.get()) {
+        List<Cursor> cursors = handler.search(new SearchRequest(0, "old", "replace"));
+        if (cursors.size() != lines.size()) {
+          wrong.incrementAndGet();
+        }
+      }
+      editor.join();
+      assertEquals(0, wrong.get(), name);
+      assertEquals(lines, handler.getLatestSourceFileVersion("replace").getAllLines(), name);
+    }
+  }
+}
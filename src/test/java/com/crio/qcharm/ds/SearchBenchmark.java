@@ -0,0 +1,457 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Measurements behind the search optimizations. Each one times the optimized code, or counts
+// the bytes it allocates, next to the code it replaces and prints both; the numbers depend on
+// the machine, so only the results of the searches are asserted. Tagged "benchmark": the test
+// task of build.gradle skips them, the benchmark task runs them.
+@Tag("benchmark")
+class SearchBenchmark {
+
+  private static final String[] WORDS = {"int", "return", "getLinesFrom", "pageRequest",
+      "cursor", "the", "numberOfLines", "fileName", "=", "0000", "quick", "brown", "fox",
+      "jumps", "over"};
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  // n lines of up to maxWords - 1 words of WORDS, each followed by a space.
+  static List<String> makeLines(Random random, int n, int maxWords) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int numberOfWords = random.nextInt(maxWords);
+      for (int j = 0; j < numberOfWords; ++j) {
+        line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  // Bytes allocated by the current thread so far.
+  static long allocatedBytes() {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  static String repeat(String unit, int times) {
+    StringBuilder res = new StringBuilder();
+    for (int i = 0; i < times; ++i) {
+      res.append(unit);
+    }
+    return res.toString();
+  }
+
+  // Behind SearchStrategy.forPattern(): every strategy searches the same lines of code for
+  // short identifiers, long phrases and long patterns made of a few chars, then long patterns
+  // in lines that nearly match them everywhere (the worst case of indexOf). Two-Way is
+  // expected to be slower than indexOf on lines of code and faster on the near matches, the
+  // strategy chosen about as fast as the fastest.
+  @Test
+  void searchStrategies() {
+    List<String> lines = makeLines(new Random(0x4321), 100000, 12);
+    for (String pattern : Arrays.asList("i", "getLinesFrom", "numberOfLines",
+        "the quick brown fox jumps over", "pageRequest cursor fileName return",
+        repeat("=", 35), "0000 0000 0000 0000 0000 0000")) {
+      timeStrategies(lines, pattern);
+    }
+
+    List<String> nearMatches = new ArrayList<>();
+    for (int i = 0; i < 200; ++i) {
+      nearMatches.add(repeat("0", 2000));
+    }
+    for (String pattern : Arrays.asList(repeat("0", 64) + "1",
+        repeat("0", 32) + "1" + repeat("0", 32))) {
+      timeStrategies(nearMatches, pattern);
+    }
+  }
+
+  // Prints the best time of every strategy searching the lines for the pattern, after the
+  // strategies have been run often enough for the JIT to compile them.
+  private void timeStrategies(List<String> lines, String pattern) {
+    Map<SearchStrategy, Long> times = new EnumMap<>(SearchStrategy.class);
+    int expected = count(lines, pattern);
+    for (int round = 0; round < 10; ++round) {
+      for (SearchStrategy strategy : SearchStrategy.values()) {
+        PatternMatcher matcher = strategy.compile(pattern);
+        long startTime = System.nanoTime();
+        int found = 0;
+        for (String line : lines) {
+          found += PatternSearchAlgorithm.stringSearch(line, matcher, false).size();
+        }
+        long timeTaken = System.nanoTime() - startTime;
+        assertEquals(expected, found);
+        // The first rounds are the warm up.
+        if (round >= 5) {
+          times.merge(strategy, timeTaken, Math::min);
+        }
+      }
+    }
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%-40.40s", '"' + pattern + '"'));
+    for (Map.Entry<SearchStrategy, Long> time : times.entrySet()) {
+      report.append(String.format(" %s=%dus", time.getKey(), time.getValue() / 1000));
+    }
+    report.append(" chosen=").append(SearchStrategy.forPattern(pattern));
+    System.out.println(report);
+  }
+
+  // Behind SourceFileVersionIndexedImpl: a word found on one line of 200000 is searched by
+  // scanning every line, then through the trigram index, which only reads the lines holding
+  // all of its trigrams.
+  @Test
+  void trigramIndex() {
+    List<String> lines = makeLines(new Random(0x9876), 200000, 8);
+    lines.set(123456, "pageRequest needle fileName");
+    FileInfo fileInfo = new FileInfo("index", lines);
+    SourceFileVersion scanned = new SourceFileVersionPieceTableImpl(fileInfo);
+    SourceFileVersionIndexedImpl indexed =
+        new SourceFileVersionIndexedImpl(new SourceFileVersionPieceTableImpl(fileInfo));
+    SearchRequest searchRequest = new SearchRequest(0, "needle", "index");
+
+    long scanTime = 0;
+    long indexTime = 0;
+    for (int i = 0; i < 20; ++i) {
+      long startTime = System.nanoTime();
+      List<Cursor> expected = scanned.getCursors(searchRequest);
+      scanTime += System.nanoTime() - startTime;
+      startTime = System.nanoTime();
+      assertEquals(expected, indexed.getCursors(searchRequest));
+      indexTime += System.nanoTime() - startTime;
+    }
+    System.out.printf("scan timetaken = %d ns, index timetaken = %d ns, index = %d bytes\n",
+        scanTime, indexTime, indexed.getIndexMemoryUsage());
+  }
+
+  // Behind SearchCache: after each edit of one line of 200000, a search scans every line
+  // again, then goes through the cache of the handler, which only searches the edited lines.
+  @Test
+  void searchCache() {
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl("cache");
+    handler.loadFile(new FileInfo("cache", makeLines(new Random(0x1357), 200000, 8)));
+    SearchRequest searchRequest = new SearchRequest(0, "pageRequest", "cache");
+    handler.search(searchRequest);
+
+    long scanTime = 0;
+    long cacheTime = 0;
+    for (int i = 0; i < 20; ++i) {
+      int lineNo = 1000 + i * 5000;
+      handler.editLines(new EditRequest(lineNo, lineNo,
+          Arrays.asList("pageRequest", "x"), "cache", new Cursor(lineNo, 0)));
+      SourceFileVersion sourceFile = handler.getLatestSourceFileVersion("cache");
+      long startTime = System.nanoTime();
+      List<Cursor> expected = sourceFile.getCursors(searchRequest);
+      scanTime += System.nanoTime() - startTime;
+      startTime = System.nanoTime();
+      assertEquals(expected, handler.search(searchRequest));
+      cacheTime += System.nanoTime() - startTime;
+    }
+    System.out.printf("scan timetaken = %d ns, cached timetaken = %d ns\n", scanTime,
+        cacheTime);
+  }
+
+  // Behind SearchScan.page(): the first 100 matches of a frequent pattern in 200000 lines,
+  // taken from a search of the whole file, then from a scan that stops at the 100th.
+  @Test
+  void searchScanFirstPage() {
+    SourceFileVersion sourceFile = new SourceFileVersionPieceTableImpl(
+        new FileInfo("scan", makeLines(new Random(0x2718), 200000, 8)));
+    SearchRequest searchRequest = new SearchRequest(0, "=", "scan");
+    searchRequest.setMaxResults(100);
+
+    long scanTime = 0;
+    long pageTime = 0;
+    for (int i = 0; i < 10; ++i) {
+      long startTime = System.nanoTime();
+      List<Cursor> expected = sourceFile.getCursors(searchRequest).subList(0, 100);
+      scanTime += System.nanoTime() - startTime;
+      startTime = System.nanoTime();
+      assertEquals(expected, SearchScan.page(sourceFile, searchRequest).getCursors());
+      pageTime += System.nanoTime() - startTime;
+    }
+    System.out.printf("scan timetaken = %d ns, page timetaken = %d ns\n", scanTime, pageTime);
+  }
+
+  // Behind SearchScan.findNext() and findPrevious(): a search of the whole file against 100
+  // steps forward and 100 back from the middle of it, each scanning up to the next match.
+  @Test
+  void searchScanFindNext() {
+    SourceFileVersion sourceFile = new SourceFileVersionPieceTableImpl(
+        new FileInfo("scan", makeLines(new Random(0x1515), 200000, 8)));
+    SearchRequest searchRequest = new SearchRequest(0, "pageRequest", "scan");
+
+    long scanTime = 0;
+    long findTime = 0;
+    for (int i = 0; i < 10; ++i) {
+      long startTime = System.nanoTime();
+      sourceFile.getCursors(searchRequest);
+      scanTime += System.nanoTime() - startTime;
+      startTime = System.nanoTime();
+      Cursor cursor = new Cursor(100000, 0);
+      for (int j = 0; j < 100; ++j) {
+        cursor = SearchScan.findNext(sourceFile, searchRequest, cursor);
+        cursor = new Cursor(cursor.getLineNo(), cursor.getColumnNo() + 1);
+      }
+      for (int j = 0; j < 100; ++j) {
+        cursor = SearchScan.findPrevious(sourceFile, searchRequest, cursor);
+      }
+      findTime += System.nanoTime() - startTime;
+    }
+    System.out.printf("scan timetaken = %d ns, find 200 timetaken = %d ns\n", scanTime,
+        findTime);
+  }
+
+  // Behind CursorArray: the bytes allocated and the time taken by a search returning a
+  // List<Cursor> and by one packing the matches, on a single chunk of long lines, which is
+  // searched by the calling thread. The packed matches are expected to take well under two
+  // thirds of the bytes.
+  @Test
+  void cursorArray() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < ParallelSearch.CHUNK_LINES; ++i) {
+      lines.add(repeat("x = 0; ", 50));
+    }
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl("packed");
+    handler.loadFile(new FileInfo("packed", lines));
+    SourceFileVersion sourceFile = handler.getLatestSourceFileVersion("packed");
+    SearchRequest searchRequest = new SearchRequest(0, ";", "packed");
+
+    long cursorBytes = 0;
+    long packedBytes = 0;
+    long cursorTime = 0;
+    long packedTime = 0;
+    int matches = 0;
+    for (int i = 0; i < 10; ++i) {
+      long allocated = allocatedBytes();
+      long startTime = System.nanoTime();
+      matches = sourceFile.getCursors(searchRequest).size();
+      cursorTime += System.nanoTime() - startTime;
+      cursorBytes += allocatedBytes() - allocated;
+
+      allocated = allocatedBytes();
+      startTime = System.nanoTime();
+      assertEquals(matches, handler.searchPacked(searchRequest).size());
+      packedTime += System.nanoTime() - startTime;
+      packedBytes += allocatedBytes() - allocated;
+    }
+    System.out.printf("%d matches: List<Cursor> %d bytes/search %d ns, CursorArray %d "
+        + "bytes/search %d ns\n", matches, cursorBytes / 10, cursorTime, packedBytes / 10,
+        packedTime);
+
+    String json = handler.searchPacked(searchRequest).toJson();
+    System.out.printf("json %d bytes, %.1f bytes/match\n", json.length(),
+        (double) json.length() / matches);
+  }
+
+  // Behind SearchSession: every prefix of a query typed in 200000 lines is searched in the
+  // whole file, then as you type, in the lines matching the previous prefix.
+  @Test
+  void searchAsYouType() {
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl("session");
+    handler.loadFile(new FileInfo("session", makeLines(new Random(0x8888), 200000, 8)));
+    String query = "pageRequest fileName";
+
+    long scanTime = 0;
+    long typedTime = 0;
+    for (int i = 1; i <= query.length(); i++) {
+      SearchRequest searchRequest = new SearchRequest(0, query.substring(0, i), "session");
+      long startTime = System.nanoTime();
+      List<Cursor> expected =
+          handler.getLatestSourceFileVersion("session").getCursors(searchRequest);
+      scanTime += System.nanoTime() - startTime;
+      startTime = System.nanoTime();
+      assertEquals(expected, handler.searchAsYouType(searchRequest));
+      typedTime += System.nanoTime() - startTime;
+    }
+    System.out.printf("scan timetaken = %d ns, as you type timetaken = %d ns\n", scanTime,
+        typedTime);
+  }
+
+  // Behind ViewportSearch: the bytes allocated by every handler starting a viewport search
+  // of 500000 lines. A copy of the references to the lines would take 4 bytes a line at least,
+  // the search is expected to take well under a byte a line.
+  @Test
+  void viewportSearchAllocation() {
+    List<String> lines = makeLines(new Random(0x5353), 500000, 8);
+    List<SourceFileHandler> handlers = Arrays.asList(
+        new SourceFileHandlerArrayListImpl("viewport"),
+        new SourceFileHandlerPieceTableImpl("viewport"),
+        new SourceFileHandlerPersistentImpl("viewport"),
+        new SourceFileHandlerHybridImpl("viewport"));
+    SearchRequest searchRequest = new SearchRequest(0, "pageRequest", "viewport");
+    for (SourceFileHandler handler : handlers) {
+      handler.loadFile(new FileInfo("viewport", new ArrayList<>(lines)));
+      handler.searchViewport(searchRequest,
+          new PageRequest(1000, "viewport", 50, new Cursor(1000, 0)));
+      long before = allocatedBytes();
+      ViewportSearch viewportSearch = handler.searchViewport(searchRequest,
+          new PageRequest(1000, "viewport", 50, new Cursor(1000, 0)));
+      long allocated = allocatedBytes() - before;
+      assertEquals(
+          handler.getLatestSourceFileVersion("viewport").getCursors(searchRequest),
+          viewportSearch.searchAll());
+      System.out.printf("%s viewport search %d bytes for %d lines\n",
+          handler.getClass().getSimpleName(), allocated, lines.size());
+    }
+  }
+
+  // Behind ViewportSearch: the whole file is searched, then only the 60 lines of a viewport
+  // in the last quarter of 200000 lines.
+  @Test
+  void viewportSearch() {
+    SourceFileHandler handler = new SourceFileHandlerPieceTableImpl("viewport");
+    handler.loadFile(new FileInfo("viewport", makeLines(new Random(0x5252), 200000, 8)));
+    SearchRequest searchRequest = new SearchRequest(0, "=", "viewport");
+
+    long scanTime = 0;
+    long viewportTime = 0;
+    for (int i = 0; i < 10; ++i) {
+      long startTime = System.nanoTime();
+      handler.getLatestSourceFileVersion("viewport").getCursors(searchRequest);
+      scanTime += System.nanoTime() - startTime;
+      startTime = System.nanoTime();
+      handler.searchViewport(searchRequest,
+          new PageRequest(150000, "viewport", 60, new Cursor(150000, 0)));
+      viewportTime += System.nanoTime() - startTime;
+    }
+    System.out.printf("scan timetaken = %d ns, viewport timetaken = %d ns\n", scanTime,
+        viewportTime);
+  }
+
+  // Behind FuzzyMatcher: KMP against the bit-parallel matcher allowing no edit, then 2 edits
+  // of an 11 char pattern and 8 of a 64 char one. The cost per char of the matcher doesn't
+  // depend on the length of the pattern, so the last two are expected to take about as long.
+  @Test
+  void fuzzyMatcher() {
+    List<String> lines = makeLines(new Random(0x6363), 100000, 12);
+    String shortPattern = "pageRequest";
+    String longPattern = "return pageRequest fileName getLines cursor int x = 0; { } page";
+    PatternMatcher kmp = SearchStrategy.KMP.compile(shortPattern);
+    FuzzyMatcher exact = new FuzzyMatcher(shortPattern, 0);
+    FuzzyMatcher fuzzy = new FuzzyMatcher(shortPattern, 2);
+    FuzzyMatcher fuzzyLong = new FuzzyMatcher(longPattern, 8);
+
+    long kmpTime = 0;
+    long exactTime = 0;
+    long fuzzyTime = 0;
+    long fuzzyLongTime = 0;
+    int kmpMatches = 0;
+    int fuzzyMatches = 0;
+    for (int i = 0; i < 6; ++i) {
+      boolean warmup = i == 0;
+      long startTime = System.nanoTime();
+      kmpMatches = 0;
+      for (String line : lines) {
+        kmpMatches += PatternSearchAlgorithm.stringSearch(line, kmp, false).size();
+      }
+      long time = System.nanoTime() - startTime;
+      kmpTime += warmup ? 0 : time;
+
+      List<FuzzyMatch> found = new ArrayList<>();
+      startTime = System.nanoTime();
+      for (int lineNo = 0; lineNo < lines.size(); lineNo++) {
+        exact.search(lines.get(lineNo), lineNo, found);
+      }
+      time = System.nanoTime() - startTime;
+      exactTime += warmup ? 0 : time;
+      assertEquals(kmpMatches, found.size());
+
+      found.clear();
+      startTime = System.nanoTime();
+      for (int lineNo = 0; lineNo < lines.size(); lineNo++) {
+        fuzzy.search(lines.get(lineNo), lineNo, found);
+      }
+      time = System.nanoTime() - startTime;
+      fuzzyTime += warmup ? 0 : time;
+      fuzzyMatches = found.size();
+
+      found.clear();
+      startTime = System.nanoTime();
+      for (int lineNo = 0; lineNo < lines.size(); lineNo++) {
+        fuzzyLong.search(lines.get(lineNo), lineNo, found);
+      }
+      time = System.nanoTime() - startTime;
+      fuzzyLongTime += warmup ? 0 : time;
+    }
+    System.out.printf("kmp %d matches %d ns, fuzzy k=0 %d ns, fuzzy k=2 %d matches %d ns, "
+        + "fuzzy m=64 k=8 %d ns\n", kmpMatches, kmpTime, exactTime, fuzzyMatches, fuzzyTime,
+        fuzzyLongTime);
+  }
+
+  // Behind MultilineSearch: the bytes allocated by a multi-line regex search of 50000 lines,
+  // then of 200000. The search reads the file through a window of lines instead of joining
+  // it, so both are expected to allocate about as much.
+  @Test
+  void multilineSearchAllocation() {
+    Random random = new Random(0x7272);
+    long[] allocated = new long[2];
+    int[] sizes = {50000, 200000};
+    for (int i = 0; i < sizes.length; ++i) {
+      SourceFileHandler handler = new SourceFileHandlerArrayListImpl("multiline");
+      handler.loadFile(new FileInfo("multiline", makeLines(random, sizes[i], 5)));
+      SearchRequest searchRequest = new SearchRequest(0, "nowhere\\s*\\n\\s*else",
+          "multiline", true, 0);
+      handler.searchMultiline(searchRequest);
+      long before = allocatedBytes();
+      assertEquals(0, handler.searchMultiline(searchRequest).size());
+      allocated[i] = allocatedBytes() - before;
+    }
+    System.out.printf("allocated %d bytes for %d lines, %d bytes for %d lines\n", allocated[0],
+        sizes[0], allocated[1], sizes[1]);
+  }
+
+  // Behind ReplaceResult: the bytes allocated by a replace of 4 occurrences in 500000 lines.
+  // Rebuilding the list of lines would take 4 bytes a line at least, the replace is expected
+  // to allocate well under that.
+  @Test
+  void replaceAllocation() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 500000; i++) {
+      lines.add("line " + i);
+    }
+    lines.set(10, "needle");
+    lines.set(11, "a needle and a needle");
+    lines.set(400000, "needle");
+    SourceFileVersion sourceFile = new SourceFileVersionArrayListImpl(new FileInfo("replace",
+        new ArrayList<>(lines)));
+    // The first replace copies the lines of the file.
+    sourceFile.apply(new SearchReplace(0, 0, null, "needle", "pin"));
+
+    long before = allocatedBytes();
+    ReplaceResult result = sourceFile.apply(new SearchReplace(0, 0, null, "pin", "needle"));
+    long allocated = allocatedBytes() - before;
+    assertEquals(4, result.getReplacements());
+    System.out.printf("replaced 4 occurrences in 500000 lines allocating %d bytes\n",
+        allocated);
+  }
+
+  private int count(List<String> lines, String pattern) {
+    int found = 0;
+    for (String line : lines) {
+      for (int i = line.indexOf(pattern); i >= 0; i = line.indexOf(pattern, i + 1)) {
+        found++;
+      }
+    }
+    return found;
+  }
+}
@@ -0,0 +1,179 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchCacheTest {
+
+  private static final String[] WORDS = {"int", "page", "cursor", "x", "=", "getLines", "0;",
+      "return", "pageRequest", "fileName", "{", "}"};
+
+  private static final List<SearchRequest> SEARCH_REQUESTS = Arrays.asList(
+      new SearchRequest(0, "page", "cache"),
+      new SearchRequest(0, "x = 0;", "cache"),
+      new SearchRequest(0, "=", "cache"),
+      new SearchRequest(0, "get\\w+", "cache", true, 0),
+      new SearchRequest(0, "PAGE", "cache", true, Pattern.CASE_INSENSITIVE));
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private String makeLine(Random random) {
+    StringBuilder line = new StringBuilder();
+    int numberOfWords = random.nextInt(8);
+    for (int j = 0; j < numberOfWords; ++j) {
+      line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+    return line.toString();
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      lines.add(makeLine(random));
+    }
+    return lines;
+  }
+
+  private void randomEdits(Random random, SourceFileVersion sourceFile, int n) {
+    for (int i = 0; i < n; ++i) {
+      int numberOfLines = sourceFile.getAllLines().size();
+      int start = random.nextInt(numberOfLines + 1);
+      int removed = Math.min(random.nextInt(4), numberOfLines - start);
+      sourceFile.apply(new UpdateLines(start, removed, makeLines(random, random.nextInt(4)),
+          new Cursor(start, 0)));
+    }
+  }
+
+  private void assertSameCursors(SearchCache searchCache, SourceFileVersion sourceFile) {
+    SourceFileVersion expected = new SourceFileVersionArrayListImpl(
+        new FileInfo("cache", sourceFile.getAllLines()));
+    for (SearchRequest searchRequest : SEARCH_REQUESTS) {
+      assertEquals(expected.getCursors(searchRequest),
+          searchCache.search(sourceFile, searchRequest), searchRequest.toString());
+    }
+  }
+
+  @Test
+  void versionIdsOnlyGrow() {
+    LineChanges lineChanges = new LineChanges();
+    long first = lineChanges.getVersion();
+    assertEquals(0, lineChanges.since(first).size());
+    lineChanges.replaced(3, 1, 2);
+    lineChanges.replaced(0, 0, 1);
+    assertTrue(lineChanges.getVersion() > first);
+    assertEquals(2, lineChanges.since(first).size());
+    assertEquals(3, lineChanges.since(first).get(0).startingLineNo);
+    assertTrue(new LineChanges().getVersion() > lineChanges.getVersion());
+
+    lineChanges.replacedAll();
+    assertNull(lineChanges.since(first));
+    long afterReplace = lineChanges.getVersion();
+    for (int i = 0; i <= LineChanges.MAX_CHANGES; ++i) {
+      lineChanges.replaced(i, 1, 1);
+    }
+    assertNull(lineChanges.since(afterReplace));
+  }
+
+  @Test
+  void cachedResultsFollowEveryEdit() {
+    Random random = new Random(0x2468);
+    List<String> lines = makeLines(random, 500);
+    List<SourceFileVersion> versions = Arrays.asList(
+        new SourceFileVersionArrayListImpl(new FileInfo("cache", new ArrayList<>(lines))),
+        new SourceFileVersionLinkedListImpl(new FileInfo("cache", new ArrayList<>(lines))),
+        new SourceFileVersionHybridImpl(new FileInfo("cache", new ArrayList<>(lines))),
+        new SourceFileVersionPieceTableImpl(new FileInfo("cache", new ArrayList<>(lines))),
+        new SourceFileVersionPersistentImpl(new FileInfo("cache", new ArrayList<>(lines))),
+        new SourceFileVersionIndexedImpl(
+            new SourceFileVersionArenaImpl(new FileInfo("cache", new ArrayList<>(lines)))));
+    for (SourceFileVersion sourceFile : versions) {
+      SearchCache searchCache = new SearchCache();
+      assertSameCursors(searchCache, sourceFile);
+      for (int i = 0; i < 60; ++i) {
+        // A single edit, a few, then more than are remembered.
+        randomEdits(random, sourceFile, i % 20 == 19 ? LineChanges.MAX_CHANGES + 1 : i % 4);
+        if (i % 15 == 14) {
+          sourceFile.apply(new SearchReplace(0, 0, null, "page", "cursor"));
+        }
+        assertSameCursors(searchCache, sourceFile);
+      }
+    }
+  }
+
+  @Test
+  void handlerSearchesFollowTheEdits() {
+    Random random = new Random(0x1357);
+    List<String> lines = makeLines(random, 20000);
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl("cache");
+    handler.loadFile(new FileInfo("cache", lines));
+    SourceFileVersion sourceFile = handler.getLatestSourceFileVersion("cache");
+    SearchRequest searchRequest = new SearchRequest(0, "pageRequest", "cache");
+    long version = sourceFile.getLineChanges().getVersion();
+    List<Cursor> before = handler.search(searchRequest);
+
+    for (int i = 0; i < 20; ++i) {
+      int lineNo = 100 + i * 500;
+      handler.editLines(new EditRequest(lineNo, lineNo,
+          Arrays.asList("pageRequest", "x"), "cache", new Cursor(lineNo, 0)));
+      sourceFile = handler.getLatestSourceFileVersion("cache");
+      assertEquals(sourceFile.getCursors(searchRequest), handler.search(searchRequest));
+    }
+    assertTrue(sourceFile.getLineChanges().getVersion() > version);
+    assertEquals(before.size() + 20, handler.search(searchRequest).size());
+  }
+
+  @Test
+  void concurrentSearchesShareTheCache() throws Exception {
+    Random random = new Random(0x5151);
+    SourceFileVersion sourceFile = new SourceFileVersionArrayListImpl(
+        new FileInfo("cache", makeLines(random, 2000)));
+    // More patterns than the cache keeps, so that searches evict each other's entries.
+    List<SearchRequest> searchRequests = new ArrayList<>();
+    List<List<Cursor>> expected = new ArrayList<>();
+    for (String pattern : WORDS) {
+      SearchRequest searchRequest = new SearchRequest(0, pattern, "cache");
+      searchRequests.add(searchRequest);
+      expected.add(sourceFile.getCursors(searchRequest));
+    }
+    SearchCache searchCache = new SearchCache();
+    AtomicInteger wrong = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (int t = 0; t < 8; ++t) {
+      Random threadRandom = new Random(t);
+      Thread thread = new Thread(() -> {
+        for (int i = 0; i < 300; ++i) {
+          int k = threadRandom.nextInt(searchRequests.size());
+          try {
+            if (!expected.get(k).equals(searchCache.search(sourceFile, searchRequests.get(k)))) {
+              wrong.incrementAndGet();
+            }
+          } catch (RuntimeException e) {
+            wrong.incrementAndGet();
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, wrong.get());
+  }
+}
@@ -0,0 +1,216 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.SearchReplaceRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchScanTest {
+
+  private static final String[] WORDS = {"int", "page", "cursor", "x", "=", "getLines", "0;",
+      "return", "pageRequest", "fileName", "{", "}", "aaa"};
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int numberOfWords = random.nextInt(8);
+      for (int j = 0; j < numberOfWords; ++j) {
+        line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  private List<Cursor> allPages(SourceFileVersion sourceFile, SearchRequest searchRequest) {
+    List<Cursor> res = new ArrayList<>();
+    searchRequest.setContinuationToken(null);
+    do {
+      SearchPage page = SearchScan.page(sourceFile, searchRequest);
+      assertTrue(page.getCursors().size() <= searchRequest.getMaxResults());
+      res.addAll(page.getCursors());
+      searchRequest.setContinuationToken(page.getContinuationToken());
+    } while (searchRequest.getContinuationToken() != null);
+    return res;
+  }
+
+  @Test
+  void pagesHoldEveryOccurrenceOnce() {
+    Random random = new Random(0x3141);
+    List<String> lines = makeLines(random, 3000);
+    List<SourceFileVersion> versions = Arrays.asList(
+        new SourceFileVersionArrayListImpl(new FileInfo("scan", lines)),
+        new SourceFileVersionPieceTableImpl(new FileInfo("scan", lines)),
+        new SourceFileVersionPersistentImpl(new FileInfo("scan", lines)),
+        new SourceFileVersionHybridImpl(new FileInfo("scan", lines)));
+    List<SearchRequest> searchRequests = Arrays.asList(
+        new SearchRequest(0, "page", "scan"),
+        new SearchRequest(0, "aa", "scan"),
+        new SearchRequest(0, "nowhere", "scan"),
+        new SearchRequest(0, "", "scan"),
+        new SearchRequest(0, "a+", "scan", true, 0),
+        new SearchRequest(0, "x*", "scan", true, 0),
+        new SearchRequest(0, "(?<=page)Request", "scan", true, 0));
+    for (SourceFileVersion sourceFile : versions) {
+      for (SearchRequest searchRequest : searchRequests) {
+        for (int maxResults : new int[] {1, 7, 1000, 100000}) {
+          searchRequest.setMaxResults(maxResults);
+          assertEquals(sourceFile.getCursors(searchRequest), allPages(sourceFile, searchRequest),
+              searchRequest.toString());
+        }
+      }
+    }
+  }
+
+  @Test
+  void tokensFollowTheEditsBetweenPages() {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 100; ++i) {
+      lines.add("line " + i + " match");
+    }
+    SourceFileHandler handler = new SourceFileHandlerPieceTableImpl("scan");
+    handler.loadFile(new FileInfo("scan", lines));
+    SearchRequest searchRequest = new SearchRequest(0, "match", "scan");
+    searchRequest.setMaxResults(10);
+    SearchPage first = handler.searchPage(searchRequest);
+    assertEquals(new Cursor(9, 7), first.getCursors().get(9));
+
+    // Two lines inserted at the top and the old line 12 rewritten: the next page goes on
+    // after the match of the old line 9, and skips the rewritten line.
+    handler.editLines(new EditRequest(0, 0, Arrays.asList("match", "match"), "scan",
+        new Cursor(0, 0)));
+    handler.editLines(new EditRequest(14, 15, Arrays.asList("no"), "scan",
+        new Cursor(14, 0)));
+    searchRequest.setContinuationToken(first.getContinuationToken());
+    SearchPage second = handler.searchPage(searchRequest);
+    assertEquals(new Cursor(12, 8), second.getCursors().get(0));
+    assertEquals(new Cursor(22, 8), second.getCursors().get(9));
+
+    searchRequest.setContinuationToken(second.getContinuationToken());
+    SearchRequest otherSearch = new SearchRequest(0, "line", "scan");
+    otherSearch.setContinuationToken(second.getContinuationToken());
+    assertThrows(IllegalArgumentException.class, () -> handler.searchPage(otherSearch));
+    otherSearch.setContinuationToken("not a token");
+    assertThrows(IllegalArgumentException.class, () -> handler.searchPage(otherSearch));
+
+    handler.searchReplace(new SearchReplaceRequest(0, 0, "no", "yes", "scan"));
+    assertThrows(StaleContinuationTokenException.class,
+        () -> handler.searchPage(searchRequest));
+
+    searchRequest.setContinuationToken(null);
+    searchRequest.setMaxResults(1000);
+    SearchPage all = handler.searchPage(searchRequest);
+    assertEquals(101, all.getCursors().size());
+    assertNull(all.getContinuationToken());
+  }
+
+  @Test
+  void firstPageHoldsTheFirstMatches() {
+    Random random = new Random(0x2718);
+    SourceFileVersion sourceFile =
+        new SourceFileVersionPieceTableImpl(new FileInfo("scan", makeLines(random, 20000)));
+    SearchRequest searchRequest = new SearchRequest(0, "=", "scan");
+    searchRequest.setMaxResults(100);
+
+    assertEquals(sourceFile.getCursors(searchRequest).subList(0, 100),
+        SearchScan.page(sourceFile, searchRequest).getCursors());
+  }
+
+  private static boolean before(Cursor a, Cursor b) {
+    return a.getLineNo() < b.getLineNo()
+        || a.getLineNo() == b.getLineNo() && a.getColumnNo() < b.getColumnNo();
+  }
+
+  @Test
+  void findNextAndPreviousStopAtTheNeighbours() {
+    Random random = new Random(0x1414);
+    List<String> lines = makeLines(random, 2000);
+    SourceFileHandler handler = new SourceFileHandlerPieceTableImpl("scan");
+    handler.loadFile(new FileInfo("scan", lines));
+    // A few pieces, so that the scans cross segments.
+    for (int i = 0; i < 20; ++i) {
+      int start = random.nextInt(1900);
+      handler.editLines(new EditRequest(start, start + 3, makeLines(random, 5), "scan",
+          new Cursor(start, 0)));
+    }
+    SourceFileVersion sourceFile = handler.getLatestSourceFileVersion("scan");
+    int numberOfLines = sourceFile.getAllLines().size();
+
+    List<SearchRequest> searchRequests = Arrays.asList(
+        new SearchRequest(0, "page", "scan"),
+        new SearchRequest(0, "aa", "scan"),
+        new SearchRequest(0, "nowhere", "scan"),
+        new SearchRequest(0, "", "scan"),
+        new SearchRequest(0, "page(Request)?", "scan", true, 0));
+    for (SearchRequest searchRequest : searchRequests) {
+      List<Cursor> all = sourceFile.getCursors(searchRequest);
+      for (int i = 0; i < 200; ++i) {
+        Cursor from = new Cursor(random.nextInt(numberOfLines + 2), random.nextInt(50));
+        Cursor next = null;
+        Cursor previous = null;
+        for (Cursor cursor : all) {
+          if (before(cursor, from)) {
+            previous = cursor;
+          } else if (next == null) {
+            next = cursor;
+          }
+        }
+        searchRequest.setWrapAround(false);
+        assertEquals(next, handler.findNext(searchRequest, from), searchRequest + " " + from);
+        assertEquals(previous, handler.findPrevious(searchRequest, from),
+            searchRequest + " " + from);
+
+        searchRequest.setWrapAround(true);
+        Cursor first = all.isEmpty() || !before(all.get(0), from) ? null : all.get(0);
+        Cursor last = all.isEmpty() || before(all.get(all.size() - 1), from) ? null
+            : all.get(all.size() - 1);
+        assertEquals(next != null ? next : first, handler.findNext(searchRequest, from),
+            searchRequest + " " + from);
+        assertEquals(previous != null ? previous : last,
+            handler.findPrevious(searchRequest, from), searchRequest + " " + from);
+      }
+    }
+  }
+
+  @Test
+  void findNextThenFindPreviousComeBack() {
+    Random random = new Random(0x1515);
+    SourceFileVersion sourceFile =
+        new SourceFileVersionPieceTableImpl(new FileInfo("scan", makeLines(random, 20000)));
+    SearchRequest searchRequest = new SearchRequest(0, "pageRequest", "scan");
+    List<Cursor> all = sourceFile.getCursors(searchRequest);
+    int first = 0;
+    while (all.get(first).getLineNo() < 10000) {
+      first++;
+    }
+
+    Cursor cursor = new Cursor(10000, 0);
+    for (int j = 0; j < 100; ++j) {
+      cursor = SearchScan.findNext(sourceFile, searchRequest, cursor);
+      assertEquals(all.get(first + j), cursor);
+      cursor = new Cursor(cursor.getLineNo(), cursor.getColumnNo() + 1);
+    }
+    for (int j = 0; j < 100; ++j) {
+      cursor = SearchScan.findPrevious(sourceFile, searchRequest, cursor);
+    }
+    // Back where the first findNext() stopped.
+    assertEquals(all.get(first), cursor);
+  }
+}
@@ -0,0 +1,135 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchSessionTest {
+
+  private static final String[] WORDS = {"int", "page", "cursor", "x", "=", "getLines", "0;",
+      "return", "pageRequest", "fileName", "{", "}", "pager", "pa"};
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int numberOfWords = random.nextInt(8);
+      for (int j = 0; j < numberOfWords; ++j) {
+        line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  private List<Cursor> expected(SourceFileHandler handler, String pattern) {
+    return new SourceFileVersionArrayListImpl(new FileInfo("session",
+        handler.getLatestSourceFileVersion("session").getAllLines()))
+        .getCursors(new SearchRequest(0, pattern, "session"));
+  }
+
+  @Test
+  void typingRefinesThePreviousResults() {
+    Random random = new Random(0x7777);
+    List<String> lines = makeLines(random, 5000);
+    SourceFileHandler handler = new SourceFileHandlerPieceTableImpl("session");
+    handler.loadFile(new FileInfo("session", lines));
+    SearchSession searchSession = new SearchSession();
+
+    List<String> queries = Arrays.asList("p", "pa", "pag", "page", "pageR", "page", "pag",
+        "pager", "x", "x =", "", "page");
+    List<Integer> depths = Arrays.asList(1, 2, 3, 4, 5, 4, 3, 4, 1, 2, 0, 1);
+    for (int i = 0; i < queries.size(); i++) {
+      String query = queries.get(i);
+      if (i == 3) {
+        // The page re-sent with every request, unchanged, then with a line typed in.
+        List<String> page = new ArrayList<>(
+            handler.getLatestSourceFileVersion("session").getAllLines().subList(100, 150));
+        handler.editLines(new EditRequest(100, 150, page, "session", new Cursor(100, 0)));
+        page.set(7, "the pageRequest pager");
+        handler.editLines(new EditRequest(100, 150, page, "session", new Cursor(107, 0)));
+      }
+      List<Cursor> found = searchSession.search(handler.getLatestSourceFileVersion("session"),
+          new SearchRequest(0, query, "session"), handler::search);
+      assertEquals(expected(handler, query), found, query);
+      assertEquals((int) depths.get(i), searchSession.getDepth(), query);
+    }
+
+    searchSession.search(handler.getLatestSourceFileVersion("session"),
+        new SearchRequest(0, "page.", "session", true, 0), handler::search);
+    assertEquals(0, searchSession.getDepth());
+  }
+
+  @Test
+  void handlerSearchesAsYouType() {
+    Random random = new Random(0x8888);
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl("session");
+    handler.loadFile(new FileInfo("session", makeLines(random, 20000)));
+    String query = "pageRequest fileName";
+
+    for (int i = 1; i <= query.length(); i++) {
+      SearchRequest searchRequest = new SearchRequest(0, query.substring(0, i), "session");
+      assertEquals(handler.getLatestSourceFileVersion("session").getCursors(searchRequest),
+          handler.searchAsYouType(searchRequest));
+    }
+  }
+
+  @Test
+  void overlappingQueriesGetTheirOwnResults() throws Exception {
+    Random random = new Random(0x9999);
+    SourceFileHandler handler = new SourceFileHandlerArrayListImpl("session");
+    handler.loadFile(new FileInfo("session", makeLines(random, 20000)));
+    List<String> queries = Arrays.asList("pageRequest", "pager", "fileName", "getLines",
+        "return", "int x", "cursor", "page");
+    Map<String, List<Cursor>> expected = new HashMap<>();
+    for (String query : queries) {
+      for (int i = 1; i <= query.length(); i++) {
+        expected.put(query.substring(0, i), expected(handler, query.substring(0, i)));
+      }
+    }
+
+    // Several search boxes typing into the same handler at once.
+    AtomicInteger wrong = new AtomicInteger();
+    List<Thread> threads = new ArrayList<>();
+    for (String query : queries) {
+      Thread thread = new Thread(() -> {
+        for (int round = 0; round < 200; round++) {
+          for (int i = 1; i <= query.length(); i++) {
+            String typed = query.substring(0, i);
+            try {
+              List<Cursor> found =
+                  handler.searchAsYouType(new SearchRequest(0, typed, "session"));
+              if (!expected.get(typed).equals(found)) {
+                wrong.incrementAndGet();
+              }
+            } catch (RuntimeException e) {
+              wrong.incrementAndGet();
+            }
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(0, wrong.get());
+  }
+}
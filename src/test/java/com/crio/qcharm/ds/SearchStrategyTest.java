@@ -0,0 +1,99 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SearchStrategyTest {
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private String randomText(Random random, String alphabet, int length) {
+    StringBuilder text = new StringBuilder(length);
+    for (int i = 0; i < length; ++i) {
+      text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    return text.toString();
+  }
+
+  private List<Integer> bruteForce(String text, String pattern) {
+    List<Integer> res = new ArrayList<>();
+    for (int i = 0; i + pattern.length() <= text.length(); ++i) {
+      if (text.startsWith(pattern, i)) {
+        res.add(i);
+      }
+    }
+    return res;
+  }
+
+  @Test
+  void everyStrategyFindsEveryOccurrence() {
+    Random random = new Random(0x1231);
+    // 'a' and '\u0161' share their low byte, which Horspool's shift table is indexed by.
+    for (String alphabet : Arrays.asList("ab", "abc\u0161", "abcdefghijklmnopqrstuvwxyz ")) {
+      for (int round = 0; round < 300; ++round) {
+        String text = randomText(random, alphabet, random.nextInt(200));
+        String pattern;
+        int kind = round % 3;
+        if (kind == 0 && text.length() > 1) {
+          int start = random.nextInt(text.length() - 1);
+          pattern = text.substring(start, start + 1 + random.nextInt(text.length() - start - 1));
+        } else if (kind == 1) {
+          String unit = randomText(random, alphabet, 1 + random.nextInt(3));
+          StringBuilder periodic = new StringBuilder();
+          int repeat = 1 + random.nextInt(8);
+          for (int i = 0; i < repeat; ++i) {
+            periodic.append(unit);
+          }
+          pattern = periodic.toString();
+          text = text + pattern + pattern.substring(0, pattern.length() / 2) + pattern;
+        } else {
+          pattern = randomText(random, alphabet, 1 + random.nextInt(40));
+        }
+        List<Integer> expected = bruteForce(text, pattern);
+        for (SearchStrategy strategy : SearchStrategy.values()) {
+          assertEquals(expected, PatternSearchAlgorithm.stringSearch(text,
+              strategy.compile(pattern), false), strategy + " " + pattern + " in " + text);
+        }
+      }
+    }
+  }
+
+  @Test
+  void strategyDependsOnPatternLengthAndAlphabet() {
+    assertEquals(SearchStrategy.INDEX_OF, SearchStrategy.forPattern("i"));
+    assertEquals(SearchStrategy.INDEX_OF, SearchStrategy.forPattern("getLinesFrom"));
+    assertEquals(SearchStrategy.INDEX_OF,
+        SearchStrategy.forPattern("the quick brown fox jumps over"));
+    assertEquals(SearchStrategy.INDEX_OF, SearchStrategy.forPattern(repeat("0", 16)));
+    assertEquals(SearchStrategy.ADAPTIVE, SearchStrategy.forPattern(repeat("=", 28)));
+    assertEquals(SearchStrategy.ADAPTIVE, SearchStrategy.forPattern("0000 0000 0000 0001"));
+
+    // ADAPTIVE switches to Two-Way on long lines.
+    String pattern = repeat("0", 40) + "1";
+    String line = repeat("0", SearchStrategy.LONG_LINE) + pattern + repeat("0", 100) + pattern;
+    assertEquals(bruteForce(line, pattern), PatternSearchAlgorithm.stringSearch(line,
+        SearchStrategy.ADAPTIVE.compile(pattern), false));
+    assertEquals(Arrays.asList(0, 1, 2), PatternSearchAlgorithm.stringSearch("aaaa", "aa",
+        true, false));
+    assertEquals(Arrays.asList(0, 1, 2), PatternSearchAlgorithm.stringSearch("aaaa", "aa",
+        false, true));
+  }
+
+  private String repeat(String unit, int times) {
+    StringBuilder res = new StringBuilder();
+    for (int i = 0; i < times; ++i) {
+      res.append(unit);
+    }
+    return res.toString();
+  }
+}
@@ -1031,6 +1031,40 @@ void sameContentUpdateDoesNotIncrementVersionTest1() {
       assertEquals(thisVersion, page.getLines());
     }
   }
+
+  @Test
+  @Timeout(value = 5000, unit = TimeUnit.MILLISECONDS)
+  void undoHistoryIsBoundedAndReported() {
+    String fileName = "testfile";
+    SourceFileHandlerArrayListImpl sourceFileHandlerArrayListImpl = getSourceFileHandlerArrayList(fileName);
+
+    int N = 10;
+    FileInfo fileInfo = getLargeSampleFileInfo(fileName, N);
+    sourceFileHandlerArrayListImpl.loadFile(fileInfo);
+    sourceFileHandlerArrayListImpl.setHistoryLimits(2, Long.MAX_VALUE, -1);
+
+    for (int i = 0; i < 3; ++i) {
+      List<String> content = new ArrayList<>();
+      content.add("edit" + i);
+      sourceFileHandlerArrayListImpl.editLines(
+          new EditRequest(i, i + 1, content, fileName, new Cursor(i, 0)));
+    }
+    assertEquals(2, sourceFileHandlerArrayListImpl.getHistorySize().getUndoEntries());
+
+    final UndoRequest undoRequest = new UndoRequest(fileName);
+    for (int i = 0; i < 3; ++i) {
+      sourceFileHandlerArrayListImpl.undo(undoRequest);
+    }
+    HistorySize historySize = sourceFileHandlerArrayListImpl.getHistorySize();
+    assertEquals(0, historySize.getUndoEntries());
+    assertEquals(2, historySize.getRedoEntries());
+
+    PageRequest pageRequest = new PageRequest(0, fileName, N, new Cursor(0,0));
+    Page page = sourceFileHandlerArrayListImpl.getLinesFrom(pageRequest);
+    assertEquals("edit0", page.getLines().get(0));
+    assertEquals(fileInfo.getLines().subList(1, N), page.getLines().subList(1, N));
+  }
+
   @Test
   void getCursorPage() {
     // FIXME: important for the frontend to work
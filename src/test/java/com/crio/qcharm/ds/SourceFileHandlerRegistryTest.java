@@ -0,0 +1,259 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.UndoRequest;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SourceFileHandlerRegistryTest {
+
+  private Path directory;
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() throws IOException {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+    directory = Files.createTempDirectory("qcharm-spill");
+  }
+
+  @AfterEach
+  public void deleteDirectory() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private FileInfo makeFile(String fileName, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= n; ++i) {
+      StringBuffer oneLine = new StringBuffer("lineno");
+      oneLine.append(i);
+      lines.add(oneLine.toString());
+    }
+    return new FileInfo(fileName, lines);
+  }
+
+  private SourceFileHandler open(FileInfo fileInfo) {
+    SourceFileHandler handler = new SourceFileHandlerPersistentImpl(fileInfo.getFileName());
+    handler.loadFile(fileInfo);
+    return handler;
+  }
+
+  private long spillFiles() throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files.count();
+    }
+  }
+
+  @Test
+  void handlersAreKeyedBySessionAndFileName() throws IOException {
+    SourceFileHandlerRegistry registry = new SourceFileHandlerRegistry(directory, Long.MAX_VALUE);
+    SourceFileHandler first = open(makeFile("a.txt", 10));
+    SourceFileHandler second = open(makeFile("a.txt", 10));
+    registry.put("s1", "a.txt", first);
+    registry.put("s2", "a.txt", second);
+
+    assertSame(first, registry.get("s1", "a.txt"));
+    assertSame(second, registry.get("s2", "a.txt"));
+    assertNull(registry.get("s1", "b.txt"));
+    assertNull(registry.get("s3", "a.txt"));
+
+    SourceFileHandler replaced = open(makeFile("a.txt", 5));
+    registry.put("s1", "a.txt", replaced);
+    assertSame(replaced, registry.get("s1", "a.txt"));
+    assertSame(replaced, registry.remove("s1", "a.txt"));
+    assertNull(registry.get("s1", "a.txt"));
+    assertEquals(1, registry.getResidentCount());
+  }
+
+  @Test
+  void latestVersionIsOnlyReturnedForTheLoadedFile() {
+    SourceFileHandler handler = open(makeFile("a.txt", 10));
+
+    assertEquals(10, handler.getLatestSourceFileVersion("a.txt").getAllLines().size());
+    assertNull(handler.getLatestSourceFileVersion("b.txt"));
+  }
+
+  @Test
+  void leastRecentlyUsedFilesAreSpilledAndReloadedWithTheirHistory() throws IOException {
+    FileInfo fileInfo = makeFile("a.txt", 1000);
+    long oneFile =
+        SourceFileHandlerRegistry.estimate(new SourceFileVersionArrayListImpl(fileInfo));
+    // Room for two files and a small undo history.
+    SourceFileHandlerRegistry registry =
+        new SourceFileHandlerRegistry(directory, 2 * oneFile + 4096);
+
+    SourceFileHandler a = open(fileInfo);
+    registry.put("s", "a.txt", a);
+    a.editLines(new EditRequest(0, 1, Arrays.asList("first"), "a.txt", new Cursor(0, 0)));
+    a.editLines(new EditRequest(1, 2, Arrays.asList("second"), "a.txt", new Cursor(1, 0)));
+    a.undo(new UndoRequest("a.txt"));
+    List<String> expected = a.getLatestSourceFileVersion("a.txt").getAllLines();
+    registry.put("s", "b.txt", open(makeFile("b.txt", 1000)));
+    assertEquals(2, registry.getResidentCount());
+
+    // a.txt is the least recently used file.
+    registry.put("s", "c.txt", open(makeFile("c.txt", 1000)));
+    assertEquals(2, registry.getResidentCount());
+    assertEquals(1, registry.getSpilledCount());
+    assertEquals(1, spillFiles());
+    assertNull(a.getLatestSourceFileVersion("a.txt"));
+
+    // Reloading a.txt spills b.txt, now the least recently used one.
+    assertSame(a, registry.get("s", "a.txt"));
+    assertEquals(expected, a.getLatestSourceFileVersion("a.txt").getAllLines());
+    assertEquals(new HistorySize(1, 1, a.getHistorySize().getBytes()), a.getHistorySize());
+    assertEquals(1, registry.getSpilledCount());
+    assertEquals(1, spillFiles());
+
+    a.redo(new UndoRequest("a.txt"));
+    assertEquals("second", a.getLatestSourceFileVersion("a.txt").getAllLines().get(1));
+    a.undo(new UndoRequest("a.txt"));
+    a.undo(new UndoRequest("a.txt"));
+    assertEquals(makeFile("a.txt", 1000).getLines(),
+        a.getLatestSourceFileVersion("a.txt").getAllLines());
+
+    registry.remove("s", "b.txt");
+    assertEquals(0, spillFiles());
+  }
+
+  @Test
+  void mostRecentlyUsedFileStaysInMemoryOverBudget() throws IOException {
+    SourceFileHandlerRegistry registry = new SourceFileHandlerRegistry(directory, 1);
+    SourceFileHandler a = open(makeFile("a.txt", 100));
+    SourceFileHandler b = open(makeFile("b.txt", 100));
+
+    registry.put("s", "a.txt", a);
+    assertEquals(1, registry.getResidentCount());
+    registry.put("s", "b.txt", b);
+    assertEquals(1, registry.getResidentCount());
+    assertNull(a.getLatestSourceFileVersion("a.txt"));
+
+    assertSame(a, registry.get("s", "a.txt"));
+    assertEquals(100, a.getLatestSourceFileVersion("a.txt").getAllLines().size());
+    assertNull(b.getLatestSourceFileVersion("b.txt"));
+  }
+
+  @Test
+  void leasedHandlersAreNotSpilled() throws IOException {
+    SourceFileHandlerRegistry registry = new SourceFileHandlerRegistry(directory, 1);
+    SourceFileHandler a = open(makeFile("a.txt", 100));
+    registry.put("s", "a.txt", a);
+
+    try (SourceFileHandlerRegistry.Lease lease = registry.lease("s", "a.txt")) {
+      assertSame(a, lease.getHandler());
+      registry.put("s", "b.txt", open(makeFile("b.txt", 100)));
+      assertEquals(2, registry.getResidentCount());
+      assertEquals(100, a.getLatestSourceFileVersion("a.txt").getAllLines().size());
+    }
+
+    // Once the lease is closed the next put() meets the budget again.
+    registry.put("s", "c.txt", open(makeFile("c.txt", 100)));
+    assertEquals(1, registry.getResidentCount());
+    assertNull(a.getLatestSourceFileVersion("a.txt"));
+    assertNull(registry.lease("s", "d.txt"));
+  }
+
+  @Test
+  void otherFilesStayAvailableWhileOneIsSpilled() throws Exception {
+    SourceFileHandlerRegistry registry = new SourceFileHandlerRegistry(directory, 1);
+    CountDownLatch spilling = new CountDownLatch(1);
+    CountDownLatch written = new CountDownLatch(1);
+    FileInfo fileInfo = makeFile("a.txt", 100);
+    SourceFileHandler a = new SourceFileHandlerPersistentImpl("a.txt") {
+      @Override
+      public void spillTo(Path path) throws IOException {
+        spilling.countDown();
+        try {
+          written.await();
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException();
+        }
+        super.spillTo(path);
+      }
+    };
+    a.loadFile(fileInfo);
+    registry.put("s", "a.txt", a);
+    SourceFileHandler b = open(makeFile("b.txt", 100));
+
+    try {
+      CompletableFuture<Void> put = CompletableFuture.runAsync(() -> {
+        try {
+          registry.put("s", "b.txt", b);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      assertTrue(spilling.await(10, TimeUnit.SECONDS));
+
+      // a.txt is being written out, b.txt can be leased meanwhile.
+      CompletableFuture<SourceFileHandler> leased = CompletableFuture.supplyAsync(() -> {
+        try (SourceFileHandlerRegistry.Lease lease = registry.lease("s", "b.txt")) {
+          return lease.getHandler();
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+      assertSame(b, leased.get(10, TimeUnit.SECONDS));
+
+      written.countDown();
+      put.get(10, TimeUnit.SECONDS);
+    } finally {
+      written.countDown();
+    }
+    assertEquals(1, registry.getResidentCount());
+    assertEquals(1, registry.getSpilledCount());
+    assertSame(a, registry.get("s", "a.txt"));
+    assertEquals(fileInfo.getLines(), a.getLatestSourceFileVersion("a.txt").getAllLines());
+  }
+
+  @Test
+  void estimateSamplesTheLinesWithoutCopyingThem() throws IOException {
+    FileInfo fileInfo = makeFile("a.txt", 100000);
+    long exact = 16;
+    for (String line : fileInfo.getLines()) {
+      exact += 8 + 40 + 2 * line.length();
+    }
+    List<SourceFileVersion> versions = Arrays.asList(
+        new SourceFileVersionArrayListImpl(fileInfo),
+        new SourceFileVersionPieceTableImpl(fileInfo),
+        new SourceFileVersionPersistentImpl(fileInfo),
+        new SourceFileVersionHybridImpl(fileInfo));
+    for (SourceFileVersion version : versions) {
+      long estimate = SourceFileHandlerRegistry.estimate(version);
+      assertTrue(Math.abs(estimate - exact) < exact / 20,
+          version.getClass().getSimpleName() + " " + estimate + " " + exact);
+    }
+
+    // Only the lines typed into a mapped file take heap.
+    Path path = directory.resolve("mapped.txt");
+    Files.write(path, String.join("\n", fileInfo.getLines()).getBytes(StandardCharsets.UTF_8));
+    SourceFileVersion mapped = new SourceFileVersionMappedImpl(path);
+    assertEquals(0, SourceFileHandlerRegistry.estimate(mapped));
+    mapped.apply(new UpdateLines(5, 1, Arrays.asList("typed", "lines"), new Cursor(5, 0)));
+    assertEquals(16 + 2 * (8 + 40 + 2 * 5), SourceFileHandlerRegistry.estimate(mapped));
+  }
+}
@@ -0,0 +1,77 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SourceFileVersionArenaImplTest {
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private FileInfo makeFile(String fileName, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= n; ++i) {
+      StringBuffer oneLine = new StringBuffer("lineno");
+      oneLine.append(i);
+      lines.add(oneLine.toString());
+    }
+    return new FileInfo(fileName, lines);
+  }
+
+  @Test
+  void linesSurviveTheRoundTrip() {
+    List<String> lines = Arrays.asList("", "plain ascii", "caf\u00e9", "\u20ac 10", "\ud83d\ude00");
+    FileInfo fileInfo = new FileInfo("roundTrip", lines);
+
+    SourceFileVersion sourceFileVersion = new SourceFileVersionArenaImpl(fileInfo);
+
+    assertEquals(lines, sourceFileVersion.getAllLines());
+  }
+
+  @Test
+  void editsAndPages() {
+    String fileName = "edits";
+    FileInfo fileInfo = makeFile(fileName, 100);
+
+    SourceFileVersionArenaImpl sourceFileVersion = new SourceFileVersionArenaImpl(fileInfo);
+    SourceFileVersionArenaImpl copy = new SourceFileVersionArenaImpl(sourceFileVersion);
+    sourceFileVersion.apply(new UpdateLines(50, 10, Arrays.asList("Hello World"),
+        new Cursor(50, 0)));
+
+    List<String> expected = new ArrayList<>(fileInfo.getLines().subList(0, 50));
+    expected.add("Hello World");
+    expected.addAll(fileInfo.getLines().subList(60, 100));
+
+    PageRequest pageRequest = new PageRequest(45, fileName, 10, new Cursor(45, 0));
+    assertEquals(expected.subList(45, 55), sourceFileVersion.getLinesFrom(pageRequest).getLines());
+    assertEquals(fileInfo.getLines(), copy.getAllLines());
+    assertEquals(Arrays.asList(new Cursor(50, 6)),
+        sourceFileVersion.getCursors(new SearchRequest(0, "World", fileName)));
+  }
+
+  @Test
+  void textIsStoredInArenas() {
+    FileInfo fileInfo = makeFile("memory", 100000);
+
+    SourceFileVersionArenaImpl sourceFileVersion = new SourceFileVersionArenaImpl(fileInfo);
+
+    long textBytes = 0;
+    for (String line : fileInfo.getLines()) {
+      textBytes += line.length();
+    }
+    // A chunk of slack plus 12 bytes of offset table per line, rounded up to a power of two.
+    assertTrue(sourceFileVersion.getMemoryUsage()
+        <= textBytes + 2 * LineArena.CHUNK_SIZE + 12L * 131072);
+  }
+}
@@ -0,0 +1,159 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.PageRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SourceFileVersionHybridImplTest {
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private FileInfo makeFile(String fileName, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= n; ++i) {
+      StringBuffer oneLine = new StringBuffer("lineno");
+      oneLine.append(i);
+      lines.add(oneLine.toString());
+    }
+    return new FileInfo(fileName, lines);
+  }
+
+  @Test
+  void getLinesAcrossPageBoundaries() {
+    String fileName = "getLines";
+    FileInfo fileInfo = makeFile(fileName, 173);
+
+    SourceFileVersion sourceFileVersion = new SourceFileVersionHybridImpl(fileInfo);
+
+    Cursor cursorAt = new Cursor(40, 0);
+    PageRequest pageRequest = new PageRequest(40, fileName, 25, cursorAt);
+
+    assertEquals(fileInfo.getLines().subList(15, 40),
+        sourceFileVersion.getLinesBefore(pageRequest).getLines());
+    assertEquals(fileInfo.getLines().subList(41, 66),
+        sourceFileVersion.getLinesAfter(pageRequest).getLines());
+    assertEquals(fileInfo.getLines().subList(40, 65),
+        sourceFileVersion.getLinesFrom(pageRequest).getLines());
+
+    PageRequest nearEnd = new PageRequest(160, fileName, 25, new Cursor(160, 0));
+    assertEquals(fileInfo.getLines().subList(160, 173),
+        sourceFileVersion.getLinesFrom(nearEnd).getLines());
+  }
+
+  @Test
+  void updateLinesOnlyRebuildsAffectedPages() {
+    String fileName = "updateLines";
+    FileInfo fileInfo = makeFile(fileName, 500);
+
+    SourceFileVersionHybridImpl sourceFileVersion = new SourceFileVersionHybridImpl(fileInfo);
+    List<Page> pagesBefore = new ArrayList<>(sourceFileVersion.bucket.getPages());
+
+    sourceFileVersion.apply(new UpdateLines(120, 10, Arrays.asList("Hello World"),
+        new Cursor(120, 0)));
+
+    List<Page> pagesAfter = sourceFileVersion.bucket.getPages();
+    assertEquals(pagesBefore.get(1).getLines(), pagesAfter.get(1).getLines());
+    assertSame(pagesBefore.get(9).getLines(), pagesAfter.get(9).getLines());
+    assertEquals(441, pagesAfter.get(9).getStartingLineNo());
+    assertEquals("Hello World", sourceFileVersion.getAllLines().get(120));
+    assertEquals(491, sourceFileVersion.getAllLines().size());
+  }
+
+  @Test
+  void randomEditsMatchArrayListImpl() {
+    Random random = new Random(0x1231);
+    String fileName = "randomEdits";
+    FileInfo fileInfo = makeFile(fileName, 500);
+
+    SourceFileVersion expected = new SourceFileVersionArrayListImpl(fileInfo);
+    SourceFileVersion actual = new SourceFileVersionHybridImpl(fileInfo);
+
+    for (int i = 0; i < 300; ++i) {
+      int size = expected.getAllLines().size();
+      int start = random.nextInt(size + 1);
+      int length = random.nextInt(Math.min(120, size - start) + 1);
+      List<String> content = new ArrayList<>();
+      for (int j = random.nextInt(80); j > 0; --j) {
+        content.add("edit" + i + "_" + j);
+      }
+      UpdateLines updateLines = new UpdateLines(start, length, content, new Cursor(start, 0));
+      expected.apply(updateLines);
+      actual.apply(updateLines);
+    }
+    SearchReplace searchReplace = new SearchReplace(0, 4, null, "edit1", "EDIT");
+    expected.apply(searchReplace);
+    actual.apply(searchReplace);
+
+    assertEquals(expected.getAllLines(), actual.getAllLines());
+  }
+
+  @Test
+  void copyIsNotAffectedByLaterEdits() {
+    String fileName = "copy";
+    FileInfo fileInfo = makeFile(fileName, 120);
+
+    SourceFileVersionHybridImpl sourceFileVersion = new SourceFileVersionHybridImpl(fileInfo);
+    SourceFileVersionHybridImpl copy = new SourceFileVersionHybridImpl(sourceFileVersion);
+
+    sourceFileVersion.apply(new UpdateLines(0, 70, Arrays.asList("first"), new Cursor(0, 0)));
+    sourceFileVersion.apply(new SearchReplace(0, 6, null, "lineno", "LINE"));
+
+    assertEquals(fileInfo.getLines(), copy.getAllLines());
+    assertEquals(50, copy.bucket.getPages().get(1).getStartingLineNo());
+    assertEquals("LINE71", sourceFileVersion.getAllLines().get(1));
+  }
+
+  @Test
+  void copiesAndEditsInAnyOrderKeepTheirLinesAndPageStarts() {
+    Random random = new Random(0x2323);
+    FileInfo fileInfo = makeFile("copies", 1000);
+    List<SourceFileVersionHybridImpl> versions = new ArrayList<>();
+    List<List<String>> expected = new ArrayList<>();
+    versions.add(new SourceFileVersionHybridImpl(fileInfo));
+    expected.add(new ArrayList<>(fileInfo.getLines()));
+
+    for (int i = 0; i < 400; ++i) {
+      int v = random.nextInt(versions.size());
+      if (random.nextInt(4) == 0) {
+        versions.add(new SourceFileVersionHybridImpl(versions.get(v)));
+        expected.add(new ArrayList<>(expected.get(v)));
+        continue;
+      }
+      List<String> lines = expected.get(v);
+      int start = random.nextInt(lines.size() + 1);
+      int length = random.nextInt(Math.min(60, lines.size() - start) + 1);
+      List<String> content = new ArrayList<>();
+      // Half of the edits keep the number of lines.
+      for (int j = random.nextBoolean() ? length : random.nextInt(120); j > 0; --j) {
+        content.add("edit" + i + "_" + j);
+      }
+      versions.get(v).apply(new UpdateLines(start, length, content, new Cursor(start, 0)));
+      lines.subList(start, start + length).clear();
+      lines.addAll(start, content);
+    }
+
+    for (int v = 0; v < versions.size(); ++v) {
+      Bucket bucket = versions.get(v).bucket;
+      assertEquals(expected.get(v), versions.get(v).getAllLines());
+      assertEquals(expected.get(v).size(), bucket.getNumberOfLines());
+      int start = 0;
+      for (int i = 0; i < bucket.getPages().size(); ++i) {
+        Page page = bucket.getPages().get(i);
+        assertEquals(start, page.getStartingLineNo());
+        assertEquals(i, bucket.findPage(start));
+        start += page.getLines().size();
+      }
+    }
+  }
+}
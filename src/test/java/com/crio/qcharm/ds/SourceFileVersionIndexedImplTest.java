@@ -0,0 +1,218 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.SearchReplaceRequest;
+import com.crio.qcharm.request.SearchRequest;
+import com.crio.qcharm.request.UndoRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SourceFileVersionIndexedImplTest {
+
+  private static final String[] WORDS = {"int", "page", "cursor", "x", "=", "getLines", "0;",
+      "return", "pageRequest", "fileName", "{", "}"};
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private String makeLine(Random random) {
+    StringBuilder line = new StringBuilder();
+    int numberOfWords = random.nextInt(8);
+    for (int j = 0; j < numberOfWords; ++j) {
+      line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+    }
+    return line.toString();
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      lines.add(makeLine(random));
+    }
+    return lines;
+  }
+
+  private void assertSameCursors(SourceFileVersion expected, SourceFileVersion actual) {
+    List<SearchRequest> searchRequests = Arrays.asList(
+        new SearchRequest(0, "page", "index"),
+        new SearchRequest(0, "pageRequest fileName", "index"),
+        new SearchRequest(0, "0; x", "index"),
+        new SearchRequest(0, "xyz", "index"),
+        new SearchRequest(0, "x", "index"),
+        new SearchRequest(0, "", "index"),
+        new SearchRequest(0, "get\\w+", "index", true, 0));
+    for (SearchRequest searchRequest : searchRequests) {
+      assertEquals(expected.getCursors(searchRequest), actual.getCursors(searchRequest),
+          searchRequest.toString());
+    }
+  }
+
+  @Test
+  void indexFollowsEveryEdit() {
+    Random random = new Random(0x1231);
+    FileInfo fileInfo = new FileInfo("index", makeLines(random, 3000));
+    SourceFileVersion expected = new SourceFileVersionArrayListImpl(fileInfo);
+    SourceFileVersion indexed =
+        new SourceFileVersionIndexedImpl(new SourceFileVersionPieceTableImpl(fileInfo));
+    assertSameCursors(expected, indexed);
+
+    for (int i = 0; i < 400; ++i) {
+      int numberOfLines = expected.getAllLines().size();
+      if (i % 10 == 9) {
+        String pattern = WORDS[random.nextInt(WORDS.length)];
+        SearchReplace searchReplace =
+            new SearchReplace(0, pattern.length(), null, pattern, WORDS[i % WORDS.length]);
+        expected.apply(searchReplace);
+        indexed.apply(searchReplace);
+      } else {
+        int start = random.nextInt(numberOfLines + 1);
+        int removed = Math.min(random.nextInt(5), numberOfLines - start);
+        List<String> lines = makeLines(random, random.nextInt(5));
+        UpdateLines updateLines = new UpdateLines(start, removed, lines, new Cursor(start, 0));
+        expected.apply(updateLines);
+        indexed.apply(updateLines);
+      }
+      assertEquals(expected.getAllLines(), indexed.getAllLines());
+      if (i % 20 == 0) {
+        assertSameCursors(expected, indexed);
+      }
+    }
+    assertSameCursors(expected, indexed);
+  }
+
+  @Test
+  void removedLinesDontGrowTheIndexForever() {
+    Random random = new Random(0x4321);
+    FileInfo fileInfo = new FileInfo("index", makeLines(random, 2000));
+    SourceFileVersionIndexedImpl indexed =
+        new SourceFileVersionIndexedImpl(new SourceFileVersionArrayListImpl(fileInfo));
+    long initial = indexed.getIndexMemoryUsage();
+    assertTrue(initial > 0);
+
+    // Typing on the same line gives it a new id every time.
+    for (int i = 0; i < 20000; ++i) {
+      indexed.apply(new UpdateLines(7, 1, Arrays.asList(makeLine(random)), new Cursor(7, 0)));
+    }
+    assertTrue(indexed.getIndexMemoryUsage() < 3 * initial,
+        initial + " " + indexed.getIndexMemoryUsage());
+    assertSameCursors(new SourceFileVersionArrayListImpl(
+        new FileInfo("index", indexed.getAllLines())), indexed);
+  }
+
+  @Test
+  void copyAndOriginalIndexTheirOwnEdits() {
+    Random random = new Random(0x2468);
+    FileInfo fileInfo = new FileInfo("index", makeLines(random, 3000));
+    SourceFileVersionPieceTableImpl pieceTable = new SourceFileVersionPieceTableImpl(fileInfo);
+    SourceFileVersionIndexedImpl original = new SourceFileVersionIndexedImpl(pieceTable);
+    SourceFileVersionIndexedImpl copy =
+        original.copyWith(new SourceFileVersionPieceTableImpl(pieceTable));
+
+    for (int i = 0; i < 100; ++i) {
+      for (SourceFileVersion indexed : Arrays.asList(original, copy)) {
+        int start = random.nextInt(indexed.getAllLines().size());
+        indexed.apply(new UpdateLines(start, 1, makeLines(random, 2), new Cursor(start, 0)));
+      }
+    }
+    copy.apply(new SearchReplace(0, 4, null, "page", "xyz"));
+    assertSameCursors(new SourceFileVersionArrayListImpl(
+        new FileInfo("index", original.getAllLines())), original);
+    assertSameCursors(new SourceFileVersionArrayListImpl(
+        new FileInfo("index", copy.getAllLines())), copy);
+  }
+
+  @Test
+  void searchesRunningWhileLinesAreEditedSeeWholePositions() throws Exception {
+    Random random = new Random(0x1357);
+    List<String> lines = makeLines(random, 20000);
+    int[] needles = {5, 7000, 19999};
+    for (int lineNo : needles) {
+      lines.set(lineNo, "a needle");
+    }
+    TrigramIndex index = new TrigramIndex(Arrays.asList(lines));
+
+    // Lines without a needle are inserted then removed before the needles, which are found
+    // either where they were or one line below. Every search after an edit finds the
+    // positions stale.
+    int[] moved = {6, 7001, 20000};
+    AtomicBoolean done = new AtomicBoolean();
+    AtomicInteger wrong = new AtomicInteger();
+    List<Thread> searches = new ArrayList<>();
+    for (int t = 0; t < 4; ++t) {
+      Thread search = new Thread(() -> {
+        while (!done.get()) {
+          int[] candidates = index.candidates("needle");
+          if (!Arrays.equals(needles, candidates) && !Arrays.equals(moved, candidates)) {
+            wrong.incrementAndGet();
+          }
+        }
+      });
+      search.start();
+      searches.add(search);
+    }
+    for (int i = 0; i < 3000; ++i) {
+      index.replace(0, 0, Arrays.asList(makeLine(random)));
+      index.replace(0, 1, new ArrayList<>());
+    }
+    done.set(true);
+    for (Thread search : searches) {
+      search.join();
+    }
+    assertEquals(0, wrong.get());
+  }
+
+  @Test
+  void handlerKeepsTheIndexThroughUndoAndReportsItsSize() {
+    Random random = new Random(0x5678);
+    List<String> lines = makeLines(random, 1000);
+    SourceFileHandler handler = new SourceFileHandlerPersistentImpl("index");
+    handler.setTrigramIndex(true);
+    handler.loadFile(new FileInfo("index", new ArrayList<>(lines)));
+    assertTrue(handler.getSearchIndexBytes() > 0);
+
+    SearchRequest searchRequest = new SearchRequest(0, "needle", "index");
+    handler.editLines(new EditRequest(10, 11, Arrays.asList("a needle"), "index",
+        new Cursor(10, 0)));
+    handler.searchReplace(new SearchReplaceRequest(0, 0, "cursor", "needle", "index"));
+    List<Cursor> expected = new SourceFileVersionArrayListImpl(new FileInfo("index",
+        handler.getLatestSourceFileVersion("index").getAllLines())).getCursors(searchRequest);
+    assertTrue(expected.size() > 1);
+    assertEquals(expected, handler.search(searchRequest));
+
+    handler.undo(new UndoRequest("index"));
+    handler.undo(new UndoRequest("index"));
+    assertEquals(lines, handler.getLatestSourceFileVersion("index").getAllLines());
+    assertEquals(new ArrayList<>(), handler.search(searchRequest));
+
+    handler.setTrigramIndex(false);
+    assertEquals(0, handler.getSearchIndexBytes());
+    assertEquals(lines, handler.getLatestSourceFileVersion("index").getAllLines());
+  }
+
+  @Test
+  void rareWordIsFoundAmongManyLines() {
+    Random random = new Random(0x9876);
+    List<String> lines = makeLines(random, 200000);
+    lines.set(123456, "pageRequest needle fileName");
+    FileInfo fileInfo = new FileInfo("index", lines);
+    SourceFileVersion scanned = new SourceFileVersionPieceTableImpl(fileInfo);
+    SourceFileVersionIndexedImpl indexed =
+        new SourceFileVersionIndexedImpl(new SourceFileVersionPieceTableImpl(fileInfo));
+    SearchRequest searchRequest = new SearchRequest(0, "needle", "index");
+
+    assertEquals(scanned.getCursors(searchRequest), indexed.getCursors(searchRequest));
+    assertEquals(Arrays.asList(new Cursor(123456, 12)), indexed.getCursors(searchRequest));
+  }
+}
@@ -0,0 +1,91 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SourceFileVersionMappedImplTest {
+
+  private Path path;
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() throws IOException {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+    path = Files.createTempFile("qcharm", ".txt");
+  }
+
+  @AfterEach
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  private List<String> writeFile(int n) throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= n; ++i) {
+      lines.add("lineno" + i + " \u00e9");
+    }
+    Files.write(path, String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    return lines;
+  }
+
+  @Test
+  void getLinesBeforeAfterAndFrom() throws IOException {
+    List<String> lines = writeFile(73);
+    String fileName = path.toString();
+
+    SourceFileVersion sourceFileVersion = new SourceFileVersionMappedImpl(path);
+
+    PageRequest pageRequest = new PageRequest(10, fileName, 25, new Cursor(10, 0));
+    assertEquals(lines.subList(0, 10), sourceFileVersion.getLinesBefore(pageRequest).getLines());
+    assertEquals(lines.subList(11, 36), sourceFileVersion.getLinesAfter(pageRequest).getLines());
+    assertEquals(lines.subList(10, 35), sourceFileVersion.getLinesFrom(pageRequest).getLines());
+
+    PageRequest nearEnd = new PageRequest(60, fileName, 25, new Cursor(60, 0));
+    assertEquals(lines.subList(60, 73), sourceFileVersion.getLinesFrom(nearEnd).getLines());
+    assertEquals(lines, sourceFileVersion.getAllLines());
+  }
+
+  @Test
+  void trailingNewlineGivesEmptyLastLine() throws IOException {
+    Files.write(path, "a\nb\n".getBytes(StandardCharsets.UTF_8));
+
+    SourceFileVersion sourceFileVersion = new SourceFileVersionMappedImpl(path);
+
+    assertEquals(Arrays.asList("a\nb\n".split("\\n", -1)), sourceFileVersion.getAllLines());
+  }
+
+  @Test
+  void editsAreLayeredOnTopOfTheFile() throws IOException {
+    List<String> lines = writeFile(200);
+    String fileName = path.toString();
+
+    SourceFileVersionMappedImpl sourceFileVersion = new SourceFileVersionMappedImpl(path);
+    SourceFileVersionMappedImpl copy = new SourceFileVersionMappedImpl(sourceFileVersion);
+    sourceFileVersion.apply(new UpdateLines(100, 50, Arrays.asList("Hello World"),
+        new Cursor(100, 0)));
+
+    List<String> expected = new ArrayList<>(lines.subList(0, 100));
+    expected.add("Hello World");
+    expected.addAll(lines.subList(150, 200));
+
+    assertEquals(expected, sourceFileVersion.getAllLines());
+    assertEquals(lines, copy.getAllLines());
+    assertEquals(new String(Files.readAllBytes(path), StandardCharsets.UTF_8),
+        String.join("\n", lines));
+
+    List<Cursor> cursors = sourceFileVersion.getCursors(new SearchRequest(0, "World", fileName));
+    assertEquals(Arrays.asList(new Cursor(100, 6)), cursors);
+  }
+}
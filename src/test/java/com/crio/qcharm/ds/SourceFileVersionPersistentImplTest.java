@@ -0,0 +1,137 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SourceFileVersionPersistentImplTest {
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private FileInfo makeFile(String fileName, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= n; ++i) {
+      StringBuffer oneLine = new StringBuffer("lineno");
+      oneLine.append(i);
+      lines.add(oneLine.toString());
+    }
+    return new FileInfo(fileName, lines);
+  }
+
+  @Test
+  void getLinesBeforeAfterAndFrom() {
+    String fileName = "getLines";
+    FileInfo fileInfo = makeFile(fileName, 173);
+
+    SourceFileVersion sourceFileVersion = new SourceFileVersionPersistentImpl(fileInfo);
+
+    PageRequest pageRequest = new PageRequest(30, fileName, 50, new Cursor(30, 0));
+    assertEquals(fileInfo.getLines().subList(0, 30),
+        sourceFileVersion.getLinesBefore(pageRequest).getLines());
+    assertEquals(fileInfo.getLines().subList(31, 81),
+        sourceFileVersion.getLinesAfter(pageRequest).getLines());
+    assertEquals(fileInfo.getLines().subList(30, 80),
+        sourceFileVersion.getLinesFrom(pageRequest).getLines());
+
+    PageRequest nearEnd = new PageRequest(160, fileName, 50, new Cursor(160, 0));
+    assertEquals(fileInfo.getLines().subList(160, 173),
+        sourceFileVersion.getLinesFrom(nearEnd).getLines());
+    assertEquals(fileInfo.getLines(), sourceFileVersion.getAllLines());
+  }
+
+  @Test
+  void randomEditsMatchArrayListImpl() {
+    Random random = new Random(0x1231);
+    String fileName = "randomEdits";
+    FileInfo fileInfo = makeFile(fileName, 2000);
+
+    SourceFileVersion expected = new SourceFileVersionArrayListImpl(fileInfo);
+    SourceFileVersionPersistentImpl actual = new SourceFileVersionPersistentImpl(fileInfo);
+
+    for (int i = 0; i < 1000; ++i) {
+      int size = expected.getAllLines().size();
+      if (i % 100 == 99) {
+        SearchReplace searchReplace = new SearchReplace(0, 0, null, "no" + (i % 7), "NO");
+        expected.apply(searchReplace);
+        actual.apply(searchReplace);
+        continue;
+      }
+      int start = random.nextInt(size + 1);
+      int length = random.nextInt(Math.min(100, size - start) + 1);
+      List<String> content = new ArrayList<>();
+      for (int j = random.nextInt(80); j > 0; --j) {
+        content.add("edit" + i + "_" + j);
+      }
+      UpdateLines updateLines = new UpdateLines(start, length, content, new Cursor(start, 0));
+      expected.apply(updateLines);
+      actual.apply(updateLines);
+    }
+
+    assertEquals(expected.getAllLines(), actual.getAllLines());
+    assertEquals(expected.getAllLines().size(), actual.getNumberOfLines());
+    assertEquals(expected.getCursors(new SearchRequest(0, "NO", fileName)),
+        actual.getCursors(new SearchRequest(0, "NO", fileName)));
+    assertBalanced(actual.getRoot());
+  }
+
+  @Test
+  void copySharesTheTreeAndIsNotAffectedByLaterEdits() {
+    String fileName = "copy";
+    FileInfo fileInfo = makeFile(fileName, 1000);
+
+    SourceFileVersionPersistentImpl sourceFileVersion =
+        new SourceFileVersionPersistentImpl(fileInfo);
+    SourceFileVersionPersistentImpl copy = new SourceFileVersionPersistentImpl(sourceFileVersion);
+    assertSame(sourceFileVersion.getRoot(), copy.getRoot());
+
+    sourceFileVersion.apply(new UpdateLines(500, 5, Arrays.asList("edited"), new Cursor(500, 0)));
+    sourceFileVersion.apply(new SearchReplace(0, 0, null, "lineno999", "LINE"));
+
+    assertEquals(fileInfo.getLines(), copy.getAllLines());
+    assertEquals("edited", sourceFileVersion.getAllLines().get(500));
+    assertEquals("LINE", sourceFileVersion.getAllLines().get(994));
+    // The first half of the file was not touched by either edit.
+    assertSame(copy.getRoot().left.left, sourceFileVersion.getRoot().left.left);
+  }
+
+  @Test
+  void searchReplaceWithoutMatchesKeepsTheTree() {
+    FileInfo fileInfo = makeFile("noMatch", 1000);
+
+    SourceFileVersionPersistentImpl sourceFileVersion =
+        new SourceFileVersionPersistentImpl(fileInfo);
+    SourceFileVersionPersistentImpl.Node root = sourceFileVersion.getRoot();
+    sourceFileVersion.apply(new SearchReplace(0, 0, null, "absent", "present"));
+
+    assertSame(root, sourceFileVersion.getRoot());
+  }
+
+  private int assertBalanced(SourceFileVersionPersistentImpl.Node node) {
+    if (node == null) {
+      return 0;
+    }
+    if (node.isLeaf()) {
+      assertTrue(node.size <= SourceFileVersionPersistentImpl.LEAF_SIZE);
+      return 1;
+    }
+    int left = assertBalanced(node.left);
+    int right = assertBalanced(node.right);
+    assertTrue(Math.abs(left - right) <= 1);
+    assertEquals(node.left.size + node.right.size, node.size);
+    assertEquals(Math.max(left, right) + 1, node.height);
+    return node.height;
+  }
+}
@@ -0,0 +1,198 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SourceFileVersionPieceTableImplTest {
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private FileInfo getSmallFile(String fileName) {
+    List<String> lines = new ArrayList<>();
+    lines.add("Hello World");
+    lines.add("def square(x):");
+    lines.add("    return x * x;");
+
+    return new FileInfo(fileName, lines);
+  }
+
+  private FileInfo makeFile(String fileName, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= n; ++i) {
+      StringBuffer oneLine = new StringBuffer("lineno");
+      oneLine.append(i);
+      lines.add(oneLine.toString());
+    }
+    return new FileInfo(fileName, lines);
+  }
+
+  @Test
+  void getAllLines() {
+    FileInfo fileInfo = makeFile("getAllLines", 73);
+
+    SourceFileVersion sourceFileVersion = new SourceFileVersionPieceTableImpl(fileInfo);
+
+    assertEquals(fileInfo.getLines(), sourceFileVersion.getAllLines());
+  }
+
+  @Test
+  void getLinesBeforeAfterAndFrom() {
+    String fileName = "getLines";
+    FileInfo fileInfo = makeFile(fileName, 73);
+
+    SourceFileVersion sourceFileVersion = new SourceFileVersionPieceTableImpl(fileInfo);
+
+    Cursor cursorAt = new Cursor(10, 0);
+    PageRequest pageRequest = new PageRequest(10, fileName, 25, cursorAt);
+
+    assertEquals(fileInfo.getLines().subList(0, 10),
+        sourceFileVersion.getLinesBefore(pageRequest).getLines());
+    assertEquals(fileInfo.getLines().subList(11, 36),
+        sourceFileVersion.getLinesAfter(pageRequest).getLines());
+    assertEquals(fileInfo.getLines().subList(10, 35),
+        sourceFileVersion.getLinesFrom(pageRequest).getLines());
+
+    PageRequest nearEnd = new PageRequest(60, fileName, 25, new Cursor(60, 0));
+    assertEquals(fileInfo.getLines().subList(60, 73),
+        sourceFileVersion.getLinesFrom(nearEnd).getLines());
+  }
+
+  @Test
+  void updateLinesOnlyTouchesTheEditedRange() {
+    String fileName = "updateLines";
+    FileInfo fileInfo = makeFile(fileName, 100);
+
+    SourceFileVersionPieceTableImpl sourceFileVersion =
+        new SourceFileVersionPieceTableImpl(fileInfo);
+    sourceFileVersion.apply(new UpdateLines(50, 10, Arrays.asList("Hello World"),
+        new Cursor(50, 0)));
+
+    List<String> expected = new ArrayList<>(fileInfo.getLines().subList(0, 50));
+    expected.add("Hello World");
+    expected.addAll(fileInfo.getLines().subList(60, 100));
+
+    assertEquals(expected, sourceFileVersion.getAllLines());
+    assertEquals(91, sourceFileVersion.getNumberOfLines());
+    assertEquals(3, sourceFileVersion.getNumberOfPieces());
+  }
+
+  @Test
+  void randomEditsMatchArrayListImpl() {
+    Random random = new Random(0x1231);
+    String fileName = "randomEdits";
+    FileInfo fileInfo = makeFile(fileName, 500);
+
+    SourceFileVersion expected = new SourceFileVersionArrayListImpl(fileInfo);
+    SourceFileVersion actual = new SourceFileVersionPieceTableImpl(fileInfo);
+
+    for (int i = 0; i < 300; ++i) {
+      int size = expected.getAllLines().size();
+      int start = random.nextInt(size + 1);
+      int length = random.nextInt(Math.min(10, size - start) + 1);
+      List<String> content = new ArrayList<>();
+      for (int j = random.nextInt(5); j > 0; --j) {
+        content.add("edit" + i + "_" + j);
+      }
+      UpdateLines updateLines = new UpdateLines(start, length, content, new Cursor(start, 0));
+      expected.apply(updateLines);
+      actual.apply(updateLines);
+    }
+
+    assertEquals(expected.getAllLines(), actual.getAllLines());
+  }
+
+  @Test
+  void searchReplaceMakesOnePiecePerRunOfChangedLines() {
+    FileInfo fileInfo = makeFile("replace", 100);
+    SourceFileVersionPieceTableImpl sourceFileVersion =
+        new SourceFileVersionPieceTableImpl(fileInfo);
+
+    // lineno1, lineno10 to lineno19 and lineno100.
+    ReplaceResult result =
+        sourceFileVersion.apply(new SearchReplace(0, 0, null, "lineno1", "LINE1"));
+    assertEquals(3, result.getRanges().size());
+    assertEquals(5, sourceFileVersion.getNumberOfPieces());
+    assertEquals(100, sourceFileVersion.getNumberOfLines());
+    List<String> expected = new ArrayList<>();
+    for (String line : fileInfo.getLines()) {
+      expected.add(line.replace("lineno1", "LINE1"));
+    }
+    assertEquals(expected, sourceFileVersion.getAllLines());
+  }
+
+  @Test
+  void searchReplaceAcrossPiecesMatchesArrayListImpl() {
+    Random random = new Random(0x2468);
+    FileInfo fileInfo = makeFile("replace", 500);
+    SourceFileVersion expected = new SourceFileVersionArrayListImpl(fileInfo);
+    SourceFileVersion actual = new SourceFileVersionPieceTableImpl(fileInfo);
+
+    for (int i = 0; i < 200; ++i) {
+      if (i % 5 == 4) {
+        String pattern = "no" + random.nextInt(10);
+        SearchReplace searchReplace =
+            new SearchReplace(0, 0, null, pattern, i % 2 == 0 ? "n" : "NO" + i);
+        assertEquals(expected.apply(searchReplace), actual.apply(searchReplace));
+      } else {
+        int size = expected.getAllLines().size();
+        int start = random.nextInt(size + 1);
+        int length = random.nextInt(Math.min(3, size - start) + 1);
+        UpdateLines updateLines = new UpdateLines(start, length,
+            Arrays.asList("lineno" + i, "editno" + i), new Cursor(start, 0));
+        expected.apply(updateLines);
+        actual.apply(updateLines);
+      }
+      assertEquals(expected.getAllLines(), actual.getAllLines());
+    }
+    SearchRequest searchRequest = new SearchRequest(0, "no1", "replace");
+    assertEquals(expected.getCursors(searchRequest), actual.getCursors(searchRequest));
+  }
+
+  @Test
+  void copyIsNotAffectedByLaterEdits() {
+    String fileName = "copy";
+    FileInfo fileInfo = makeFile(fileName, 20);
+
+    SourceFileVersionPieceTableImpl sourceFileVersion =
+        new SourceFileVersionPieceTableImpl(fileInfo);
+    sourceFileVersion.apply(new UpdateLines(0, 1, Arrays.asList("first"), new Cursor(0, 0)));
+    SourceFileVersionPieceTableImpl copy = new SourceFileVersionPieceTableImpl(sourceFileVersion);
+    List<String> before = copy.getAllLines();
+
+    sourceFileVersion.apply(new UpdateLines(0, 5, Arrays.asList("second"), new Cursor(0, 0)));
+    sourceFileVersion.apply(new SearchReplace(0, 6, null, "lineno", "LINE"));
+
+    assertEquals(before, copy.getAllLines());
+    assertEquals("second", sourceFileVersion.getAllLines().get(0));
+    assertEquals("LINE6", sourceFileVersion.getAllLines().get(1));
+  }
+
+  @Test
+  void getCursorsWithMultipleMatches() {
+    String fileName = "getCursors";
+    FileInfo fileInfo = getSmallFile(fileName);
+
+    SourceFileVersion sourceFileVersion = new SourceFileVersionPieceTableImpl(fileInfo);
+    sourceFileVersion.apply(new UpdateLines(0, 1, Arrays.asList("x"), new Cursor(0, 0)));
+
+    List<Cursor> occurrences = sourceFileVersion.getCursors(new SearchRequest(0, "x", fileName));
+
+    assertEquals(4, occurrences.size());
+    assertEquals(new Cursor(0, 0), occurrences.get(0));
+    assertEquals(new Cursor(1, 11), occurrences.get(1));
+    assertEquals(new Cursor(2, 11), occurrences.get(2));
+    assertEquals(new Cursor(2, 15), occurrences.get(3));
+  }
+}
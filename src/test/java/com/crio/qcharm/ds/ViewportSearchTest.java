@@ -0,0 +1,111 @@
+package com.crio.qcharm.ds;
+
+import com.crio.qcharm.log.UncaughtExceptionHandler;
+import com.crio.qcharm.request.EditRequest;
+import com.crio.qcharm.request.PageRequest;
+import com.crio.qcharm.request.SearchRequest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ViewportSearchTest {
+
+  private static final String[] WORDS = {"int", "page", "cursor", "x", "=", "getLines", "0;",
+      "return", "pageRequest", "fileName", "{", "}"};
+
+  @BeforeEach
+  public void setupUncaughtExceptionHandler() {
+    Thread.setDefaultUncaughtExceptionHandler(new UncaughtExceptionHandler());
+  }
+
+  private List<String> makeLines(Random random, int n) {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < n; ++i) {
+      StringBuilder line = new StringBuilder();
+      int numberOfWords = random.nextInt(8);
+      for (int j = 0; j < numberOfWords; ++j) {
+        line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      lines.add(line.toString());
+    }
+    return lines;
+  }
+
+  private List<Cursor> inLines(List<Cursor> cursors, int startingLineNo, int numberOfLines) {
+    List<Cursor> res = new ArrayList<>();
+    for (Cursor cursor : cursors) {
+      if (cursor.getLineNo() >= startingLineNo
+          && cursor.getLineNo() < startingLineNo + numberOfLines) {
+        res.add(cursor);
+      }
+    }
+    return res;
+  }
+
+  @Test
+  void viewportFirstThenTheWholeFile() throws Exception {
+    Random random = new Random(0x5151);
+    List<String> lines = makeLines(random, 20000);
+    List<SourceFileHandler> handlers = Arrays.asList(
+        new SourceFileHandlerArrayListImpl("viewport"),
+        new SourceFileHandlerPieceTableImpl("viewport"),
+        new SourceFileHandlerHybridImpl("viewport"),
+        new SourceFileHandlerLinkedListImpl("viewport"));
+    List<SearchRequest> searchRequests = Arrays.asList(
+        new SearchRequest(0, "page", "viewport"),
+        new SearchRequest(0, "", "viewport"),
+        new SearchRequest(0, "[xy] =", "viewport", true, 0));
+    for (SourceFileHandler handler : handlers) {
+      handler.loadFile(new FileInfo("viewport", new ArrayList<>(lines)));
+      for (SearchRequest searchRequest : searchRequests) {
+        List<Cursor> expected =
+            handler.getLatestSourceFileVersion("viewport").getCursors(searchRequest);
+        for (int startingLineNo : new int[] {0, 777, 19990, 30000}) {
+          ViewportSearch viewportSearch = handler.searchViewport(searchRequest,
+              new PageRequest(startingLineNo, "viewport", 50, new Cursor(startingLineNo, 0)));
+          assertEquals(inLines(expected, startingLineNo, 50),
+              viewportSearch.getViewportCursors(), searchRequest.toString());
+          assertEquals(expected, viewportSearch.searchAll(), searchRequest.toString());
+        }
+      }
+
+      // The rest of the file is searched as it was, whatever is edited meanwhile.
+      SearchRequest searchRequest = new SearchRequest(0, "pageRequest", "viewport");
+      List<Cursor> expected =
+          handler.getLatestSourceFileVersion("viewport").getCursors(searchRequest);
+      ViewportSearch viewportSearch = handler.searchViewport(searchRequest,
+          new PageRequest(100, "viewport", 50, new Cursor(100, 0)));
+      handler.editLines(new EditRequest(0, 10000, Arrays.asList("pageRequest"), "viewport",
+          new Cursor(0, 0)));
+      assertEquals(expected, CompletableFuture.supplyAsync(viewportSearch::searchAll).get());
+    }
+  }
+
+  @Test
+  void everyHandlerSearchesTheViewportThenTheFile() {
+    Random random = new Random(0x5353);
+    List<String> lines = makeLines(random, 20000);
+    List<SourceFileHandler> handlers = Arrays.asList(
+        new SourceFileHandlerArrayListImpl("viewport"),
+        new SourceFileHandlerPieceTableImpl("viewport"),
+        new SourceFileHandlerPersistentImpl("viewport"),
+        new SourceFileHandlerHybridImpl("viewport"));
+    SearchRequest searchRequest = new SearchRequest(0, "pageRequest", "viewport");
+    for (SourceFileHandler handler : handlers) {
+      handler.loadFile(new FileInfo("viewport", new ArrayList<>(lines)));
+      ViewportSearch viewportSearch = handler.searchViewport(searchRequest,
+          new PageRequest(15000, "viewport", 60, new Cursor(15000, 0)));
+      List<Cursor> expected =
+          handler.getLatestSourceFileVersion("viewport").getCursors(searchRequest);
+      assertEquals(inLines(expected, 15000, 60), viewportSearch.getViewportCursors(),
+          handler.getClass().getSimpleName());
+      assertEquals(expected, viewportSearch.searchAll(), handler.getClass().getSimpleName());
+    }
+  }
+}